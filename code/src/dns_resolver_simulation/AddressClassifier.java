@@ -0,0 +1,105 @@
+package dns_resolver_simulation;
+
+/* decides the direction of a message by its addresses and the QR bit of its DNS header
+ * the conditions and their order are the same as the simulation's original string comparisons
+ */
+public class AddressClassifier {
+  private static final int QR_BIT = 0x80;
+
+  private AddressSet internalNetworks;
+  private AddressSet resolvers;
+
+  public AddressClassifier(AddressSet internalNetworks, AddressSet resolvers) {
+    this.internalNetworks = internalNetworks;
+    this.resolvers = resolvers;
+  }
+
+  public static AddressClassifier fromConstants() {
+    return new AddressClassifier(new AddressSet(Constants.INTERNAL_NETWORKS), new AddressSet(Constants.RESOLVER_ADDRS));
+  }
+
+  public AddressSet getInternalNetworks() {
+    return this.internalNetworks;
+  }
+
+  public AddressSet getResolvers() {
+    return this.resolvers;
+  }
+
+  /* reads the QR bit directly from the raw DNS header, so queries which are only counted are never parsed
+   * @params TraceFrame   frame with a DNS message of at least Constants.DNS_HEADER_LENGTH bytes
+   * @return boolean      true if the message is a response
+   */
+  public static boolean isResponse(TraceFrame frame) {
+    return (frame.getPayloadByte(2) & QR_BIT) != 0;
+  }
+
+  /* @params boolean   true if the message is a response
+   * @params long      source address, upper and lower 64 bits (see AddressSet)
+   * @params long      destination address, upper and lower 64 bits
+   * @return int       one of the Constants.QUERY_* / RESPONSE_* directions or Constants.UNEXPECTED_DIRECTION
+   */
+  public int classify(boolean response, long srcHigh, long srcLow, long dstHigh, long dstLow) {
+    boolean srcInternal = this.internalNetworks.contains(srcHigh, srcLow);
+    boolean dstInternal = this.internalNetworks.contains(dstHigh, dstLow);
+    boolean srcResolver = this.resolvers.contains(srcHigh, srcLow);
+    boolean dstResolver = this.resolvers.contains(dstHigh, dstLow);
+
+    if (!response) {
+      if (srcInternal && dstResolver) return Constants.QUERY_INT_TO_R;
+      if (srcResolver && !dstInternal) return Constants.QUERY_R_TO_EXT;
+      if (srcResolver && dstInternal) return Constants.QUERY_R_TO_INT;
+      if (!srcInternal && dstResolver) return Constants.QUERY_EXT_TO_R;
+    } else {
+      if (!srcInternal && dstResolver) return Constants.RESPONSE_EXT_TO_R;
+      if (srcResolver && dstInternal) return Constants.RESPONSE_R_TO_INT;
+      if (srcInternal && dstResolver) return Constants.RESPONSE_INT_TO_R;
+      if (srcResolver && !dstInternal) return Constants.RESPONSE_R_TO_EXT;
+    }
+    return Constants.UNEXPECTED_DIRECTION;
+  }
+
+  /* index of the resolver (see AddressSet.indexOf) a message of the given direction was sent by or to
+   * @params int    direction (see classify(...))
+   * @params long   source address, upper and lower 64 bits
+   * @params long   destination address, upper and lower 64 bits
+   * @return int    index in the resolver set or -1, if no resolver is involved
+   */
+  public int resolverIndex(int direction, long srcHigh, long srcLow, long dstHigh, long dstLow) {
+    switch (direction) {
+      case Constants.QUERY_INT_TO_R:
+      case Constants.QUERY_EXT_TO_R:
+      case Constants.RESPONSE_EXT_TO_R:
+      case Constants.RESPONSE_INT_TO_R:
+        return this.resolvers.indexOf(dstHigh, dstLow);
+      case Constants.QUERY_R_TO_EXT:
+      case Constants.QUERY_R_TO_INT:
+      case Constants.RESPONSE_R_TO_INT:
+      case Constants.RESPONSE_R_TO_EXT:
+        return this.resolvers.indexOf(srcHigh, srcLow);
+      default:
+        return -1;
+    }
+  }
+
+  // only these directions need the parsed DNS message, all others are counted or logged
+  public static boolean needsMessage(int direction) {
+    return direction == Constants.QUERY_INT_TO_R
+      || direction == Constants.RESPONSE_EXT_TO_R
+      || direction == Constants.RESPONSE_R_TO_INT;
+  }
+
+  public static String describe(int direction) {
+    switch (direction) {
+      case Constants.QUERY_INT_TO_R: return "QUERY INT -> R";
+      case Constants.QUERY_R_TO_EXT: return "QUERY R -> EXT";
+      case Constants.QUERY_R_TO_INT: return "QUERY R -> INT";
+      case Constants.QUERY_EXT_TO_R: return "QUERY EXT -> R";
+      case Constants.RESPONSE_EXT_TO_R: return "RESPONSE EXT -> R";
+      case Constants.RESPONSE_R_TO_INT: return "RESPONSE R -> INT";
+      case Constants.RESPONSE_INT_TO_R: return "RESPONSE INT -> R";
+      case Constants.RESPONSE_R_TO_EXT: return "RESPONSE R -> EXT";
+      default: return "UNEXPECTED";
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package dns_resolver_simulation;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* set of IPv4 and IPv6 networks in CIDR notation (e.g. "240.0.0.0/8", "2001:db8::/32", single addresses are
+ * networks with full prefix length)
+ * addresses are handled as two longs (upper and lower 64 bits), IPv4 addresses as IPv4-mapped IPv6 addresses
+ * (::ffff:a.b.c.d), so a lookup needs neither string handling nor allocation
+ */
+public class AddressSet {
+  private static final long IPV4_MAPPED_PREFIX = 0x0000FFFF00000000L;
+
+  private long[] highNetworks;
+  private long[] lowNetworks;
+  private long[] highMasks;
+  private long[] lowMasks;
+  private String[] descriptions;
+
+  public AddressSet(String... cidrs) throws IllegalArgumentException {
+    this.highNetworks = new long[cidrs.length];
+    this.lowNetworks = new long[cidrs.length];
+    this.highMasks = new long[cidrs.length];
+    this.lowMasks = new long[cidrs.length];
+    this.descriptions = new String[cidrs.length];
+    for (int i = 0; i < cidrs.length; i++) {
+      String cidr = cidrs[i].trim();
+      int slash = cidr.indexOf('/');
+      byte[] address = parse(slash > -1 ? cidr.substring(0, slash) : cidr);
+      int maxLength = address.length * 8;
+      int prefixLength = slash > -1 ? Integer.parseInt(cidr.substring(slash + 1)) : maxLength;
+      if (prefixLength < 0 || prefixLength > maxLength)
+        throw new IllegalArgumentException("Invalid prefix length in " + cidr);
+
+      // IPv4 networks are stored as networks inside ::ffff:0:0/96
+      if (address.length == 4)
+        prefixLength += 96;
+
+      this.highMasks[i] = mask(prefixLength);
+      this.lowMasks[i] = mask(prefixLength - 64);
+      this.highNetworks[i] = high(address) & this.highMasks[i];
+      this.lowNetworks[i] = low(address) & this.lowMasks[i];
+      this.descriptions[i] = cidr;
+    }
+  }
+
+  // parses a comma separated list of networks
+  public static AddressSet fromList(String list) throws IllegalArgumentException {
+    List<String> cidrs = new ArrayList<String>();
+    for (String cidr : list.split(",")) {
+      if (!cidr.trim().isEmpty())
+        cidrs.add(cidr);
+    }
+    return new AddressSet(cidrs.toArray(new String[cidrs.size()]));
+  }
+
+  private static byte[] parse(String address) throws IllegalArgumentException {
+    // only literals are accepted, so InetAddress does not do any lookup
+    if (!address.matches("[0-9.]+") && !(address.indexOf(':') > -1 && address.matches("[0-9a-fA-F:.]+")))
+      throw new IllegalArgumentException("Not an IP address: " + address);
+    try {
+      return InetAddress.getByName(address).getAddress();
+    } catch (UnknownHostException e) {
+      throw new IllegalArgumentException("Not an IP address: " + address);
+    }
+  }
+
+  // mask with the given number of leading one bits (0 to 64)
+  private static long mask(int bits) {
+    if (bits <= 0) return 0;
+    if (bits >= 64) return -1L;
+    return -1L << (64 - bits);
+  }
+
+  /* upper 64 bits of an address given in network byte order
+   * @params byte[]   4 (IPv4) or 16 (IPv6) bytes
+   * @return long     upper half, 0 for IPv4 addresses
+   */
+  public static long high(byte[] address) {
+    if (address.length == 4) return 0;
+    return toLong(address, 0);
+  }
+
+  // lower 64 bits of an address given in network byte order (IPv4 addresses are mapped to ::ffff:a.b.c.d)
+  public static long low(byte[] address) {
+    if (address.length == 4) return IPV4_MAPPED_PREFIX | (toInt(address, 0) & 0xFFFFFFFFL);
+    return toLong(address, 8);
+  }
+
+  public static long high(byte[] address, int ipVersion) {
+    return ipVersion == 6 ? toLong(address, 0) : 0;
+  }
+
+  public static long low(byte[] address, int ipVersion) {
+    return ipVersion == 6 ? toLong(address, 8) : IPV4_MAPPED_PREFIX | (toInt(address, 0) & 0xFFFFFFFFL);
+  }
+
+  public static boolean isIPv4(long high, long low) {
+    return high == 0 && (low & 0xFFFFFFFF00000000L) == IPV4_MAPPED_PREFIX;
+  }
+
+  private static int toInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+  }
+
+  private static long toLong(byte[] bytes, int offset) {
+    return ((toInt(bytes, offset) & 0xFFFFFFFFL) << 32) | (toInt(bytes, offset + 4) & 0xFFFFFFFFL);
+  }
+
+  /* index of the first network containing the address
+   * @params long   upper 64 bits of the address
+   * @params long   lower 64 bits of the address
+   * @return int    index of the network in the order of construction, -1 if no network contains the address
+   */
+  public int indexOf(long high, long low) {
+    for (int i = 0; i < this.highNetworks.length; i++) {
+      if ((high & this.highMasks[i]) == this.highNetworks[i] && (low & this.lowMasks[i]) == this.lowNetworks[i])
+        return i;
+    }
+    return -1;
+  }
+
+  public boolean contains(long high, long low) {
+    return indexOf(high, low) > -1;
+  }
+
+  public int size() {
+    return this.highNetworks.length;
+  }
+
+  public String get(int index) {
+    return this.descriptions[index];
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(this.descriptions);
+  }
+}
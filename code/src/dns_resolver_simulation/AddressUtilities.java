@@ -0,0 +1,34 @@
+package dns_resolver_simulation;
+
+public final class AddressUtilities {
+
+  // builds the textual representation of an IPv4 or IPv6 address
+  public static String ipToString(byte[] bytes, int version) {
+    String address = "";
+    if (version == 4) {
+      address = Byte.toUnsignedInt((byte) (0xFF & bytes[0])) + "." + Byte.toUnsignedInt((byte) (0xFF & bytes[1])) + "." + Byte.toUnsignedInt((byte) (0xFF & bytes[2])) + "." + Byte.toUnsignedInt((byte) (0xFF & bytes[3]));
+    }
+    else if (version == 6) {
+      address = Integer.toHexString(((0xFF & bytes[0]) << 8) | (0xFF & bytes[1])) + ":" + Integer.toHexString(((0xFF & bytes[2]) << 8) | (0xFF & bytes[3])) + ":" +
+      Integer.toHexString(((0xFF & bytes[4]) << 8) | (0xFF & bytes[5])) + ":" + Integer.toHexString(((0xFF & bytes[6]) << 8) | (0xFF & bytes[7])) + ":" +
+      Integer.toHexString(((0xFF & bytes[8]) << 8) | (0xFF & bytes[9])) + ":" + Integer.toHexString(((0xFF & bytes[10]) << 8) | (0xFF & bytes[11])) + ":" +
+      Integer.toHexString(((0xFF & bytes[12]) << 8) | (0xFF & bytes[13])) + ":" + Integer.toHexString(((0xFF & bytes[14]) << 8) | (0xFF & bytes[15]));
+    }
+    return address;
+  }
+
+  // textual representation of an address given as two longs (see AddressSet)
+  public static String ipToString(long high, long low) {
+    if (AddressSet.isIPv4(high, low)) {
+      return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+    }
+    StringBuilder address = new StringBuilder();
+    for (int group = 0; group < 8; group++) {
+      long half = group < 4 ? high : low;
+      if (group > 0) address.append(':');
+      address.append(Long.toHexString((half >>> (48 - 16 * (group % 4))) & 0xFFFF));
+    }
+    return address.toString();
+  }
+
+}
@@ -0,0 +1,79 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* reader for the simulation's own binary trace format, all values little endian:
+ * magic (4 bytes, once at the beginning), then for every frame
+ * timestamp (double, 8) | frame number (4) | IP version (1) | source IP (4 or 16) | destination IP (4 or 16) |
+ * transport type (1) | source port (2) | destination port (2) | message length (2) | DNS message
+ */
+public class BinaryTraceReader extends TraceReader {
+  public static final int MAGIC_LENGTH = 4;
+  private static final int FIXED_HEADER_LENGTH = 13;
+  private static final int TRAILING_HEADER_LENGTH = 7;
+
+  private TraceInput input;
+
+  public BinaryTraceReader(TraceInput input) throws IOException {
+    this.input = input;
+    if (this.input.require(MAGIC_LENGTH))
+      this.input.advance(MAGIC_LENGTH);
+  }
+
+  @Override
+  public boolean next(TraceFrame frame) throws IOException {
+    long offset = this.input.position();
+
+    /* TIMESTAMP, FRAME NUMBER, IP VERSION */
+    if (!this.input.require(FIXED_HEADER_LENGTH))
+      return false;
+    ByteBuffer buffer = this.input.buffer();
+    int index = this.input.index();
+    double timestamp = buffer.getDouble(index);
+    int frameNumber = buffer.getInt(index + 8);
+    int ipVersion = Byte.toUnsignedInt(buffer.get(index + 12));
+    this.input.advance(FIXED_HEADER_LENGTH);
+
+    /* SOURCE & DESTINATION IP ADDRESSES, TRANSPORT TYPE, PORTS, MESSAGE LENGTH */
+    int addressLength = ipVersion == 6 ? 16 : 4;
+    if (!this.input.require(2 * addressLength + TRAILING_HEADER_LENGTH))
+      return false;
+    buffer = this.input.buffer();
+    index = this.input.index();
+    copy(buffer, index, frame.srcAddressBuffer(), addressLength);
+    copy(buffer, index + addressLength, frame.dstAddressBuffer(), addressLength);
+    index += 2 * addressLength;
+    int transportType = Byte.toUnsignedInt(buffer.get(index));
+    int srcPort = Short.toUnsignedInt(buffer.getShort(index + 1));
+    int dstPort = Short.toUnsignedInt(buffer.getShort(index + 3));
+    int messageLength = Short.toUnsignedInt(buffer.getShort(index + 5));
+    this.input.advance(2 * addressLength + TRAILING_HEADER_LENGTH);
+
+    /* DNS MESSAGE */
+    if (!this.input.require(messageLength))
+      return false;
+
+    frame.setHeader(offset, timestamp, frameNumber, ipVersion, transportType);
+    frame.setPorts(srcPort, dstPort);
+    frame.setPayload(this.input.buffer(), this.input.index(), messageLength);
+    this.input.advance(messageLength);
+    return true;
+  }
+
+  private void copy(ByteBuffer buffer, int index, byte[] destination, int length) {
+    for (int i = 0; i < length; i++) {
+      destination[i] = buffer.get(index + i);
+    }
+  }
+
+  @Override
+  public void seek(long offset) throws IOException {
+    this.input.seek(offset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.input.close();
+  }
+}
@@ -0,0 +1,187 @@
+package dns_resolver_simulation;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* stripe of a ConcurrentSimulationCache: the zones and wildcards whose names hash to it, together with the timer
+ * wheel and the eviction policy of their records; records are kept on the heap (see SimulationConfig, threads)
+ * lookups read the maps and entries without locking; adding records, reporting an access to the eviction policy,
+ * expiring and evicting hold the lock of the stripe, so writers of different stripes never wait for each other
+ * records expired, evicted or rejected by the stripe are counted in statistics of its own
+ * a ZoneFilter over the zones of the stripe is read without locking as well; it is replaced by a larger one holding
+ * all zones when it is full, a lookup still reading the old one may miss the zone just added, like a lookup running
+ * before the addition
+ */
+public class CacheStripe {
+  private ReentrantLock lock;
+  private ConcurrentHashMap<CanonicalName, ResponseEntry> zones;
+  private ConcurrentHashMap<CanonicalName, CachedWildcardRecord> wildcards;
+  private TimerWheel timerWheel;
+  // null for a cache without capacity
+  private EvictionPolicy evictionPolicy;
+  private long capacity;
+  private long memory;
+  private Statistics statistics;
+  // shared by all stripes of the cache
+  private AtomicLong zoneGeneration;
+  private volatile ZoneFilter filter;
+
+  /* @params SimulationConfig   configuration of the cache
+   * @params long               maximum number of records of the stripe
+   * @params long               maximum estimated size of the records of the stripe in bytes
+   * @params Statistics         statistics of the stripe
+   * @params AtomicLong         changed after a zone was added or dropped (see ConcurrentSimulationCache.getZoneGeneration)
+   */
+  public CacheStripe(SimulationConfig config, long capacity, long memory, Statistics statistics, AtomicLong zoneGeneration) {
+    this.lock = new ReentrantLock();
+    this.zones = new ConcurrentHashMap<CanonicalName, ResponseEntry>();
+    this.wildcards = new ConcurrentHashMap<CanonicalName, CachedWildcardRecord>();
+    this.timerWheel = new TimerWheel(this::expire);
+    if (config.isBounded()) {
+      this.evictionPolicy = EvictionPolicy.create(config.getEviction(), statistics);
+      this.timerWheel.setEvictionPolicy(this.evictionPolicy);
+    }
+    this.capacity = capacity;
+    this.memory = memory;
+    this.statistics = statistics;
+    this.zoneGeneration = zoneGeneration;
+    this.filter = new ZoneFilter(0);
+  }
+
+  public void lock() {
+    this.lock.lock();
+  }
+
+  public void unlock() {
+    this.lock.unlock();
+  }
+
+  // false if the stripe holds no zone with the hash code (see CanonicalName.hashCode()); no lock needed
+  public boolean mightContain(int zoneHash) {
+    return this.filter.mightContain(zoneHash);
+  }
+
+  // entry of the zone, null if there is none; no lock needed
+  public ResponseEntry getEntry(CanonicalName zone) {
+    return this.zones.get(zone);
+  }
+
+  /* entry of the zone, a new one if there is none yet; the lock has to be held
+   * @params CanonicalName   zone
+   * @return ResponseEntry   entry of the zone, its records are hashed with the NSEC3HashCache of the thread
+   */
+  public ResponseEntry entry(CanonicalName zone) {
+    ResponseEntry entry = this.zones.get(zone);
+    if (entry == null) {
+      entry = new ResponseEntry(zone, null, this.timerWheel, null, true);
+      this.zones.put(zone, entry);
+      if (this.filter.isFull(this.zones.size())) {
+        ZoneFilter filter = new ZoneFilter(2 * this.zones.size());
+        for (CanonicalName cached : this.zones.keySet()) {
+          filter.add(cached.hashCode());
+        }
+        this.filter = filter;
+      } else {
+        this.filter.add(zone.hashCode());
+      }
+      this.zoneGeneration.incrementAndGet();
+    }
+    return entry;
+  }
+
+  // wildcard record cached under the given name, null if there is none; no lock needed
+  public CachedWildcardRecord getWildcard(CanonicalName wildcardName) {
+    return this.wildcards.get(wildcardName);
+  }
+
+  // the lock has to be held
+  public void addWildcard(CachedWildcardRecord wildcardRecord) {
+    this.timerWheel.cancel(this.wildcards.put(wildcardRecord.getKey(), wildcardRecord));
+    this.timerWheel.schedule(wildcardRecord);
+  }
+
+  // a lookup used the record, which may have been removed by another thread since
+  public void access(CachedRecord record) {
+    if (this.evictionPolicy == null)
+      return;
+    lock();
+    try {
+      if (record.isScheduled())
+        this.evictionPolicy.access(record);
+    } finally {
+      unlock();
+    }
+  }
+
+  // evicts records chosen by the eviction policy while the stripe exceeds its capacity; the lock has to be held
+  public void evict() {
+    if (this.evictionPolicy == null)
+      return;
+    while (this.evictionPolicy.size() > 0
+      && (this.evictionPolicy.size() > this.capacity || this.evictionPolicy.getBytes() > this.memory))
+    {
+      CachedRecord victim = this.evictionPolicy.evict();
+      this.timerWheel.cancel(victim);
+      remove(victim);
+      this.statistics.countEviction();
+    }
+  }
+
+  // expires all records due at the given trace time
+  public void advance(long time) {
+    lock();
+    try {
+      this.timerWheel.advance(time);
+    } finally {
+      unlock();
+    }
+  }
+
+  private void expire(CachedRecord record) {
+    remove(record);
+    this.statistics.countExpiredRecord();
+  }
+
+  // removes a record which is no longer scheduled, the entry of a zone without records is dropped
+  private void remove(CachedRecord record) {
+    if (record instanceof CachedWildcardRecord) {
+      CachedWildcardRecord wildcardRecord = (CachedWildcardRecord) record;
+      this.wildcards.remove(wildcardRecord.getKey(), wildcardRecord);
+    } else {
+      ResponseEntry entry = ((CachedNegativeRecord) record).getEntry();
+      entry.remove((CachedNegativeRecord) record);
+      if (entry.isEmpty() && this.zones.remove(entry.getZone(), entry)) {
+        this.filter.remove(entry.getZone().hashCode());
+        this.zoneGeneration.incrementAndGet();
+      }
+    }
+  }
+
+  public Collection<ResponseEntry> getEntries() {
+    return this.zones.values();
+  }
+
+  public Collection<CachedWildcardRecord> getWildcards() {
+    return this.wildcards.values();
+  }
+
+  // number of cached records which did not expire yet
+  public int size() {
+    return this.timerWheel.size();
+  }
+
+  public Statistics getStatistics() {
+    return this.statistics;
+  }
+
+  // drops all records; the lock has to be held
+  public void clear() {
+    this.timerWheel.clear();
+    this.zones.clear();
+    this.wildcards.clear();
+    this.filter = new ZoneFilter(0);
+    this.zoneGeneration.incrementAndGet();
+  }
+}
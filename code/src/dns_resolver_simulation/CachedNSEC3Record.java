@@ -1,40 +1,136 @@
 package dns_resolver_simulation;
 
+import java.util.Arrays;
+
+import org.xbill.DNS.DClass;
 import org.xbill.DNS.NSEC3Record;
-import org.xbill.DNS.Name;
-import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
 
+// names are hashed with the parameters of the ring holding the record (see NSEC3Ring)
 public class CachedNSEC3Record extends CachedNegativeRecord {
-  private EnhancedNSEC3Record record;
+  private CanonicalName owner;
+  private byte[] ownerHash;
+  private byte[] nextHash;
+  private long[] types;
+  private int[] highTypes;
+  private byte sigLabels;
+  private boolean optOut;
+  private NSEC3Ring ring;
+
+  /* @params EnhancedNSEC3Record   record with an owner hash
+   * @params int                   label count of its RRSIG record, -1 if missing
+   * @params long                  arrival tick
+   * @params long                  absolute expiry tick
+   * @params NSEC3Ring             ring of the record's hash parameters
+   */
+  public CachedNSEC3Record(EnhancedNSEC3Record record, int sigLabels, long arrival, long expiry, NSEC3Ring ring) {
+    super(arrival, expiry);
+    this.owner = CanonicalName.of(record.getName());
+    this.ownerHash = record.getOwnerHash();
+    this.nextHash = record.getNext();
+    this.types = toBitmap(record.getTypes());
+    this.highTypes = toHighTypes(record.getTypes());
+    this.sigLabels = (byte) sigLabels;
+    this.optOut = record.getFlags() == NSEC3Record.Flags.OPT_OUT;
+    this.ring = ring;
+  }
+
+  // for records keeping all but their owner hash elsewhere (see SlabNSEC3Record), which override the methods reading them
+  protected CachedNSEC3Record(byte[] ownerHash, long arrival, long expiry, NSEC3Ring ring) {
+    super(arrival, expiry);
+    this.ownerHash = ownerHash;
+    this.ring = ring;
+  }
 
-  public CachedNSEC3Record(NSEC3Record record, RRSIGRecord sigRecord, double arrival, double ttl) {
-    super(record, sigRecord, arrival, ttl);
-    this.record = new EnhancedNSEC3Record(record);
+  public byte[] getOwnerHash() {
+    return this.ownerHash;
+  }
+
+  public NSEC3Ring getRing() {
+    return this.ring;
   }
 
   @Override
-  public int[] getTypes() {
-    return this.record.getTypes();
+  public int getType() {
+    return Type.NSEC3;
+  }
+
+  @Override
+  public int getKeyHash() {
+    return this.owner.hashCode() * 31 + Type.NSEC3;
+  }
+
+  @Override
+  protected int estimateSize() {
+    return estimateSize(this.owner.length(), this.nextHash.length, this.types, this.highTypes);
+  }
+
+  @Override
+  public int getSigLabels() {
+    return this.sigLabels;
+  }
+
+  @Override
+  protected byte[] getNextData() {
+    return this.nextHash;
   }
 
   @Override
-  public boolean inbetween(Name needle) {
-    return this.record.inbetween(needle);
+  public boolean containsType(int type) {
+    return containsType(this.types, this.highTypes, type);
   }
 
   @Override
-  public boolean matches(Name needle) {
-    return this.record.matches(needle);
+  public int[] getTypes() {
+    return fromBitmap(this.types, this.highTypes);
   }
 
   @Override
   public boolean hasOptOut() {
-    return this.record.getFlags() == NSEC3Record.Flags.OPT_OUT;
+    return this.optOut;
+  }
+
+  @Override
+  public boolean inbetween(CanonicalName needle) {
+    return covers(this.ring.hash(needle));
+  }
+
+  @Override
+  public boolean matches(CanonicalName needle) {
+    byte[] hash = this.ring.hash(needle);
+    return hash != null && Arrays.equals(this.ownerHash, hash);
   }
 
+  public boolean covers(byte[] hash) {
+    return EnhancedNSEC3Record.covers(this.ownerHash, this.nextHash, hash);
+  }
+
+  // true for the last record of a chain, whose next hash is the first one (lays before the owner hash)
+  public boolean isLastInChain() {
+    return EnhancedNSEC3Record.compareHashes(this.ownerHash, this.nextHash) >= 0;
+  }
+
+  // the ancestors of the needle and their hashes are shared with all other records (see NSEC3HashCache)
   @Override
-  public Name getClosestEncloser(Name needle) {
-    return this.record.getClosestEncloser(needle);
+  public CanonicalName getClosestEncloser(CanonicalName needle) {
+    for (int position = 0; position < needle.labels() - 1; position++) {
+      byte[] hash = this.ring.ancestorHash(needle, position);
+      if (hash != null && Arrays.equals(this.ownerHash, hash))
+        return needle.ancestor(position);
+    }
+    return null;
+  }
+
+  @Override
+  public Record toRecord() {
+    return toRecord(this.owner, hasOptOut(), this.nextHash, getTypes());
+  }
+
+  protected Record toRecord(CanonicalName owner, boolean optOut, byte[] nextHash, int[] types) {
+    EnhancedNSEC3Record parameters = this.ring.getParameters();
+    return new NSEC3Record(owner.toName(), DClass.IN, 0, parameters.getHashAlgorithm(),
+      optOut ? NSEC3Record.Flags.OPT_OUT : 0, parameters.getIterations(), parameters.getSalt(), nextHash, types);
   }
 
 }
\ No newline at end of file
@@ -1,35 +1,99 @@
 package dns_resolver_simulation;
 
+import org.xbill.DNS.DClass;
 import org.xbill.DNS.NSECRecord;
-import org.xbill.DNS.Name;
-import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
 
 public class CachedNSECRecord extends CachedNegativeRecord {
-  private EnhancedNSECRecord record;
+  private CanonicalName owner;
+  private CanonicalName next;
+  private long[] types;
+  private int[] highTypes;
+  private byte sigLabels;
 
-  public CachedNSECRecord(NSECRecord record, RRSIGRecord sigRecord, double arrival, double ttl) {
-    super(record, sigRecord, arrival, ttl);
-    this.record = new EnhancedNSECRecord(record);
+  /* @params NSECRecord   record
+   * @params int          label count of its RRSIG record, -1 if missing
+   * @params long         arrival tick
+   * @params long         absolute expiry tick
+   */
+  public CachedNSECRecord(NSECRecord record, int sigLabels, long arrival, long expiry) {
+    super(arrival, expiry);
+    this.owner = CanonicalName.of(record.getName());
+    this.next = CanonicalName.of(record.getNext());
+    this.types = toBitmap(record.getTypes());
+    this.highTypes = toHighTypes(record.getTypes());
+    this.sigLabels = (byte) sigLabels;
+  }
+
+  // for records keeping all but their owner elsewhere (see SlabNSECRecord), which override the methods reading them
+  protected CachedNSECRecord(CanonicalName owner, long arrival, long expiry) {
+    super(arrival, expiry);
+    this.owner = owner;
+  }
+
+  public CanonicalName getOwner() {
+    return this.owner;
+  }
+
+  @Override
+  public int getType() {
+    return Type.NSEC;
+  }
+
+  @Override
+  public int getKeyHash() {
+    return this.owner.hashCode() * 31 + Type.NSEC;
+  }
+
+  @Override
+  protected int estimateSize() {
+    return estimateSize(this.owner.length(), this.next.length(), this.types, this.highTypes);
+  }
+
+  @Override
+  public int getSigLabels() {
+    return this.sigLabels;
+  }
+
+  @Override
+  protected byte[] getNextData() {
+    return this.next.toWire();
+  }
+
+  @Override
+  public boolean containsType(int type) {
+    return containsType(this.types, this.highTypes, type);
   }
 
   @Override
   public int[] getTypes() {
-    return this.record.getTypes();
+    return fromBitmap(this.types, this.highTypes);
+  }
+
+  @Override
+  public boolean matches(CanonicalName needle) {
+    return this.owner.equals(needle);
   }
 
   @Override
-  public boolean matches(Name needle) {
-    return this.record.matches(needle);
+  public boolean inbetween(CanonicalName needle) {
+    return EnhancedNSECRecord.inBetween(this.owner, this.next, needle);
+  }
+
+  // true for the last record of a chain, whose next name is the first one (lays before the owner name)
+  public boolean isLastInChain() {
+    return this.owner.compareTo(this.next) > 0;
   }
 
   @Override
-  public boolean inbetween(Name needle) {
-    return this.record.inBetween(needle);
+  public CanonicalName getClosestEncloser(CanonicalName needle) {
+    return EnhancedNSECRecord.getClosestEncloser(this.owner, needle);
   }
 
   @Override
-  public Name getClosestEncloser(Name needle) {
-    return this.record.getClosestEncloser(needle);
+  public Record toRecord() {
+    return new NSECRecord(this.owner.toName(), DClass.IN, 0, this.next.toName(), getTypes());
   }
 
 }
\ No newline at end of file
@@ -2,43 +2,142 @@ package dns_resolver_simulation;
 
 import java.util.Arrays;
 
-import org.xbill.DNS.Name;
-import org.xbill.DNS.RRSIGRecord;
 import org.xbill.DNS.Record;
 
+/* cached NSEC or NSEC3 record reduced to the fields the proofs read: canonical owner and next, the types below
+ * TYPE_BITMAP_TYPES as a bitmap of longs (bit t of word t / 64 for type t, up to the highest one) and the rare higher
+ * ones (CAA, TA, DLV) as a sorted list, the label count of its RRSIG record and the absolute expiry
+ */
 public abstract class CachedNegativeRecord extends CachedRecord {
-  protected RRSIGRecord sigRecord;
-  protected double ttl;
+  protected static final int[] NO_TYPES = new int[0];
 
-  public CachedNegativeRecord(Record record, RRSIGRecord sigRecord, double arrival, double ttl) {
-    super(record, arrival);
-    this.sigRecord = sigRecord;
-    this.ttl = ttl;
+  protected long expiry;
+  protected ResponseEntry entry;
+
+  /* @params long   arrival tick
+   * @params long   absolute expiry tick (arrival plus negative TTL)
+   */
+  public CachedNegativeRecord(long arrival, long expiry) {
+    super(arrival);
+    this.expiry = expiry;
   }
 
   @Override
-  public double getTTL() {
-    return this.ttl;
+  public long getExpiry() {
+    return this.expiry;
+  }
+
+  // entry of the zone holding the record, set by ResponseEntry
+  public ResponseEntry getEntry() {
+    return this.entry;
+  }
+
+  public void setEntry(ResponseEntry entry) {
+    this.entry = entry;
+  }
+
+  // the record arrived again with the same data, only while it is not scheduled (see ResponseEntry)
+  public void refresh(long arrival, long expiry) {
+    this.arrival = arrival;
+    this.expiry = expiry;
+  }
+
+  // true if the other record with the same key differs in its arrival and expiry only
+  public boolean hasSameData(CachedNegativeRecord other) {
+    return getSigLabels() == other.getSigLabels() && hasOptOut() == other.hasOptOut()
+      && Arrays.equals(getNextData(), other.getNextData()) && Arrays.equals(getTypes(), other.getTypes());
   }
 
-  public RRSIGRecord getSigRecord() {
-    return this.sigRecord;
+  /* @params int       length of the owner name in wire format
+   * @params int       length of next in wire format (name or hash)
+   * @params long[]    bitmap of the low types
+   * @params int[]     types above the bitmap
+   * @return int       estimated size of the record with the objects around it
+   */
+  protected static int estimateSize(int ownerLength, int nextLength, long[] bitmap, int[] highTypes) {
+    return Constants.CACHED_RECORD_OVERHEAD + ownerLength + nextLength + bitmap.length * Long.BYTES
+      + highTypes.length * Integer.BYTES;
   }
 
-  public boolean containsType(int type) {
-    return Arrays.stream(getTypes()).anyMatch(i -> i == type);
+  // bitmap holding the given types below TYPE_BITMAP_TYPES, one word up to the highest one
+  protected static long[] toBitmap(int[] types) {
+    int highest = 0;
+    for (int type : types) {
+      if (type < Constants.TYPE_BITMAP_TYPES)
+        highest = Math.max(highest, type);
+    }
+    long[] bitmap = new long[highest / Long.SIZE + 1];
+    for (int type : types) {
+      if (type < Constants.TYPE_BITMAP_TYPES)
+        bitmap[type / Long.SIZE] |= 1L << type;
+    }
+    return bitmap;
+  }
+
+  // sorted types from TYPE_BITMAP_TYPES on, NO_TYPES for the usual record without any
+  protected static int[] toHighTypes(int[] types) {
+    int count = 0;
+    for (int type : types) {
+      if (type >= Constants.TYPE_BITMAP_TYPES)
+        count++;
+    }
+    if (count == 0)
+      return NO_TYPES;
+
+    int[] highTypes = new int[count];
+    count = 0;
+    for (int type : types) {
+      if (type >= Constants.TYPE_BITMAP_TYPES)
+        highTypes[count++] = type;
+    }
+    Arrays.sort(highTypes);
+    return highTypes;
+  }
+
+  protected static boolean containsType(long[] bitmap, int[] highTypes, int type) {
+    if (type >= Constants.TYPE_BITMAP_TYPES)
+      return Arrays.binarySearch(highTypes, type) >= 0;
+    int word = type / Long.SIZE;
+    return word < bitmap.length && (bitmap[word] & (1L << type)) != 0;
+  }
+
+  protected static int[] fromBitmap(long[] bitmap, int[] highTypes) {
+    int[] types = new int[bitmap.length * Long.SIZE + highTypes.length];
+    int count = 0;
+    for (int word = 0; word < bitmap.length; word++) {
+      for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+        types[count++] = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    System.arraycopy(highTypes, 0, types, count, highTypes.length);
+    return Arrays.copyOf(types, count + highTypes.length);
+  }
+
+  // frees storage kept outside of the heap, called once when the record left the cache
+  public void release() {
   }
 
   public boolean hasOptOut() {
     return false;
   }
 
-  public abstract Name getClosestEncloser(Name questionName);
+  // label count of the RRSIG record, -1 if the record has none
+  public abstract int getSigLabels();
+
+  // next name in canonical wire format (NSEC) or next hash (NSEC3)
+  protected abstract byte[] getNextData();
+
+  public abstract boolean containsType(int type);
 
   public abstract int[] getTypes();
-  
-  public abstract boolean matches(Name needle);
 
-  public abstract boolean inbetween(Name needle);
+  // the record rebuilt from the cached fields (class IN, TTL 0), for checkpoints
+  public abstract Record toRecord();
+
+  public abstract CanonicalName getClosestEncloser(CanonicalName questionName);
+
+  public abstract boolean matches(CanonicalName needle);
+
+  public abstract boolean inbetween(CanonicalName needle);
 
 }
\ No newline at end of file
@@ -1,32 +1,42 @@
 package dns_resolver_simulation;
 
-import org.xbill.DNS.Name;
-import org.xbill.DNS.Record;
-
 public abstract class CachedRecord {
-  protected Record record;
-  protected double arrival;
+  protected long arrival;
+  // links of the TimerWheel holding the record until it expires
+  CachedRecord nextTimer;
+  CachedRecord previousTimer;
+  long expiryTick;
+  int timerLevel = -1;
+  int timerSlot;
+  private int estimatedSize;
 
-  public CachedRecord(Record record, double arrival) {
-    this.record = record;
+  public CachedRecord(long arrival) {
     this.arrival = arrival;
   }
 
-  public Record getRecord() {
-    return this.record;
-  }
-
-  public Name getName() {
-    return this.record.getName();
+  public long getArrival() {
+    return this.arrival;
   }
 
-  public double getArrival() {
-    return this.arrival;
+  // true while a TimerWheel holds the record, i.e. it is cached and was not removed yet
+  public boolean isScheduled() {
+    return this.timerLevel >= 0;
   }
   
-  public int getType() {
-    return this.record.getType();
+  public abstract int getType();
+
+  // hash of owner name and type, identifies the record in frequency sketches (see TinyLFUEvictionPolicy)
+  public abstract int getKeyHash();
+
+  // estimated size of the record in bytes, for caches bounded by memory (see EvictionPolicy)
+  public int getEstimatedSize() {
+    if (this.estimatedSize == 0)
+      this.estimatedSize = estimateSize();
+    return this.estimatedSize;
   }
 
-  public abstract double getTTL();
+  protected abstract int estimateSize();
+
+  // tick at which the record expires, computed once on arrival
+  public abstract long getExpiry();
 }
\ No newline at end of file
@@ -3,13 +3,47 @@ package dns_resolver_simulation;
 import org.xbill.DNS.Record;
 
 public class CachedWildcardRecord extends CachedRecord {
+  private Record record;
+  private CanonicalName key;
+  private long expiry;
 
-  public CachedWildcardRecord(Record record, double arrival) {
-    super(record, arrival);
+  /* @params Record          wildcard record
+   * @params long            arrival tick
+   * @params CanonicalName   key of the record in the wildcard cache of SimulationCache
+   */
+  public CachedWildcardRecord(Record record, long arrival, CanonicalName key) {
+    super(arrival);
+    this.record = record;
+    this.key = key;
+    this.expiry = arrival + record.getTTL() * Constants.TICKS_PER_SECOND;
+  }
+
+  public Record getRecord() {
+    return this.record;
+  }
+
+  public CanonicalName getKey() {
+    return this.key;
+  }
+
+  @Override
+  public int getType() {
+    return this.record.getType();
+  }
+
+  @Override
+  public int getKeyHash() {
+    return this.record.getName().hashCode() * 31 + this.record.getType();
+  }
+
+  // the record in wire format and the objects around it
+  @Override
+  protected int estimateSize() {
+    return Constants.CACHED_RECORD_OVERHEAD + this.record.getName().length() + this.record.rdataToWireCanonical().length;
   }
 
   @Override
-  public double getTTL() {
-    return Long.valueOf(this.record.getTTL()).doubleValue();
+  public long getExpiry() {
+    return this.expiry;
   }
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.NameTooLongException;
+
+/* immutable domain name in canonical form (RFC 4034 Section 6.2): lowercased wire format, the offsets of its labels
+ * and a precomputed hash; created once per record or query, so comparisons neither canonicalize nor build strings
+ * names are ordered by their labels from right to left, every label compared byte by byte (canonical DNSSEC order)
+ * ancestors share the wire format and the label offsets of their name
+ */
+public final class CanonicalName implements Comparable<CanonicalName> {
+  // maximum length of a name in wire format (RFC 1035 Section 2.3.4)
+  public static final int MAX_LENGTH = 255;
+
+  private byte[] wire;
+  private int[] offsets;    // offsets of all labels in 'wire', the root label last
+  private int first;        // index of the first label of this name in 'offsets'
+  private int hash;
+
+  private CanonicalName(byte[] wire, int[] offsets, int first) {
+    this.wire = wire;
+    this.offsets = offsets;
+    this.first = first;
+    int hash = 0;
+    for (int i = offsets[first]; i < wire.length; i++) {
+      hash = hash * 31 + wire[i];
+    }
+    this.hash = hash;
+  }
+
+  public static CanonicalName of(Name name) {
+    return fromWire(name.toWireCanonical());
+  }
+
+  /* @params byte[]          canonical wire format of a name (lowercase, uncompressed), not changed afterwards
+   * @return CanonicalName   the name
+   */
+  public static CanonicalName fromWire(byte[] wire) {
+    int labels = 1;
+    for (int offset = 0; wire[offset] != 0; offset += wire[offset] + 1) {
+      labels++;
+    }
+    int[] offsets = new int[labels];
+    int offset = 0;
+    for (int label = 0; label < labels; label++) {
+      offsets[label] = offset;
+      offset += wire[offset] + 1;
+    }
+    return new CanonicalName(wire, offsets, 0);
+  }
+
+  // number of labels including the root label (see Name.labels())
+  public int labels() {
+    return this.offsets.length - this.first;
+  }
+
+  /* @params int             number of labels removed from the left
+   * @return CanonicalName   the ancestor, this name for 0
+   */
+  public CanonicalName ancestor(int position) {
+    if (position == 0)
+      return this;
+    return new CanonicalName(this.wire, this.offsets, this.first + position);
+  }
+
+  /* @throws NameTooLongException   the wildcard name exceeds 255 bytes in wire format
+   * @return CanonicalName          this name below the wildcard label "*"
+   */
+  public CanonicalName wildcard() throws NameTooLongException {
+    int offset = this.offsets[this.first];
+    if (2 + this.wire.length - offset > MAX_LENGTH)
+      throw new NameTooLongException();
+    byte[] wire = new byte[2 + this.wire.length - offset];
+    wire[0] = 1;
+    wire[1] = '*';
+    System.arraycopy(this.wire, offset, wire, 2, this.wire.length - offset);
+    return fromWire(wire);
+  }
+
+  public boolean isWild() {
+    int offset = this.offsets[this.first];
+    return this.wire[offset] == 1 && this.wire[offset + 1] == '*';
+  }
+
+  /* counts the equal labels of both names starting from the right, the root label is always equal
+   * @params CanonicalName   other name
+   * @return int             number of equal labels, at least 1
+   */
+  public int commonSuffixLabels(CanonicalName other) {
+    int labels = 1;
+    int a = this.offsets.length - 2;
+    int b = other.offsets.length - 2;
+    for (; a >= this.first && b >= other.first; a--, b--) {
+      if (compareLabel(this.wire, this.offsets[a], other.wire, other.offsets[b]) != 0)
+        break;
+      labels++;
+    }
+    return labels;
+  }
+
+  /* hash codes of all ancestors in one pass from the right, without creating them
+   * @params int[]   receives the hash code of ancestor(position) at index position, needs labels() elements
+   */
+  public void ancestorHashes(int[] hashes) {
+    int hash = 0;
+    int power = 1;
+    int label = this.offsets.length - 1;
+    for (int i = this.wire.length - 1; i >= this.offsets[this.first]; i--) {
+      hash += this.wire[i] * power;
+      power *= 31;
+      if (i == this.offsets[label])
+        hashes[label-- - this.first] = hash;
+    }
+  }
+
+  // byte offset of the label at the given index (0 for the leftmost label)
+  public int labelOffset(int label) {
+    return this.offsets[this.first + label];
+  }
+
+  // wire format holding the name from labelOffset(0) on, must not be changed
+  public byte[] getWire() {
+    return this.wire;
+  }
+
+  // length of the name in wire format
+  public int length() {
+    return this.wire.length - this.offsets[this.first];
+  }
+
+  // the wire format of the name only
+  public byte[] toWire() {
+    int offset = this.offsets[this.first];
+    if (offset == 0)
+      return this.wire;
+    byte[] wire = new byte[this.wire.length - offset];
+    System.arraycopy(this.wire, offset, wire, 0, wire.length);
+    return wire;
+  }
+
+  public Name toName() {
+    try {
+      return new Name(toWire());
+    } catch (IOException e) {
+      // the wire format was created from a valid name
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static int compareLabel(byte[] a, int aOffset, byte[] b, int bOffset) {
+    int aLength = a[aOffset];
+    int bLength = b[bOffset];
+    for (int i = 1; i <= aLength && i <= bLength; i++) {
+      int difference = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+      if (difference != 0)
+        return difference;
+    }
+    return aLength - bLength;
+  }
+
+  @Override
+  public int compareTo(CanonicalName other) {
+    // the root labels are equal
+    int a = this.offsets.length - 2;
+    int b = other.offsets.length - 2;
+    for (; a >= this.first && b >= other.first; a--, b--) {
+      int difference = compareLabel(this.wire, this.offsets[a], other.wire, other.offsets[b]);
+      if (difference != 0)
+        return difference;
+    }
+    return labels() - other.labels();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other)
+      return true;
+    if (!(other instanceof CanonicalName))
+      return false;
+    CanonicalName name = (CanonicalName) other;
+    if (this.hash != name.hash || length() != name.length())
+      return false;
+    int a = this.offsets[this.first];
+    int b = name.offsets[name.first];
+    for (int i = 0; i < length(); i++) {
+      if (this.wire[a + i] != name.wire[b + i])
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+
+  @Override
+  public String toString() {
+    return toName().toString();
+  }
+}
@@ -0,0 +1,140 @@
+package dns_resolver_simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/* snapshot of a running simulation: the position in the trace and the state of every SimulationInstance
+ * (cached records with arrival and expiry ticks, pending queries, counters), see SimulationInstance.writeState()
+ * a run can be resumed from a checkpoint, or its caches are loaded as a warm start for another trace
+ *
+ * file format (big endian):
+ *   header:    magic (int) | version (int) | trace location (UTF) | frames processed (long)
+ *              | offset of the next frame (long, -1 if unknown) | frames at that offset already processed (int)
+ *              | timestamp of the last processed frame (double) | number of instances (int)
+ *   instances: name (UTF) | length of the state (int) | state
+ */
+public class Checkpoint {
+  private static final int MAGIC = 0x4452534B;    // "DRSK"
+  private static final int VERSION = 14;
+
+  private String trace;
+  private long frames;
+  private long offset;
+  private int framesAtOffset;
+  private double timestamp;
+  private String[] names;
+  private byte[][] states;
+  private int missing;
+
+  /* checkpoint whose states are filled in by the instances (setState(...)), possibly on their own threads
+   * @params String   location of the trace
+   * @params long     number of frames processed before the checkpoint
+   * @params long     offset of the next frame to be processed, -1 if the trace cannot seek
+   * @params int      frames at this offset which were already processed (e.g. DNS over TCP messages of one segment)
+   * @params double   timestamp of the last processed frame
+   * @params int      number of instances
+   */
+  public Checkpoint(String trace, long frames, long offset, int framesAtOffset, double timestamp, int instances) {
+    this.trace = trace;
+    this.frames = frames;
+    this.offset = offset;
+    this.framesAtOffset = framesAtOffset;
+    this.timestamp = timestamp;
+    this.names = new String[instances];
+    this.states = new byte[instances][];
+    this.missing = instances;
+  }
+
+  /* @params int      index of the instance
+   * @params String   name of the instance
+   * @params byte[]   state of the instance
+   * @return boolean  true if this was the last missing state, the checkpoint can be written now
+   */
+  public synchronized boolean setState(int instance, String name, byte[] state) {
+    this.names[instance] = name;
+    this.states[instance] = state;
+    return --this.missing == 0;
+  }
+
+  /* @params String         name of the instance
+   * @throws IOException     if the checkpoint has no state of this name
+   * @return byte[]          state of the instance
+   */
+  public byte[] getState(String name) throws IOException {
+    for (int i = 0; i < this.names.length; i++) {
+      if (this.names[i].equals(name))
+        return this.states[i];
+    }
+    throw new IOException("Checkpoint has no state of the simulation " + name);
+  }
+
+  public String getTrace() {
+    return this.trace;
+  }
+
+  public long getFrames() {
+    return this.frames;
+  }
+
+  public long getOffset() {
+    return this.offset;
+  }
+
+  public int getFramesAtOffset() {
+    return this.framesAtOffset;
+  }
+
+  public double getTimestamp() {
+    return this.timestamp;
+  }
+
+  // replaces the file only after the complete checkpoint was written
+  public void write(File file) throws IOException {
+    File temporary = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(this.trace);
+      out.writeLong(this.frames);
+      out.writeLong(this.offset);
+      out.writeInt(this.framesAtOffset);
+      out.writeDouble(this.timestamp);
+      out.writeInt(this.names.length);
+      for (int i = 0; i < this.names.length; i++) {
+        out.writeUTF(this.names[i]);
+        out.writeInt(this.states[i].length);
+        out.write(this.states[i]);
+      }
+    }
+    Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  public static Checkpoint load(File file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        throw new IOException("Unknown checkpoint format in " + file.getPath());
+      String trace = in.readUTF();
+      long frames = in.readLong();
+      long offset = in.readLong();
+      int framesAtOffset = in.readInt();
+      double timestamp = in.readDouble();
+      int instances = in.readInt();
+      Checkpoint checkpoint = new Checkpoint(trace, frames, offset, framesAtOffset, timestamp, instances);
+      for (int i = 0; i < instances; i++) {
+        String name = in.readUTF();
+        byte[] state = new byte[in.readInt()];
+        in.readFully(state);
+        checkpoint.setState(i, name, state);
+      }
+      return checkpoint;
+    }
+  }
+}
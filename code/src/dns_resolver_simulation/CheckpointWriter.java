@@ -0,0 +1,70 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/* writes complete checkpoints into a directory on a background thread, so the simulation only pays for
+ * serializing its state; a checkpoint is named after the number of frames processed before it
+ */
+public class CheckpointWriter implements Runnable {
+  private static final Checkpoint END = new Checkpoint("", 0, -1, 0, 0, 0);
+
+  private File directory;
+  private BlockingQueue<Checkpoint> queue;
+  private Thread thread;
+  private volatile IOException failure;
+
+  public CheckpointWriter(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs())
+      throw new IOException("Cannot create checkpoint directory " + directory.getPath());
+    this.directory = directory;
+    this.queue = new ArrayBlockingQueue<Checkpoint>(Constants.QUEUED_CHECKPOINTS);
+    this.thread = new Thread(this, "checkpoint-writer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  // queues a checkpoint whose states are all set, blocks while too many checkpoints are waiting
+  public void submit(Checkpoint checkpoint) throws IOException {
+    try {
+      this.queue.put(checkpoint);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while queueing checkpoint", e);
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      Checkpoint checkpoint;
+      while ((checkpoint = this.queue.take()) != END) {
+        File file = new File(this.directory, "checkpoint-" + checkpoint.getFrames() + ".bin");
+        try {
+          checkpoint.write(file);
+          System.out.println("Checkpoint written to " + file.getPath());
+        } catch (IOException e) {
+          // a failed checkpoint does not stop the simulation, it is reported by close()
+          this.failure = e;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // waits until all queued checkpoints are written
+  public void close() throws IOException {
+    try {
+      this.queue.put(END);
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing checkpoints", e);
+    }
+    if (this.failure != null)
+      throw new IOException("Writing a checkpoint failed", this.failure);
+  }
+}
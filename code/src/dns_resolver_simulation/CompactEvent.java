@@ -0,0 +1,21 @@
+package dns_resolver_simulation;
+
+/* reusable event of a compact trace, filled by CompactTraceReader
+ * only the addresses the simulation uses for the event's direction are set (see CompactTraceWriter)
+ */
+public class CompactEvent {
+  public double timestamp;
+  public int direction;
+  // index of the resolver (see AddressClassifier.resolverIndex), -1 if none
+  public int resolver;
+  public long srcHigh;
+  public long srcLow;
+  public int srcPort;
+  public long dstHigh;
+  public long dstLow;
+  public int dstPort;
+  // true if the DNSMessageUtilities given to the reader were filled with this event's message
+  public boolean hasMessage;
+  // counter key of the exception parsing the frame's message threw, null otherwise
+  public String exception;
+}
@@ -0,0 +1,287 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Header;
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.NameTooLongException;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Type;
+
+/* replays a compact trace (see CompactTraceWriter), no DNS message is parsed: the records the simulation reads are
+ * rebuilt from the event and handed to DNSMessageUtilities directly, names are shared instances of the dictionary
+ */
+public class CompactTraceReader {
+  // RRSIG rdata up to the labels field: covered type, algorithm, labels; the rest is zero (original TTL, dates,
+  // footprint), followed by the root as signer and an empty signature
+  private static final int SIG_RDATA_LENGTH = 19;
+  private static final NSECRecord[] NO_NSEC_RECORDS = new NSECRecord[0];
+  private static final NSEC3Record[] NO_NSEC3_RECORDS = new NSEC3Record[0];
+  private static final Record[] NO_RECORDS = new Record[0];
+  private static final RRSIGRecord[] NO_SIG_RECORDS = new RRSIGRecord[0];
+
+  private TraceInput input;
+  private NameDictionary dictionary;
+  private long events;
+
+  public CompactTraceReader(File file, NameDictionary dictionary) throws IOException {
+    this.input = new MappedTraceInput(file);
+    this.dictionary = dictionary;
+
+    if (!this.input.require(CompactTraceWriter.HEADER_LENGTH))
+      throw new IOException("Truncated compact trace " + file.getPath());
+    if (readInt() != CompactTraceWriter.MAGIC || readInt() != CompactTraceWriter.VERSION)
+      throw new IOException("Unknown compact trace format in " + file.getPath());
+    this.events = readLong();
+    int dictionarySize = readInt();
+    if (dictionary.size() < dictionarySize)
+      throw new IOException("Name dictionary holds " + dictionary.size() + " names, the compact trace needs " + dictionarySize);
+  }
+
+  // checks the magic number at the beginning of a file
+  public static boolean isCompact(File file) throws IOException {
+    if (!file.isFile() || file.length() < CompactTraceWriter.HEADER_LENGTH)
+      return false;
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      return Integer.reverseBytes(in.readInt()) == CompactTraceWriter.MAGIC;
+    }
+  }
+
+  public long getEvents() {
+    return this.events;
+  }
+
+  /* reads the next event, its message (if the direction needs one) is set in the given utilities
+   * @params CompactEvent          event to be filled
+   * @params DNSMessageUtilities   utilities to take over the event's message
+   * @throws IOException
+   * @return boolean               false at the end of the trace
+   */
+  public boolean next(CompactEvent event, DNSMessageUtilities utilities) throws IOException {
+    if (!this.input.require(11))
+      return false;
+    event.timestamp = readLong() / 1e9;
+    event.direction = readByte();
+    event.resolver = (short) readShort();
+    event.hasMessage = false;
+    event.exception = null;
+
+    switch (event.direction) {
+      case CompactTraceWriter.EXCEPTION:
+        event.exception = readString();
+        break;
+      case Constants.QUERY_INT_TO_R:
+        event.srcHigh = readLong();
+        event.srcLow = readLong();
+        event.srcPort = readShort();
+        readMessage(utilities, false);
+        event.hasMessage = true;
+        break;
+      case Constants.RESPONSE_R_TO_INT:
+        event.dstHigh = readLong();
+        event.dstLow = readLong();
+        event.dstPort = readShort();
+        readMessage(utilities, false);
+        readResponseType(utilities);
+        event.hasMessage = true;
+        break;
+      case Constants.RESPONSE_EXT_TO_R:
+        readMessage(utilities, true);
+        event.hasMessage = true;
+        break;
+      case Constants.QUERY_R_TO_EXT:
+        break;
+      default:
+        event.srcHigh = readLong();
+        event.srcLow = readLong();
+        event.srcPort = readShort();
+        event.dstHigh = readLong();
+        event.dstLow = readLong();
+        event.dstPort = readShort();
+    }
+    return true;
+  }
+
+  private void readMessage(DNSMessageUtilities utilities, boolean withRecords) throws IOException {
+    Header header = new Header(readShort());
+    int flags = readByte();
+    if ((flags & CompactTraceWriter.FLAG_QR) != 0)
+      header.setFlag(Flags.QR);
+    if ((flags & CompactTraceWriter.FLAG_TC) != 0)
+      header.setFlag(Flags.TC);
+    int questionId = readInt();
+    int questionType = readShort();
+    Record question = questionId < 0 ? null : Record.newRecord(this.dictionary.getName(questionId), questionType, DClass.IN);
+
+    if (!withRecords) {
+      utilities.setCompact(header, question, null, NO_NSEC_RECORDS, NO_NSEC3_RECORDS, NO_RECORDS, NO_SIG_RECORDS, NO_SIG_RECORDS);
+      return;
+    }
+
+    SOARecord soaRecord = null;
+    if (readByte() != 0) {
+      long minimum = readLong();
+      long ttl = readLong();
+      soaRecord = new SOARecord(Name.root, DClass.IN, ttl, Name.root, Name.root, 0, 0, 0, 0, minimum);
+    }
+
+    int count = readShort();
+    NSECRecord[] nsecRecords = count == 0 ? NO_NSEC_RECORDS : new NSECRecord[count];
+    for (int i = 0; i < count; i++) {
+      Name name = this.dictionary.getName(readInt());
+      Name next = this.dictionary.getName(readInt());
+      long ttl = readLong();
+      int dclass = readShort();
+      nsecRecords[i] = new NSECRecord(name, dclass, ttl, next, readTypes());
+    }
+
+    count = readShort();
+    NSEC3Record[] nsec3Records = count == 0 ? NO_NSEC3_RECORDS : new NSEC3Record[count];
+    for (int i = 0; i < count; i++) {
+      Name name = this.dictionary.getName(readInt());
+      long ttl = readLong();
+      int dclass = readShort();
+      int hashAlgorithm = readByte();
+      int nsec3Flags = readByte();
+      int iterations = readShort();
+      byte[] salt = readBytes();
+      byte[] next = readBytes();
+      // an empty salt is parsed as null from the wire as well
+      nsec3Records[i] = new NSEC3Record(name, dclass, ttl, hashAlgorithm, nsec3Flags, iterations, salt.length == 0 ? null : salt, next, readTypes());
+    }
+    RRSIGRecord[] authoritySigRecords = readSigGroups();
+
+    count = readShort();
+    Record[] wildcards = count == 0 ? NO_RECORDS : new Record[count];
+    for (int i = 0; i < count; i++) {
+      Name name = this.dictionary.getName(readInt());
+      int type = readShort();
+      int dclass = readShort();
+      wildcards[i] = Record.newRecord(name, type, dclass, readLong());
+    }
+    RRSIGRecord[] answerSigRecords = readSigGroups();
+
+    utilities.setCompact(header, question, soaRecord, nsecRecords, nsec3Records, wildcards, authoritySigRecords, answerSigRecords);
+  }
+
+  private void readResponseType(DNSMessageUtilities utilities) throws IOException {
+    switch (readByte()) {
+      case CompactTraceWriter.RESPONSE_TYPE_VALUE:
+        utilities.setCompactResponseType(readInt(), null);
+        break;
+      case CompactTraceWriter.RESPONSE_TYPE_NAME_TOO_LONG:
+        utilities.setCompactResponseType(0, new NameTooLongException());
+        break;
+      default:
+        utilities.setCompactResponseType(0, new RuntimeException(readString()));
+    }
+  }
+
+  private RRSIGRecord[] readSigGroups() throws IOException {
+    int groups = readShort();
+    if (groups == 0)
+      return NO_SIG_RECORDS;
+
+    RRSIGRecord[] sigRecords = new RRSIGRecord[groups * 2];
+    int count = 0;
+    for (int i = 0; i < groups; i++) {
+      Name name = this.dictionary.getName(readInt());
+      int coveredType = readShort();
+      int sigs = readByte();
+      for (int j = 0; j < sigs; j++) {
+        sigRecords[count++] = sigRecord(name, coveredType, readByte());
+      }
+    }
+    return count == sigRecords.length ? sigRecords : Arrays.copyOf(sigRecords, count);
+  }
+
+  // the RRSIG constructor derives the labels from the name, so the record is built from rdata
+  private static RRSIGRecord sigRecord(Name name, int coveredType, int labels) {
+    byte[] rdata = new byte[SIG_RDATA_LENGTH];
+    rdata[0] = (byte) (coveredType >> 8);
+    rdata[1] = (byte) coveredType;
+    rdata[3] = (byte) labels;
+    return (RRSIGRecord) Record.newRecord(name, Type.RRSIG, DClass.IN, 0, rdata);
+  }
+
+  private int[] readTypes() throws IOException {
+    int[] types = new int[readShort()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = readShort();
+    }
+    return types;
+  }
+
+  private byte[] readBytes() throws IOException {
+    byte[] bytes = new byte[readByte()];
+    require(bytes.length);
+    ByteBuffer buffer = this.input.buffer();
+    int index = this.input.index();
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(index + i);
+    }
+    this.input.advance(bytes.length);
+    return bytes;
+  }
+
+  private String readString() throws IOException {
+    int length = readShort();
+    require(length);
+    byte[] bytes = new byte[length];
+    ByteBuffer buffer = this.input.buffer();
+    int index = this.input.index();
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(index + i);
+    }
+    this.input.advance(length);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private int readByte() throws IOException {
+    require(1);
+    int value = Byte.toUnsignedInt(this.input.buffer().get(this.input.index()));
+    this.input.advance(1);
+    return value;
+  }
+
+  private int readShort() throws IOException {
+    require(2);
+    int value = Short.toUnsignedInt(this.input.buffer().getShort(this.input.index()));
+    this.input.advance(2);
+    return value;
+  }
+
+  private int readInt() throws IOException {
+    require(4);
+    int value = this.input.buffer().getInt(this.input.index());
+    this.input.advance(4);
+    return value;
+  }
+
+  private long readLong() throws IOException {
+    require(8);
+    long value = this.input.buffer().getLong(this.input.index());
+    this.input.advance(8);
+    return value;
+  }
+
+  private void require(int length) throws IOException {
+    if (!this.input.require(length))
+      throw new IOException("Truncated event in compact trace at offset " + this.input.position());
+  }
+
+  public void close() throws IOException {
+    this.input.close();
+  }
+}
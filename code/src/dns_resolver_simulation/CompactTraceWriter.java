@@ -0,0 +1,308 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.NameTooLongException;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+/* writes a compact trace: one event per trace frame holding only what the simulation reads, names are replaced by
+ * ids of a NameDictionary; all values little endian
+ * header:   magic | version | event count (long) | dictionary size needed (int)
+ * event:    timestamp (long, nanoseconds) | kind (byte: direction or EXCEPTION) | resolver index (short, -1 if none)
+ *           | body depending on the kind
+ *   EXCEPTION          name of the exception parsing the message threw (string)
+ *   QUERY_INT_TO_R     client (address high, low, port) | message
+ *   RESPONSE_R_TO_INT  client (address high, low, port) | message | response type
+ *   RESPONSE_EXT_TO_R  message | records
+ *   QUERY_R_TO_EXT     -
+ *   others             source (address high, low, port) | destination (address high, low, port)
+ * message:        ID (short) | flags (byte: QR, TC) | question name id (int, -1 if none) | question type (short)
+ * response type:  kind (byte: value, RuntimeException, NameTooLongException) | value (int) or counter key (string)
+ * records:        SOA (byte present | minimum long | TTL long) | NSEC records | NSEC3 records | RRSIGs (authority)
+ *                 | wildcard answers | RRSIGs (answer)
+ * RRSIGs are grouped by name and covered type: name id | covered type | count (at most 2) | labels of each
+ */
+public class CompactTraceWriter {
+  public static final int MAGIC = 0x44525343;      // "DRSC"
+  public static final int VERSION = 2;
+  public static final int HEADER_LENGTH = 20;
+  public static final int EXCEPTION = 0xFF;
+  public static final int FLAG_QR = 0x01;
+  public static final int FLAG_TC = 0x02;
+  public static final int RESPONSE_TYPE_VALUE = 0;
+  public static final int RESPONSE_TYPE_RUNTIME_EXCEPTION = 1;
+  public static final int RESPONSE_TYPE_NAME_TOO_LONG = 2;
+
+  private FileOutputStream stream;
+  private FileChannel channel;
+  private ByteBuffer buffer;
+  private NameDictionary dictionary;
+  private long events;
+
+  // RRSIG groups of the current event, reused
+  private List<Name> sigNames;
+  private List<Integer> sigTypes;
+
+  public CompactTraceWriter(File file, NameDictionary dictionary) throws IOException {
+    this.stream = new FileOutputStream(file);
+    this.channel = this.stream.getChannel();
+    this.buffer = ByteBuffer.allocate(Constants.STREAM_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    this.dictionary = dictionary;
+    this.events = 0;
+    this.sigNames = new ArrayList<Name>();
+    this.sigTypes = new ArrayList<Integer>();
+
+    // event count and dictionary size are filled in by close()
+    putInt(MAGIC);
+    putInt(VERSION);
+    putLong(0);
+    putInt(0);
+  }
+
+  /* writes a frame whose DNS message could not be parsed
+   * @params double      timestamp of the frame
+   * @params int         index of the resolver the frame was sent by or to (see AddressClassifier.resolverIndex)
+   * @params Exception   exception thrown by the parser
+   */
+  public void writeException(double timestamp, int resolver, Exception exception) throws IOException {
+    putEventHeader(timestamp, EXCEPTION, resolver);
+    putString(exception.getClass().getSimpleName());
+  }
+
+  /* writes a frame together with what the simulation needs from its message
+   * @params double                timestamp of the frame
+   * @params int                   direction (see AddressClassifier)
+   * @params int                   index of the resolver the frame was sent by or to
+   * @params long, long, int       source address and port
+   * @params long, long, int       destination address and port
+   * @params DNSMessageUtilities   parsed and prepared message, only read if the direction needs it
+   */
+  public void write(double timestamp, int direction, int resolver, long srcHigh, long srcLow, int srcPort, long dstHigh, long dstLow, int dstPort,
+      DNSMessageUtilities utilities) throws IOException {
+    putEventHeader(timestamp, direction, resolver);
+    switch (direction) {
+      case Constants.QUERY_INT_TO_R:
+        putClient(srcHigh, srcLow, srcPort);
+        putMessage(utilities);
+        break;
+      case Constants.RESPONSE_R_TO_INT:
+        putClient(dstHigh, dstLow, dstPort);
+        putMessage(utilities);
+        putResponseType(utilities);
+        break;
+      case Constants.RESPONSE_EXT_TO_R:
+        putMessage(utilities);
+        putRecords(utilities);
+        break;
+      case Constants.QUERY_R_TO_EXT:
+        break;
+      default:
+        putClient(srcHigh, srcLow, srcPort);
+        putClient(dstHigh, dstLow, dstPort);
+    }
+  }
+
+  private void putEventHeader(double timestamp, int kind, int resolver) throws IOException {
+    putLong(Math.round(timestamp * 1e9));
+    putByte(kind);
+    putShort(resolver);
+    this.events++;
+  }
+
+  private void putClient(long high, long low, int port) throws IOException {
+    putLong(high);
+    putLong(low);
+    putShort(port);
+  }
+
+  private void putMessage(DNSMessageUtilities utilities) throws IOException {
+    putShort(utilities.getMessageID());
+    putByte((utilities.isResponse() ? FLAG_QR : 0) | (utilities.isTruncated() ? FLAG_TC : 0));
+
+    Record question;
+    try {
+      question = utilities.getQuestion();
+    } catch (RuntimeException e) {
+      question = null;
+    }
+    putInt(question != null ? this.dictionary.getId(question.getName()) : -1);
+    putShort(question != null ? question.getType() : 0);
+  }
+
+  // exceptions are stored by the key the ExceptionCounter would count them with
+  private void putResponseType(DNSMessageUtilities utilities) throws IOException {
+    try {
+      int responseType = utilities.getResponseType();
+      putByte(RESPONSE_TYPE_VALUE);
+      putInt(responseType);
+    } catch (NameTooLongException e) {
+      putByte(RESPONSE_TYPE_NAME_TOO_LONG);
+    } catch (RuntimeException e) {
+      putByte(RESPONSE_TYPE_RUNTIME_EXCEPTION);
+      putString(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    }
+  }
+
+  private void putRecords(DNSMessageUtilities utilities) throws IOException {
+    SOARecord soaRecord = utilities.getSOARecord();
+    putByte(soaRecord != null ? 1 : 0);
+    if (soaRecord != null) {
+      putLong(soaRecord.getMinimum());
+      putLong(soaRecord.getTTL());
+    }
+
+    this.sigNames.clear();
+    this.sigTypes.clear();
+    NSECRecord[] nsecRecords = utilities.getAllNSECRecords();
+    putShort(nsecRecords.length);
+    for (NSECRecord record : nsecRecords) {
+      putInt(this.dictionary.getId(record.getName()));
+      putInt(this.dictionary.getId(record.getNext()));
+      putLong(record.getTTL());
+      putShort(record.getDClass());
+      putTypes(record.getTypes());
+      addSigGroup(record.getName(), Type.NSEC);
+    }
+
+    NSEC3Record[] nsec3Records = utilities.getAllNSEC3Records();
+    putShort(nsec3Records.length);
+    for (NSEC3Record record : nsec3Records) {
+      putInt(this.dictionary.getId(record.getName()));
+      putLong(record.getTTL());
+      putShort(record.getDClass());
+      putByte(record.getHashAlgorithm());
+      putByte(record.getFlags());
+      putShort(record.getIterations());
+      putBytes(record.getSalt());
+      putBytes(record.getNext());
+      putTypes(record.getTypes());
+      addSigGroup(record.getName(), Type.NSEC3);
+    }
+    putSigGroups(utilities, Section.AUTHORITY);
+
+    this.sigNames.clear();
+    this.sigTypes.clear();
+    Record[] wildcards = utilities.getWildcards();
+    putShort(wildcards.length);
+    for (Record record : wildcards) {
+      putInt(this.dictionary.getId(record.getName()));
+      putShort(record.getType());
+      putShort(record.getDClass());
+      putLong(record.getTTL());
+      addSigGroup(record.getName(), record.getType());
+    }
+    putSigGroups(utilities, Section.ANSWER);
+  }
+
+  // RRSIG lookups compare names like Name.equals (case insensitive), so groups are unique in that sense
+  private void addSigGroup(Name name, int coveredType) {
+    for (int i = 0; i < this.sigNames.size(); i++) {
+      if (this.sigTypes.get(i) == coveredType && this.sigNames.get(i).equals(name))
+        return;
+    }
+    this.sigNames.add(name);
+    this.sigTypes.add(coveredType);
+  }
+
+  // more than one matching RRSIG makes the lookup fail anyway, so at most two are stored
+  private void putSigGroups(DNSMessageUtilities utilities, int section) throws IOException {
+    putShort(this.sigNames.size());
+    for (int i = 0; i < this.sigNames.size(); i++) {
+      List<RRSIGRecord> sigRecords = utilities.getRRSIGRecords(this.sigNames.get(i), section, this.sigTypes.get(i));
+      int count = sigRecords == null ? 0 : Math.min(sigRecords.size(), 2);
+      putInt(this.dictionary.getId(this.sigNames.get(i)));
+      putShort(this.sigTypes.get(i));
+      putByte(count);
+      for (int j = 0; j < count; j++) {
+        putByte(sigRecords.get(j).getLabels());
+      }
+    }
+  }
+
+  private void putTypes(int[] types) throws IOException {
+    putShort(types.length);
+    for (int type : types) {
+      putShort(type);
+    }
+  }
+
+  // length (byte) and content, null is written like an empty array
+  private void putBytes(byte[] bytes) throws IOException {
+    int length = bytes == null ? 0 : bytes.length;
+    putByte(length);
+    ensure(length);
+    if (length > 0)
+      this.buffer.put(bytes);
+  }
+
+  private void putString(String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    putShort(bytes.length);
+    ensure(bytes.length);
+    this.buffer.put(bytes);
+  }
+
+  private void putByte(int value) throws IOException {
+    ensure(1);
+    this.buffer.put((byte) value);
+  }
+
+  private void putShort(int value) throws IOException {
+    ensure(2);
+    this.buffer.putShort((short) value);
+  }
+
+  private void putInt(int value) throws IOException {
+    ensure(4);
+    this.buffer.putInt(value);
+  }
+
+  private void putLong(long value) throws IOException {
+    ensure(8);
+    this.buffer.putLong(value);
+  }
+
+  private void ensure(int length) throws IOException {
+    if (this.buffer.remaining() < length)
+      flush();
+  }
+
+  private void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+
+  public long getEvents() {
+    return this.events;
+  }
+
+  // writes the remaining events and completes the header, the dictionary has to be written separately
+  public void close() throws IOException {
+    flush();
+    ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    header.putLong(this.events);
+    header.putInt(this.dictionary.size());
+    header.flip();
+    this.channel.write(header, 8);
+    this.channel.close();
+    this.stream.close();
+  }
+}
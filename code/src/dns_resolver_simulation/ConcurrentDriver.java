@@ -0,0 +1,192 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+/* simulates the packets of one instance on several threads sharing a ConcurrentSimulationCache
+ * packets are collected in windows of Constants.CONCURRENT_WINDOW ticks of trace time (at most
+ * Constants.CONCURRENT_WINDOW_PACKETS packets) and handed to lanes by the last Constants.CONCURRENT_KEY_LABELS labels
+ * of their question name, so a query and its responses always meet in the same lane; the lanes of a window run in
+ * parallel, each in trace order, the next window starts when all of them are done
+ * the result is an approximation of the sequential simulation: the records the lanes add and the accesses they report
+ * are staged and applied in trace order when all lanes of a window are done, so within a window a lane sees neither
+ * the records of the other lanes nor its own ones; a run gives the same counters whatever the scheduling of its
+ * threads; the timer wheels of the cache are advanced between the windows, lookups skip records expired within a
+ * window
+ */
+public class ConcurrentDriver {
+  private SimulationInstance[] lanes;
+  private ConcurrentSimulationCache[] laneCaches;
+  private List<List<DecodedPacket>> pending;
+  // positions of the pending packets of every lane in the window
+  private int[][] positions;
+  private ConcurrentSimulationCache cache;
+  private ExecutorService executor;
+  private long windowStart;
+  private int windowSize;
+  private long lastTime;
+
+  /* @params SimulationConfig            configuration of the instance, getThreads() lanes are created
+   * @params String                      name of the instance
+   * @params Logger                      logger of the instance (the lanes write nothing)
+   * @params ConcurrentSimulationCache   cache of the instance shared by the lanes
+   * @params FileWriter                  log of unexpected packets of the instance
+   */
+  public ConcurrentDriver(SimulationConfig config, String name, Logger logger, ConcurrentSimulationCache cache, FileWriter aliensFile) {
+    this.cache = cache;
+    this.lanes = new SimulationInstance[config.getThreads()];
+    this.laneCaches = new ConcurrentSimulationCache[this.lanes.length];
+    this.pending = new ArrayList<List<DecodedPacket>>();
+    this.positions = new int[this.lanes.length][];
+    for (int i = 0; i < this.lanes.length; i++) {
+      this.lanes[i] = new SimulationInstance(config, name + "-lane" + i, logger, cache, aliensFile);
+      this.laneCaches[i] = (ConcurrentSimulationCache) this.lanes[i].getSimulationCache();
+      this.pending.add(new ArrayList<DecodedPacket>());
+      this.positions[i] = new int[64];
+    }
+    this.executor = Executors.newFixedThreadPool(this.lanes.length, task -> {
+      Thread thread = new Thread(task, "simulation-" + name + "-lane");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /* adds a packet to the current window, a full window is simulated first
+   * @params DecodedPacket   decoded packet, only read
+   */
+  public void add(DecodedPacket packet) throws IOException {
+    long time = DNSMessageUtilities.toTicks(packet.timestamp);
+    if (this.windowSize >= Constants.CONCURRENT_WINDOW_PACKETS || time - this.windowStart >= Constants.CONCURRENT_WINDOW)
+      flush();
+    if (this.windowSize == 0)
+      this.windowStart = time;
+
+    int lane = lane(packet);
+    List<DecodedPacket> packets = this.pending.get(lane);
+    if (packets.size() == this.positions[lane].length)
+      this.positions[lane] = Arrays.copyOf(this.positions[lane], packets.size() * 2);
+    this.positions[lane][packets.size()] = this.windowSize;
+    packets.add(packet);
+    this.windowSize++;
+    this.lastTime = Math.max(this.lastTime, time);
+  }
+
+  private int lane(DecodedPacket packet) {
+    if (packet.utilities == null)
+      return 0;
+    try {
+      return lane(packet.utilities.getQuestion());
+    } catch (RuntimeException e) {
+      // counted by the lane
+      return 0;
+    }
+  }
+
+  private int lane(Record question) {
+    Name name = question.getName();
+    int labels = Constants.CONCURRENT_KEY_LABELS + 1;
+    Name key = name.labels() > labels ? new Name(name, name.labels() - labels) : name;
+    return (key.hashCode() & 0x7FFFFFFF) % this.lanes.length;
+  }
+
+  /* simulates the current window on the lanes, applies what they staged and advances the cache to its end
+   * @throws IOException   if a lane failed
+   */
+  public void flush() throws IOException {
+    if (this.windowSize == 0)
+      return;
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int i = 0; i < this.lanes.length; i++) {
+      List<DecodedPacket> packets = this.pending.get(i);
+      if (packets.isEmpty())
+        continue;
+      SimulationInstance lane = this.lanes[i];
+      ConcurrentSimulationCache laneCache = this.laneCaches[i];
+      int[] positions = this.positions[i];
+      tasks.add(() -> {
+        NSEC3HashCache.setForCurrentThread(lane.getHashCache());
+        for (int j = 0; j < packets.size(); j++) {
+          laneCache.setPosition(positions[j]);
+          lane.process(packets.get(j));
+        }
+        return null;
+      });
+    }
+
+    try {
+      if (tasks.size() == 1) {
+        tasks.get(0).call();
+      } else {
+        for (Future<Void> result : this.executor.invokeAll(tasks)) {
+          result.get();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while simulating a window", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Lane failed", e.getCause());
+    } catch (IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Lane failed", e);
+    }
+
+    for (List<DecodedPacket> packets : this.pending) {
+      packets.clear();
+    }
+    this.windowSize = 0;
+    this.cache.applyStaged(this.laneCaches);
+    this.cache.advance(this.lastTime);
+  }
+
+  /* simulates the last window and adds the counters of the lanes and the cache to the instance's ones
+   * @params Statistics         statistics of the instance
+   * @params ExceptionCounter   exceptions of the instance
+   */
+  public void close(Statistics statistics, ExceptionCounter exceptionCounter) throws IOException {
+    try {
+      flush();
+      merge(statistics, exceptionCounter);
+    } finally {
+      this.executor.shutdown();
+    }
+  }
+
+  // adds the counters of the lanes and the cache, e.g. to empty ones for a checkpoint
+  public void merge(Statistics statistics, ExceptionCounter exceptionCounter) {
+    for (SimulationInstance lane : this.lanes) {
+      statistics.merge(lane.getStatistics());
+      exceptionCounter.merge(lane.getExceptionCounter());
+    }
+    this.cache.mergeStatistics(statistics);
+  }
+
+  // copies the pending queries of all lanes into the window
+  public void collect(SlidingWindow window) {
+    for (SimulationInstance lane : this.lanes) {
+      lane.getSlidingWindow().copyTo(window, question -> true);
+    }
+  }
+
+  // moves the pending queries of a restored window to the lanes of their questions
+  public void distribute(SlidingWindow window) {
+    for (int i = 0; i < this.lanes.length; i++) {
+      int index = i;
+      window.copyTo(this.lanes[i].getSlidingWindow(), question -> (question != null ? lane(question) : 0) == index);
+    }
+    window.clear();
+  }
+
+}
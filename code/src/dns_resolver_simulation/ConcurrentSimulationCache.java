@@ -0,0 +1,312 @@
+package dns_resolver_simulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.RRSIGRecord;
+
+/* SimulationCache shared by the lanes of a ConcurrentDriver, which look up and add records on several threads
+ * every lane has a front end of its own (message, statistics, NSEC3HashCache and lookup arrays), all front ends share
+ * the records: zones and wildcards are partitioned into Constants.CACHE_STRIPES stripes by the hash of their name
+ * (see CacheStripe). lookups read the entries of all zones of a name without locking; the records a lane adds and
+ * the accesses it reports are staged and applied by the driver in trace order between two windows (see
+ * applyStaged(...)), so within a window every lane sees the records of its start and runs give the same counters
+ * whatever the scheduling of their threads; applying an operation locks the stripe of its zone only; the ZoneFilter of every stripe spares lookups of ancestors which cannot be zones
+ * the timer wheels of the stripes are advanced by the driver between two windows (see advance(...)), lookups skip
+ * records expired in the meantime; a bounded cache gives every stripe an equal share of its capacity and memory
+ * checkpoints have the format of a SimulationCache, so runs may be resumed with another number of threads
+ */
+public class ConcurrentSimulationCache extends SimulationCache {
+  private CacheStripe[] stripes;
+  private SimulationConfig config;
+  // changed by the stripes whenever they add or drop a zone (see ProofMemo)
+  private AtomicLong zoneGeneration;
+  // hash codes of the ancestors of the name resolved by this front end
+  private int[] hashes;
+  // operations of a lane and the positions of their packets in the window, null for the front end of the cache
+  private ArrayList<Runnable> staged;
+  private int[] stagedPositions;
+  private int position;
+
+  /* front end of a new cache
+   * @params DNSMessageUtilities   utilities of the instance's messages
+   * @params Statistics            statistics of the instance
+   * @params SimulationConfig      configuration of the instance
+   * @params Logger                logger of the instance, for the statistics of the stripes (never written)
+   */
+  public ConcurrentSimulationCache(DNSMessageUtilities messageUtils, Statistics statistics, SimulationConfig config, Logger logger) {
+    super(messageUtils, statistics, config, new NSEC3HashCache(statistics));
+    this.config = config;
+    this.zoneGeneration = new AtomicLong();
+    this.hashes = new int[ZoneTrie.MAX_LABELS];
+    this.stripes = new CacheStripe[Constants.CACHE_STRIPES];
+    for (int i = 0; i < this.stripes.length; i++) {
+      Statistics stripeStatistics = new Statistics(logger, config.getLatencyRange(), config.getLatencySpread());
+      this.stripes[i] = new CacheStripe(config, share(config.getCapacity()), share(config.getMemory()), stripeStatistics,
+        this.zoneGeneration);
+    }
+  }
+
+  /* front end of a lane sharing the records of another front end
+   * @params DNSMessageUtilities         utilities of the lane's messages
+   * @params Statistics                  statistics of the lane
+   * @params ConcurrentSimulationCache   front end of the cache
+   */
+  public ConcurrentSimulationCache(DNSMessageUtilities messageUtils, Statistics statistics, ConcurrentSimulationCache shared) {
+    super(messageUtils, statistics, shared.config, new NSEC3HashCache(statistics));
+    this.config = shared.config;
+    this.stripes = shared.stripes;
+    this.zoneGeneration = shared.zoneGeneration;
+    this.hashes = new int[ZoneTrie.MAX_LABELS];
+    this.staged = new ArrayList<Runnable>();
+    this.stagedPositions = new int[64];
+  }
+
+  // position in the window of the packet the lane simulates next
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  // runs the operation at once on the front end of the cache, stages it on a lane
+  private void stage(Runnable operation) {
+    if (this.staged == null) {
+      operation.run();
+      return;
+    }
+    if (this.staged.size() == this.stagedPositions.length)
+      this.stagedPositions = Arrays.copyOf(this.stagedPositions, this.stagedPositions.length * 2);
+    this.stagedPositions[this.staged.size()] = this.position;
+    this.staged.add(operation);
+  }
+
+  /* applies the operations staged by the lanes in the order of their packets, no lane may run meanwhile
+   * @params ConcurrentSimulationCache[]   front ends of the lanes
+   */
+  public void applyStaged(ConcurrentSimulationCache[] lanes) {
+    int[] next = new int[lanes.length];
+    while (true) {
+      int first = -1;
+      for (int i = 0; i < lanes.length; i++) {
+        if (next[i] < lanes[i].staged.size()
+          && (first < 0 || lanes[i].stagedPositions[next[i]] < lanes[first].stagedPositions[next[first]]))
+          first = i;
+      }
+      if (first < 0)
+        break;
+      lanes[first].staged.get(next[first]++).run();
+    }
+    for (ConcurrentSimulationCache lane : lanes) {
+      lane.staged.clear();
+    }
+  }
+
+  // share of one stripe, rounded up
+  private long share(long limit) {
+    return limit / this.stripes.length + (limit % this.stripes.length == 0 ? 0 : 1);
+  }
+
+  private CacheStripe stripe(CanonicalName name) {
+    return stripe(name.hashCode());
+  }
+
+  private CacheStripe stripe(int hash) {
+    return this.stripes[(hash ^ (hash >>> 16)) & (this.stripes.length - 1)];
+  }
+
+  private CacheStripe stripe(CachedRecord record) {
+    if (record instanceof CachedWildcardRecord)
+      return stripe(((CachedWildcardRecord) record).getKey());
+    return stripe(((CachedNegativeRecord) record).getEntry().getZone());
+  }
+
+  /* looks up every ancestor of the name the filter of its stripe reports in that stripe, the root first (like
+   * ZoneTrie.resolve); an entry emptied between two windows is returned without records, so a ProofMemo
+   * notices its records
+   */
+  @Override
+  public int resolve(CanonicalName name, ResponseEntry[] entries) {
+    Statistics statistics = getStatistics();
+    name.ancestorHashes(this.hashes);
+    int count = 0;
+    boolean looked = false;
+    for (int position = name.labels() - 1; position >= 0; position--) {
+      CacheStripe stripe = stripe(this.hashes[position]);
+      if (!stripe.mightContain(this.hashes[position])) {
+        statistics.countZoneFilterRejection();
+        continue;
+      }
+      looked = true;
+      ResponseEntry entry = stripe.getEntry(name.ancestor(position));
+      if (entry != null)
+        entries[count++] = entry;
+      else
+        statistics.countZoneFilterFalsePositive();
+    }
+    if (!looked)
+      statistics.countZoneFilterSkippedLookup();
+    return count;
+  }
+
+  @Override
+  protected long getZoneGeneration() {
+    return this.zoneGeneration.get();
+  }
+
+  @Override
+  protected void add(CanonicalName name, int zoneLabels, NSECRecord record, RRSIGRecord sigRecord, long arrival, long ttl) {
+    CanonicalName zone = name.ancestor(name.labels() - zoneLabels);
+    stage(() -> {
+      CacheStripe stripe = stripe(zone);
+      stripe.lock();
+      try {
+        stripe.entry(zone).add(record, sigRecord, arrival, ttl);
+        stripe.evict();
+      } finally {
+        stripe.unlock();
+      }
+    });
+  }
+
+  @Override
+  protected void add(CanonicalName name, int zoneLabels, NSEC3Record record, RRSIGRecord sigRecord, long arrival, long ttl) {
+    CanonicalName zone = name.ancestor(name.labels() - zoneLabels);
+    stage(() -> {
+      CacheStripe stripe = stripe(zone);
+      stripe.lock();
+      try {
+        stripe.entry(zone).add(record, sigRecord, arrival, ttl);
+        stripe.evict();
+      } finally {
+        stripe.unlock();
+      }
+    });
+  }
+
+  @Override
+  protected void addWildcard(CachedWildcardRecord wildcardRecord) {
+    stage(() -> {
+      CacheStripe stripe = stripe(wildcardRecord.getKey());
+      stripe.lock();
+      try {
+        stripe.addWildcard(wildcardRecord);
+        stripe.evict();
+      } finally {
+        stripe.unlock();
+      }
+    });
+  }
+
+  @Override
+  protected CachedWildcardRecord getWildcard(CanonicalName wildcardName) {
+    return stripe(wildcardName).getWildcard(wildcardName);
+  }
+
+  @Override
+  protected void access(CachedRecord record) {
+    // only the order of the accesses of a bounded cache matters
+    if (record != null && this.config.isBounded())
+      stage(() -> stripe(record).access(record));
+  }
+
+  /* expires the records of all stripes due at the given trace time, no lane may run meanwhile
+   * @params long   current tick
+   */
+  public void advance(long time) {
+    for (CacheStripe stripe : this.stripes) {
+      stripe.advance(time);
+    }
+  }
+
+  // adds the records expired, evicted and rejected by the stripes
+  public void mergeStatistics(Statistics statistics) {
+    for (CacheStripe stripe : this.stripes) {
+      statistics.merge(stripe.getStatistics());
+    }
+  }
+
+  @Override
+  public int getLiveRecords() {
+    int records = 0;
+    for (CacheStripe stripe : this.stripes) {
+      records += stripe.size();
+    }
+    return records;
+  }
+
+  // see SimulationCache.writeState(...) and ZoneTrie.writeState(...), no lane may run meanwhile
+  @Override
+  public void writeState(DataOutputStream out) throws IOException {
+    int zones = 0;
+    for (CacheStripe stripe : this.stripes) {
+      zones += stripe.getEntries().size();
+    }
+    out.writeInt(zones);
+    for (CacheStripe stripe : this.stripes) {
+      for (ResponseEntry entry : stripe.getEntries()) {
+        byte[] zone = entry.getZone().toWire();
+        out.writeShort(zone.length);
+        out.write(zone);
+        entry.writeState(out);
+      }
+    }
+
+    int wildcards = 0;
+    for (CacheStripe stripe : this.stripes) {
+      wildcards += stripe.getWildcards().size();
+    }
+    out.writeInt(wildcards);
+    for (CacheStripe stripe : this.stripes) {
+      for (CachedWildcardRecord wildcard : stripe.getWildcards()) {
+        writeWildcard(out, wildcard);
+      }
+    }
+  }
+
+  // see SimulationCache.readState(...), no lane may run meanwhile
+  @Override
+  public void readState(DataInputStream in, long shift) throws IOException {
+    for (CacheStripe stripe : this.stripes) {
+      stripe.lock();
+      try {
+        stripe.clear();
+      } finally {
+        stripe.unlock();
+      }
+    }
+
+    int zones = in.readInt();
+    for (int i = 0; i < zones; i++) {
+      byte[] wire = new byte[in.readUnsignedShort()];
+      in.readFully(wire);
+      CanonicalName zone = CanonicalName.fromWire(wire);
+      CacheStripe stripe = stripe(zone);
+      stripe.lock();
+      try {
+        stripe.entry(zone).readState(in, shift);
+      } finally {
+        stripe.unlock();
+      }
+    }
+
+    int wildcards = in.readInt();
+    for (int i = 0; i < wildcards; i++) {
+      addWildcard(readWildcard(in, shift));
+    }
+    // a warm start may load the cache of a run with more capacity
+    for (CacheStripe stripe : this.stripes) {
+      stripe.lock();
+      try {
+        stripe.evict();
+      } finally {
+        stripe.unlock();
+      }
+    }
+  }
+
+}
@@ -4,15 +4,95 @@ public final class Constants {
 
   /*
    * constants for IP addresses
+   * the defaults are IPv4 only: traces with IPv6 resolvers or clients need --resolvers and --internal (see Main),
+   * otherwise their packets are counted as unexpected
    */
-  public static final String RESOLVER_ADDR = "240.12.227.28";
-  public static final String INTERNAL_ADDR_OFFSET = "240";
+  public static final String[] RESOLVER_ADDRS = { "240.12.227.28" };
+  public static final String[] INTERNAL_NETWORKS = { "240.0.0.0/8" };
+  public static final int DNS_HEADER_LENGTH = 12;
+  public static final int DNS_PORT = 53;
+
+
+  /*
+   * constants for message directions (see AddressClassifier)
+   */
+  public static final int UNEXPECTED_DIRECTION = 0;
+  public static final int QUERY_INT_TO_R = 1;
+  public static final int QUERY_R_TO_EXT = 2;
+  public static final int QUERY_R_TO_INT = 3;
+  public static final int QUERY_EXT_TO_R = 4;
+  public static final int RESPONSE_EXT_TO_R = 5;
+  public static final int RESPONSE_R_TO_INT = 6;
+  public static final int RESPONSE_INT_TO_R = 7;
+  public static final int RESPONSE_R_TO_EXT = 8;
 
   /*
    * constants for time measurement
    */
-  public static final double MILLI_SECOND = 0.001;
+  public static final long TICKS_PER_SECOND = 1000000;    // simulation time is counted in ticks of one microsecond
+  public static final long TICKS_PER_MILLI_SECOND = TICKS_PER_SECOND / 1000;
   public static final long MAX_TTL = 10800;               // <=> 3 hourds
+  public static final int LATENCY_RANGE = 2000;           // latency histogram range in ms
+  public static final int LATENCY_SPREAD = 1;             // latency histogram bucket width in ms
+
+
+  /*
+   * constants for trace reading
+   */
+  public static final long TRACE_WINDOW_SIZE = 256L * 1024 * 1024;   // size of memory mapped windows in bytes
+  public static final int STREAM_BUFFER_SIZE = 4 * 1024 * 1024;      // buffer for streamed (e.g. compressed) traces
+  public static final int GZIP_BUFFER_SIZE = 1024 * 1024;
+  public static final int READ_AHEAD_CHUNK_SIZE = 4 * 1024 * 1024;
+  public static final int READ_AHEAD_CHUNKS = 4;
+  public static final int INDEX_STRIDE = 4096;                      // frames between two entries of a trace index
+  public static final int TCP_FLOW_BUFFER_SIZE = 4096;              // initial reassembly buffer of a DNS over TCP flow
+  public static final int MAX_TCP_FLOWS = 100000;                   // open flows before the reassembly state is dropped
+
+
+  /*
+   * constants for parallel decoding
+   */
+  public static final int DECODE_BATCH_SIZE = 1024;                 // packets per task of a decoder thread
+  public static final int DECODE_QUEUED_BATCHES_PER_WORKER = 4;     // bounds the number of packets in flight
+  public static final int INSTANCE_QUEUED_BATCHES = 16;             // batches waiting for a simulation instance
+
+
+  /*
+   * constants for the simulation cache
+   */
+  public static final int NSEC3_HASH_CACHE_SIZE = 65536;          // hashes kept by an NSEC3HashCache (LRU)
+  public static final int PROOF_MEMO_SIZE = 65536;                // proof results kept by a ProofMemo (LRU)
+  public static final int ZONE_FILTER_HASHES = 3;                 // counters of a zone in a ZoneFilter (at most 4)
+  public static final int ZONE_FILTER_COUNTERS_PER_ZONE = 8;      // counters per zone, ~3% false positives when full
+  public static final int ZONE_FILTER_MIN_ZONES = 1024;           // zones a new ZoneFilter is sized for
+  public static final long TIMER_TICK = TICKS_PER_SECOND;         // ticks of simulation time per tick of the TimerWheel
+  public static final int TIMER_SLOT_BITS = 6;                    // 64 slots per level of the TimerWheel
+  public static final int TIMER_LEVELS = 4;                       // levels of the TimerWheel, 64^4 ticks (~194 days)
+  public static final int CACHED_RECORD_OVERHEAD = 192;          // estimated bytes of a cached record besides its wire format
+  public static final String DEFAULT_EVICTION = "lru";            // eviction policy of a bounded cache
+  public static final int TINYLFU_WINDOW_PERCENT = 1;             // share of the admission window of W-TinyLFU
+  public static final int TINYLFU_PROTECTED_PERCENT = 80;         // share of the protected segment of W-TinyLFU's main part
+  public static final int TINYLFU_SKETCH_WIDTH = 65536;           // counters per row of W-TinyLFU's frequency sketch
+  public static final String DEFAULT_STORE = "heap";              // storage of cached records (heap, direct or mapped)
+  public static final int TYPE_BITMAP_TYPES = 256;                // types kept in the bitmap of a cached NSEC(3) record
+  public static final int SLAB_MIN_SLOT = 64;                     // bytes of the smallest slot of a RecordSlab
+  public static final int SLAB_PAGE_SIZE = 4 * 1024 * 1024;       // bytes allocated or mapped at once by a RecordSlab
+  public static final int CACHE_STRIPES = 64;                     // stripes of a ConcurrentSimulationCache (power of two)
+
+
+  /*
+   * constants for concurrent simulation (see ConcurrentDriver)
+   */
+  public static final long CONCURRENT_WINDOW = TICKS_PER_SECOND;  // ticks of trace time simulated by the lanes in parallel
+  public static final int CONCURRENT_WINDOW_PACKETS = 65536;      // packets of a window at most
+  public static final int CONCURRENT_KEY_LABELS = 2;              // labels of the question name choosing the lane of a packet
+
+
+  /*
+   * constants for checkpoints
+   */
+  public static final long CHECKPOINT_INTERVAL = 10000000;          // frames between two checkpoints
+  public static final int QUEUED_CHECKPOINTS = 2;                   // checkpoints waiting to be written
 
 
   /*
@@ -22,6 +102,8 @@ public final class Constants {
   public static final String CACHE_HIT_STATISTICS = "cache_hit";
   public static final String ALL_STATISTICS = "all";
   public static final String CORRECT_RESPONSE_TYPE = "correct_response_type";
+  public static final int MAX_LOGGED_UNEXPECTED = 1000;      // unexpected packets of an instance logged with their addresses
+  public static final int UNEXPECTED_LOG_BUFFER = 4096;      // lines of the log of unexpected packets written at once
 
 
   /*
@@ -3,7 +3,10 @@ package dns_resolver_simulation;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 import org.xbill.DNS.Flags;
@@ -20,6 +23,7 @@ import org.xbill.DNS.Section;
 import org.xbill.DNS.Type;
 
 public class DNSMessageUtilities {
+  private static final Record[] EMPTY_SECTION = new Record[0];
 
   private Header dnsHeader;
   private Message message;
@@ -30,7 +34,49 @@ public class DNSMessageUtilities {
   private Record[] wildcards;
   private NSECRecord[] allNsecRecords;
   private NSEC3Record[] allNsec3Records;
-  private double currentTime;
+  private Map<SigKey, List<RRSIGRecord>> answerSigRecords;
+  private Map<SigKey, List<RRSIGRecord>> authoritySigRecords;
+  private boolean responseTypeKnown;
+  private int responseType;
+  private Exception responseTypeException;
+  // ticks of Constants.TICKS_PER_SECOND, 0 while not set
+  private long currentTime;
+  private long maxTTL = Constants.MAX_TTL;
+  private NSEC3HashCache hashCache;
+  private TimerWheel timerWheel;
+
+  // key of the RRSIG index, names are compared canonically (Name.equals ignores case)
+  private static class SigKey {
+    private Name name;
+    private int coveredType;
+
+    SigKey(Name name, int coveredType) {
+      this.name = name;
+      this.coveredType = coveredType;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof SigKey)) return false;
+      SigKey key = (SigKey) other;
+      return this.coveredType == key.coveredType && this.name.equals(key.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.name, this.coveredType);
+    }
+  }
+
+  // cache for the NSEC3 hashes of getResponseType(), the current thread's cache is used if none is set
+  public void setHashCache(NSEC3HashCache hashCache) {
+    this.hashCache = hashCache;
+  }
+
+  // wheel expiring the cached records, advanced with the current time; none for utilities of decoder threads
+  public void setTimerWheel(TimerWheel timerWheel) {
+    this.timerWheel = timerWheel;
+  }
 
   public void set(Message message) {
     init();
@@ -38,11 +84,107 @@ public class DNSMessageUtilities {
     this.message = message;
   }
 
-  public void setCurrentTime(double time) {
+  /* takes over a message, which was already set and prepared by another (e.g. a decoder thread's) instance
+   * the current time is not taken over
+   * @params DNSMessageUtilities   prepared instance
+   */
+  public void load(DNSMessageUtilities other) {
+    init();
+    this.dnsHeader = other.dnsHeader;
+    this.message = other.message;
+    this.soaRecord = other.soaRecord;
+    this.question = other.question;
+    this.answers = other.answers;
+    this.authorities = other.authorities;
+    this.wildcards = other.wildcards;
+    this.allNsecRecords = other.allNsecRecords;
+    this.allNsec3Records = other.allNsec3Records;
+    this.answerSigRecords = other.answerSigRecords;
+    this.authoritySigRecords = other.authoritySigRecords;
+    this.responseTypeKnown = other.responseTypeKnown;
+    this.responseType = other.responseType;
+    this.responseTypeException = other.responseTypeException;
+  }
+
+  /* takes over an event of a compact trace (see CompactTraceReader) instead of a parsed message
+   * sections only consist of the records the simulation reads, RRSIG records only carry their name, covered type
+   * and labels; the current time is reset
+   * @params Header         header with ID and flags
+   * @params Record         question or null, if the message had none
+   * @params SOARecord      SOA record of the authority section or null
+   * @params NSECRecord[]   NSEC records of authority and answer section
+   * @params NSEC3Record[]  NSEC3 records of authority and answer section
+   * @params Record[]       wildcard answers
+   * @params RRSIGRecord[]  RRSIG records of the authority section covering NSEC/NSEC3 records
+   * @params RRSIGRecord[]  RRSIG records of the answer section covering wildcard answers
+   */
+  public void setCompact(Header header, Record question, SOARecord soaRecord, NSECRecord[] nsecRecords, NSEC3Record[] nsec3Records,
+      Record[] wildcards, RRSIGRecord[] authoritySigRecords, RRSIGRecord[] answerSigRecords) {
+    init();
+    this.dnsHeader = header;
+    this.message = null;
+    this.question = question;
+    this.answers = EMPTY_SECTION;
+    this.authorities = EMPTY_SECTION;
+    this.soaRecord = soaRecord;
+    this.allNsecRecords = nsecRecords;
+    this.allNsec3Records = nsec3Records;
+    this.wildcards = wildcards;
+    this.authoritySigRecords = indexSigRecords(authoritySigRecords);
+    this.answerSigRecords = indexSigRecords(answerSigRecords);
+  }
+
+  /* sets the response type determined while converting the trace (see CompactTraceWriter)
+   * @params int         response type, ignored if an exception is given
+   * @params Exception   exception getResponseType() threw or null
+   */
+  public void setCompactResponseType(int responseType, Exception responseTypeException) {
+    this.responseType = responseType;
+    this.responseTypeException = responseTypeException;
+    this.responseTypeKnown = true;
+  }
+
+  /* extracts the sections the simulation reads from the current message in advance, so that it can be done on a
+   * decoder thread; exceptions are not thrown here but again when the respective value is requested
+   * the response type is left to getResponseType(), it is only needed for responses compared with a cached answer
+   */
+  public void prepare() {
+    try {
+      getQuestion();
+    } catch (RuntimeException e) {
+      // thrown again by getQuestion()
+    }
+    getAnswers();
+    getAuthorities();
+    getSOARecord();
+    getAllNSECRecords();
+    getAllNSEC3Records();
+    getSigRecords(Section.ANSWER);
+    getSigRecords(Section.AUTHORITY);
+    getWildcards();
+  }
+
+  /* tick of the trace timestamp, exact for timestamps of microsecond resolution
+   * @params double   timestamp in seconds
+   * @return long     ticks of Constants.TICKS_PER_SECOND
+   */
+  public static long toTicks(double timestamp) {
+    return Math.round(timestamp * Constants.TICKS_PER_SECOND);
+  }
+
+  // @params long   current tick (see toTicks(...))
+  public void setCurrentTime(long time) {
     this.currentTime = time;
+    if (this.timerWheel != null)
+      this.timerWheel.advance(time);
   }
 
-  public double getCurrentTime() throws RuntimeException {
+  // upper bound of negative TTLs, kept by set(...) and load(...)
+  public void setMaxTTL(long maxTTL) {
+    this.maxTTL = maxTTL;
+  }
+
+  public long getCurrentTime() throws RuntimeException {
     if (this.currentTime == 0)
       throw new RuntimeException("Current time not set");
     return this.currentTime;
@@ -52,6 +194,10 @@ public class DNSMessageUtilities {
     return Integer.toHexString(this.dnsHeader.getID());
   }
 
+  public int getMessageID() {
+    return this.dnsHeader.getID();
+  }
+
   public boolean isResponse() {
     return this.dnsHeader.getFlag(Flags.QR);
   }
@@ -66,7 +212,7 @@ public class DNSMessageUtilities {
   }
 
   public int questions() {
-    Record question = this.message.getQuestion();
+    Record question = this.message != null ? this.message.getQuestion() : this.question;
     return question != null ? 1 : 0;
   }
   
@@ -116,27 +262,61 @@ public class DNSMessageUtilities {
   }
 
   public RRSIGRecord getRRSIGRecord(Name name, int section, int coveredType) throws RuntimeException {
-    RRSIGRecord[] allSigRecords = Arrays.stream(this.message.getSectionArray(section))
-        .filter(rec -> rec.getType() == Type.RRSIG)
-        .toArray(RRSIGRecord[]::new);
-
-        RRSIGRecord[] match = Arrays.stream(allSigRecords)
-        .filter(rec -> rec.getTypeCovered() == coveredType && rec.getName().canonicalize().compareTo(name.canonicalize()) == 0)
-        .toArray(RRSIGRecord[]::new);
+    List<RRSIGRecord> match = getSigRecords(section).get(new SigKey(name, coveredType));
 
-    if (match == null || match.length == 0)
+    if (match == null || match.size() == 0)
       // return null;
       throw new RuntimeException("RRSIG for " + Type.string(coveredType) + " not found in " + Section.longString(section));
 
-    if (match.length == 1)
-      return match[0];
+    if (match.size() == 1)
+      return match.get(0);
 
-    if (match.length > 1)
+    if (match.size() > 1)
       throw new RuntimeException("Ambiguous RRSIG");
 
     return null;
   }
 
+  /* index of all RRSIG records of a section by their name and covered type, built once per message
+   * @params int                                section (only ANSWER and AUTHORITY are cached)
+   * @return Map<SigKey, List<RRSIGRecord>>     the index
+   */
+  private Map<SigKey, List<RRSIGRecord>> getSigRecords(int section) {
+    if (section == Section.ANSWER && this.answerSigRecords != null)
+      return this.answerSigRecords;
+    if (section == Section.AUTHORITY && this.authoritySigRecords != null)
+      return this.authoritySigRecords;
+
+    Map<SigKey, List<RRSIGRecord>> sigRecords = indexSigRecords(this.message.getSectionArray(section));
+    if (section == Section.ANSWER)
+      this.answerSigRecords = sigRecords;
+    else if (section == Section.AUTHORITY)
+      this.authoritySigRecords = sigRecords;
+    return sigRecords;
+  }
+
+  /* all RRSIG records of a section with the given name and covered type
+   * @params Name                name of the covered records
+   * @params int                 section (only ANSWER and AUTHORITY)
+   * @params int                 covered type
+   * @return List<RRSIGRecord>   matching records or null
+   */
+  public List<RRSIGRecord> getRRSIGRecords(Name name, int section, int coveredType) {
+    return getSigRecords(section).get(new SigKey(name, coveredType));
+  }
+
+  private static Map<SigKey, List<RRSIGRecord>> indexSigRecords(Record[] records) {
+    Map<SigKey, List<RRSIGRecord>> sigRecords = new HashMap<SigKey, List<RRSIGRecord>>();
+    for (Record record : records) {
+      if (record.getType() != Type.RRSIG)
+        continue;
+      RRSIGRecord sigRecord = (RRSIGRecord) record;
+      sigRecords.computeIfAbsent(new SigKey(sigRecord.getName(), sigRecord.getTypeCovered()), key -> new ArrayList<RRSIGRecord>(1))
+        .add(sigRecord);
+    }
+    return sigRecords;
+  }
+
   public Record[] getWildcards() {
     if (this.wildcards == null) setWildcards();
     return this.wildcards;
@@ -147,7 +327,8 @@ public class DNSMessageUtilities {
     return wildcards == null ? 0 : wildcards.length;
   }
 
-  public double obtainNegativeTTL(Long recordTTL) {
+  // negative TTL in seconds
+  public long obtainNegativeTTL(Long recordTTL) {
     ArrayList<Long> listOfTTL = new ArrayList<Long>();
     SOARecord soaRecord = this.getSOARecord();
     if (soaRecord != null) {
@@ -155,13 +336,30 @@ public class DNSMessageUtilities {
       listOfTTL.add(soaRecord.getTTL());
     }
     listOfTTL.add(recordTTL);
-    listOfTTL.add(Constants.MAX_TTL);
+    listOfTTL.add(this.maxTTL);
     Collections.sort(listOfTTL);
 
-    return Long.valueOf(listOfTTL.get(0)).doubleValue();
+    return listOfTTL.get(0);
   }
 
+  // computed at the first request and kept with the message, an exception is thrown again by later requests
   public int getResponseType() throws RuntimeException, NameTooLongException {
+    if (!this.responseTypeKnown) {
+      try {
+        this.responseType = computeResponseType();
+      } catch (RuntimeException | NameTooLongException e) {
+        this.responseTypeException = e;
+      }
+      this.responseTypeKnown = true;
+    }
+    if (this.responseTypeException instanceof NameTooLongException)
+      throw (NameTooLongException) this.responseTypeException;
+    if (this.responseTypeException != null)
+      throw (RuntimeException) this.responseTypeException;
+    return this.responseType;
+  }
+
+  private int computeResponseType() throws RuntimeException, NameTooLongException {
     if (!isResponse())
       throw new RuntimeException("Response type cannot be declared on queries");
 
@@ -169,7 +367,7 @@ public class DNSMessageUtilities {
       return Constants.WILDCARD_ANSWER_RESPONSE;
 
     Record question = getQuestion();
-    Name questionName = question.getName().canonicalize();
+    CanonicalName questionName = CanonicalName.of(question.getName());
     int questionType = question.getType();
 
     if (allNSECRecords() > 0) {
@@ -185,13 +383,14 @@ public class DNSMessageUtilities {
       }
       return Constants.NAME_ERROR_RESPONSE;
     } else if (allNSEC3Records() > 0) {
+      NSEC3HashCache hashCache = this.hashCache != null ? this.hashCache : NSEC3HashCache.forCurrentThread();
       EnhancedNSEC3Record[] nsec3Records = (EnhancedNSEC3Record[]) Arrays.stream(getAllNSEC3Records())
-          .map(r -> new EnhancedNSEC3Record(r))
+          .map(r -> new EnhancedNSEC3Record(r, hashCache))
           .toArray(EnhancedNSEC3Record[]::new);
-      Name wildcardName = null;
+      CanonicalName wildcardName = null;
       for (int index = 0; index < nsec3Records.length; index++) {
         EnhancedNSEC3Record nsec3Record = nsec3Records[index];
-        if (nsec3Record.matches(question.getName()) && !nsec3Record.hasType(questionType))
+        if (nsec3Record.matches(questionName) && !nsec3Record.hasType(questionType))
           return Constants.NO_DATA_RESPONSE;
         
         if (wildcardName == null) {
@@ -222,11 +421,15 @@ public class DNSMessageUtilities {
     this.wildcards = null;
     this.allNsecRecords = null;
     this.allNsec3Records = null;
+    this.answerSigRecords = null;
+    this.authoritySigRecords = null;
+    this.responseTypeKnown = false;
+    this.responseTypeException = null;
     this.currentTime = 0;
   }
 
   private void setQuestion() throws RuntimeException {
-    this.question = this.message.getQuestion();
+    this.question = this.message != null ? this.message.getQuestion() : null;
     if (this.question == null)
       throw new RuntimeException("Question not found");
   }
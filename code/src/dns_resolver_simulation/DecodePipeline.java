@@ -0,0 +1,121 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* decodes the DNS messages of a trace on a pool of worker threads while keeping the original frame order
+ * 1) a reader thread classifies the frames, slices them into batches of copied packets and submits each batch to
+ *    the worker pool
+ * 2) the workers parse the messages and prepare the sections DNSMessageUtilities extracts
+ * 3) the futures of the batches are queued in submission order, so next() (the sequencer) hands out the packets
+ *    in exactly the order of the trace
+ */
+public class DecodePipeline {
+  private static final List<DecodedPacket> END = new ArrayList<DecodedPacket>();
+
+  private TraceReader reader;
+  private AddressClassifier classifier;
+  private ExecutorService workers;
+  private BlockingQueue<Future<List<DecodedPacket>>> batches;
+  private Thread readerThread;
+  private List<DecodedPacket> currentBatch;
+  private int currentIndex;
+  private volatile boolean closed;
+
+  public DecodePipeline(TraceReader reader, AddressClassifier classifier, int workerThreads) {
+    this.reader = reader;
+    this.classifier = classifier;
+    this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+      Thread thread = new Thread(runnable, "decoder");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.batches = new ArrayBlockingQueue<Future<List<DecodedPacket>>>(workerThreads * Constants.DECODE_QUEUED_BATCHES_PER_WORKER);
+    this.currentBatch = null;
+    this.currentIndex = 0;
+    this.closed = false;
+    this.readerThread = new Thread(this::read, "trace-reader");
+    this.readerThread.setDaemon(true);
+    this.readerThread.start();
+  }
+
+  private void read() {
+    TraceFrame frame = new TraceFrame();
+    List<DecodedPacket> batch = new ArrayList<DecodedPacket>(Constants.DECODE_BATCH_SIZE);
+    try {
+      while (!this.closed && this.reader.next(frame)) {
+        batch.add(new DecodedPacket(frame, this.classifier));
+        if (batch.size() == Constants.DECODE_BATCH_SIZE) {
+          submit(batch);
+          batch = new ArrayList<DecodedPacket>(Constants.DECODE_BATCH_SIZE);
+        }
+      }
+      if (!batch.isEmpty())
+        submit(batch);
+      this.batches.put(CompletableFuture.completedFuture(END));
+    } catch (IOException e) {
+      CompletableFuture<List<DecodedPacket>> failed = new CompletableFuture<List<DecodedPacket>>();
+      failed.completeExceptionally(e);
+      try {
+        this.batches.put(failed);
+      } catch (InterruptedException interrupted) {
+        // pipeline was closed
+      }
+    } catch (InterruptedException e) {
+      // pipeline was closed
+    }
+  }
+
+  private void submit(List<DecodedPacket> batch) throws InterruptedException {
+    this.batches.put(this.workers.submit(() -> {
+      for (DecodedPacket packet : batch) {
+        // only packets whose direction needs the message are decoded, the others are just passed on
+        if (packet.needsDecoding())
+          packet.decode();
+      }
+      return batch;
+    }));
+  }
+
+  /* returns the next packet in trace order, waits until it is decoded
+   * @throws IOException     if reading the trace failed
+   * @return DecodedPacket   the packet or null at the end of the trace
+   */
+  public DecodedPacket next() throws IOException {
+    while (this.currentBatch == null || this.currentIndex >= this.currentBatch.size()) {
+      if (this.currentBatch == END)
+        return null;
+      try {
+        this.currentBatch = this.batches.take().get();
+        this.currentIndex = 0;
+      } catch (InterruptedException e) {
+        throw new IOException("Interrupted while waiting for decoded packets", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException)
+          throw (IOException) e.getCause();
+        throw new IOException("Decoding failed", e.getCause());
+      }
+    }
+    return this.currentBatch.get(this.currentIndex++);
+  }
+
+  public void close() throws IOException {
+    this.closed = true;
+    this.readerThread.interrupt();
+    try {
+      this.readerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.workers.shutdownNow();
+    this.reader.close();
+  }
+}
@@ -0,0 +1,89 @@
+package dns_resolver_simulation;
+
+import org.xbill.DNS.Message;
+
+/* copy of a trace frame, which outlives the reader's buffer, together with its decoded DNS message
+ * decode() runs on a decoder thread, the simulation only reads the result
+ */
+public class DecodedPacket {
+  // offset of the frame in the trace (see TraceFrame.getOffset), -1 for events of compact traces
+  public long offset;
+  public double timestamp;
+  public int ipVersion;
+  public int direction;
+  // index of the resolver (see AddressClassifier.resolverIndex), -1 if none
+  public int resolver;
+  public long srcHigh;
+  public long srcLow;
+  public long dstHigh;
+  public long dstLow;
+  public int srcPort;
+  public int dstPort;
+  public DNSMessageUtilities utilities;
+  public Exception exception;
+  // exception only known by its counter key (compact traces)
+  public String exceptionName;
+  private byte[] payload;
+
+  /* copies the frame, the payload only if the direction needs the parsed message
+   * @params TraceFrame           frame of the trace reader
+   * @params AddressClassifier    classifier deciding the direction
+   */
+  public DecodedPacket(TraceFrame frame, AddressClassifier classifier) {
+    this.offset = frame.getOffset();
+    this.timestamp = frame.getTimestamp();
+    this.ipVersion = frame.getIpVersion();
+    this.srcPort = frame.getSrcPort();
+    this.dstPort = frame.getDstPort();
+
+    this.srcHigh = frame.getSrcHigh();
+    this.srcLow = frame.getSrcLow();
+    this.dstHigh = frame.getDstHigh();
+    this.dstLow = frame.getDstLow();
+
+    boolean complete = frame.getPayloadLength() >= Constants.DNS_HEADER_LENGTH;
+    this.direction = classifier.classify(complete && AddressClassifier.isResponse(frame), this.srcHigh, this.srcLow, this.dstHigh, this.dstLow);
+    this.resolver = classifier.resolverIndex(this.direction, this.srcHigh, this.srcLow, this.dstHigh, this.dstLow);
+    // incomplete headers are parsed anyway to count the resulting exception
+    if (AddressClassifier.needsMessage(this.direction) || !complete)
+      this.payload = frame.copyPayload();
+  }
+
+  /* wraps an event of a compact trace, whose message was already filled in the given utilities
+   * @params CompactEvent          event of CompactTraceReader
+   * @params DNSMessageUtilities   utilities filled by CompactTraceReader, not used for anything else afterwards
+   */
+  public DecodedPacket(CompactEvent event, DNSMessageUtilities utilities) {
+    this.offset = -1;
+    this.timestamp = event.timestamp;
+    this.direction = event.direction;
+    this.resolver = event.resolver;
+    this.srcHigh = event.srcHigh;
+    this.srcLow = event.srcLow;
+    this.srcPort = event.srcPort;
+    this.dstHigh = event.dstHigh;
+    this.dstLow = event.dstLow;
+    this.dstPort = event.dstPort;
+    this.exceptionName = event.exception;
+    if (event.hasMessage)
+      this.utilities = utilities;
+  }
+
+  public boolean needsDecoding() {
+    return this.payload != null;
+  }
+
+  // parses the DNS message and extracts everything the simulation needs, a failure is stored in 'exception'
+  public void decode() {
+    try {
+      Message message = new Message(this.payload);
+      DNSMessageUtilities utilities = new DNSMessageUtilities();
+      utilities.set(message);
+      utilities.prepare();
+      this.utilities = utilities;
+    } catch (Exception e) {
+      this.exception = e;
+    }
+    this.payload = null;
+  }
+}
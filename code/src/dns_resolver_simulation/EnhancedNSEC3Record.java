@@ -1,23 +1,31 @@
 package dns_resolver_simulation;
 
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-
-import javax.xml.bind.DatatypeConverter;
+import java.util.Arrays;
 
 import org.xbill.DNS.NSEC3Record;
-import org.xbill.DNS.Name;
 import org.xbill.DNS.NameTooLongException;
-import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.utils.base32;
 
 public class EnhancedNSEC3Record extends NSEC3Record {
 
   private static final long serialVersionUID = 1L;
+  private static final base32 BASE32HEX = new base32(base32.Alphabet.BASE32HEX, false, false);
 
-  private base32 base32Converter;
+  private NSEC3HashCache hashCache;
+  private byte[] ownerHash;   // raw hash of the owner name (its first label in base32hex), null if it is none
+  private byte[] nextHash;
 
+  // hashes are memoized by the cache of the current thread
   public EnhancedNSEC3Record(NSEC3Record record) {
+    this(record, NSEC3HashCache.forCurrentThread());
+  }
+
+  /* @params NSEC3Record      record to be enhanced
+   * @params NSEC3HashCache   cache memoizing the hashes, used by the calling thread only; null for the cache of the
+   *                          thread hashing (records shared by threads, see ConcurrentSimulationCache)
+   */
+  public EnhancedNSEC3Record(NSEC3Record record, NSEC3HashCache hashCache) {
     super(
       record.getName(),
       record.getDClass(),
@@ -29,113 +37,131 @@ public class EnhancedNSEC3Record extends NSEC3Record {
       record.getNext(),
       record.getTypes()
     );
-    this.base32Converter = new base32(base32.Alphabet.BASE32HEX, false, false);
+    this.hashCache = hashCache;
+    this.ownerHash = record.getName().labels() > 1 ? BASE32HEX.fromString(record.getName().getLabelString(0)) : null;
+    this.nextHash = record.getNext();
   }
 
-  public boolean inbetween(Name needle) {
+  private NSEC3HashCache hashCache() {
+    return this.hashCache != null ? this.hashCache : NSEC3HashCache.forCurrentThread();
+  }
+
+  public byte[] getOwnerHash() {
+    return this.ownerHash;
+  }
+
+  // true for the last record of a chain, whose next hash is the first one (lays before the owner hash)
+  public boolean isLastInChain() {
+    return this.ownerHash != null && compareHashes(this.ownerHash, this.nextHash) >= 0;
+  }
+
+  /* hash of a name with the parameters of this record (see NSEC3HashCache)
+   * @params CanonicalName   name to be hashed
+   * @return byte[]          hash of the name, null if it cannot be calculated
+   */
+  public byte[] hash(CanonicalName needle) {
     try {
-      String hashedNeedle = this.base32Converter.toString(calculateHash(needle));
-      Name name = new Name(getName().getLabelString(0)).canonicalize();
-      Name hashedNeedleName = new Name(hashedNeedle).canonicalize();
-      Name next = new Name(DatatypeConverter.printHexBinary(getNext())).canonicalize();
-
-      // if the next name lays before the owner name, it's currently the record for the last name of the chain
-      // so the needle has only to lay after the owner name
-      if (name.compareTo(next) > 0)
-        return name.compareTo(hashedNeedleName) < 0;
-
-      return name.compareTo(hashedNeedleName) < 0 && next.compareTo(hashedNeedleName) > 0;
-    } catch (NoSuchAlgorithmException | TextParseException e) {
+      return hashCache().hash(needle, this);
+    } catch (NoSuchAlgorithmException e) {
       System.err.println(e.getMessage());
-      return false;
+      return null;
     }
   }
 
-  public boolean matches(Name needle) {
+  /* hash of an ancestor of a name with the parameters of this record, memoized per query (see NSEC3HashCache)
+   * @params CanonicalName   name
+   * @params int             number of labels removed from the left
+   * @return byte[]          hash of the ancestor, null if it cannot be calculated
+   */
+  public byte[] ancestorHash(CanonicalName needle, int position) {
     try {
-      byte[] hashValue = calculateHash(needle);
-      Name name = new Name(getName().getLabelString(0)).canonicalize();
-      Name hashedNeedle = new Name(base32Converter.toString(hashValue)).canonicalize();
-      return name.compareTo(hashedNeedle) == 0;
-    } catch (NoSuchAlgorithmException | TextParseException e) {
+      return hashCache().getAncestorHash(needle, position, this);
+    } catch (NoSuchAlgorithmException e) {
       System.err.println(e.getMessage());
-      return false;
+      return null;
     }
   }
 
-  public Name getClosestEncloser(Name needle) {
-    needle = needle.canonicalize();
-    Name closestEncloser = null;
-    Name currentName;
-    for (int position = 0; closestEncloser == null && position < needle.labels() - 1; position++) {
-      currentName = Name.fromConstantString(RecordUtilities.getCustomLabelString(needle, position));
-      if (matches(currentName)) {
-        closestEncloser = currentName;
-      }
-    }
-    return closestEncloser;
+  public boolean inbetween(CanonicalName needle) {
+    return covers(hash(needle));
   }
 
-  public Name getWildcardName(Name questionName) throws NameTooLongException {
-    Name closestEncloser = getClosestEncloser(questionName);
-    if (closestEncloser == null) return null;
-    return Name.concatenate(Name.fromConstantString("*"), getClosestEncloser(questionName));
+  /* hashes are compared as unsigned bytes, which is the order of their base32hex encoding (RFC 5155 Section 4.3)
+   * @params byte[]    hash of a name
+   * @return boolean   true if the hash lays between the owner hash and the next hash
+   */
+  public boolean covers(byte[] hashValue) {
+    return covers(this.ownerHash, this.nextHash, hashValue);
   }
 
-  /* initial call of the hash function
-   * @params Name input                 value to be hashed
-   * @throws NoSuchAlgorithmException   source: hash(...) -> MessageDigst.getInstance(...)
-   * @return byte[]                     the calculated hash
+  // shared with records keeping their hashes elsewhere (see SlabNSEC3Record)
+  static boolean covers(byte[] ownerHash, byte[] nextHash, byte[] hashValue) {
+    if (ownerHash == null || hashValue == null)
+      return false;
+
+    // if the next hash lays before the owner hash, it's currently the record for the last hash of the chain
+    // so the needle has to lay after the owner hash or before the next hash
+    if (compareHashes(ownerHash, nextHash) >= 0)
+      return compareHashes(ownerHash, hashValue) < 0 || compareHashes(nextHash, hashValue) > 0;
+
+    return compareHashes(ownerHash, hashValue) < 0 && compareHashes(nextHash, hashValue) > 0;
+  }
+
+  /* compares hashes as unsigned bytes from the left, a prefix of a hash lays before it (the order of
+   * Arrays.compareUnsigned, which is not available on Java 8)
+   * @params byte[]   hash
+   * @params byte[]   other hash
+   * @return int      negative, zero or positive if the first hash lays before, equals or lays after the other one
    */
-  public byte[] calculateHash(Name input) throws NoSuchAlgorithmException {
-    byte[] hash = null;
-    if (getSalt() == null) {
-      hash = hash(input.toWireCanonical(), getIterations());
-    } else {
-      hash = hash(input.toWireCanonical(), getSalt(), getIterations());
+  static int compareHashes(byte[] first, byte[] second) {
+    int length = Math.min(first.length, second.length);
+    for (int i = 0; i < length; i++) {
+      int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+      if (difference != 0)
+        return difference;
     }
-    return hash;
+    return first.length - second.length;
   }
 
-  /* same as other function named 'hash', but without using any salt
-   * @params byte[] input       value to be hashed
-   * @params int    iterations  number of hash iterations
-   * @return byte[]             the calculated hash
-   */
-  private byte[] hash(byte[] input, int iterations) throws NoSuchAlgorithmException {
-    MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
-    if (iterations > 0) {
-      byte[] hash = messageDigest.digest(hash(input, iterations - 1));
-      return hash;
-    } else {
-      byte[] hash = messageDigest.digest(input);
-      return hash;
+  public boolean matches(CanonicalName needle) {
+    return matchesHash(hash(needle));
+  }
+
+  public boolean matchesHash(byte[] hashValue) {
+    return this.ownerHash != null && hashValue != null && Arrays.equals(this.ownerHash, hashValue);
+  }
+
+  // the ancestors of the needle and their hashes are shared with all other records (see NSEC3HashCache)
+  public CanonicalName getClosestEncloser(CanonicalName needle) {
+    for (int position = 0; position < needle.labels() - 1; position++) {
+      if (matchesHash(ancestorHash(needle, position)))
+        return hashCache().getAncestor(needle, position);
     }
+    return null;
+  }
+
+  public CanonicalName getWildcardName(CanonicalName questionName) throws NameTooLongException {
+    CanonicalName closestEncloser = getClosestEncloser(questionName);
+    if (closestEncloser == null) return null;
+    return closestEncloser.wildcard();
   }
 
-  /* function defined by RFC 5155 Section 5 "Calculation of the Hash" as follows:
-   * IH(salt, x, 0) = H(x || salt), and
-   * IH(salt, x, k) = H(IH(salt, x, k-1) || salt), if k > 0
-   * @params byte[] input       value to be hashed
-   * @params byte[] salt        value to be appended after the input before hash is calculated
-   * @params int    iterations  number of hash iterations
-   * @return byte[]             the calculated hash
+  /* initial call of the hash function (see NSEC3Hasher)
+   * @params CanonicalName input        value to be hashed
+   * @throws NoSuchAlgorithmException   source: NSEC3Hasher.forCurrentThread() -> MessageDigest.getInstance(...)
+   * @return byte[]                     the calculated hash
    */
-  private byte[] hash(byte[] input, byte[] salt, int iterations) throws NoSuchAlgorithmException {
-    MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
-    if (iterations > 0) {
-      byte[] hash = messageDigest.digest(concatByteArrays(hash(input, salt, iterations - 1), salt));
-      return hash;
-    } else {
-      byte[] hash = messageDigest.digest(concatByteArrays(input, salt));
-      return hash;
-    }
+  public byte[] calculateHash(CanonicalName input) throws NoSuchAlgorithmException {
+    return NSEC3Hasher.forCurrentThread().hash(input, getSalt(), getIterations());
   }
 
-  private byte[] concatByteArrays(byte[] a, byte[] b) {
-    byte[] c = new byte[a.length + b.length];
-    System.arraycopy(a, 0, c, 0, a.length);
-    System.arraycopy(b, 0, c, a.length, b.length);
-    return c;
+  /* hashes many names with the parameters of this record in one call
+   * @params CanonicalName[]            values to be hashed
+   * @params int                        number of values from the start of the array
+   * @params byte[][]                   receives the calculated hashes at the indices of their values
+   * @throws NoSuchAlgorithmException   source: NSEC3Hasher.forCurrentThread() -> MessageDigest.getInstance(...)
+   */
+  public void calculateHashes(CanonicalName[] inputs, int count, byte[][] hashes) throws NoSuchAlgorithmException {
+    NSEC3Hasher.forCurrentThread().hash(inputs, count, getSalt(), getIterations(), hashes);
   }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package dns_resolver_simulation;
 
 import org.xbill.DNS.NSECRecord;
-import org.xbill.DNS.Name;
 
 public class EnhancedNSECRecord extends NSECRecord {
   private static final long serialVersionUID = 1L;
 
+  private CanonicalName owner;
+  private CanonicalName next;
+
   public EnhancedNSECRecord(NSECRecord record) {
     super(
       record.getName(),
@@ -14,32 +16,47 @@ public class EnhancedNSECRecord extends NSECRecord {
       record.getNext(),
       record.getTypes()
     );
+    this.owner = CanonicalName.of(record.getName());
+    this.next = CanonicalName.of(record.getNext());
+  }
+
+  public CanonicalName getOwner() {
+    return this.owner;
+  }
+
+  public boolean matches(CanonicalName needle) {
+    return this.owner.equals(needle);
   }
 
-  public boolean matches(Name needle) {
-    return getName().canonicalize().compareTo(needle.canonicalize()) == 0;
+  // true for the last record of a chain, whose next name is the first one (lays before the owner name)
+  public boolean isLastInChain() {
+    return this.owner.compareTo(this.next) > 0;
   }
 
-  public boolean inBetween(Name needle) {
+  public boolean inBetween(CanonicalName needle) {
+    return inBetween(this.owner, this.next, needle);
+  }
+
+  // shared with records keeping owner and next elsewhere (see SlabNSECRecord)
+  static boolean inBetween(CanonicalName owner, CanonicalName next, CanonicalName needle) {
     // if the next name lays before the owner name, it's currently the record for the last name of the chain
     // so the needle has to lay before the owner name and after the next name
-    if (getName().canonicalize().compareTo(getNext().canonicalize()) > 0) return getName().canonicalize().compareTo(needle) > 0 && getNext().canonicalize().compareTo(needle) < 0;
+    if (owner.compareTo(next) > 0) return owner.compareTo(needle) > 0 && next.compareTo(needle) < 0;
 
-    return getName().canonicalize().compareTo(needle) < 0 && getNext().canonicalize().compareTo(needle) > 0;
+    return owner.compareTo(needle) < 0 && next.compareTo(needle) > 0;
+
+  }
 
+  public CanonicalName getClosestEncloser(CanonicalName needle) {
+    return getClosestEncloser(this.owner, needle);
   }
 
-  public Name getClosestEncloser(Name needle) {
-    needle = needle.canonicalize();
-    Name closestEncloser = null;
-    Name currentName;
-    for (int position = 0; closestEncloser == null && position < needle.labels() - 1; position++) {
-      currentName = Name.fromConstantString(RecordUtilities.getCustomLabelString(needle, position));
-      if (getName().toString().indexOf(currentName.toString()) > -1) {
-        closestEncloser = currentName;
-      }
-    }
-    return closestEncloser;
+  // deepest ancestor of the needle (without the root) the owner name belongs to
+  static CanonicalName getClosestEncloser(CanonicalName owner, CanonicalName needle) {
+    int labels = needle.commonSuffixLabels(owner);
+    if (labels < 2)
+      return null;
+    return needle.ancestor(needle.labels() - labels);
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package dns_resolver_simulation;
+
+/* order in which a bounded SimulationCache evicts its records
+ * the records of the cache are reported by the TimerWheel (add/remove) and lookups using a record by the cache
+ * (access); the policy keeps the number and estimated size of its records, the cache evicts evict() while it is
+ * over its capacity
+ */
+public abstract class EvictionPolicy {
+  private long bytes;
+
+  /* @params String       lru, lfu or tinylfu
+   * @params Statistics   statistics counting rejected admissions
+   * @throws IllegalArgumentException   if the policy is unknown
+   * @return EvictionPolicy   the policy
+   */
+  public static EvictionPolicy create(String name, Statistics statistics) {
+    switch (name) {
+      case "lru":
+        return new LRUEvictionPolicy();
+      case "lfu":
+        return new LFUEvictionPolicy();
+      case "tinylfu":
+        return new TinyLFUEvictionPolicy(statistics);
+      default:
+        throw new IllegalArgumentException("Unknown eviction policy " + name);
+    }
+  }
+
+  public void add(CachedRecord record) {
+    this.bytes += record.getEstimatedSize();
+    insert(record);
+  }
+
+  public void remove(CachedRecord record) {
+    this.bytes -= record.getEstimatedSize();
+    delete(record);
+  }
+
+  // estimated size of all records in bytes
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  public void clear() {
+    this.bytes = 0;
+    deleteAll();
+  }
+
+  protected abstract void insert(CachedRecord record);
+
+  protected abstract void delete(CachedRecord record);
+
+  protected abstract void deleteAll();
+
+  // a lookup used the record
+  public abstract void access(CachedRecord record);
+
+  // record to be evicted next, null if there are none; the policy is not changed
+  public abstract CachedRecord victim();
+
+  /* commits to evicting victim(), e.g. by admitting the record it competed with; the cache removes it right after
+   * @return CachedRecord   the record to be evicted, null if there are none
+   */
+  public CachedRecord evict() {
+    return victim();
+  }
+
+  public abstract int size();
+}
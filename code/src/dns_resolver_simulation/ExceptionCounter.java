@@ -1,5 +1,7 @@
 package dns_resolver_simulation;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -42,6 +44,29 @@ public class ExceptionCounter {
     add(exception.getClass().getSimpleName());
   }
 
+  public void merge(ExceptionCounter other) {
+    for (Map.Entry<String, Integer> entry : other.storage.entrySet()) {
+      this.storage.merge(entry.getKey(), entry.getValue(), Integer::sum);
+    }
+  }
+
+  public void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(this.storage.size());
+    for (Map.Entry<String, Integer> entry : this.storage.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+  }
+
+  public void readState(DataInputStream in) throws IOException {
+    this.storage.clear();
+    int entries = in.readInt();
+    for (int i = 0; i < entries; i++) {
+      String exceptionName = in.readUTF();
+      this.storage.put(exceptionName, in.readInt());
+    }
+  }
+
   public void writeAll() {
     this.file.add("--- Exceptions ---");
 
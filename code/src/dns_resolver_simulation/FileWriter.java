@@ -34,6 +34,11 @@ public class FileWriter {
     this.lines.add(line);
   }
 
+  // lines added since the last write()
+  public int size() {
+    return this.lines.size();
+  }
+
   public void write() throws IOException {
     Path path = Paths.get(this.pathName + "/" + this.fileName + "." + this.fileType);
     File file = path.toFile();
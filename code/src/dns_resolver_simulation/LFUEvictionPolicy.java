@@ -0,0 +1,78 @@
+package dns_resolver_simulation;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/* evicts the least frequently used record, the least recently added or used one among equally frequent records
+ * records are kept in one bucket per use count, so adding, using and evicting take constant time
+ */
+public class LFUEvictionPolicy extends EvictionPolicy {
+  private HashMap<CachedRecord, Integer> counts;
+  private HashMap<Integer, LinkedHashSet<CachedRecord>> buckets;
+  private int minimumCount;
+
+  public LFUEvictionPolicy() {
+    this.counts = new HashMap<CachedRecord, Integer>();
+    this.buckets = new HashMap<Integer, LinkedHashSet<CachedRecord>>();
+    this.minimumCount = 1;
+  }
+
+  @Override
+  protected void insert(CachedRecord record) {
+    this.counts.put(record, 1);
+    bucket(1).add(record);
+    this.minimumCount = 1;
+  }
+
+  @Override
+  protected void delete(CachedRecord record) {
+    Integer count = this.counts.remove(record);
+    if (count != null)
+      removeFromBucket(count, record);
+  }
+
+  @Override
+  protected void deleteAll() {
+    this.counts.clear();
+    this.buckets.clear();
+    this.minimumCount = 1;
+  }
+
+  @Override
+  public void access(CachedRecord record) {
+    Integer count = this.counts.get(record);
+    if (count == null)
+      return;
+    removeFromBucket(count, record);
+    if (count == this.minimumCount && !this.buckets.containsKey(count))
+      this.minimumCount = count + 1;
+    this.counts.put(record, count + 1);
+    bucket(count + 1).add(record);
+  }
+
+  @Override
+  public CachedRecord victim() {
+    if (this.counts.isEmpty())
+      return null;
+    // records removed by expiry may have emptied the buckets of the lowest counts
+    while (!this.buckets.containsKey(this.minimumCount))
+      this.minimumCount++;
+    return this.buckets.get(this.minimumCount).iterator().next();
+  }
+
+  @Override
+  public int size() {
+    return this.counts.size();
+  }
+
+  private LinkedHashSet<CachedRecord> bucket(int count) {
+    return this.buckets.computeIfAbsent(count, c -> new LinkedHashSet<CachedRecord>());
+  }
+
+  private void removeFromBucket(int count, CachedRecord record) {
+    LinkedHashSet<CachedRecord> bucket = this.buckets.get(count);
+    bucket.remove(record);
+    if (bucket.isEmpty())
+      this.buckets.remove(count);
+  }
+}
@@ -0,0 +1,45 @@
+package dns_resolver_simulation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// evicts the least recently used record
+public class LRUEvictionPolicy extends EvictionPolicy {
+  // access order, the eldest record comes first
+  private LinkedHashMap<CachedRecord, Boolean> records;
+
+  public LRUEvictionPolicy() {
+    this.records = new LinkedHashMap<CachedRecord, Boolean>(1024, 0.75f, true);
+  }
+
+  @Override
+  protected void insert(CachedRecord record) {
+    this.records.put(record, Boolean.TRUE);
+  }
+
+  @Override
+  protected void delete(CachedRecord record) {
+    this.records.remove(record);
+  }
+
+  @Override
+  protected void deleteAll() {
+    this.records.clear();
+  }
+
+  @Override
+  public void access(CachedRecord record) {
+    this.records.get(record);
+  }
+
+  @Override
+  public CachedRecord victim() {
+    Iterator<CachedRecord> eldest = this.records.keySet().iterator();
+    return eldest.hasNext() ? eldest.next() : null;
+  }
+
+  @Override
+  public int size() {
+    return this.records.size();
+  }
+}
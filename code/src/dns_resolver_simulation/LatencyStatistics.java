@@ -1,12 +1,14 @@
 package dns_resolver_simulation;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 
 public class LatencyStatistics {
 
   private int latencySpread;
-  private double latencyTimeSpread;
-  private double latencyTimeRange;
+  private long latencyTimeSpread;
+  private long latencyTimeRange;
   private int[] latencyCategories;
   private FileWriter latencyFile;
 
@@ -15,18 +17,18 @@ public class LatencyStatistics {
 
     this.latencySpread = timeSpread;
 
-    // latencyRange and latencySpread in ms
-    this.latencyTimeRange = timeRange * Constants.MILLI_SECOND;
-    this.latencyTimeSpread = timeSpread * Constants.MILLI_SECOND;
+    // latencyRange and latencySpread in ms, kept in ticks
+    this.latencyTimeRange = timeRange * Constants.TICKS_PER_MILLI_SECOND;
+    this.latencyTimeSpread = timeSpread * Constants.TICKS_PER_MILLI_SECOND;
 
     this.latencyCategories = new int[(timeRange / timeSpread) + 1];
   }
 
-  public void add(double current, double past, boolean countHitExtra) {
+  public void add(long current, long past, boolean countHitExtra) {
     if (countHitExtra) {
       latencyCategories[0]++;
     } else {
-      double latency = current - past;
+      long latency = current - past;
 
       if (latency >= 0) {
         if (latency < this.latencyTimeRange) {
@@ -39,7 +41,29 @@ public class LatencyStatistics {
     }
   }
 
-  
+  public void merge(LatencyStatistics other) {
+    if (other.latencyCategories.length != this.latencyCategories.length || other.latencySpread != this.latencySpread)
+      throw new IllegalArgumentException("Latency statistics with different range or spread cannot be merged");
+    for (int i = 0; i < this.latencyCategories.length; i++) {
+      this.latencyCategories[i] += other.latencyCategories[i];
+    }
+  }
+
+  public void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(this.latencyCategories.length);
+    for (int count : this.latencyCategories) {
+      out.writeInt(count);
+    }
+  }
+
+  public void readState(DataInputStream in) throws IOException {
+    if (in.readInt() != this.latencyCategories.length)
+      throw new IOException("Latency statistics of the checkpoint have a different range or spread");
+    for (int i = 0; i < this.latencyCategories.length; i++) {
+      this.latencyCategories[i] = in.readInt();
+    }
+  }
+
   public void writeCSVFile() {
     this.latencyFile.add("latency;count");
     for (int time = 0, i = 0; i < this.latencyCategories.length; time += this.latencySpread, i++) {
@@ -14,6 +14,16 @@ public class Logger {
     (new File(this.pathName)).mkdir();
   }
 
+  private Logger(String pathName) {
+    this.pathName = pathName;
+    (new File(this.pathName)).mkdir();
+  }
+
+  // logger writing into a subdirectory of this logger's directory
+  public Logger getSubLogger(String name) {
+    return new Logger(this.pathName + "/" + name);
+  }
+
   public FileWriter getFileWriter(String fileName) {
     return new FileWriter(this.pathName, fileName);
   }
@@ -1,13 +1,117 @@
 package dns_resolver_simulation;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
 
+	/* usage: Main <trace> [--decoders <threads>] [--from <time>] [--to <time>] [--chunk <i>/<n>] [--index]
+	 *                     [--resolvers <addresses>] [--internal <networks>] [--convert <compact>] [--dictionary <names>]
+	 *                     [--config <name>[:<option>=<value>,...]]... [--per-resolver]
+	 *                     [--checkpoints <directory>] [--checkpoint-interval <frames>] [--resume <checkpoint>]
+	 *                     [--warm <checkpoint>]
+	 * <trace>       trace file, directory or glob pattern of trace segments, or a compact trace to be replayed
+	 * --decoders    number of threads decoding DNS messages in parallel (default: decode on the simulation thread)
+	 * --from/--to   simulate only frames in this time range (unix seconds)
+	 * --chunk       simulate only the i-th (counted from 1) of n chunks with the same number of frames
+	 * --index       only build the index and the summary of the trace, no simulation
+	 * --resolvers   comma separated resolver addresses, IPv4 or IPv6 (default: Constants.RESOLVER_ADDRS)
+	 * --internal    comma separated internal networks in CIDR notation (default: Constants.INTERNAL_NETWORKS)
+	 *               the defaults are IPv4 only, IPv6 packets of a trace are unexpected unless both options list
+	 *               their addresses (e.g. --resolvers 240.12.227.28,2001:db8::53 --internal 240.0.0.0/8,2001:db8::/32)
+	 * --convert     only convert the trace into a compact trace at the given location, no simulation
+	 * --dictionary  name dictionary of the compact trace (default: <compact>.names), shared ones are extended
+	 * --config      simulate with this configuration (see SimulationConfig), can be given several times to simulate
+	 *               all configurations in one pass over the trace, each one logs into a subdirectory of its name
+	 * --per-resolver  simulate every resolver (see --resolvers) on its own, in addition to their merged results
+	 * --checkpoints   write checkpoints of the simulation state into this directory (see Checkpoint)
+	 * --checkpoint-interval  frames between two checkpoints (default: Constants.CHECKPOINT_INTERVAL)
+	 * --resume      continue the run of this checkpoint (same trace, range and configurations)
+	 * --warm        start with the caches of this checkpoint, e.g. taken at the end of the previous trace
+	 */
 	public static void main(String[] args) {
+		int decoderThreads = 0;
+		double from = Double.NEGATIVE_INFINITY;
+		double to = Double.POSITIVE_INFINITY;
+		int chunk = 0;
+		int chunks = 1;
+		boolean indexOnly = false;
+		String compactTrace = null;
+		String dictionary = null;
+		List<SimulationConfig> configs = new ArrayList<SimulationConfig>();
+		boolean perResolver = false;
+		String checkpoints = null;
+		long checkpointInterval = Constants.CHECKPOINT_INTERVAL;
+		String resume = null;
+		String warm = null;
+		AddressSet resolvers = new AddressSet(Constants.RESOLVER_ADDRS);
+		AddressSet internalNetworks = new AddressSet(Constants.INTERNAL_NETWORKS);
+
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("--decoders") && i + 1 < args.length)
+				decoderThreads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--from") && i + 1 < args.length)
+				from = Double.parseDouble(args[++i]);
+			else if (args[i].equals("--to") && i + 1 < args.length)
+				to = Double.parseDouble(args[++i]);
+			else if (args[i].equals("--chunk") && i + 1 < args.length) {
+				String[] parts = args[++i].split("/");
+				chunk = Integer.parseInt(parts[0]) - 1;
+				chunks = Integer.parseInt(parts[1]);
+			}
+			else if (args[i].equals("--index"))
+				indexOnly = true;
+			else if (args[i].equals("--resolvers") && i + 1 < args.length)
+				resolvers = AddressSet.fromList(args[++i]);
+			else if (args[i].equals("--internal") && i + 1 < args.length)
+				internalNetworks = AddressSet.fromList(args[++i]);
+			else if (args[i].equals("--convert") && i + 1 < args.length)
+				compactTrace = args[++i];
+			else if (args[i].equals("--dictionary") && i + 1 < args.length)
+				dictionary = args[++i];
+			else if (args[i].equals("--config") && i + 1 < args.length)
+				configs.add(SimulationConfig.parse(args[++i]));
+			else if (args[i].equals("--per-resolver"))
+				perResolver = true;
+			else if (args[i].equals("--checkpoints") && i + 1 < args.length)
+				checkpoints = args[++i];
+			else if (args[i].equals("--checkpoint-interval") && i + 1 < args.length)
+				checkpointInterval = Long.parseLong(args[++i]);
+			else if (args[i].equals("--resume") && i + 1 < args.length)
+				resume = args[++i];
+			else if (args[i].equals("--warm") && i + 1 < args.length)
+				warm = args[++i];
+		}
+		AddressClassifier classifier = new AddressClassifier(internalNetworks, resolvers);
+
 		try {
-			Simulator simulator = new Simulator();
-			simulator.readFile(args[0]);
+			if (indexOnly) {
+				TraceIndexer indexer = new TraceIndexer(classifier);
+				indexer.run(new File(args[0]));
+				return;
+			}
+			if (compactTrace != null) {
+				File compactFile = new File(compactTrace);
+				File dictionaryFile = dictionary != null ? new File(dictionary) : NameDictionary.dictionaryFile(compactFile);
+				TraceConverter converter = new TraceConverter(classifier);
+				long events = converter.run(args[0], new TraceRange(from, to, chunk, chunks), compactFile, dictionaryFile);
+				System.out.println(events + " events written to " + compactTrace);
+				return;
+			}
+
+			Simulator simulator = new Simulator(classifier, configs.isEmpty() ? null : configs, perResolver);
+			if (checkpoints != null)
+				simulator.setCheckpoints(new File(checkpoints), checkpointInterval);
+			if (resume != null)
+				simulator.setResume(Checkpoint.load(new File(resume)));
+			if (warm != null)
+				simulator.setWarmStart(Checkpoint.load(new File(warm)));
+			if (dictionary != null)
+				simulator.replay(args[0], new File(dictionary));
+			else
+				simulator.readFile(args[0], new TraceRange(from, to, chunk, chunks), decoderThreads);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,93 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* TraceInput backed by memory mapped windows of a file
+ * the file is walked in windows of Constants.TRACE_WINDOW_SIZE bytes, a new window is mapped as soon as a
+ * requested range crosses the end of the current one, so reading a frame never needs a system call
+ */
+public class MappedTraceInput extends TraceInput {
+  private RandomAccessFile file;
+  private FileChannel channel;
+  private long fileSize;
+  private long windowSize;
+  private long windowStart;
+  private MappedByteBuffer window;
+  private int index;
+
+  public MappedTraceInput(File file) throws IOException {
+    this(file, Constants.TRACE_WINDOW_SIZE);
+  }
+
+  // windows smaller than the default let tests cross window boundaries with small files
+  MappedTraceInput(File file, long windowSize) throws IOException {
+    this.file = new RandomAccessFile(file, "r");
+    this.windowSize = windowSize;
+    this.channel = this.file.getChannel();
+    this.fileSize = this.channel.size();
+    this.windowStart = 0;
+    this.index = 0;
+    map(0);
+  }
+
+  private void map(long start) throws IOException {
+    long size = Math.min(this.windowSize, this.fileSize - start);
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    this.window.order(ByteOrder.LITTLE_ENDIAN);
+    this.windowStart = start;
+  }
+
+  @Override
+  public boolean require(int length) throws IOException {
+    long position = position();
+    if (position + length > this.fileSize)
+      return false;
+
+    if (this.index + length > this.window.capacity()) {
+      map(position);
+      this.index = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    return this.window;
+  }
+
+  @Override
+  public int index() {
+    return this.index;
+  }
+
+  @Override
+  public void advance(int length) {
+    this.index += length;
+  }
+
+  @Override
+  public long position() {
+    return this.windowStart + this.index;
+  }
+
+  @Override
+  public void seek(long position) throws IOException {
+    if (position < 0 || position > this.fileSize)
+      throw new IOException("Position " + position + " is outside of the trace");
+    map(position);
+    this.index = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.window = null;
+    this.channel.close();
+    this.file.close();
+  }
+}
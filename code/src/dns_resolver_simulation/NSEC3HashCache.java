@@ -0,0 +1,211 @@
+package dns_resolver_simulation;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* memoized NSEC3 hashes (see EnhancedNSEC3Record.calculateHash)
+ * 1) a bounded LRU cache keyed by canonical name, hash algorithm, salt and iterations, shared by all records
+ * 2) the ancestors of the current query name with their hashes, so a closest encloser proof hashes every ancestor
+ *    once per query instead of once per record
+ * hits and misses of both are counted in the given Statistics; a cache is used by one thread only
+ */
+public class NSEC3HashCache {
+  private static final ThreadLocal<NSEC3HashCache> THREAD_CACHES = ThreadLocal.withInitial(() -> new NSEC3HashCache(null));
+
+  private static class Key {
+    private CanonicalName name;
+    private int algorithm;
+    private byte[] salt;
+    private int iterations;
+    private int hash;
+
+    Key(CanonicalName name, EnhancedNSEC3Record record) {
+      this.name = name;
+      this.algorithm = record.getHashAlgorithm();
+      this.salt = record.getSalt();
+      this.iterations = record.getIterations();
+      this.hash = ((name.hashCode() * 31 + this.algorithm) * 31 + Arrays.hashCode(this.salt)) * 31 + this.iterations;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) return false;
+      Key key = (Key) other;
+      return this.hash == key.hash && this.algorithm == key.algorithm && this.iterations == key.iterations
+        && this.name.equals(key.name) && Arrays.equals(this.salt, key.salt);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+
+  private LinkedHashMap<Key, byte[]> hashes;
+  private Statistics statistics;
+
+  // ancestors of the current query name, the hashes belong to the parameters below
+  private CanonicalName queryName;
+  private CanonicalName[] ancestors;
+  private byte[][] ancestorHashes;
+  private int ancestorAlgorithm;
+  private byte[] ancestorSalt;
+  private int ancestorIterations;
+  // ancestors whose hashes are calculated by one batch
+  private Key[] missingKeys;
+  private CanonicalName[] missingNames;
+  private int[] missingPositions;
+  private byte[][] missingHashes;
+
+  /* @params Statistics   statistics counting hits and misses, null for none
+   */
+  public NSEC3HashCache(Statistics statistics) {
+    this.statistics = statistics;
+    // access order makes the map an LRU cache
+    this.hashes = new LinkedHashMap<Key, byte[]>(1024, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+        return size() > Constants.NSEC3_HASH_CACHE_SIZE;
+      }
+    };
+    this.missingKeys = new Key[ZoneTrie.MAX_LABELS];
+    this.missingNames = new CanonicalName[ZoneTrie.MAX_LABELS];
+    this.missingPositions = new int[ZoneTrie.MAX_LABELS];
+    this.missingHashes = new byte[ZoneTrie.MAX_LABELS][];
+  }
+
+  // cache of the current thread, for hashes computed outside of a simulation instance (e.g. by decoder threads)
+  public static NSEC3HashCache forCurrentThread() {
+    return THREAD_CACHES.get();
+  }
+
+  // makes the cache the one of the current thread, e.g. of the lane a thread simulates (see ConcurrentDriver)
+  public static void setForCurrentThread(NSEC3HashCache hashCache) {
+    THREAD_CACHES.set(hashCache);
+  }
+
+  /* @params CanonicalName             name to be hashed
+   * @params EnhancedNSEC3Record       record giving algorithm, salt and iterations
+   * @throws NoSuchAlgorithmException  source: EnhancedNSEC3Record.calculateHash(...)
+   * @return byte[]                    hash of the name, must not be changed
+   */
+  public byte[] hash(CanonicalName name, EnhancedNSEC3Record record) throws NoSuchAlgorithmException {
+    if (name.equals(this.queryName))
+      return getAncestorHash(name, 0, record);
+    return lookup(name, record);
+  }
+
+  // hash from the LRU cache, computed on a miss
+  private byte[] lookup(CanonicalName name, EnhancedNSEC3Record record) throws NoSuchAlgorithmException {
+    Key key = new Key(name, record);
+    byte[] hash = this.hashes.get(key);
+    if (hash != null) {
+      countHit();
+      return hash;
+    }
+
+    countMiss();
+    hash = record.calculateHash(name);
+    this.hashes.put(key, hash);
+    return hash;
+  }
+
+  /* ancestor of a name, memoized for the latest name asked for
+   * @params CanonicalName   name
+   * @params int             number of labels removed from the left
+   * @return CanonicalName   the ancestor
+   */
+  public CanonicalName getAncestor(CanonicalName name, int position) {
+    selectQuery(name);
+    if (this.ancestors[position] == null)
+      this.ancestors[position] = name.ancestor(position);
+    return this.ancestors[position];
+  }
+
+  /* hash of an ancestor of a name, memoized for the latest name and parameters asked for
+   * @params CanonicalName             name
+   * @params int                       number of labels removed from the left
+   * @params EnhancedNSEC3Record       record giving algorithm, salt and iterations
+   * @throws NoSuchAlgorithmException  source: EnhancedNSEC3Record.calculateHash(...)
+   * @return byte[]                    hash of the ancestor, must not be changed
+   */
+  public byte[] getAncestorHash(CanonicalName name, int position, EnhancedNSEC3Record record) throws NoSuchAlgorithmException {
+    selectQuery(name);
+    if (record.getHashAlgorithm() != this.ancestorAlgorithm || record.getIterations() != this.ancestorIterations
+      || !Arrays.equals(record.getSalt(), this.ancestorSalt))
+    {
+      this.ancestorAlgorithm = record.getHashAlgorithm();
+      this.ancestorIterations = record.getIterations();
+      this.ancestorSalt = record.getSalt();
+      Arrays.fill(this.ancestorHashes, null);
+    }
+
+    if (this.ancestorHashes[position] != null) {
+      countHit();
+      return this.ancestorHashes[position];
+    }
+
+    fillAncestorHashes(name, record);
+    // the root is no closest encloser and not filled in
+    if (this.ancestorHashes[position] == null)
+      this.ancestorHashes[position] = lookup(getAncestor(name, position), record);
+    return this.ancestorHashes[position];
+  }
+
+  // hashes of all ancestors but the root, from the LRU cache or calculated in one batch (a proof visits most of them)
+  private void fillAncestorHashes(CanonicalName name, EnhancedNSEC3Record record) throws NoSuchAlgorithmException {
+    int missing = 0;
+    for (int position = 0; position < name.labels() - 1; position++) {
+      if (this.ancestorHashes[position] != null)
+        continue;
+      Key key = new Key(getAncestor(name, position), record);
+      byte[] hash = this.hashes.get(key);
+      if (hash != null) {
+        countHit();
+        this.ancestorHashes[position] = hash;
+      } else {
+        this.missingKeys[missing] = key;
+        this.missingNames[missing] = this.ancestors[position];
+        this.missingPositions[missing++] = position;
+      }
+    }
+
+    record.calculateHashes(this.missingNames, missing, this.missingHashes);
+    for (int i = 0; i < missing; i++) {
+      countMiss();
+      this.hashes.put(this.missingKeys[i], this.missingHashes[i]);
+      this.ancestorHashes[this.missingPositions[i]] = this.missingHashes[i];
+      this.missingKeys[i] = null;
+      this.missingNames[i] = null;
+    }
+  }
+
+  // equal names share the memo, the same name is created anew by every message asking for it
+  private void selectQuery(CanonicalName name) {
+    if (name.equals(this.queryName))
+      return;
+    this.queryName = name;
+    this.ancestors = new CanonicalName[name.labels()];
+    this.ancestorHashes = new byte[name.labels()][];
+    this.ancestorSalt = null;
+    this.ancestorAlgorithm = -1;
+  }
+
+  private void countHit() {
+    if (this.statistics != null)
+      this.statistics.countNsec3HashHit();
+  }
+
+  private void countMiss() {
+    if (this.statistics != null)
+      this.statistics.countNsec3HashMiss();
+  }
+
+  public int size() {
+    return this.hashes.size();
+  }
+}
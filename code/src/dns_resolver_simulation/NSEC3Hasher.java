@@ -0,0 +1,73 @@
+package dns_resolver_simulation;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/* iterative NSEC3 hash function of RFC 5155 Section 5, one instance per thread
+ * IH(salt, x, 0) = H(x || salt), and
+ * IH(salt, x, k) = H(IH(salt, x, k-1) || salt), if k > 0
+ * names are digested straight from their canonical wire format, every iteration digests into the same scratch
+ * buffer and the salt is fed to the digest without copying, so only the returned hash is allocated
+ */
+public class NSEC3Hasher {
+  private static final ThreadLocal<NSEC3Hasher> HASHERS = new ThreadLocal<NSEC3Hasher>();
+
+  private MessageDigest digest;
+  private byte[] scratch;
+
+  private NSEC3Hasher() throws NoSuchAlgorithmException {
+    this.digest = MessageDigest.getInstance("SHA-1");
+    this.scratch = new byte[this.digest.getDigestLength()];
+  }
+
+  // hasher of the current thread
+  public static NSEC3Hasher forCurrentThread() throws NoSuchAlgorithmException {
+    NSEC3Hasher hasher = HASHERS.get();
+    if (hasher == null) {
+      hasher = new NSEC3Hasher();
+      HASHERS.set(hasher);
+    }
+    return hasher;
+  }
+
+  /* @params CanonicalName   name to be hashed (its canonical wire format)
+   * @params byte[]          salt, null for none
+   * @params int             number of additional iterations
+   * @return byte[]          the calculated hash
+   */
+  public byte[] hash(CanonicalName input, byte[] salt, int iterations) {
+    this.digest.update(input.getWire(), input.labelOffset(0), input.length());
+    digestSalted(salt);
+    for (int i = 0; i < iterations; i++) {
+      this.digest.update(this.scratch);
+      digestSalted(salt);
+    }
+    return this.scratch.clone();
+  }
+
+  /* hashes many names with the same parameters
+   * @params CanonicalName[]   names to be hashed
+   * @params int               number of names to be hashed from the start of the array
+   * @params byte[]            salt, null for none
+   * @params int               number of additional iterations
+   * @params byte[][]          receives the hashes at the indices of their names
+   */
+  public void hash(CanonicalName[] names, int count, byte[] salt, int iterations, byte[][] hashes) {
+    for (int i = 0; i < count; i++) {
+      hashes[i] = hash(names[i], salt, iterations);
+    }
+  }
+
+  // appends the salt and completes the digest into the scratch buffer
+  private void digestSalted(byte[] salt) {
+    if (salt != null)
+      this.digest.update(salt);
+    try {
+      this.digest.digest(this.scratch, 0, this.scratch.length);
+    } catch (DigestException e) {
+      // the scratch buffer has the length of the digest
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package dns_resolver_simulation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/* cached NSEC3 records of one zone sharing hash algorithm, salt and iterations, sorted by the raw hashes of their
+ * owner names in unsigned byte order; the record owning a hash and the record covering it (its predecessor, or the
+ * last record of the chain for hashes before the first owner hash) are found by one lookup each
+ * rings read by several threads keep their records in a skip list (see ResponseEntry)
+ */
+public class NSEC3Ring {
+  private NavigableMap<byte[], CachedNSEC3Record> records;
+  private EnhancedNSEC3Record parameters;   // gives algorithm, salt and iterations for hashing names
+
+  public NSEC3Ring(EnhancedNSEC3Record parameters, boolean concurrent) {
+    if (concurrent)
+      this.records = new ConcurrentSkipListMap<byte[], CachedNSEC3Record>(EnhancedNSEC3Record::compareHashes);
+    else
+      this.records = new TreeMap<byte[], CachedNSEC3Record>(EnhancedNSEC3Record::compareHashes);
+    this.parameters = parameters;
+  }
+
+  public EnhancedNSEC3Record getParameters() {
+    return this.parameters;
+  }
+
+  // true if the record belongs to this ring
+  public boolean hasParameters(EnhancedNSEC3Record record) {
+    return record.getHashAlgorithm() == this.parameters.getHashAlgorithm()
+      && record.getIterations() == this.parameters.getIterations()
+      && Arrays.equals(record.getSalt(), this.parameters.getSalt());
+  }
+
+  /* @params CachedNSEC3Record   record with an owner hash
+   * @return CachedNSEC3Record   record with the same owner hash replaced by the new one, null if there is none
+   */
+  public CachedNSEC3Record add(CachedNSEC3Record record) {
+    return this.records.put(record.getOwnerHash(), record);
+  }
+
+  // record with the given owner hash, expired or not; null if there is none
+  public CachedNSEC3Record get(byte[] ownerHash) {
+    return this.records.get(ownerHash);
+  }
+
+  public void remove(CachedNSEC3Record record) {
+    this.records.remove(record.getOwnerHash(), record);
+  }
+
+  public byte[] hash(CanonicalName name) {
+    return this.parameters.hash(name);
+  }
+
+  // see EnhancedNSEC3Record.ancestorHash(...)
+  public byte[] ancestorHash(CanonicalName name, int position) {
+    return this.parameters.ancestorHash(name, position);
+  }
+
+  private static boolean expired(CachedRecord record, long currentTime) {
+    return record.getExpiry() <= currentTime;
+  }
+
+  /* record whose owner hash is the given hash, expired ones are skipped (the TimerWheel removes them)
+   * @params byte[]   hash of a name, null if it could not be calculated
+   * @params long     current tick
+   * @return CachedNSEC3Record   the record, null if there is none
+   */
+  public CachedNSEC3Record getMatching(byte[] hash, long currentTime) {
+    if (hash == null)
+      return null;
+    CachedNSEC3Record record = this.records.get(hash);
+    if (record != null && expired(record, currentTime))
+      return null;
+    return record;
+  }
+
+  /* record covering the given hash: its predecessor or the record with the highest owner hash (end of the chain)
+   * expired records are skipped
+   * @params byte[]   hash of a name, null if it could not be calculated
+   * @params long     current tick
+   * @return CachedNSEC3Record   the record, null if there is none
+   */
+  public CachedNSEC3Record getCovering(byte[] hash, long currentTime) {
+    if (hash == null)
+      return null;
+    Map.Entry<byte[], CachedNSEC3Record> predecessor = this.records.lowerEntry(hash);
+    while (predecessor != null && expired(predecessor.getValue(), currentTime)) {
+      predecessor = this.records.lowerEntry(predecessor.getKey());
+    }
+    if (predecessor != null && predecessor.getValue().covers(hash))
+      return predecessor.getValue();
+
+    // the record at the end of a chain covers the hashes before the first owner hash
+    Map.Entry<byte[], CachedNSEC3Record> last = this.records.lastEntry();
+    while (last != null && expired(last.getValue(), currentTime)) {
+      last = this.records.lowerEntry(last.getKey());
+    }
+    if (last != null && (predecessor == null || last.getValue() != predecessor.getValue()) && last.getValue().covers(hash))
+      return last.getValue();
+    return null;
+  }
+
+  public boolean isEmpty() {
+    return this.records.isEmpty();
+  }
+
+  public int size() {
+    return this.records.size();
+  }
+
+  public Collection<CachedNSEC3Record> getRecords() {
+    return this.records.values();
+  }
+}
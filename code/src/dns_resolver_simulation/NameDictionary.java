@@ -0,0 +1,98 @@
+package dns_resolver_simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.xbill.DNS.Name;
+
+/* persistent dictionary of domain names used by compact traces (see CompactTraceWriter), ids are only ever added,
+ * so one dictionary can be shared by the compact versions of several traces
+ * names are kept exactly as in the messages (case is not normalized), every id is resolved to one shared Name
+ * file layout (big endian): magic | version | name count | names of (wire length short, uncompressed wire format)
+ */
+public class NameDictionary {
+  private static final int MAGIC = 0x4452534E;    // "DRSN"
+  private static final int VERSION = 1;
+
+  private HashMap<String, Integer> ids;
+  private List<Name> names;
+
+  public NameDictionary() {
+    this.ids = new HashMap<String, Integer>();
+    this.names = new ArrayList<Name>();
+  }
+
+  public static File dictionaryFile(File compactTrace) {
+    return new File(compactTrace.getPath() + ".names");
+  }
+
+  /* id of the given name, unknown names are added
+   * @params Name   name as found in the message
+   * @return int    id of the name
+   */
+  public int getId(Name name) {
+    String key = new String(name.toWire(), StandardCharsets.ISO_8859_1);
+    Integer id = this.ids.get(key);
+    if (id == null) {
+      id = this.names.size();
+      this.ids.put(key, id);
+      this.names.add(name);
+    }
+    return id;
+  }
+
+  public Name getName(int id) {
+    return this.names.get(id);
+  }
+
+  public int size() {
+    return this.names.size();
+  }
+
+  // replaces the file only after the complete dictionary was written
+  public void write(File file) throws IOException {
+    File temporary = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.names.size());
+      for (Name name : this.names) {
+        byte[] wire = name.toWire();
+        out.writeShort(wire.length);
+        out.write(wire);
+      }
+    }
+    Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  // loads the dictionary or starts an empty one, if the file does not exist yet
+  public static NameDictionary load(File file) throws IOException {
+    NameDictionary dictionary = new NameDictionary();
+    if (!file.exists())
+      return dictionary;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        throw new IOException("Unknown dictionary format in " + file.getPath());
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        byte[] wire = new byte[in.readUnsignedShort()];
+        in.readFully(wire);
+        dictionary.getId(new Name(wire));
+      }
+    }
+    return dictionary;
+  }
+}
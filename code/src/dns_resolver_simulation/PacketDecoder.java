@@ -0,0 +1,331 @@
+package dns_resolver_simulation;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/* decodes captured packets down to their DNS payload: link layer (Ethernet incl. VLAN tags, Linux cooked capture,
+ * loopback, raw IP), IPv4/IPv6 and UDP/TCP; only packets from or to Constants.DNS_PORT are handed out
+ * DNS over TCP is reassembled per flow, every length prefixed message becomes a frame of its own
+ * UDP payloads stay slices of the capture buffer, TCP payloads slices of the flow's (reused) buffer
+ */
+public class PacketDecoder {
+  public static final int LINKTYPE_NULL = 0;
+  public static final int LINKTYPE_ETHERNET = 1;
+  public static final int LINKTYPE_RAW = 101;
+  public static final int LINKTYPE_LOOP = 108;
+  public static final int LINKTYPE_LINUX_SLL = 113;
+  public static final int LINKTYPE_IPV4 = 228;
+  public static final int LINKTYPE_IPV6 = 229;
+  public static final int LINKTYPE_LINUX_SLL2 = 276;
+
+  private static final int ETHERTYPE_IPV4 = 0x0800;
+  private static final int ETHERTYPE_IPV6 = 0x86DD;
+  private static final int ETHERTYPE_VLAN = 0x8100;
+  private static final int ETHERTYPE_QINQ = 0x88A8;
+  private static final int ETHERTYPE_QINQ_OLD = 0x9100;
+  private static final int PROTOCOL_TCP = 6;
+  private static final int PROTOCOL_UDP = 17;
+  private static final int TCP_FIN = 0x01;
+  private static final int TCP_SYN = 0x02;
+  private static final int TCP_RST = 0x04;
+
+  private HashMap<TcpFlow, TcpFlow> flows;
+  private TcpFlow lookupKey;
+  private TcpFlow pendingFlow;
+  private double pendingTimestamp;
+  private int pendingFrameNumber;
+  private long pendingOffset;
+
+  // direction of a TCP connection, serves as its own key in the flow table
+  private static class TcpFlow {
+    int ipVersion;
+    byte[] srcAddress = new byte[16];
+    byte[] dstAddress = new byte[16];
+    int srcPort;
+    int dstPort;
+    byte[] data;
+    ByteBuffer view;
+    int start;
+    int end;
+    int nextSequence;
+    boolean synced;
+
+    void setKey(int ipVersion, ByteBuffer buffer, int srcIndex, int dstIndex, int srcPort, int dstPort) {
+      int length = ipVersion == 6 ? 16 : 4;
+      this.ipVersion = ipVersion;
+      for (int i = 0; i < 16; i++) {
+        this.srcAddress[i] = i < length ? buffer.get(srcIndex + i) : 0;
+        this.dstAddress[i] = i < length ? buffer.get(dstIndex + i) : 0;
+      }
+      this.srcPort = srcPort;
+      this.dstPort = dstPort;
+    }
+
+    TcpFlow copyKey() {
+      TcpFlow flow = new TcpFlow();
+      flow.ipVersion = this.ipVersion;
+      System.arraycopy(this.srcAddress, 0, flow.srcAddress, 0, 16);
+      System.arraycopy(this.dstAddress, 0, flow.dstAddress, 0, 16);
+      flow.srcPort = this.srcPort;
+      flow.dstPort = this.dstPort;
+      flow.data = new byte[Constants.TCP_FLOW_BUFFER_SIZE];
+      flow.view = ByteBuffer.wrap(flow.data);
+      return flow;
+    }
+
+    void append(ByteBuffer buffer, int index, int length) {
+      // drop the messages handed out before, their frames are not used anymore
+      if (this.start > 0) {
+        System.arraycopy(this.data, this.start, this.data, 0, this.end - this.start);
+        this.end -= this.start;
+        this.start = 0;
+      }
+      if (this.end + length > this.data.length) {
+        byte[] grown = new byte[Math.max(this.data.length * 2, this.end + length)];
+        System.arraycopy(this.data, 0, grown, 0, this.end);
+        this.data = grown;
+        this.view = ByteBuffer.wrap(grown);
+      }
+      for (int i = 0; i < length; i++) {
+        this.data[this.end + i] = buffer.get(index + i);
+      }
+      this.end += length;
+    }
+
+    void clear() {
+      this.start = 0;
+      this.end = 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof TcpFlow)) return false;
+      TcpFlow flow = (TcpFlow) other;
+      return this.srcPort == flow.srcPort && this.dstPort == flow.dstPort && this.ipVersion == flow.ipVersion
+        && Arrays.equals(this.srcAddress, flow.srcAddress) && Arrays.equals(this.dstAddress, flow.dstAddress);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * Arrays.hashCode(this.srcAddress) + Arrays.hashCode(this.dstAddress)) + (this.srcPort << 16 | this.dstPort);
+    }
+  }
+
+  public PacketDecoder() {
+    this.flows = new HashMap<TcpFlow, TcpFlow>();
+    this.lookupKey = new TcpFlow();
+    this.pendingFlow = null;
+  }
+
+  // forgets all TCP state, e.g. after seeking
+  public void reset() {
+    this.flows.clear();
+    this.pendingFlow = null;
+  }
+
+  /* decodes one captured packet
+   * @params ByteBuffer   buffer holding the packet
+   * @params int          index of the packet's first byte
+   * @params int          captured length
+   * @params int          link type of the capture (LINKTYPE_*)
+   * @params double       capture time (unix seconds)
+   * @params int          number of the packet in the capture
+   * @params long         offset of the packet's record in the capture
+   * @params TraceFrame   frame to be filled
+   * @return boolean      true if the frame was filled with a DNS message
+   */
+  public boolean decode(ByteBuffer buffer, int index, int length, int linkType, double timestamp, int frameNumber, long offset, TraceFrame frame) {
+    int end = index + length;
+    int position;
+    int etherType = 0;
+
+    /* LINK LAYER */
+    switch (linkType) {
+      case LINKTYPE_ETHERNET:
+        if (length < 14) return false;
+        etherType = u16(buffer, index + 12);
+        position = index + 14;
+        while (etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ || etherType == ETHERTYPE_QINQ_OLD) {
+          if (position + 4 > end) return false;
+          etherType = u16(buffer, position + 2);
+          position += 4;
+        }
+        break;
+      case LINKTYPE_LINUX_SLL:
+        if (length < 16) return false;
+        etherType = u16(buffer, index + 14);
+        position = index + 16;
+        break;
+      case LINKTYPE_LINUX_SLL2:
+        if (length < 20) return false;
+        etherType = u16(buffer, index);
+        position = index + 20;
+        break;
+      case LINKTYPE_NULL:
+      case LINKTYPE_LOOP:
+        position = index + 4;
+        break;
+      case LINKTYPE_RAW:
+      case LINKTYPE_IPV4:
+      case LINKTYPE_IPV6:
+        position = index;
+        break;
+      default:
+        return false;
+    }
+    if (etherType != 0 && etherType != ETHERTYPE_IPV4 && etherType != ETHERTYPE_IPV6) return false;
+    if (position + 1 > end) return false;
+
+    /* NETWORK LAYER */
+    int ipVersion = (buffer.get(position) >> 4) & 0x0F;
+    int protocol;
+    int srcIndex;
+    int dstIndex;
+    int transport;
+    int ipEnd;
+    if (ipVersion == 4) {
+      if (position + 20 > end) return false;
+      int headerLength = (buffer.get(position) & 0x0F) * 4;
+      // fragments cannot be decoded without reassembly
+      if ((u16(buffer, position + 6) & 0x3FFF) != 0) return false;
+      protocol = buffer.get(position + 9) & 0xFF;
+      srcIndex = position + 12;
+      dstIndex = position + 16;
+      transport = position + headerLength;
+      ipEnd = Math.min(end, position + u16(buffer, position + 2));
+    } else if (ipVersion == 6) {
+      if (position + 40 > end) return false;
+      protocol = buffer.get(position + 6) & 0xFF;
+      srcIndex = position + 8;
+      dstIndex = position + 24;
+      transport = position + 40;
+      ipEnd = Math.min(end, transport + u16(buffer, position + 4));
+      // skip hop-by-hop, routing and destination options headers, fragments are not decoded
+      while (protocol == 0 || protocol == 43 || protocol == 60) {
+        if (transport + 8 > ipEnd) return false;
+        protocol = buffer.get(transport) & 0xFF;
+        transport += ((buffer.get(transport + 1) & 0xFF) + 1) * 8;
+      }
+    } else {
+      return false;
+    }
+
+    /* TRANSPORT LAYER */
+    if (protocol == PROTOCOL_UDP) {
+      if (transport + 8 > ipEnd) return false;
+      int srcPort = u16(buffer, transport);
+      int dstPort = u16(buffer, transport + 2);
+      if (srcPort != Constants.DNS_PORT && dstPort != Constants.DNS_PORT) return false;
+      int payloadEnd = Math.min(ipEnd, transport + u16(buffer, transport + 4));
+      if (payloadEnd < transport + 8) return false;
+
+      fillAddresses(frame, buffer, ipVersion, srcIndex, dstIndex);
+      frame.setHeader(offset, timestamp, frameNumber, ipVersion, PROTOCOL_UDP);
+      frame.setPorts(srcPort, dstPort);
+      frame.setPayload(buffer, transport + 8, payloadEnd - transport - 8);
+      return true;
+    }
+    if (protocol == PROTOCOL_TCP) {
+      if (transport + 20 > ipEnd) return false;
+      int srcPort = u16(buffer, transport);
+      int dstPort = u16(buffer, transport + 2);
+      if (srcPort != Constants.DNS_PORT && dstPort != Constants.DNS_PORT) return false;
+      int sequence = Integer.reverseBytes(buffer.getInt(transport + 4));
+      int flags = buffer.get(transport + 13) & 0xFF;
+      int payload = transport + ((buffer.get(transport + 12) >> 4) & 0x0F) * 4;
+      if (payload > ipEnd) return false;
+
+      this.lookupKey.setKey(ipVersion, buffer, srcIndex, dstIndex, srcPort, dstPort);
+      TcpFlow flow = this.flows.get(this.lookupKey);
+      if (flow == null) {
+        if ((flags & (TCP_FIN | TCP_RST)) != 0) return false;
+        if (this.flows.size() >= Constants.MAX_TCP_FLOWS)
+          this.flows.clear();
+        flow = this.lookupKey.copyKey();
+        this.flows.put(flow, flow);
+      }
+      reassemble(flow, buffer, payload, ipEnd - payload, sequence, flags);
+      if ((flags & (TCP_FIN | TCP_RST)) != 0)
+        this.flows.remove(flow);
+
+      this.pendingFlow = flow;
+      this.pendingTimestamp = timestamp;
+      this.pendingFrameNumber = frameNumber;
+      this.pendingOffset = offset;
+      return nextPending(frame);
+    }
+    return false;
+  }
+
+  // adds a segment to the flow's stream, gaps discard the buffered bytes since message boundaries are lost
+  private void reassemble(TcpFlow flow, ByteBuffer buffer, int index, int length, int sequence, int flags) {
+    if ((flags & TCP_SYN) != 0) {
+      flow.clear();
+      flow.nextSequence = sequence + 1;
+      flow.synced = true;
+      return;
+    }
+    if (length == 0)
+      return;
+    // capture started within the connection, assume the segment starts with a message
+    if (!flow.synced) {
+      flow.nextSequence = sequence;
+      flow.synced = true;
+    }
+
+    int delta = sequence - flow.nextSequence;
+    if (delta > 0) {
+      flow.clear();
+      flow.nextSequence = sequence + length;
+      return;
+    }
+    // retransmitted bytes are skipped
+    int skip = -delta;
+    if (skip >= length)
+      return;
+    flow.append(buffer, index + skip, length - skip);
+    flow.nextSequence += length - skip;
+  }
+
+  /* hands out the next complete message of the last TCP segment's flow
+   * @params TraceFrame   frame to be filled
+   * @return boolean      true if the frame was filled
+   */
+  public boolean nextPending(TraceFrame frame) {
+    TcpFlow flow = this.pendingFlow;
+    if (flow == null)
+      return false;
+
+    if (flow.end - flow.start >= 2) {
+      int messageLength = ((flow.data[flow.start] & 0xFF) << 8) | (flow.data[flow.start + 1] & 0xFF);
+      if (flow.end - flow.start - 2 >= messageLength) {
+        int addressLength = flow.ipVersion == 6 ? 16 : 4;
+        System.arraycopy(flow.srcAddress, 0, frame.srcAddressBuffer(), 0, addressLength);
+        System.arraycopy(flow.dstAddress, 0, frame.dstAddressBuffer(), 0, addressLength);
+        frame.setHeader(this.pendingOffset, this.pendingTimestamp, this.pendingFrameNumber, flow.ipVersion, PROTOCOL_TCP);
+        frame.setPorts(flow.srcPort, flow.dstPort);
+        frame.setPayload(flow.view, flow.start + 2, messageLength);
+        flow.start += 2 + messageLength;
+        return true;
+      }
+    }
+    this.pendingFlow = null;
+    return false;
+  }
+
+  private void fillAddresses(TraceFrame frame, ByteBuffer buffer, int ipVersion, int srcIndex, int dstIndex) {
+    int length = ipVersion == 6 ? 16 : 4;
+    byte[] src = frame.srcAddressBuffer();
+    byte[] dst = frame.dstAddressBuffer();
+    for (int i = 0; i < length; i++) {
+      src[i] = buffer.get(srcIndex + i);
+      dst[i] = buffer.get(dstIndex + i);
+    }
+  }
+
+  // network byte order
+  private static int u16(ByteBuffer buffer, int index) {
+    return ((buffer.get(index) & 0xFF) << 8) | (buffer.get(index + 1) & 0xFF);
+  }
+}
@@ -0,0 +1,240 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* reader for libpcap (microsecond and nanosecond variants) and pcapng captures in either byte order
+ * packets are decoded by a PacketDecoder, packets without a DNS message (other ports, fragments, ...) are skipped
+ * frame numbers count the captured packets, frame offsets point to the packet's record (block) in the capture
+ */
+public class PcapTraceReader extends TraceReader {
+  // magic numbers as read from the little endian TraceInput buffer
+  private static final int PCAP_MAGIC_MICROS = 0xA1B2C3D4;
+  private static final int PCAP_MAGIC_NANOS = 0xA1B23C4D;
+  private static final int PCAP_MAGIC_MICROS_SWAPPED = 0xD4C3B2A1;
+  private static final int PCAP_MAGIC_NANOS_SWAPPED = 0x4D3CB2A1;
+  private static final int PCAPNG_SECTION_HEADER = 0x0A0D0D0A;
+  private static final int PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+
+  private static final int PCAP_HEADER_LENGTH = 24;
+  private static final int PCAP_RECORD_HEADER_LENGTH = 16;
+  private static final int PCAPNG_BLOCK_HEADER_LENGTH = 8;
+  private static final int PCAPNG_INTERFACE_DESCRIPTION = 1;
+  private static final int PCAPNG_PACKET = 2;
+  private static final int PCAPNG_SIMPLE_PACKET = 3;
+  private static final int PCAPNG_ENHANCED_PACKET = 6;
+  private static final int PCAPNG_OPTION_END = 0;
+  private static final int PCAPNG_OPTION_TSRESOL = 9;
+  private static final int MAX_INTERFACES = 256;
+
+  private TraceInput input;
+  private PacketDecoder decoder;
+  private boolean pcapng;
+  private boolean swapped;
+  private int frameNumber;
+  private double lastTimestamp;
+  private boolean frameFilled;
+
+  // libpcap
+  private int linkType;
+  private double unitsPerSecond;
+
+  // pcapng, per interface of the current section
+  private int interfaces;
+  private int[] linkTypes;
+  private double[] interfaceUnitsPerSecond;
+
+  public PcapTraceReader(TraceInput input) throws IOException {
+    this.input = input;
+    this.decoder = new PacketDecoder();
+    this.linkTypes = new int[MAX_INTERFACES];
+    this.interfaceUnitsPerSecond = new double[MAX_INTERFACES];
+
+    if (!this.input.require(4))
+      throw new IOException("Capture is empty");
+    int magic = this.input.buffer().getInt(this.input.index());
+    if (magic == PCAPNG_SECTION_HEADER) {
+      this.pcapng = true;
+      readInterfaces();
+      return;
+    }
+
+    if (!this.input.require(PCAP_HEADER_LENGTH))
+      throw new IOException("Truncated pcap header");
+    this.swapped = magic == PCAP_MAGIC_MICROS_SWAPPED || magic == PCAP_MAGIC_NANOS_SWAPPED;
+    this.unitsPerSecond = magic == PCAP_MAGIC_NANOS || magic == PCAP_MAGIC_NANOS_SWAPPED ? 1e9 : 1e6;
+    this.linkType = u32(this.input.buffer(), this.input.index() + 20) & 0xFFFF;
+    this.input.advance(PCAP_HEADER_LENGTH);
+  }
+
+  /* checks the first four bytes of a trace
+   * @params int        first four bytes, read little endian
+   * @return boolean    true for libpcap and pcapng captures
+   */
+  public static boolean isCapture(int magic) {
+    return magic == PCAP_MAGIC_MICROS || magic == PCAP_MAGIC_NANOS || magic == PCAP_MAGIC_MICROS_SWAPPED
+      || magic == PCAP_MAGIC_NANOS_SWAPPED || magic == PCAPNG_SECTION_HEADER;
+  }
+
+  @Override
+  public boolean next(TraceFrame frame) throws IOException {
+    // further messages reassembled from the last TCP segment come first
+    if (this.decoder.nextPending(frame))
+      return true;
+    while (this.pcapng ? nextBlock(frame) : nextRecord(frame)) {
+      if (this.frameFilled)
+        return true;
+    }
+    return false;
+  }
+
+  /* reads a libpcap record
+   * @return boolean   false at the end of the capture
+   */
+  private boolean nextRecord(TraceFrame frame) throws IOException {
+    long offset = this.input.position();
+    if (!this.input.require(PCAP_RECORD_HEADER_LENGTH))
+      return false;
+    ByteBuffer buffer = this.input.buffer();
+    int index = this.input.index();
+    long seconds = u32(buffer, index) & 0xFFFFFFFFL;
+    long fraction = u32(buffer, index + 4) & 0xFFFFFFFFL;
+    int capturedLength = u32(buffer, index + 8);
+    this.input.advance(PCAP_RECORD_HEADER_LENGTH);
+
+    if (capturedLength < 0 || !this.input.require(capturedLength))
+      return false;
+    this.frameNumber++;
+    this.lastTimestamp = seconds + fraction / this.unitsPerSecond;
+    this.frameFilled = this.decoder.decode(this.input.buffer(), this.input.index(), capturedLength, this.linkType, this.lastTimestamp, this.frameNumber, offset, frame);
+    this.input.advance(capturedLength);
+    return true;
+  }
+
+  /* reads a pcapng block, blocks other than section headers, interface descriptions and packets are skipped
+   * @return boolean   false at the end of the capture
+   */
+  private boolean nextBlock(TraceFrame frame) throws IOException {
+    this.frameFilled = false;
+    long offset = this.input.position();
+    if (!this.input.require(PCAPNG_BLOCK_HEADER_LENGTH))
+      return false;
+    ByteBuffer buffer = this.input.buffer();
+    int index = this.input.index();
+    int type = buffer.getInt(index);
+
+    // a section header defines the byte order of everything up to the next one
+    if (type == PCAPNG_SECTION_HEADER) {
+      if (!this.input.require(12))
+        return false;
+      buffer = this.input.buffer();
+      index = this.input.index();
+      int byteOrder = buffer.getInt(index + 8);
+      if (byteOrder == PCAPNG_BYTE_ORDER_MAGIC)
+        this.swapped = false;
+      else if (byteOrder == Integer.reverseBytes(PCAPNG_BYTE_ORDER_MAGIC))
+        this.swapped = true;
+      else
+        throw new IOException("Invalid pcapng byte order magic at offset " + offset);
+      this.interfaces = 0;
+    } else {
+      type = u32(buffer, index);
+    }
+
+    int blockLength = u32(buffer, index + 4);
+    if (blockLength < 12 || !this.input.require(blockLength))
+      return false;
+    buffer = this.input.buffer();
+    index = this.input.index();
+
+    switch (type) {
+      case PCAPNG_INTERFACE_DESCRIPTION:
+        if (this.interfaces < MAX_INTERFACES) {
+          this.linkTypes[this.interfaces] = u16(buffer, index + 8);
+          this.interfaceUnitsPerSecond[this.interfaces] = timestampResolution(buffer, index + 16, index + blockLength - 4);
+          this.interfaces++;
+        }
+        break;
+      case PCAPNG_ENHANCED_PACKET:
+      case PCAPNG_PACKET: {
+        int interfaceId = type == PCAPNG_PACKET ? u16(buffer, index + 8) : u32(buffer, index + 8);
+        long high = u32(buffer, index + 12) & 0xFFFFFFFFL;
+        long low = u32(buffer, index + 16) & 0xFFFFFFFFL;
+        int capturedLength = Math.min(u32(buffer, index + 20), blockLength - 32);
+        if (interfaceId < 0 || interfaceId >= this.interfaces)
+          throw new IOException("Packet of unknown interface " + interfaceId + " at offset " + offset);
+        this.frameNumber++;
+        this.lastTimestamp = ((high << 32) | low) / this.interfaceUnitsPerSecond[interfaceId];
+        this.frameFilled = this.decoder.decode(buffer, index + 28, capturedLength, this.linkTypes[interfaceId], this.lastTimestamp, this.frameNumber, offset, frame);
+        break;
+      }
+      case PCAPNG_SIMPLE_PACKET: {
+        // no timestamp, the previous packet's one is used
+        if (this.interfaces == 0)
+          throw new IOException("Packet of unknown interface 0 at offset " + offset);
+        int capturedLength = Math.min(u32(buffer, index + 8), blockLength - 16);
+        this.frameNumber++;
+        this.frameFilled = this.decoder.decode(buffer, index + 12, capturedLength, this.linkTypes[0], this.lastTimestamp, this.frameNumber, offset, frame);
+        break;
+      }
+      default:
+        break;
+    }
+    this.input.advance(blockLength);
+    return true;
+  }
+
+  // reads the leading section header and interface descriptions, so seeking to a packet block works right away
+  private void readInterfaces() throws IOException {
+    while (this.input.require(PCAPNG_BLOCK_HEADER_LENGTH)) {
+      int type = this.input.buffer().getInt(this.input.index());
+      if (type != PCAPNG_SECTION_HEADER && u32(this.input.buffer(), this.input.index()) != PCAPNG_INTERFACE_DESCRIPTION)
+        break;
+      if (!nextBlock(null))
+        break;
+    }
+  }
+
+  // if_tsresol option: power of ten or (highest bit set) power of two, microseconds by default
+  private double timestampResolution(ByteBuffer buffer, int index, int end) {
+    while (index + 4 <= end) {
+      int code = u16(buffer, index);
+      int length = u16(buffer, index + 2);
+      if (code == PCAPNG_OPTION_END)
+        break;
+      if (code == PCAPNG_OPTION_TSRESOL && length >= 1) {
+        int resolution = buffer.get(index + 4) & 0xFF;
+        if ((resolution & 0x80) != 0)
+          return Math.pow(2, resolution & 0x7F);
+        return Math.pow(10, resolution);
+      }
+      index += 4 + ((length + 3) & ~3);
+    }
+    return 1e6;
+  }
+
+  // values in the capture's byte order
+  private int u32(ByteBuffer buffer, int index) {
+    int value = buffer.getInt(index);
+    return this.swapped ? Integer.reverseBytes(value) : value;
+  }
+
+  private int u16(ByteBuffer buffer, int index) {
+    short value = buffer.getShort(index);
+    return Short.toUnsignedInt(this.swapped ? Short.reverseBytes(value) : value);
+  }
+
+  /* continues at the given packet record (block), TCP reassembly starts over
+   * pcapng captures keep the interfaces read so far, so the offset has to be within the first section
+   */
+  @Override
+  public void seek(long offset) throws IOException {
+    this.input.seek(offset);
+    this.decoder.reset();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.input.close();
+  }
+}
@@ -0,0 +1,230 @@
+package dns_resolver_simulation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* memoized results of SimulationCache.proof(), keyed by canonical question name and type
+ * while a proof runs, the memo records what its result depends on: the generation of the cache's set of zones, the
+ * entries it looked into with their generations (see ResponseEntry.getGeneration), the wildcard records it looked up
+ * and the records it found; a memoized result is valid until one of these records expires (records arriving again
+ * are refreshed with their new expiry) and as long as no zone was added or dropped, no entry changed and no wildcard
+ * was replaced
+ * a hit reports the accesses of the original proof to the cache again, so eviction policies and the opt-out counter
+ * see the same as without the memo; hits and misses are counted in the given Statistics
+ * a memo is used by one thread only, a bounded LRU map keeps Constants.PROOF_MEMO_SIZE results
+ */
+public class ProofMemo {
+  // returned by get(...) if no valid result is memoized
+  public static final int MISSING = Integer.MIN_VALUE;
+
+  private static class Key {
+    private CanonicalName name;
+    private int type;
+    private int hash;
+
+    private Key set(CanonicalName name, int type) {
+      this.name = name;
+      this.type = type;
+      this.hash = name.hashCode() * 31 + type;
+      return this;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) return false;
+      Key key = (Key) other;
+      return this.hash == key.hash && this.type == key.type && this.name.equals(key.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+
+  private static class Proof {
+    private int result;
+    private long zones;
+    private ResponseEntry[] entries;
+    private int[] generations;
+    private CanonicalName[] wildcardNames;
+    private CachedWildcardRecord[] wildcards;
+    private CachedRecord[] found;
+    private CachedRecord[] accessed;
+    private int optOuts;
+  }
+
+  private LinkedHashMap<Key, Proof> proofs;
+  private Statistics statistics;
+  private Key probe;
+
+  // dependencies of the running proof
+  private long zones;
+  private ResponseEntry[] entries;
+  private int[] generations;
+  private int entryCount;
+  private CanonicalName[] wildcardNames;
+  private CachedWildcardRecord[] wildcards;
+  private int wildcardCount;
+  private CachedRecord[] found;
+  private int foundCount;
+  private CachedRecord[] accessed;
+  private int accessCount;
+  private int optOuts;
+
+  /* @params Statistics   statistics counting hits and misses
+   */
+  public ProofMemo(Statistics statistics) {
+    this.statistics = statistics;
+    // access order makes the map an LRU cache
+    this.proofs = new LinkedHashMap<Key, Proof>(1024, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Proof> eldest) {
+        return size() > Constants.PROOF_MEMO_SIZE;
+      }
+    };
+    this.probe = new Key();
+    this.entries = new ResponseEntry[3 * ZoneTrie.MAX_LABELS];
+    this.generations = new int[3 * ZoneTrie.MAX_LABELS];
+    this.wildcardNames = new CanonicalName[16];
+    this.wildcards = new CachedWildcardRecord[16];
+    this.found = new CachedRecord[16];
+    this.accessed = new CachedRecord[16];
+  }
+
+  /* memoized result of a proof, the accesses of the proof are reported to the cache again
+   * @params SimulationCache   cache the proof ran on
+   * @params CanonicalName     name of the question
+   * @params int               type of the question
+   * @params long              current tick
+   * @return int               result of the proof, MISSING if none is memoized or it is no longer valid
+   */
+  public int get(SimulationCache cache, CanonicalName name, int type, long currentTime) {
+    Proof proof = this.proofs.get(this.probe.set(name, type));
+    if (proof != null && !isValid(proof, cache, currentTime)) {
+      this.proofs.remove(this.probe);
+      proof = null;
+    }
+    if (proof == null) {
+      this.statistics.countProofMemoMiss();
+      return MISSING;
+    }
+
+    this.statistics.countProofMemoHit();
+    for (CachedRecord record : proof.accessed) {
+      cache.access(record);
+    }
+    for (int i = 0; i < proof.optOuts; i++) {
+      this.statistics.countOptOutInLookup();
+    }
+    return proof.result;
+  }
+
+  private static boolean isValid(Proof proof, SimulationCache cache, long currentTime) {
+    if (proof.zones != cache.getZoneGeneration())
+      return false;
+    for (int i = 0; i < proof.entries.length; i++) {
+      if (proof.entries[i].getGeneration() != proof.generations[i])
+        return false;
+    }
+    for (int i = 0; i < proof.wildcards.length; i++) {
+      if (cache.getWildcard(proof.wildcardNames[i]) != proof.wildcards[i])
+        return false;
+    }
+    return !expired(proof.found, currentTime) && !expired(proof.accessed, currentTime);
+  }
+
+  private static boolean expired(CachedRecord[] records, long currentTime) {
+    for (CachedRecord record : records) {
+      if (record.getExpiry() <= currentTime)
+        return true;
+    }
+    return false;
+  }
+
+  /* starts recording the dependencies of a proof
+   * @params long   generation of the cache's set of zones, read before the proof looks up anything
+   */
+  public void start(long zones) {
+    this.zones = zones;
+    Arrays.fill(this.entries, 0, this.entryCount, null);
+    Arrays.fill(this.wildcards, 0, this.wildcardCount, null);
+    Arrays.fill(this.found, 0, this.foundCount, null);
+    Arrays.fill(this.accessed, 0, this.accessCount, null);
+    this.entryCount = 0;
+    this.wildcardCount = 0;
+    this.foundCount = 0;
+    this.accessCount = 0;
+    this.optOuts = 0;
+  }
+
+  // entries resolved by the proof, their generations are read before their records
+  public void addEntries(ResponseEntry[] entries, int count) {
+    for (int i = 0; i < count && this.entryCount < this.entries.length; i++) {
+      this.generations[this.entryCount] = entries[i].getGeneration();
+      this.entries[this.entryCount++] = entries[i];
+    }
+  }
+
+  // a record the proof found without reporting it to the cache, null for none
+  public void addRecord(CachedRecord record) {
+    if (record == null)
+      return;
+    if (this.foundCount == this.found.length)
+      this.found = Arrays.copyOf(this.found, this.foundCount * 2);
+    this.found[this.foundCount++] = record;
+  }
+
+  // a record the proof reported to the cache, null for none
+  public void addAccess(CachedRecord record) {
+    if (record == null)
+      return;
+    if (this.accessCount == this.accessed.length)
+      this.accessed = Arrays.copyOf(this.accessed, this.accessCount * 2);
+    this.accessed[this.accessCount++] = record;
+  }
+
+  // a wildcard record the proof looked up, null if there was none
+  public void addWildcard(CanonicalName wildcardName, CachedWildcardRecord wildcard) {
+    if (this.wildcardCount == this.wildcards.length) {
+      this.wildcardNames = Arrays.copyOf(this.wildcardNames, this.wildcardCount * 2);
+      this.wildcards = Arrays.copyOf(this.wildcards, this.wildcardCount * 2);
+    }
+    this.wildcardNames[this.wildcardCount] = wildcardName;
+    this.wildcards[this.wildcardCount++] = wildcard;
+  }
+
+  public void addOptOut() {
+    this.optOuts++;
+  }
+
+  /* memoizes the result of the recorded proof
+   * @params CanonicalName   name of the question
+   * @params int             type of the question
+   * @params int             result of the proof
+   */
+  public void put(CanonicalName name, int type, int result) {
+    // a proof with more entries than recorded cannot be validated
+    if (this.entryCount == this.entries.length)
+      return;
+    Proof proof = new Proof();
+    proof.result = result;
+    proof.zones = this.zones;
+    proof.entries = Arrays.copyOf(this.entries, this.entryCount);
+    proof.generations = Arrays.copyOf(this.generations, this.entryCount);
+    proof.wildcardNames = Arrays.copyOf(this.wildcardNames, this.wildcardCount);
+    proof.wildcards = Arrays.copyOf(this.wildcards, this.wildcardCount);
+    proof.found = Arrays.copyOf(this.found, this.foundCount);
+    proof.accessed = Arrays.copyOf(this.accessed, this.accessCount);
+    proof.optOuts = this.optOuts;
+    this.proofs.put(new Key().set(name, type), proof);
+  }
+
+  public void clear() {
+    this.proofs.clear();
+  }
+
+}
@@ -4,6 +4,6 @@ import org.xbill.DNS.Record;
 
 public class QueryEntry {
   public Record question;
-  public double arrival;
+  public long arrival;
   public int cacheResponse;
 }
\ No newline at end of file
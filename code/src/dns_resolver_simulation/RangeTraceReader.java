@@ -0,0 +1,48 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+
+/* restricts a seekable reader to a time range and a byte range, the start is found through the TraceIndex
+ * frames before the start time are skipped, reading stops at the first frame after the end time or the end offset
+ */
+public class RangeTraceReader extends TraceReader {
+  private TraceReader reader;
+  private double from;
+  private double to;
+  private long endOffset;
+  private boolean finished;
+
+  /* @params TraceReader   seekable reader of the whole trace
+   * @params TraceIndex    index of the trace
+   * @params TraceRange    requested part of the trace
+   */
+  public RangeTraceReader(TraceReader reader, TraceIndex index, TraceRange range) throws IOException {
+    this.reader = reader;
+    this.from = range.getFrom();
+    this.to = range.getTo();
+    this.finished = false;
+
+    long startOffset = index.getChunkStart(range.getChunk(), range.getChunks());
+    this.endOffset = index.getChunkEnd(range.getChunk(), range.getChunks());
+    if (this.from != Double.NEGATIVE_INFINITY)
+      startOffset = Math.max(startOffset, index.getOffsetBefore(this.from));
+    this.reader.seek(startOffset);
+  }
+
+  @Override
+  public boolean next(TraceFrame frame) throws IOException {
+    while (!this.finished && this.reader.next(frame)) {
+      if (frame.getOffset() >= this.endOffset || frame.getTimestamp() >= this.to)
+        break;
+      if (frame.getTimestamp() >= this.from)
+        return true;
+    }
+    this.finished = true;
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.reader.close();
+  }
+}
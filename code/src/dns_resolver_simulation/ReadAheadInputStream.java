@@ -0,0 +1,126 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/* reads (and thereby decodes) the wrapped stream on a separate thread
+ * filled chunks are handed over through a bounded queue and recycled afterwards, so the consumer only copies bytes
+ * while the producer thread already decompresses the following ones
+ */
+public class ReadAheadInputStream extends InputStream {
+  private InputStream source;
+  private BlockingQueue<Chunk> filledChunks;
+  private BlockingQueue<Chunk> freeChunks;
+  private Chunk current;
+  private Thread producer;
+  private volatile boolean closed;
+
+  private static class Chunk {
+    byte[] data;
+    int length;
+    int position;
+    IOException error;
+
+    Chunk(int size) {
+      this.data = new byte[size];
+    }
+  }
+
+  public ReadAheadInputStream(InputStream source) {
+    this(source, Constants.READ_AHEAD_CHUNK_SIZE, Constants.READ_AHEAD_CHUNKS);
+  }
+
+  public ReadAheadInputStream(InputStream source, int chunkSize, int chunks) {
+    this.source = source;
+    this.filledChunks = new ArrayBlockingQueue<Chunk>(chunks);
+    this.freeChunks = new ArrayBlockingQueue<Chunk>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      this.freeChunks.add(new Chunk(chunkSize));
+    }
+    this.closed = false;
+    this.producer = new Thread(this::produce, "read-ahead");
+    this.producer.setDaemon(true);
+    this.producer.start();
+  }
+
+  private void produce() {
+    try {
+      while (!this.closed) {
+        Chunk chunk = this.freeChunks.take();
+        chunk.position = 0;
+        chunk.length = 0;
+        chunk.error = null;
+        try {
+          // fill the whole chunk unless the stream ends
+          int read = 0;
+          while (chunk.length < chunk.data.length
+            && (read = this.source.read(chunk.data, chunk.length, chunk.data.length - chunk.length)) >= 0) {
+            chunk.length += read;
+          }
+          if (chunk.length == 0 && read < 0) {
+            chunk.length = -1;
+          }
+        } catch (IOException e) {
+          chunk.error = e;
+        }
+        this.filledChunks.put(chunk);
+        if (chunk.length < 0 || chunk.error != null)
+          return;
+      }
+    } catch (InterruptedException e) {
+      // stream was closed
+    }
+  }
+
+  /* makes sure that the current chunk has bytes left
+   * @throws IOException   error of the producer or interruption while waiting
+   * @return boolean       false at the end of the stream
+   */
+  private boolean nextChunk() throws IOException {
+    if (this.current != null) {
+      if (this.current.length < 0)
+        return false;
+      if (this.current.position < this.current.length)
+        return true;
+      this.freeChunks.offer(this.current);
+    }
+
+    try {
+      this.current = this.filledChunks.take();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for read-ahead");
+    }
+    if (this.current.error != null)
+      throw this.current.error;
+    return this.current.length >= 0;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk())
+      return -1;
+    return Byte.toUnsignedInt(this.current.data[this.current.position++]);
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0)
+      return 0;
+    if (!nextChunk())
+      return -1;
+    int count = Math.min(length, this.current.length - this.current.position);
+    System.arraycopy(this.current.data, this.current.position, buffer, offset, count);
+    this.current.position += count;
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.producer.interrupt();
+    this.source.close();
+  }
+}
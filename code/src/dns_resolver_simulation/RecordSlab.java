@@ -0,0 +1,258 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/* off-heap store of cached NSEC and NSEC3 records (see SlabNSECRecord and SlabNSEC3Record), so a cache may hold
+ * far more records than the heap could; the records keep their owner (the key of their index) and the handle of
+ * their slot on the heap
+ * slots have fixed size classes (SLAB_MIN_SLOT bytes times a power of two) and are carved from pages of
+ * SLAB_PAGE_SIZE bytes, allocated with ByteBuffer.allocateDirect (store "direct", bounded by
+ * -XX:MaxDirectMemorySize) or mapped from a deleted temporary file in java.io.tmpdir (store "mapped", bounded by
+ * the disk); freed slots are reused by the next record of their class
+ * a handle is the index of the page (upper 32 bits) and the offset of the slot in the page (lower 32 bits)
+ * layout of a slot:
+ *   header:  size class (byte) | flags (byte) | RRSIG label count (byte, -1 without RRSIG)
+ *            | length of the owner (unsigned byte, 0 if kept on the heap) | length of next (short)
+ *            | words of the type bitmap (byte) | unused (byte) | number of types above the bitmap (short)
+ *   data:    owner (canonical wire format) | next (canonical wire format or raw hash)
+ *            | type bitmap (longs, bit t of word t / 64 for type t below TYPE_BITMAP_TYPES, see CachedNegativeRecord)
+ *            | sorted types above the bitmap (unsigned shorts)
+ */
+public class RecordSlab {
+  // flags of a slot
+  public static final int LAST_IN_CHAIN = 1;
+  public static final int OPT_OUT = 2;
+
+  private static final int HEADER_SIZE = 10;
+  private static final int CLASSES = 32;
+
+  private FileChannel channel;     // null for direct pages
+  private long fileSize;
+  private ArrayList<ByteBuffer> pages;
+  private int[][] classPages;      // pages carved into the slots of each size class, in order of their allocation
+  private int[] classPageCounts;
+  private int[] currentPages;      // index in classPages of the page new slots are carved from, -1 for none
+  private int[] nextOffsets;
+  private long[][] freeSlots;      // stack of freed handles of each size class
+  private int[] freeCounts;
+  private long reservedBytes;
+
+  private RecordSlab(FileChannel channel) {
+    this.channel = channel;
+    this.pages = new ArrayList<ByteBuffer>();
+    this.classPages = new int[CLASSES][];
+    this.classPageCounts = new int[CLASSES];
+    this.currentPages = new int[CLASSES];
+    this.nextOffsets = new int[CLASSES];
+    this.freeSlots = new long[CLASSES][];
+    this.freeCounts = new int[CLASSES];
+    Arrays.fill(this.currentPages, -1);
+  }
+
+  /* @params String             direct or mapped
+   * @throws RuntimeException   if the file of a mapped store cannot be created
+   * @return RecordSlab         empty store
+   */
+  public static RecordSlab create(String store) throws RuntimeException {
+    switch (store) {
+      case "direct":
+        return new RecordSlab(null);
+      case "mapped":
+        try {
+          File file = File.createTempFile("records", ".slab");
+          FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+          // the open channel keeps the data of the deleted file
+          if (!file.delete())
+            file.deleteOnExit();
+          return new RecordSlab(channel);
+        } catch (IOException e) {
+          throw new RuntimeException("Cannot create the file of a mapped record store", e);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown record store " + store);
+    }
+  }
+
+  private static int sizeClass(int length) {
+    int sizeClass = 0;
+    while ((Constants.SLAB_MIN_SLOT << sizeClass) < length) {
+      sizeClass++;
+    }
+    return sizeClass;
+  }
+
+  private ByteBuffer page(long handle) {
+    return this.pages.get((int) (handle >>> 32));
+  }
+
+  private static int offset(long handle) {
+    return (int) handle;
+  }
+
+  // handle of a free slot of the size class
+  private long allocate(int sizeClass) {
+    if (this.freeCounts[sizeClass] > 0)
+      return this.freeSlots[sizeClass][--this.freeCounts[sizeClass]];
+
+    int slotSize = Constants.SLAB_MIN_SLOT << sizeClass;
+    int current = this.currentPages[sizeClass];
+    if (current < 0 || this.nextOffsets[sizeClass] + slotSize > this.pages.get(this.classPages[sizeClass][current]).capacity()) {
+      // pages kept by clear() are carved again before new ones are added
+      current = ++this.currentPages[sizeClass];
+      if (current == this.classPageCounts[sizeClass])
+        addPage(sizeClass, Math.max(Constants.SLAB_PAGE_SIZE, slotSize));
+      this.nextOffsets[sizeClass] = 0;
+    }
+    long handle = ((long) this.classPages[sizeClass][current] << 32) | this.nextOffsets[sizeClass];
+    this.nextOffsets[sizeClass] += slotSize;
+    return handle;
+  }
+
+  private void addPage(int sizeClass, int size) {
+    ByteBuffer page;
+    if (this.channel == null) {
+      page = ByteBuffer.allocateDirect(size);
+    } else {
+      try {
+        page = this.channel.map(FileChannel.MapMode.READ_WRITE, this.fileSize, size);
+      } catch (IOException e) {
+        throw new RuntimeException("Cannot map " + size + " bytes of the record store", e);
+      }
+      this.fileSize += size;
+    }
+    this.pages.add(page);
+    this.reservedBytes += size;
+
+    int[] classPages = this.classPages[sizeClass];
+    if (classPages == null)
+      classPages = this.classPages[sizeClass] = new int[4];
+    else if (this.classPageCounts[sizeClass] == classPages.length)
+      classPages = this.classPages[sizeClass] = Arrays.copyOf(classPages, classPages.length * 2);
+    classPages[this.classPageCounts[sizeClass]++] = this.pages.size() - 1;
+  }
+
+  /* stores a record with the fields the proofs need
+   * @params int      flags (LAST_IN_CHAIN, OPT_OUT)
+   * @params int      label count of the RRSIG record, -1 if missing
+   * @params byte[]   owner name in canonical wire format, empty if kept on the heap
+   * @params byte[]   next owner name in canonical wire format (NSEC) or next hash (NSEC3)
+   * @params int[]    types of the record
+   * @return long     handle of the slot
+   */
+  public long add(int flags, int sigLabels, byte[] owner, byte[] next, int[] types) {
+    long[] bitmap = CachedNegativeRecord.toBitmap(types);
+    int[] highTypes = CachedNegativeRecord.toHighTypes(types);
+    int length = HEADER_SIZE + owner.length + next.length + bitmap.length * Long.BYTES + highTypes.length * Short.BYTES;
+    int sizeClass = sizeClass(length);
+    long handle = allocate(sizeClass);
+
+    ByteBuffer slot = page(handle).duplicate();
+    slot.position(offset(handle));
+    slot.put((byte) sizeClass);
+    slot.put((byte) flags);
+    slot.put((byte) sigLabels);
+    slot.put((byte) owner.length);
+    slot.putShort((short) next.length);
+    slot.put((byte) bitmap.length);
+    slot.put((byte) 0);
+    slot.putShort((short) highTypes.length);
+    slot.put(owner);
+    slot.put(next);
+    for (long word : bitmap) {
+      slot.putLong(word);
+    }
+    for (int type : highTypes) {
+      slot.putShort((short) type);
+    }
+    return handle;
+  }
+
+  // the slot may be reused by the next record of its size class
+  public void free(long handle) {
+    int sizeClass = page(handle).get(offset(handle));
+    long[] stack = this.freeSlots[sizeClass];
+    if (stack == null)
+      stack = this.freeSlots[sizeClass] = new long[16];
+    else if (this.freeCounts[sizeClass] == stack.length)
+      stack = this.freeSlots[sizeClass] = Arrays.copyOf(stack, stack.length * 2);
+    stack[this.freeCounts[sizeClass]++] = handle;
+  }
+
+  public int getFlags(long handle) {
+    return page(handle).get(offset(handle) + 1);
+  }
+
+  // label count of the RRSIG record, -1 if the record has none
+  public int getSigLabels(long handle) {
+    return page(handle).get(offset(handle) + 2);
+  }
+
+  public byte[] getOwner(long handle) {
+    ByteBuffer page = page(handle);
+    return read(page, offset(handle) + HEADER_SIZE, page.get(offset(handle) + 3) & 0xFF);
+  }
+
+  public byte[] getNext(long handle) {
+    ByteBuffer page = page(handle);
+    return read(page, offset(handle) + HEADER_SIZE + (page.get(offset(handle) + 3) & 0xFF), page.getShort(offset(handle) + 4));
+  }
+
+  // position of the type bitmap in the page
+  private static int bitmapPosition(ByteBuffer page, long handle) {
+    return offset(handle) + HEADER_SIZE + (page.get(offset(handle) + 3) & 0xFF) + page.getShort(offset(handle) + 4);
+  }
+
+  public boolean containsType(long handle, int type) {
+    ByteBuffer page = page(handle);
+    int words = page.get(offset(handle) + 6);
+    if (type < Constants.TYPE_BITMAP_TYPES) {
+      int word = type / Long.SIZE;
+      return word < words && (page.getLong(bitmapPosition(page, handle) + word * Long.BYTES) & (1L << type)) != 0;
+    }
+    int position = bitmapPosition(page, handle) + words * Long.BYTES;
+    for (int i = page.getShort(offset(handle) + 8); i > 0; i--, position += Short.BYTES) {
+      if ((page.getShort(position) & 0xFFFF) == type)
+        return true;
+    }
+    return false;
+  }
+
+  public int[] getTypes(long handle) {
+    ByteBuffer page = page(handle);
+    long[] bitmap = new long[page.get(offset(handle) + 6)];
+    int[] highTypes = new int[page.getShort(offset(handle) + 8)];
+    int position = bitmapPosition(page, handle);
+    for (int word = 0; word < bitmap.length; word++, position += Long.BYTES) {
+      bitmap[word] = page.getLong(position);
+    }
+    for (int i = 0; i < highTypes.length; i++, position += Short.BYTES) {
+      highTypes[i] = page.getShort(position) & 0xFFFF;
+    }
+    return CachedNegativeRecord.fromBitmap(bitmap, highTypes);
+  }
+
+  private static byte[] read(ByteBuffer page, int position, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer slot = page.duplicate();
+    slot.position(position);
+    slot.get(bytes);
+    return bytes;
+  }
+
+  // bytes of all pages, used or free
+  public long getReservedBytes() {
+    return this.reservedBytes;
+  }
+
+  // drops all records, the pages are kept for the next ones
+  public void clear() {
+    Arrays.fill(this.freeCounts, 0);
+    Arrays.fill(this.currentPages, -1);
+  }
+}
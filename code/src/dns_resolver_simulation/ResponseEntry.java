@@ -1,42 +1,316 @@
 package dns_resolver_simulation;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.xbill.DNS.NSEC3Record;
 import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
 import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
 
+/* cached NSEC and NSEC3 records of one zone
+ * NSEC records are indexed by their canonical owner name, so the record owning a name and the record covering it
+ * (its predecessor in the chain) are found by one lookup each; records at the end of a chain (next name before the
+ * owner name) are indexed a second time, because they cover names after their owner name
+ * NSEC3 records are kept in one NSEC3Ring per set of hash parameters, sorted by their raw owner hashes
+ * every record is scheduled in the TimerWheel of the cache, which removes it at its expiry (see remove(...))
+ * with a RecordSlab, the records keep only their keys on the heap (see SlabNSECRecord and SlabNSEC3Record)
+ * entries of a ConcurrentSimulationCache are read without locks while the lock of their stripe is held for changes,
+ * so their records are kept in skip lists and their rings in a copy-on-write list
+ */
 public class ResponseEntry {
-  private HashMap<String, CachedNegativeRecord> recordsList;
+  // lengths of records in checkpoints, which are no wire format
+  private static final int MISSING = -1;
+  private static final int EMPTY_RDATA = -2;
+
+  private NavigableMap<CanonicalName, CachedNSECRecord> nsecRecords;
+  private NavigableMap<CanonicalName, CachedNSECRecord> lastNsecRecords;
+  private List<NSEC3Ring> nsec3Rings;
+  private CanonicalName zone;
+  private NSEC3HashCache hashCache;
+  private TimerWheel timerWheel;
+  private RecordSlab slab;
+  private boolean concurrent;
+  // changed after every change of the records, written under the lock of a concurrent entry (see ProofMemo)
+  private volatile int generation;
   
-  public ResponseEntry() {
-    recordsList = new HashMap<String, CachedNegativeRecord>();
+  /* @params CanonicalName    zone of the entry
+   * @params NSEC3HashCache   cache handed to the NSEC3 records of the entry, null for the cache of the current thread
+   * @params TimerWheel       wheel the records are scheduled in
+   * @params RecordSlab       off-heap store of the records, null to keep them on the heap
+   * @params boolean          true if the entry is read by several threads
+   */
+  public ResponseEntry(CanonicalName zone, NSEC3HashCache hashCache, TimerWheel timerWheel, RecordSlab slab, boolean concurrent) {
+    this.zone = zone;
+    this.hashCache = hashCache;
+    this.timerWheel = timerWheel;
+    this.slab = slab;
+    this.concurrent = concurrent;
+    if (concurrent) {
+      nsecRecords = new ConcurrentSkipListMap<CanonicalName, CachedNSECRecord>();
+      lastNsecRecords = new ConcurrentSkipListMap<CanonicalName, CachedNSECRecord>();
+      nsec3Rings = new CopyOnWriteArrayList<NSEC3Ring>();
+    } else {
+      nsecRecords = new TreeMap<CanonicalName, CachedNSECRecord>();
+      lastNsecRecords = new TreeMap<CanonicalName, CachedNSECRecord>();
+      nsec3Rings = new ArrayList<NSEC3Ring>(1);
+    }
   }
   
-  public void add(NSECRecord record, RRSIGRecord sigRecord, double arrival, double ttl) {
-    CachedNegativeRecord cachedNsecRecord = new CachedNSECRecord(record, sigRecord, arrival, ttl);
-    String key = record.getName().canonicalize().toString();
-    recordsList.put(key, cachedNsecRecord);
+  // negative TTL in seconds, the expiry tick is computed once here
+  public void add(NSECRecord record, RRSIGRecord sigRecord, long arrival, long ttl) {
+    add(record, sigLabels(sigRecord), arrival, arrival + ttl * Constants.TICKS_PER_SECOND);
+  }
+
+  public void add(NSEC3Record record, RRSIGRecord sigRecord, long arrival, long ttl) {
+    add(record, sigLabels(sigRecord), arrival, arrival + ttl * Constants.TICKS_PER_SECOND);
+  }
+
+  // only the label count of the RRSIG record is cached (see SimulationCache.proof)
+  private static int sigLabels(RRSIGRecord sigRecord) {
+    return sigRecord != null ? sigRecord.getLabels() : -1;
+  }
+
+  private void add(NSECRecord record, int sigLabels, long arrival, long expiry) {
+    CachedNSECRecord cachedNsecRecord = this.slab == null
+      ? new CachedNSECRecord(record, sigLabels, arrival, expiry)
+      : new SlabNSECRecord(record, sigLabels, arrival, expiry, this.slab);
+    CanonicalName key = cachedNsecRecord.getOwner();
+    if (refresh(nsecRecords.get(key), cachedNsecRecord))
+      return;
+    cachedNsecRecord.setEntry(this);
+    replace(nsecRecords.put(key, cachedNsecRecord));
+    if (cachedNsecRecord.isLastInChain())
+      lastNsecRecords.put(key, cachedNsecRecord);
+    else
+      lastNsecRecords.remove(key);
+    timerWheel.schedule(cachedNsecRecord);
+    generation++;
+  }
+
+  private void add(NSEC3Record record, int sigLabels, long arrival, long expiry) {
+    EnhancedNSEC3Record enhancedRecord = new EnhancedNSEC3Record(record, this.hashCache);
+    // records whose owner name is no hash cannot be found by any hash and are not cached
+    if (enhancedRecord.getOwnerHash() == null)
+      return;
+    NSEC3Ring ring = getNSEC3Ring(enhancedRecord);
+    CachedNSEC3Record cachedNsec3Record = this.slab == null
+      ? new CachedNSEC3Record(enhancedRecord, sigLabels, arrival, expiry, ring)
+      : new SlabNSEC3Record(enhancedRecord, sigLabels, arrival, expiry, ring, this.slab);
+    if (refresh(ring.get(cachedNsec3Record.getOwnerHash()), cachedNsec3Record))
+      return;
+    cachedNsec3Record.setEntry(this);
+    replace(ring.add(cachedNsec3Record));
+    timerWheel.schedule(cachedNsec3Record);
+    generation++;
+  }
+
+  // ring of the hash parameters, a new one if there is none yet
+  private NSEC3Ring getNSEC3Ring(EnhancedNSEC3Record parameters) {
+    for (NSEC3Ring ring : nsec3Rings) {
+      if (ring.hasParameters(parameters))
+        return ring;
+    }
+    NSEC3Ring ring = new NSEC3Ring(parameters, this.concurrent);
+    nsec3Rings.add(ring);
+    return ring;
+  }
+
+  /* a record arriving again with the same data refreshes the cached one, which keeps its identity, so the entry
+   * does not change (see getGeneration()); an expired record is replaced, lookups skipped it
+   * @params CachedNegativeRecord   cached record with the key of the new one, null if there is none
+   * @params CachedNegativeRecord   new record, released if the cached one was refreshed
+   * @return boolean                true if the cached record was refreshed
+   */
+  private boolean refresh(CachedNegativeRecord cached, CachedNegativeRecord record) {
+    if (cached == null || cached.getExpiry() <= record.getArrival() || !cached.hasSameData(record))
+      return false;
+    timerWheel.cancel(cached);
+    cached.refresh(record.getArrival(), record.getExpiry());
+    timerWheel.schedule(cached);
+    record.release();
+    return true;
+  }
+
+  // a record replaced by a newer one with the same key leaves the cache before its expiry
+  private void replace(CachedNegativeRecord record) {
+    if (record == null)
+      return;
+    timerWheel.cancel(record);
+    record.release();
   }
-    
-  public void add(NSEC3Record record, RRSIGRecord sigRecord, double arrival, double ttl) {
-    CachedNegativeRecord cachedNsec3Record = new CachedNSEC3Record(record, sigRecord, arrival, ttl);
-    String key = record.getName().canonicalize().toString();
-    recordsList.put(key, cachedNsec3Record);
+
+  /* removes an expired record (see TimerWheel), rings without records are dropped
+   * @params CachedNegativeRecord   record of this entry
+   */
+  public void remove(CachedNegativeRecord record) {
+    if (record instanceof CachedNSECRecord) {
+      CanonicalName key = ((CachedNSECRecord) record).getOwner();
+      nsecRecords.remove(key, record);
+      lastNsecRecords.remove(key, record);
+      record.release();
+      generation++;
+      return;
+    }
+
+    CachedNSEC3Record nsec3Record = (CachedNSEC3Record) record;
+    NSEC3Ring ring = nsec3Record.getRing();
+    ring.remove(nsec3Record);
+    if (ring.isEmpty())
+      nsec3Rings.remove(ring);
+    record.release();
+    generation++;
+  }
+
+  public int getGeneration() {
+    return generation;
+  }
+
+  private static boolean expired(CachedRecord record, long currentTime) {
+    return record.getExpiry() <= currentTime;
+  }
+
+  /* NSEC record whose owner name is the given name, expired ones are skipped (the TimerWheel removes them)
+   * @params CanonicalName   name
+   * @params long            current tick
+   * @return CachedNegativeRecord   the record, null if there is none
+   */
+  public CachedNegativeRecord getMatchingNSEC(CanonicalName needle, long currentTime) {
+    CachedNSECRecord record = nsecRecords.get(needle);
+    if (record != null && expired(record, currentTime))
+      return null;
+    return record;
+  }
+
+  /* NSEC record covering the given name: its predecessor in canonical order or a record at the end of a chain
+   * expired predecessors are skipped, so the lookup continues with the record before them
+   * @params CanonicalName   name
+   * @params long            current tick
+   * @return CachedNegativeRecord   the record, null if there is none
+   */
+  public CachedNegativeRecord getCoveringNSEC(CanonicalName needle, long currentTime) {
+    Map.Entry<CanonicalName, CachedNSECRecord> predecessor = nsecRecords.lowerEntry(needle);
+    while (predecessor != null && expired(predecessor.getValue(), currentTime)) {
+      predecessor = nsecRecords.lowerEntry(predecessor.getKey());
+    }
+    if (predecessor != null && predecessor.getValue().inbetween(needle))
+      return predecessor.getValue();
+
+    // records at the end of a chain cover names before their owner name (see EnhancedNSECRecord.inBetween)
+    for (CachedNSECRecord record : lastNsecRecords.tailMap(needle, false).values()) {
+      if (!expired(record, currentTime) && record.inbetween(needle))
+        return record;
+    }
+    return null;
   }
 
   public boolean isEmpty() {
-    return this.recordsList.isEmpty();
+    return this.nsecRecords.isEmpty() && this.nsec3Rings.isEmpty();
+  }
+
+  public CanonicalName getZone() {
+    return this.zone;
+  }
+
+  public List<NSEC3Ring> getNSEC3Rings() {
+    return this.nsec3Rings;
   }
 
-  public Iterator<Map.Entry<String, CachedNegativeRecord>> getIterator() {
-    return this.recordsList.entrySet().iterator();
+  /* writes the cached records in wire format together with the label count of their RRSIG, arrival and expiry
+   * (see Checkpoint)
+   * @params DataOutputStream   stream of the checkpoint
+   * @throws IOException
+   */
+  public void writeState(DataOutputStream out) throws IOException {
+    int records = this.nsecRecords.size();
+    for (NSEC3Ring ring : this.nsec3Rings) {
+      records += ring.size();
+    }
+    out.writeInt(records);
+    for (CachedNegativeRecord record : this.nsecRecords.values()) {
+      writeCachedRecord(out, record);
+    }
+    for (NSEC3Ring ring : this.nsec3Rings) {
+      for (CachedNegativeRecord record : ring.getRecords()) {
+        writeCachedRecord(out, record);
+      }
+    }
   }
 
-  public Collection<CachedNegativeRecord> getRecords() {
-    return this.recordsList.values();
+  private static void writeCachedRecord(DataOutputStream out, CachedNegativeRecord record) throws IOException {
+    writeRecord(out, record.toRecord());
+    out.writeByte(record.getSigLabels());
+    out.writeLong(record.getArrival());
+    out.writeLong(record.getExpiry());
   }
+
+  /* restores records written by writeState(...)
+   * @params DataInputStream   stream of the checkpoint
+   * @params long              added to every arrival and expiry tick (warm start with another trace)
+   * @throws IOException       if a record is neither NSEC nor NSEC3
+   */
+  public void readState(DataInputStream in, long shift) throws IOException {
+    int records = in.readInt();
+    for (int i = 0; i < records; i++) {
+      Record record = readRecord(in);
+      int sigLabels = in.readByte();
+      long arrival = in.readLong() + shift;
+      long expiry = in.readLong() + shift;
+      if (record instanceof NSECRecord)
+        add((NSECRecord) record, sigLabels, arrival, expiry);
+      else if (record instanceof NSEC3Record)
+        add((NSEC3Record) record, sigLabels, arrival, expiry);
+      else
+        throw new IOException("Unexpected record in checkpoint: " + record);
+    }
+  }
+
+  /* writes a record in wire format, records without rdata (e.g. wildcards of compact traces) are written as
+   * owner, type, class and TTL, because parsing them from wire format fails
+   */
+  static void writeRecord(DataOutputStream out, Record record) throws IOException {
+    if (record.rdataToWireCanonical().length == 0) {
+      byte[] name = record.getName().toWire();
+      out.writeInt(EMPTY_RDATA);
+      out.writeShort(name.length);
+      out.write(name);
+      out.writeShort(record.getType());
+      out.writeShort(record.getDClass());
+      out.writeLong(record.getTTL());
+      return;
+    }
+
+    byte[] wire = record.toWire(Section.ANSWER);
+    out.writeInt(wire.length);
+    out.write(wire);
+  }
+
+  // returns null for a missing record
+  static Record readRecord(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == MISSING)
+      return null;
+    if (length == EMPTY_RDATA) {
+      byte[] name = new byte[in.readUnsignedShort()];
+      in.readFully(name);
+      int type = in.readUnsignedShort();
+      int dclass = in.readUnsignedShort();
+      return Record.newRecord(new Name(name), type, dclass, in.readLong());
+    }
+
+    byte[] wire = new byte[length];
+    in.readFully(wire);
+    return Record.fromWire(wire, Section.ANSWER);
+  }
+
 }
@@ -0,0 +1,74 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* replays several trace segments (e.g. hourly rotated files) as one logical trace
+ * segments are ordered by the timestamp of their first frame and opened one after another, so only one segment
+ * is open at a time; the consumer sees a single continuous sequence of frames
+ */
+public class SegmentedTraceReader extends TraceReader {
+  private List<File> segments;
+  private int segmentIndex;
+  private TraceReader current;
+
+  public SegmentedTraceReader(List<File> files) throws IOException {
+    this.segments = orderByFirstTimestamp(files);
+    this.segmentIndex = 0;
+    this.current = null;
+  }
+
+  /* orders the segments by the timestamp of their first frame, empty segments are dropped
+   * @params List<File>    segments in any order
+   * @throws IOException
+   * @return List<File>    segments in replay order
+   */
+  private static List<File> orderByFirstTimestamp(List<File> files) throws IOException {
+    Map<File, Double> firstTimestamps = new HashMap<File, Double>();
+    TraceFrame frame = new TraceFrame();
+    for (File file : files) {
+      TraceReader reader = TraceReader.openSegment(file);
+      if (reader.next(frame))
+        firstTimestamps.put(file, frame.getTimestamp());
+      reader.close();
+    }
+
+    List<File> ordered = new ArrayList<File>(firstTimestamps.keySet());
+    ordered.sort(Comparator.comparing((File file) -> firstTimestamps.get(file)).thenComparing(File::getName));
+    return ordered;
+  }
+
+  public List<File> getSegments() {
+    return this.segments;
+  }
+
+  @Override
+  public boolean next(TraceFrame frame) throws IOException {
+    while (true) {
+      if (this.current == null) {
+        if (this.segmentIndex >= this.segments.size())
+          return false;
+        this.current = TraceReader.openSegment(this.segments.get(this.segmentIndex++));
+      }
+
+      if (this.current.next(frame))
+        return true;
+
+      this.current.close();
+      this.current = null;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.current != null) {
+      this.current.close();
+      this.current = null;
+    }
+  }
+}
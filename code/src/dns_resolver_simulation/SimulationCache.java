@@ -1,8 +1,9 @@
 package dns_resolver_simulation;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 
 import org.xbill.DNS.NSEC3Record;
 import org.xbill.DNS.NSECRecord;
@@ -11,287 +12,399 @@ import org.xbill.DNS.NameTooLongException;
 import org.xbill.DNS.RRSIGRecord;
 import org.xbill.DNS.Record;
 import org.xbill.DNS.Section;
-import org.xbill.DNS.Type;
 
 public class SimulationCache {
-  private HashMap<String, ResponseEntry> cache;
-  private HashMap<String, CachedWildcardRecord> wildcardCache;
+  private static final NSECRecord[] NO_NSEC_RECORDS = new NSECRecord[0];
+  private static final NSEC3Record[] NO_NSEC3_RECORDS = new NSEC3Record[0];
+
+  private ZoneTrie cache;
+  private HashMap<CanonicalName, CachedWildcardRecord> wildcardCache;
   private DNSMessageUtilities messageUtils;
   private Statistics statistics;
+  private SimulationConfig config;
+  // results of ZoneTrie.resolve, one array per caller because proof() calls the others while iterating
+  private ResponseEntry[] proofEntries;
+  private ResponseEntry[] coverEntries;
+  private ResponseEntry[] belongingEntries;
+  private NSEC3HashCache hashCache;
+  private TimerWheel timerWheel;
+  // null for a cache without capacity
+  private EvictionPolicy evictionPolicy;
+  // null for records kept on the heap
+  private RecordSlab slab;
+  // null if the configuration disables it
+  private ProofMemo memo;
 
   public SimulationCache(DNSMessageUtilities messageUtils, Statistics statistics) {
+    this(messageUtils, statistics, SimulationConfig.defaults());
+  }
+
+  public SimulationCache(DNSMessageUtilities messageUtils, Statistics statistics, SimulationConfig config) {
+    // NSEC3 hashes are shared by the cached records and the response types of the instance's messages
+    this(messageUtils, statistics, config, new NSEC3HashCache(statistics));
+    // records are removed at their expiry, the wheel follows the time of the instance's messages
+    this.timerWheel = new TimerWheel(this::expire);
+    if (!config.getStore().equals("heap"))
+      this.slab = RecordSlab.create(config.getStore());
+    this.cache = new ZoneTrie(this.hashCache, this.timerWheel, this.slab, statistics);
+    this.messageUtils.setTimerWheel(this.timerWheel);
+    if (config.isBounded()) {
+      this.evictionPolicy = EvictionPolicy.create(config.getEviction(), statistics);
+      this.timerWheel.setEvictionPolicy(this.evictionPolicy);
+    }
+    this.wildcardCache = new HashMap<CanonicalName, CachedWildcardRecord>();
+  }
+
+  // front end of a cache whose records are kept by the subclass (see ConcurrentSimulationCache)
+  protected SimulationCache(DNSMessageUtilities messageUtils, Statistics statistics, SimulationConfig config, NSEC3HashCache hashCache) {
     this.messageUtils = messageUtils;
     this.statistics = statistics;
-    this.cache = new HashMap<String, ResponseEntry>();
-    this.wildcardCache = new HashMap<String, CachedWildcardRecord>();
+    this.config = config;
+    this.hashCache = hashCache;
+    this.messageUtils.setHashCache(hashCache);
+    this.proofEntries = new ResponseEntry[ZoneTrie.MAX_LABELS];
+    this.coverEntries = new ResponseEntry[ZoneTrie.MAX_LABELS];
+    this.belongingEntries = new ResponseEntry[ZoneTrie.MAX_LABELS];
+    if (config.isMemoEnabled())
+      this.memo = new ProofMemo(statistics);
   }
 
-  /* initial call of recursive obtain function: obtains the key for saving ResponseEntry with NSEC records in the cache
-   * @params NSECRecord  its name and next will be used
-   * @return String      key obtained from name and next
-   */
-  private String obtainSavingKey(NSECRecord record) {
-    Name name = record.getName().canonicalize();
-    Name next = record.getNext().canonicalize();
-    String equalSuffix = obtainEqualSuffix(name, next, 1);
-    if (equalSuffix.isEmpty())
-      return ".";
+  public NSEC3HashCache getHashCache() {
+    return this.hashCache;
+  }
 
-    return equalSuffix;
+  protected Statistics getStatistics() {
+    return this.statistics;
   }
 
-  /* initial call of recursive obtain function: obtains the key for saving ResponseEntry with NSEC3 records in the cache
-   * @params NSEC3Record        its name and next will be used
-   * @throws RuntimeException   source: this.messageUtilities.getQuestion()
-   * @return String             key obtained from name and next
-   */
-  private String obtainSavingKey(NSEC3Record record) throws RuntimeException {
-    Name name = record.getName().canonicalize();
-    Name questionName = this.messageUtils.getQuestion().getName().canonicalize();
-    String equalSuffix = obtainEqualSuffix(name, questionName, 1);
-    if (equalSuffix.isEmpty())
-      return ".";
-      
-    return equalSuffix;
-  }
-
-  /* finds equal suffix (starting from right) of name and next and returns it (used as key for the cache)
-   * @params Name, Name, int   name and next to get labels from, int for decreasing index
-   * @return String            key
+  /* obtains the zone for saving ResponseEntry with NSEC records in the cache
+   * @params CanonicalName   name of the record
+   * @params NSECRecord      its next will be used
+   * @return int         number of labels of the zone (the equal suffix of name and next)
    */
-  private String obtainEqualSuffix(Name name, Name next, int drawBack) {
-    int nameIndex = name.labels() - drawBack;
-    int nextIndex = next.labels() - drawBack;
-
-    if (nameIndex < 0 || nextIndex < 0) return "";
-
-    String nameLabel = name.getLabelString(nameIndex);
+  private int obtainSavingLabels(CanonicalName name, NSECRecord record) {
+    return name.commonSuffixLabels(CanonicalName.of(record.getNext()));
+  }
 
-    if (nameIndex - 1 >= 0 && nextIndex - 1 >= 0) {
-      String followingNameLabel = name.getLabelString(nameIndex - 1);
-      String followingNextLabel = next.getLabelString(nextIndex - 1);
-      if (followingNameLabel.equals(followingNextLabel)) {
-        return obtainEqualSuffix(name, next, drawBack + 1) + "." + nameLabel;
-      }
-    }
-    return nameLabel;
+  /* obtains the zone for saving ResponseEntry with NSEC3 records in the cache
+   * @params CanonicalName      name of the record
+   * @params CanonicalName      name of the question
+   * @return int                number of labels of the zone (the equal suffix of name and question)
+   */
+  private int obtainSavingLabels(CanonicalName name, CanonicalName questionName) {
+    return name.commonSuffixLabels(questionName);
   }
 
-  private String obtainWildcardKey(Record wildcard) {
+  /* the wildcard a synthesized answer was expanded from: its name without the labels the RRSIG does not count,
+   * below the label "*"
+   * @params Record             answer synthesized from a wildcard (see DNSMessageUtilities.getWildcards())
+   * @throws RuntimeException   the wildcard name is too long, cannot happen as at least one label is removed
+   * @return CanonicalName      key of the record in the wildcard cache
+   */
+  private CanonicalName obtainWildcardKey(Record wildcard) throws RuntimeException {
     Name wildcardName = wildcard.getName();
     RRSIGRecord rrsig = this.messageUtils.getRRSIGRecord(wildcardName, Section.ANSWER, wildcard.getType());
-    return "*." + RecordUtilities.getCustomLabelString(wildcardName, wildcardName.labels() - 1 - rrsig.getLabels());
+    try {
+      return CanonicalName.of(wildcardName).ancestor(wildcardName.labels() - 1 - rrsig.getLabels()).wildcard();
+    } catch (NameTooLongException e) {
+      throw new RuntimeException("Wildcard name too long");
+    }
   }
 
   /* adds all NSEC records in the current selected DNS message (-> DNSMessageUtilities) to the cache
-   * @throws RuntimeException   source: obtainSavingKey(NSEC3Record)->this.messageUtilities.getQuestion()
+   * NSEC or NSEC3 records are skipped if the configuration disables them
+   * @throws RuntimeException   source: this.messageUtilities.getQuestion()
    */
   public void add() throws RuntimeException {
-    double arrival = this.messageUtils.getCurrentTime();
+    long arrival = this.messageUtils.getCurrentTime();
     // add NSEC Records to cache
-    for (NSECRecord nsecRecord : this.messageUtils.getAllNSECRecords()) {
-      String key = obtainSavingKey(nsecRecord);
-      ResponseEntry foundResponseEntry = this.cache.get(key);
-      double ttl = this.messageUtils.obtainNegativeTTL(nsecRecord.getTTL());
+    for (NSECRecord nsecRecord : this.config.isNsecEnabled() ? this.messageUtils.getAllNSECRecords() : NO_NSEC_RECORDS) {
+      CanonicalName name = CanonicalName.of(nsecRecord.getName());
+      long ttl = this.messageUtils.obtainNegativeTTL(nsecRecord.getTTL());
       RRSIGRecord sigRecord = this.messageUtils.getRRSIGRecord(nsecRecord.getName(), Section.AUTHORITY, nsecRecord.getType());
 
-      // if cache entry exists, add record to its list otherwise create new entry
-      if (foundResponseEntry != null) {
-        foundResponseEntry.add(nsecRecord, sigRecord, arrival, ttl);
-        this.statistics.countNsecCache();
-      } else {
-        ResponseEntry responseEntry = new ResponseEntry();
-        responseEntry.add(nsecRecord, sigRecord, arrival, ttl);
-        this.statistics.countNsecCache();
-        this.cache.put(key, responseEntry);
-      }
+      add(name, obtainSavingLabels(name, nsecRecord), nsecRecord, sigRecord, arrival, ttl);
+      this.statistics.countNsecCache();
     }
 
     // add NSEC3 Records to cache
-    for (NSEC3Record nsec3Record : this.messageUtils.getAllNSEC3Records()) {
-      String key = obtainSavingKey(nsec3Record);
-      ResponseEntry foundResponseEntry = this.cache.get(key);
-      double ttl = this.messageUtils.obtainNegativeTTL(nsec3Record.getTTL());
+    CanonicalName questionName = null;
+    for (NSEC3Record nsec3Record : this.config.isNsec3Enabled() ? this.messageUtils.getAllNSEC3Records() : NO_NSEC3_RECORDS) {
+      if (questionName == null)
+        questionName = CanonicalName.of(this.messageUtils.getQuestion().getName());
+      CanonicalName name = CanonicalName.of(nsec3Record.getName());
+      long ttl = this.messageUtils.obtainNegativeTTL(nsec3Record.getTTL());
       RRSIGRecord sigRecord = this.messageUtils.getRRSIGRecord(nsec3Record.getName(), Section.AUTHORITY, nsec3Record.getType());
 
-      // if cache entry exists, add record to its list otherwise create new entry
-      if (foundResponseEntry != null) {
-        foundResponseEntry.add(nsec3Record, sigRecord, arrival, ttl);
-        this.statistics.countNsec3Cache();
-        if (nsec3Record.getFlags() == NSEC3Record.Flags.OPT_OUT)
-          this.statistics.countOptOutInSaving();
-      } else {
-        ResponseEntry responseEntry = new ResponseEntry();
-        responseEntry.add(nsec3Record, sigRecord, arrival, ttl);
-        this.cache.put(key, responseEntry);
-        this.statistics.countNsec3Cache();
-        if (nsec3Record.getFlags() == NSEC3Record.Flags.OPT_OUT)
-          this.statistics.countOptOutInSaving();
-      }
+      add(name, obtainSavingLabels(name, questionName), nsec3Record, sigRecord, arrival, ttl);
+      this.statistics.countNsec3Cache();
+      if (nsec3Record.getFlags() == NSEC3Record.Flags.OPT_OUT)
+        this.statistics.countOptOutInSaving();
     }
 
+    evict();
+
+  }
+
+  /* adds a record to the entry of its zone, the cache creates the zone's entry if it does not exist yet
+   * @params CanonicalName   owner name of the record
+   * @params int             number of labels of the zone (see obtainSavingLabels(...))
+   */
+  protected void add(CanonicalName name, int zoneLabels, NSECRecord record, RRSIGRecord sigRecord, long arrival, long ttl) {
+    this.cache.entry(name, zoneLabels).add(record, sigRecord, arrival, ttl);
+  }
+
+  protected void add(CanonicalName name, int zoneLabels, NSEC3Record record, RRSIGRecord sigRecord, long arrival, long ttl) {
+    this.cache.entry(name, zoneLabels).add(record, sigRecord, arrival, ttl);
   }
 
   public void addWildcard() {
     for (Record wildcard : this.messageUtils.getWildcards()) {
-      CachedWildcardRecord wildcardRecord = new CachedWildcardRecord(wildcard, this.messageUtils.getCurrentTime());
-      this.wildcardCache.put(obtainWildcardKey(wildcard), wildcardRecord);
+      addWildcard(new CachedWildcardRecord(wildcard, this.messageUtils.getCurrentTime(), obtainWildcardKey(wildcard)));
       this.statistics.countWildcardCache();
     }
+    evict();
+  }
+
+  protected void addWildcard(CachedWildcardRecord wildcardRecord) {
+    this.timerWheel.cancel(this.wildcardCache.put(wildcardRecord.getKey(), wildcardRecord));
+    this.timerWheel.schedule(wildcardRecord);
+  }
+
+  // removes an expired record (see TimerWheel)
+  private void expire(CachedRecord record) {
+    remove(record);
+    this.statistics.countExpiredRecord();
+  }
+
+  // evicts records chosen by the eviction policy while the cache exceeds its capacity in records or bytes
+  private void evict() {
+    if (this.evictionPolicy == null)
+      return;
+    while (this.evictionPolicy.size() > 0
+      && (this.evictionPolicy.size() > this.config.getCapacity() || this.evictionPolicy.getBytes() > this.config.getMemory()))
+    {
+      CachedRecord victim = this.evictionPolicy.evict();
+      this.timerWheel.cancel(victim);
+      remove(victim);
+      this.statistics.countEviction();
+    }
+  }
+
+  // wildcard record cached under the given name, null if there is none
+  protected CachedWildcardRecord getWildcard(CanonicalName wildcardName) {
+    return this.wildcardCache.get(wildcardName);
+  }
+
+  // changed whenever a zone is added to or dropped from the cache (see ProofMemo)
+  protected long getZoneGeneration() {
+    return this.cache.getGeneration();
+  }
+
+  // a lookup used the record, null for none
+  protected void access(CachedRecord record) {
+    if (this.evictionPolicy != null && record != null)
+      this.evictionPolicy.access(record);
   }
 
-  /* search for a given name in the cache, remove the most left label after each iteration and redo lookup
-   * @params Name                         name, which shall be used for the lookup
-   * @return Map<String, ResponseEntry>   map of all found ResponseEntries with their corresponding key from the cache
+  /* removes a record which is no longer scheduled, the entry of a zone without records is dropped
+   * @params CachedRecord   NSEC, NSEC3 or wildcard record of this cache
    */
-  public Map<String, ResponseEntry> resolve(Name name) {
-    Map<String, ResponseEntry> response = new HashMap<String, ResponseEntry>();
-    String key;
-    ResponseEntry found;
-    for (int position = 0; position < name.labels(); position ++) {
-      key = RecordUtilities.getCustomLabelString(name, position);
-      found = this.cache.get(key);
-
-      if (found != null) response.put(key, found);
+  private void remove(CachedRecord record) {
+    if (record instanceof CachedWildcardRecord) {
+      CachedWildcardRecord wildcardRecord = (CachedWildcardRecord) record;
+      this.wildcardCache.remove(wildcardRecord.getKey(), wildcardRecord);
+    } else {
+      ResponseEntry entry = ((CachedNegativeRecord) record).getEntry();
+      entry.remove((CachedNegativeRecord) record);
+      if (entry.isEmpty())
+        this.cache.remove(entry);
     }
+  }
+
+  // number of cached records which did not expire yet
+  public int getLiveRecords() {
+    return this.timerWheel.size();
+  }
+
+  // bytes allocated or mapped for records outside of the heap
+  public long getOffHeapBytes() {
+    return this.slab != null ? this.slab.getReservedBytes() : 0;
+  }
 
-    return response;
+  /* looks up all zones of a given name in the cache, from the root down to the name itself
+   * @params CanonicalName     name, which shall be used for the lookup
+   * @params ResponseEntry[]   receives the found entries, needs ZoneTrie.MAX_LABELS elements
+   * @return int               number of found entries
+   */
+  public int resolve(CanonicalName name, ResponseEntry[] entries) {
+    return this.cache.resolve(name, entries);
+  }
+
+  /* the response type the cache can give to the current question, memoized by question name and type until the
+   * records it was proven with change (see ProofMemo)
+   * @return int   response type, Constants.NO_RESPONSE if the cache cannot answer the question
+   */
+  public int proof() throws RuntimeException, NameTooLongException {
+    Record question = this.messageUtils.getQuestion();
+    CanonicalName questionName = CanonicalName.of(question.getName());
+    if (this.memo == null)
+      return proof(question, questionName);
+
+    int result = this.memo.get(this, questionName, question.getType(), this.messageUtils.getCurrentTime());
+    if (result != ProofMemo.MISSING)
+      return result;
+    this.memo.start(getZoneGeneration());
+    result = proof(question, questionName);
+    this.memo.put(questionName, question.getType(), result);
+    return result;
   }
 
   /* 1) resolve all ResponseEntries by the question's name
-   * 2) iterate over entries and check that it exists and is not empty
-   * 3) iterate over stored NSEC records and do their respective proof for denial of existence
+   * 2) look up the NSEC record owning or covering the name in each entry (see ResponseEntry)
+   * 3) look up the hashes of the question's name and its ancestors in each NSEC3Ring of the entry and do the
+   *    closest encloser proof for denial of existence
    * @return boolean   true if question's name lays between of one NSEC Record's name and next, false otherwise
    */
-  public int proof() throws RuntimeException, NameTooLongException {
+  private int proof(Record question, CanonicalName questionName) throws RuntimeException, NameTooLongException {
     int result = Constants.NO_RESPONSE;
-    Record question = this.messageUtils.getQuestion();
-    Name questionName = question.getName().canonicalize();
-    Map<String, ResponseEntry> resolvedResponseEntryList = resolve(questionName);
+    int resolvedEntries = resolve(questionName, this.proofEntries);
+    depend(this.proofEntries, resolvedEntries);
     
     ResponseEntry resolvedResponseEntry;
-    Iterator<Map.Entry<String, CachedNegativeRecord>> iterator;
-    Name closestEncloser, chopped, lastChopped, nextCloserName;
+    CanonicalName closestEncloser, nextCloserName;
 
     CachedNegativeRecord record;
-    RRSIGRecord sigRecord;
 
-    // iterate over found entries in the cache
-    for (Map.Entry<String, ResponseEntry> resolvedResponseEntryListEntry : resolvedResponseEntryList.entrySet()) {
-      resolvedResponseEntry = resolvedResponseEntryListEntry.getValue();
-
-      if (resolvedResponseEntry == null) 
-        continue;
-
-      if (resolvedResponseEntry.isEmpty()) {
-        this.cache.remove(resolvedResponseEntryListEntry.getKey());
-        continue;
+    long currentTime = this.messageUtils.getCurrentTime();
+
+    // iterate over found entries in the cache (empty ones are dropped by the cache)
+    for (int entry = 0; entry < resolvedEntries && result == Constants.NO_RESPONSE; entry++) {
+      resolvedResponseEntry = this.proofEntries[entry];
+
+      // RULE 1: requested RR name matches NSEC RR name, but the requested type is not in the NSEC RR's type bit maps field
+      record = resolvedResponseEntry.getMatchingNSEC(questionName, currentTime);
+      if (record != null) {
+        use(record);
+        if (questionName.labels() - 1 == record.getSigLabels()) {
+          if (record.containsType(question.getType()))
+            return Constants.NO_RESPONSE;
+          else
+            return Constants.NO_DATA_RESPONSE;
+        }
       }
 
-      iterator = resolvedResponseEntry.getIterator();
+      // RULE 2: requested RR name lays between NSEC RR name and next, additionaly wildcard proof is done
+      record = resolvedResponseEntry.getCoveringNSEC(questionName, currentTime);
+      if (record != null) {
+        use(record);
 
-      // iterate over RR in the found entries
-      while (iterator.hasNext() && result == Constants.NO_RESPONSE) {
-        Map.Entry<String, CachedNegativeRecord> cachedNegativeRecordEntry = iterator.next();
-        record = cachedNegativeRecordEntry.getValue();
-        sigRecord = record.getSigRecord();
+        // build wildcard name and retrieve wildcard record (exact match or covering)
+        closestEncloser = record.getClosestEncloser(questionName);
+        if (closestEncloser == null)
+          return Constants.NAME_ERROR_RESPONSE;
 
-        // check TTL
-        if (record.getArrival() + record.getTTL() <= this.messageUtils.getCurrentTime()) {
-          iterator.remove();
-          continue;
-        }
-
-        if (record.getType() == Type.NSEC) {
-          // RULE 1: requested RR name matches NSEC RR name, but the requested type is not in the NSEC RR's type bit maps field
-          if (record.matches(questionName) && sigRecord != null && questionName.labels() - 1 == sigRecord.getLabels()) {
-            if (record.containsType(question.getType()))
-              return Constants.NO_RESPONSE;
-            else
-              return Constants.NO_DATA_RESPONSE;
-          }
-          // RULE 2: requested RR name lays between NSEC RR name and next, additionaly wildcard proof is done
-          else if (record.inbetween(questionName)) {
+        return wildcardProof(closestEncloser, questionName, question.getType());
+      }
 
-            // build wildcard name and retrieve wildcard record (exact match or covering)
-            closestEncloser = record.getClosestEncloser(questionName);
-            if (closestEncloser == null)
-              return Constants.NAME_ERROR_RESPONSE;
+      // iterate over the NSEC3 rings of the found entries
+      for (NSEC3Ring ring : resolvedResponseEntry.getNSEC3Rings()) {
+        // requested RR name matches NSEC3 RR name, but the requested type is not in the NSEC3 RR's type bit maps field
+        record = ring.getMatching(ring.ancestorHash(questionName, 0), currentTime);
+        if (record != null && !optOut(record)) {
+          use(record);
+          if (questionName.labels() - 1 == record.getSigLabels() && !record.containsType(question.getType()))
+            return Constants.NO_DATA_RESPONSE;
+          // the question's name is its own closest encloser -> direct match
+          return Constants.NO_RESPONSE;
+        }
 
-            return wildcardProof(closestEncloser, question.getType());
-          }
-        } else if (record.getType() == Type.NSEC3) {
-          // if opt-out is set, denial of existence cannot be proofed nor denied
-          if (record.hasOptOut()) {
-            this.statistics.countOptOutInLookup();
+        // do closest encloser proof
+        // PART 1: get the closest encloser (deepest ancestor owning a record) -> needed to proof that requested name does not exist
+        for (int position = 1; position < questionName.labels() - 1; position++) {
+          record = ring.getMatching(ring.ancestorHash(questionName, position), currentTime);
+          if (record == null || optOut(record))
             continue;
+          use(record);
+
+          // PART 2: next closer name is covered by record -> closest encloser >is< closest match -> name does not exist
+          closestEncloser = this.hashCache.getAncestor(questionName, position);
+          nextCloserName = this.hashCache.getAncestor(questionName, position - 1);
+          if (covered(nextCloserName)) {
+            // do wildcard proof
+            result = wildcardProof(closestEncloser, questionName, question.getType());
           }
-
-          // requested RR name matches NSEC3 RR name, but the requested type is not in the NSEC3 RR's type bit maps field
-          if (record.matches(questionName) && sigRecord != null && questionName.labels() - 1 == sigRecord.getLabels()) {
-            if (record.containsType(question.getType()))
-              return Constants.NO_RESPONSE;
-            else 
-              return Constants.NO_DATA_RESPONSE;
-          } else {
-            // do closest encloser proof
-            // PART 1: get the closest encloser -> needed to proof that requested name does not exist
-            closestEncloser = record.getClosestEncloser(questionName);
-            if (closestEncloser != null) {
-              // PART 2: next closer name is covered by record -> closest encloser >is< closest match -> name does not exist
-              chopped = questionName.relativize(closestEncloser);
-              if (chopped.labels() == 0)  // is direct match
-              return Constants.NO_RESPONSE;
-              
-              lastChopped = Name.fromConstantString(chopped.getLabelString(chopped.labels() - 1));
-              nextCloserName = Name.concatenate(lastChopped, closestEncloser);
-              
-              if (covered(nextCloserName))  {
-                // do wildcard proof
-                result = wildcardProof(closestEncloser, question.getType());
-              }
-            }
-
-          }
+          break;
         }
+
+        if (result != Constants.NO_RESPONSE)
+          break;
       }
     }
 
     return result;
   }
 
+  // if opt-out is set, denial of existence cannot be proofed nor denied
+  private boolean optOut(CachedNegativeRecord record) {
+    if (!record.hasOptOut())
+      return false;
+    this.statistics.countOptOutInLookup();
+    if (this.memo != null) {
+      this.memo.addRecord(record);
+      this.memo.addOptOut();
+    }
+    return true;
+  }
+
+  // the proof looked into the entries, recorded by the memo
+  private void depend(ResponseEntry[] entries, int count) {
+    if (this.memo != null)
+      this.memo.addEntries(entries, count);
+  }
+
+  // the proof used the record, null for none; reported to the cache and recorded by the memo
+  private void use(CachedRecord record) {
+    if (this.memo != null)
+      this.memo.addAccess(record);
+    access(record);
+  }
+
   /* checks whether the given name of a question is covered by any record given in the cache
-   * @params Name     name which shall be checked
-   * @return boolean  true if one cached record returns true for its inbetween function, false otherwise
+   * @params CanonicalName   name which shall be checked
+   * @return boolean         true if one cached record returns true for its inbetween function, false otherwise
    */
-  private boolean covered(Name name) {
-    Map<String, ResponseEntry> resolvedResponseEntryList = resolve(name);
+  private boolean covered(CanonicalName name) {
+    int resolvedEntries = resolve(name, this.coverEntries);
+    depend(this.coverEntries, resolvedEntries);
 
     boolean inbetween = false;
 
+    long currentTime = this.messageUtils.getCurrentTime();
+
     // iterate over found entries in the cache
-    for (ResponseEntry resolvedResponseEntry : resolvedResponseEntryList.values()) {
-      if (resolvedResponseEntry == null || resolvedResponseEntry.isEmpty()) {
-        continue;
-      }
+    for (int entry = 0; entry < resolvedEntries && !inbetween; entry++) {
+      ResponseEntry resolvedResponseEntry = this.coverEntries[entry];
+      CachedNegativeRecord record = resolvedResponseEntry.getCoveringNSEC(name, currentTime);
 
-      // iterate over Resource Records in the found entry
-      for (CachedNegativeRecord record : resolvedResponseEntry.getRecords()) {
-        if (inbetween)
+      // look up the hash of the name in the NSEC3 rings of the found entry
+      for (NSEC3Ring ring : resolvedResponseEntry.getNSEC3Rings()) {
+        if (record != null)
           break;
-        
-        if (record.getArrival() + record.getTTL() > this.messageUtils.getCurrentTime()) {
-          inbetween = record.inbetween(name);
-        }
+        record = ring.getCovering(ring.hash(name), currentTime);
       }
+      use(record);
+      inbetween = record != null;
     }
 
     return inbetween;
   }
 
   // function for all response types that need a wildcard proof
-  private int wildcardProof(Name closestEncloser, int questionType) throws NameTooLongException {
-    Name wildcardName = Name.concatenate(Name.fromConstantString("*"), closestEncloser);
+  private int wildcardProof(CanonicalName closestEncloser, CanonicalName questionName, int questionType)
+    throws NameTooLongException
+  {
+    CanonicalName wildcardName = closestEncloser.wildcard();
     CachedNegativeRecord wildcardRecord = getBelongingRecord(wildcardName);
 
     if (wildcardRecord != null) {
@@ -299,7 +412,7 @@ public class SimulationCache {
         return Constants.NAME_ERROR_RESPONSE;                                             // NAME ERROR RESPONSE
       } else if (wildcardRecord.matches(wildcardName)) {
         if (wildcardRecord.containsType(questionType)) {
-          if (wildcardIsCached(wildcardName, questionType)){                              // WILDCARD ANSWER RESPONSE
+          if (wildcardIsCached(wildcardName, questionName, questionType)){                              // WILDCARD ANSWER RESPONSE
             return Constants.WILDCARD_ANSWER_RESPONSE;
           }
         } else {
@@ -307,7 +420,7 @@ public class SimulationCache {
         }
       }
     } else {
-      if (wildcardIsCached(wildcardName, questionType)) {                                 // WILDCARD ANSWER RESPONSE
+      if (wildcardIsCached(wildcardName, questionName, questionType)) {                                 // WILDCARD ANSWER RESPONSE
         return Constants.WILDCARD_ANSWER_RESPONSE;
       }
     }
@@ -317,49 +430,108 @@ public class SimulationCache {
 
 
   // returns matching or covering NSEC/3 record to the given name
-  private CachedNegativeRecord getBelongingRecord(Name name) {
+  private CachedNegativeRecord getBelongingRecord(CanonicalName name) {
     CachedNegativeRecord match = null;
     CachedNegativeRecord cover = null;
-    Map<String, ResponseEntry> resolvedResponseEntryList = resolve(name);
+    int resolvedEntries = resolve(name, this.belongingEntries);
+    depend(this.belongingEntries, resolvedEntries);
 
-    ResponseEntry resolvedResponseEntry;
+    long currentTime = this.messageUtils.getCurrentTime();
 
     // iterate over found entries in the cache
-    for (Map.Entry<String, ResponseEntry> resolvedResponseEntryListEntry : resolvedResponseEntryList.entrySet()) {
-      resolvedResponseEntry = resolvedResponseEntryListEntry.getValue();
+    for (int entry = 0; entry < resolvedEntries && match == null; entry++) {
+      ResponseEntry resolvedResponseEntry = this.belongingEntries[entry];
 
-      if (resolvedResponseEntry == null || resolvedResponseEntry.isEmpty()) {
-        continue;
-      }
-
-      // iterate over Resource Records in the found entry
-      for (CachedNegativeRecord record : resolvedResponseEntry.getRecords()) {
-        if (match != null)
+      // NSEC records: one lookup for the owner of the name and one for its predecessor
+      match = resolvedResponseEntry.getMatchingNSEC(name, currentTime);
+      if (match != null)
         break;
-        
-        // check TTL
-        if (record.getArrival() + record.getTTL() > this.messageUtils.getCurrentTime()) {
-          if (record.matches(name)) match = record;
-          if (record.inbetween(name)) cover = record;
-        }
+      CachedNegativeRecord covering = resolvedResponseEntry.getCoveringNSEC(name, currentTime);
+      if (covering != null)
+        cover = covering;
+
+      // NSEC3 records: one lookup for the owner of the name's hash and one for its predecessor in each ring
+      for (NSEC3Ring ring : resolvedResponseEntry.getNSEC3Rings()) {
+        byte[] hash = ring.hash(name);
+        match = ring.getMatching(hash, currentTime);
+        if (match != null)
+          break;
+        covering = ring.getCovering(hash, currentTime);
+        if (covering != null)
+          cover = covering;
       }
     }
 
-    if (match != null) return match;
+    if (match != null) {
+      use(match);
+      return match;
+    }
 
+    use(cover);
     return cover;
   }
 
   // return true if a positive record exists for the queried name and type
-  private boolean wildcardIsCached(Name wildcardName, int questionType) {
-    wildcardName = wildcardName.canonicalize();
-    CachedWildcardRecord wildcard = this.wildcardCache.get(wildcardName.canonicalize().toString());
-    Name questionName = this.messageUtils.getQuestion().getName().canonicalize();
-    
-    return wildcard != null
-      && wildcard.getArrival() + wildcard.getTTL() > this.messageUtils.getCurrentTime()
+  private boolean wildcardIsCached(CanonicalName wildcardName, CanonicalName questionName, int questionType) {
+    CachedWildcardRecord wildcard = getWildcard(wildcardName);
+    if (this.memo != null)
+      this.memo.addWildcard(wildcardName, wildcard);
+
+    boolean cached = wildcard != null
+      && wildcard.getExpiry() > this.messageUtils.getCurrentTime()
       && wildcard.getType() == questionType
-      && questionName.compareTo(wildcardName) != 0;
+      && !questionName.equals(wildcardName);
+    if (cached)
+      use(wildcard);
+    return cached;
+  }
+
+  /* writes all cached NSEC/NSEC3 and wildcard records with their arrival times and TTLs (see Checkpoint)
+   * @params DataOutputStream   stream of the checkpoint
+   * @throws IOException
+   */
+  public void writeState(DataOutputStream out) throws IOException {
+    this.cache.writeState(out);
+
+    out.writeInt(this.wildcardCache.size());
+    for (CachedWildcardRecord wildcard : this.wildcardCache.values()) {
+      writeWildcard(out, wildcard);
+    }
+  }
+
+  protected static void writeWildcard(DataOutputStream out, CachedWildcardRecord wildcard) throws IOException {
+    byte[] key = wildcard.getKey().toWire();
+    out.writeShort(key.length);
+    out.write(key);
+    ResponseEntry.writeRecord(out, wildcard.getRecord());
+    out.writeLong(wildcard.getArrival());
+  }
+
+  protected static CachedWildcardRecord readWildcard(DataInputStream in, long shift) throws IOException {
+    byte[] key = new byte[in.readUnsignedShort()];
+    in.readFully(key);
+    Record wildcard = ResponseEntry.readRecord(in);
+    return new CachedWildcardRecord(wildcard, in.readLong() + shift, CanonicalName.fromWire(key));
+  }
+
+  /* replaces the cache by the records written by writeState(...)
+   * @params DataInputStream   stream of the checkpoint
+   * @params long              added to every arrival tick, 0 when resuming the same trace
+   * @throws IOException
+   */
+  public void readState(DataInputStream in, long shift) throws IOException {
+    this.timerWheel.clear();
+    if (this.slab != null)
+      this.slab.clear();
+    this.cache.readState(in, shift);
+
+    this.wildcardCache.clear();
+    int wildcards = in.readInt();
+    for (int i = 0; i < wildcards; i++) {
+      addWildcard(readWildcard(in, shift));
+    }
+    // a warm start may load the cache of a run with more capacity
+    evict();
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,207 @@
+package dns_resolver_simulation;
+
+/* settings of one simulation instance, several instances with different settings can share one pass over a trace
+ * given on the command line as <name>[:<option>=<value>,...] with the options
+ * maxttl   upper bound of negative TTLs in seconds (default: Constants.MAX_TTL)
+ * nsec     on/off, cache NSEC records (default: on)
+ * nsec3    on/off, cache NSEC3 records (default: on)
+ * memo     on/off, memoize the results of proofs by question name and type (see ProofMemo) (default: on)
+ * range    latency histogram range in ms (default: Constants.LATENCY_RANGE)
+ * spread   latency histogram bucket width in ms (default: Constants.LATENCY_SPREAD)
+ * capacity maximum number of cached records (default: unbounded)
+ * memory   maximum estimated size of the cached records in bytes, with an optional suffix k, m or g (default: unbounded)
+ * eviction lru, lfu or tinylfu, evicts records of a bounded cache (default: Constants.DEFAULT_EVICTION)
+ * store    heap, direct or mapped, keeps the cached NSEC and NSEC3 records on the heap or in a RecordSlab of direct
+ *          or memory mapped buffers (default: Constants.DEFAULT_STORE)
+ * threads  number of threads simulating the packets of different zones in parallel with a lock-striped cache
+ *          (see ConcurrentDriver), 1 simulates all packets in order (default: 1); more than 1 needs store=heap,
+ *          since lookups read the records of other stripes without their lock and slab slots are reused
+ */
+public class SimulationConfig {
+  private String name;
+  private long maxTTL;
+  private boolean nsecEnabled;
+  private boolean nsec3Enabled;
+  private boolean memoEnabled;
+  private int latencyRange;
+  private int latencySpread;
+  private long capacity;      // 0 for unbounded
+  private long memory;        // 0 for unbounded
+  private String eviction;
+  private String store;
+  private int threads;
+
+  public SimulationConfig(String name) {
+    this.name = name;
+    this.maxTTL = Constants.MAX_TTL;
+    this.nsecEnabled = true;
+    this.nsec3Enabled = true;
+    this.memoEnabled = true;
+    this.latencyRange = Constants.LATENCY_RANGE;
+    this.latencySpread = Constants.LATENCY_SPREAD;
+    this.capacity = 0;
+    this.memory = 0;
+    this.eviction = Constants.DEFAULT_EVICTION;
+    this.store = Constants.DEFAULT_STORE;
+    this.threads = 1;
+  }
+
+  public static SimulationConfig defaults() {
+    return new SimulationConfig("default");
+  }
+
+  /* parses a configuration given as <name>[:<option>=<value>,...]
+   * @params String                     configuration
+   * @throws IllegalArgumentException   if an option is unknown or its value invalid
+   * @return SimulationConfig           the configuration
+   */
+  public static SimulationConfig parse(String specification) {
+    int colon = specification.indexOf(':');
+    SimulationConfig config = new SimulationConfig(colon < 0 ? specification : specification.substring(0, colon));
+    if (config.name.isEmpty() || config.name.contains("/"))
+      throw new IllegalArgumentException("Invalid configuration name in " + specification);
+    if (colon < 0)
+      return config;
+
+    for (String option : specification.substring(colon + 1).split(",")) {
+      String[] parts = option.split("=", 2);
+      if (parts.length != 2)
+        throw new IllegalArgumentException("Option without value in " + specification);
+      String value = parts[1].trim();
+      switch (parts[0].trim()) {
+        case "maxttl":
+          config.maxTTL = Long.parseLong(value);
+          break;
+        case "nsec":
+          config.nsecEnabled = parseSwitch(value, specification);
+          break;
+        case "nsec3":
+          config.nsec3Enabled = parseSwitch(value, specification);
+          break;
+        case "memo":
+          config.memoEnabled = parseSwitch(value, specification);
+          break;
+        case "range":
+          config.latencyRange = Integer.parseInt(value);
+          break;
+        case "spread":
+          config.latencySpread = Integer.parseInt(value);
+          break;
+        case "capacity":
+          config.capacity = Long.parseLong(value);
+          break;
+        case "memory":
+          config.memory = parseBytes(value);
+          break;
+        case "eviction":
+          config.eviction = value;
+          break;
+        case "store":
+          config.store = value;
+          break;
+        case "threads":
+          config.threads = Integer.parseInt(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + parts[0] + " in " + specification);
+      }
+    }
+    if (config.latencySpread <= 0 || config.latencyRange < config.latencySpread)
+      throw new IllegalArgumentException("Invalid latency range or spread in " + specification);
+    if (config.capacity < 0 || config.memory < 0)
+      throw new IllegalArgumentException("Invalid capacity or memory in " + specification);
+    if (!config.eviction.equals("lru") && !config.eviction.equals("lfu") && !config.eviction.equals("tinylfu"))
+      throw new IllegalArgumentException("Unknown eviction policy " + config.eviction + " in " + specification);
+    if (!config.store.equals("heap") && !config.store.equals("direct") && !config.store.equals("mapped"))
+      throw new IllegalArgumentException("Unknown record store " + config.store + " in " + specification);
+    if (config.threads < 1)
+      throw new IllegalArgumentException("Invalid number of threads in " + specification);
+    if (config.threads > 1 && !config.store.equals("heap"))
+      throw new IllegalArgumentException("Record store " + config.store + " cannot be shared by threads in " + specification);
+    return config;
+  }
+
+  // number of bytes with an optional suffix k, m or g (powers of 1024)
+  private static long parseBytes(String value) {
+    String lower = value.toLowerCase();
+    int shift = lower.endsWith("k") ? 10 : lower.endsWith("m") ? 20 : lower.endsWith("g") ? 30 : 0;
+    return Long.parseLong(shift == 0 ? lower : lower.substring(0, lower.length() - 1)) << shift;
+  }
+
+  private static boolean parseSwitch(String value, String specification) {
+    if (value.equals("on"))
+      return true;
+    if (value.equals("off"))
+      return false;
+    throw new IllegalArgumentException("Expected on or off instead of " + value + " in " + specification);
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public long getMaxTTL() {
+    return this.maxTTL;
+  }
+
+  public boolean isNsecEnabled() {
+    return this.nsecEnabled;
+  }
+
+  public boolean isNsec3Enabled() {
+    return this.nsec3Enabled;
+  }
+
+  public boolean isMemoEnabled() {
+    return this.memoEnabled;
+  }
+
+  public int getLatencyRange() {
+    return this.latencyRange;
+  }
+
+  public int getLatencySpread() {
+    return this.latencySpread;
+  }
+
+  // true if the cache evicts records when it exceeds its capacity or memory
+  public boolean isBounded() {
+    return this.capacity > 0 || this.memory > 0;
+  }
+
+  // maximum number of cached records, Long.MAX_VALUE if unbounded
+  public long getCapacity() {
+    return this.capacity > 0 ? this.capacity : Long.MAX_VALUE;
+  }
+
+  // maximum estimated size of the cached records in bytes, Long.MAX_VALUE if unbounded
+  public long getMemory() {
+    return this.memory > 0 ? this.memory : Long.MAX_VALUE;
+  }
+
+  public String getEviction() {
+    return this.eviction;
+  }
+
+  public String getStore() {
+    return this.store;
+  }
+
+  // threads of a concurrent simulation, 1 for a sequential one
+  public int getThreads() {
+    return this.threads;
+  }
+
+  public boolean isConcurrent() {
+    return this.threads > 1;
+  }
+
+  @Override
+  public String toString() {
+    return this.name + " (maxttl=" + this.maxTTL + ", nsec=" + (this.nsecEnabled ? "on" : "off") + ", nsec3="
+      + (this.nsec3Enabled ? "on" : "off") + ", range=" + this.latencyRange + ", spread=" + this.latencySpread
+      + (isBounded() ? ", capacity=" + this.capacity + ", memory=" + this.memory + ", eviction=" + this.eviction : "")
+      + (this.store.equals("heap") ? "" : ", store=" + this.store) + (isConcurrent() ? ", threads=" + this.threads : "")
+      + (this.memoEnabled ? "" : ", memo=off") + ")";
+  }
+}
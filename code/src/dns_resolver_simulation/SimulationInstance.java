@@ -0,0 +1,464 @@
+package dns_resolver_simulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.xbill.DNS.Message;
+import org.xbill.DNS.NameTooLongException;
+
+/* one simulated resolver with its own configuration, cache, sliding window, statistics and logs
+ * the Simulator reads and decodes the trace once and hands every packet to all of its instances; an instance either
+ * runs on the reading thread or (start()) on its own thread fed by a bounded queue of packet batches
+ * an instance of a concurrent configuration hands its packets to the lanes of a ConcurrentDriver, instances of their
+ * own sharing its cache
+ */
+public class SimulationInstance implements Runnable {
+  // work of the instance's own thread: a batch of packets or a checkpoint
+  private interface Task {
+    void run() throws IOException;
+  }
+
+  private interface StatePart {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private static final Task END = () -> { };
+
+  private SimulationConfig config;
+  private String name;
+  private SimulationCache simulationCache;
+  private DNSMessageUtilities messageUtils;
+  private SlidingWindow slidingWindow;
+  private Statistics statistics;
+  private ExceptionCounter exceptionCounter;
+  private FileWriter aliensFile;
+  private Logger logger;
+  // null unless the configuration is concurrent
+  private ConcurrentDriver driver;
+  private BlockingQueue<Task> queue;
+  private Thread thread;
+  private volatile Exception failure;
+
+  public SimulationInstance(SimulationConfig config, Logger logger) {
+    this(config, config.getName(), logger);
+  }
+
+  /* @params SimulationConfig   configuration
+   * @params String             name of the instance (e.g. configuration and resolver)
+   * @params Logger             logger of the instance's own directory
+   */
+  public SimulationInstance(SimulationConfig config, String name, Logger logger) {
+    this(config, name, logger, null, logger.getFileWriter("unexpected"));
+  }
+
+  /* @params SimulationConfig            configuration
+   * @params String                      name of the instance
+   * @params Logger                      logger of the instance's own directory
+   * @params ConcurrentSimulationCache   cache shared with the other lanes of a ConcurrentDriver, null for an instance
+   *                                     with a cache of its own
+   * @params FileWriter                  log of unexpected packets
+   */
+  SimulationInstance(SimulationConfig config, String name, Logger logger, ConcurrentSimulationCache sharedCache, FileWriter aliensFile) {
+    this.config = config;
+    this.name = name;
+    this.logger = logger;
+    this.statistics = new Statistics(logger, config.getLatencyRange(), config.getLatencySpread());
+    this.messageUtils = new DNSMessageUtilities();
+    this.messageUtils.setMaxTTL(config.getMaxTTL());
+    if (sharedCache != null) {
+      this.simulationCache = new ConcurrentSimulationCache(this.messageUtils, this.statistics, sharedCache);
+    } else if (config.isConcurrent()) {
+      ConcurrentSimulationCache cache = new ConcurrentSimulationCache(this.messageUtils, this.statistics, config, logger);
+      this.simulationCache = cache;
+      this.driver = new ConcurrentDriver(config, name, logger, cache, aliensFile);
+    } else {
+      this.simulationCache = new SimulationCache(this.messageUtils, this.statistics, config);
+    }
+    this.slidingWindow = new SlidingWindow(this.messageUtils);
+    this.aliensFile = aliensFile;
+    this.exceptionCounter = new ExceptionCounter(logger);
+  }
+
+  public SimulationConfig getConfig() {
+    return this.config;
+  }
+
+  public Statistics getStatistics() {
+    return this.statistics;
+  }
+
+  public ExceptionCounter getExceptionCounter() {
+    return this.exceptionCounter;
+  }
+
+  // utilities the current message has to be set in before simulate(...) is called
+  public DNSMessageUtilities getMessageUtils() {
+    return this.messageUtils;
+  }
+
+  // @params double   timestamp of the message in seconds
+  public void setMessage(Message message, double timestamp) {
+    this.messageUtils.set(message);
+    this.messageUtils.setCurrentTime(DNSMessageUtilities.toTicks(timestamp));
+  }
+
+  public void countException(Exception exception) {
+    this.exceptionCounter.add(exception);
+  }
+
+  public void countException(String exceptionName) {
+    this.exceptionCounter.add(exceptionName);
+  }
+
+  SimulationCache getSimulationCache() {
+    return this.simulationCache;
+  }
+
+  SlidingWindow getSlidingWindow() {
+    return this.slidingWindow;
+  }
+
+  NSEC3HashCache getHashCache() {
+    return this.simulationCache.getHashCache();
+  }
+
+  /* simulates a packet decoded by another thread, its utilities are only read
+   * @params DecodedPacket   decoded packet
+   */
+  public void process(DecodedPacket packet) throws IOException {
+    if (this.driver != null) {
+      this.driver.add(packet);
+      return;
+    }
+    if (packet.exception != null) {
+      this.exceptionCounter.add(packet.exception);
+      return;
+    }
+    if (packet.exceptionName != null) {
+      this.exceptionCounter.add(packet.exceptionName);
+      return;
+    }
+
+    if (packet.utilities != null) {
+      this.messageUtils.load(packet.utilities);
+      this.messageUtils.setCurrentTime(DNSMessageUtilities.toTicks(packet.timestamp));
+    }
+    simulate(packet.direction, packet.srcHigh, packet.srcLow, packet.srcPort, packet.dstHigh, packet.dstLow, packet.dstPort);
+  }
+
+  /* * * * * * * * * * * * * * * * * *
+   * CHECKPOINTS                      *
+   * * * * * * * * * * * * * * * * * */
+
+  /* serializes the complete state: statistics, exceptions, cache and pending queries (see Checkpoint)
+   * every part is prefixed by its length, so a warm start can skip everything but the cache
+   * @throws IOException
+   * @return byte[]        state of the instance
+   */
+  public byte[] writeState() throws IOException {
+    Statistics statistics = this.statistics;
+    ExceptionCounter exceptionCounter = this.exceptionCounter;
+    SlidingWindow slidingWindow = this.slidingWindow;
+    // the state of a concurrent instance is the one of its lanes after the current window
+    if (this.driver != null) {
+      this.driver.flush();
+      statistics = new Statistics(this.logger, this.config.getLatencyRange(), this.config.getLatencySpread());
+      statistics.merge(this.statistics);
+      exceptionCounter = new ExceptionCounter(this.logger);
+      exceptionCounter.merge(this.exceptionCounter);
+      this.driver.merge(statistics, exceptionCounter);
+      slidingWindow = new SlidingWindow(this.messageUtils);
+      this.driver.collect(slidingWindow);
+    }
+
+    ByteArrayOutputStream state = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(state);
+    writePart(out, statistics::writeState);
+    writePart(out, exceptionCounter::writeState);
+    writePart(out, this.simulationCache::writeState);
+    writePart(out, slidingWindow::writeState);
+    out.flush();
+    return state.toByteArray();
+  }
+
+  private void writePart(DataOutputStream out, StatePart part) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream partOut = new DataOutputStream(buffer);
+    part.write(partOut);
+    partOut.flush();
+    out.writeInt(buffer.size());
+    buffer.writeTo(out);
+  }
+
+  // restores the complete state written by writeState() to resume a run
+  public void readState(byte[] state) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+    in.readInt();
+    this.statistics.readState(in);
+    in.readInt();
+    this.exceptionCounter.readState(in);
+    in.readInt();
+    this.simulationCache.readState(in, 0);
+    in.readInt();
+    this.slidingWindow.readState(in);
+    if (this.driver != null)
+      this.driver.distribute(this.slidingWindow);
+  }
+
+  /* restores only the cache of a state written by writeState(), e.g. of a run over another trace
+   * @params byte[]   state of an instance
+   * @params long     added to the arrival ticks of the cached records, moves them to the time of the new trace
+   */
+  public void readWarmState(byte[] state, long shift) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+    in.skipBytes(in.readInt());
+    in.skipBytes(in.readInt());
+    in.readInt();
+    this.simulationCache.readState(in, shift);
+  }
+
+  /* queues a checkpoint behind all submitted batches, the last instance setting its state submits the
+   * checkpoint to the writer
+   * @params Checkpoint         checkpoint of all instances
+   * @params int                index of this instance in the checkpoint
+   * @params CheckpointWriter   writer of complete checkpoints
+   */
+  public void submitCheckpoint(Checkpoint checkpoint, int index, CheckpointWriter writer) throws IOException {
+    put(() -> {
+      if (checkpoint.setState(index, this.name, writeState()))
+        writer.submit(checkpoint);
+    });
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  /* * * * * * * * * * * * * * * * * *
+   * OWN THREAD                       *
+   * * * * * * * * * * * * * * * * * */
+
+  public void start() {
+    this.queue = new ArrayBlockingQueue<Task>(Constants.INSTANCE_QUEUED_BATCHES);
+    this.thread = new Thread(this, "simulation-" + this.name);
+    this.thread.start();
+  }
+
+  /* queues a batch of packets, blocks while the instance is too far behind
+   * the batch is shared with other instances and must not be changed anymore
+   */
+  public void submit(List<DecodedPacket> batch) throws IOException {
+    put(() -> {
+      for (DecodedPacket packet : batch) {
+        process(packet);
+      }
+    });
+  }
+
+  private void put(Task task) throws IOException {
+    try {
+      this.queue.put(task);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while queueing packets", e);
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      Task task;
+      while ((task = this.queue.take()) != END) {
+        task.run();
+      }
+      if (this.driver != null)
+        this.driver.close(this.statistics, this.exceptionCounter);
+    } catch (Exception e) {
+      this.failure = e;
+      // keep taking tasks, so the reading thread is not blocked forever
+      try {
+        while (this.queue.take() != END) { }
+      } catch (InterruptedException interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // waits until all queued packets are simulated
+  public void join() throws IOException {
+    try {
+      this.queue.put(END);
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for simulation " + this.name, e);
+    }
+    if (this.failure != null)
+      throw new IOException("Simulation " + this.name + " failed", this.failure);
+  }
+
+  public void writeAll() {
+    this.statistics.setLiveRecords(this.simulationCache.getLiveRecords());
+    this.statistics.setOffHeapBytes(this.simulationCache.getOffHeapBytes());
+    this.statistics.writeAll();
+    this.exceptionCounter.writeAll();
+    synchronized (this.aliensFile) {
+      try {
+        this.aliensFile.write();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /* hands the current message to the part of the simulation responsible for its direction (see AddressClassifier)
+   * IPv4 and IPv6 messages are handled the same way, addresses are given as two longs each (see AddressSet)
+   */
+  public void simulate(int direction, long srcHigh, long srcLow, int srcPort, long dstHigh, long dstLow, int dstPort) throws IOException {
+    switch (direction) {
+      /* * * * * * * * * * * * * * * *
+       * QUERY INTERNAL -> RESOLVER  *
+       * * * * * * * * * * * * * * * */
+      case Constants.QUERY_INT_TO_R:
+        this.statistics.countInternalQuery();
+        this.slidingWindow.setKey(srcHigh, srcLow, srcPort);
+        updateSlidingWindow();
+        break;
+
+      /* * * * * * * * * * * * * * * *
+       * QUERY RESOLVER -> EXTERNAL  *
+       * * * * * * * * * * * * * * * */
+      case Constants.QUERY_R_TO_EXT:
+        this.statistics.countExternalQuery();
+        break;
+
+      /* * * * * * * * * * * * * * * * *
+       * RESPONSE EXTERNAL -> RESOLVER *
+       * * * * * * * * * * * * * * * * */
+      case Constants.RESPONSE_EXT_TO_R:
+        this.statistics.countExternalResponse();
+        updateSimulationCache();
+        break;
+
+      /* * * * * * * * * * * * * * * * *
+       * RESPONSE RESOLVER -> INTERNAL *
+       * * * * * * * * * * * * * * * * */
+      case Constants.RESPONSE_R_TO_INT:
+        this.statistics.countInternalResponse();
+        this.slidingWindow.setKey(dstHigh, dstLow, dstPort);
+        clearSlidingWindow();
+        break;
+
+      // QUERY R -> INT, QUERY EXT -> R, RESPONSE INT -> R (filtered before), RESPONSE R -> EXT and unexpected ones
+      default:
+        this.statistics.countUnexpectedPacket();
+        if (this.statistics.getUnexpectedPackets() <= Constants.MAX_LOGGED_UNEXPECTED)
+          logAlienOccurrence(AddressClassifier.describe(direction), AddressUtilities.ipToString(srcHigh, srcLow), Integer.toString(srcPort), AddressUtilities.ipToString(dstHigh, dstLow), Integer.toString(dstPort));
+    }
+  }
+
+  // the log is shared by the lanes of a ConcurrentDriver and written in blocks of lines (see writeAll())
+  private void logAlienOccurrence(String direction, String ipSrc, String portSrc, String ipDst, String portDst) throws IOException {
+    synchronized (this.aliensFile) {
+      this.aliensFile.add(direction);
+      this.aliensFile.add("src: " + ipSrc + ":" + portSrc);
+      this.aliensFile.add("dst: " + ipDst + ":" + portDst);
+      this.aliensFile.add("");
+      if (this.aliensFile.size() >= Constants.UNEXPECTED_LOG_BUFFER)
+        this.aliensFile.write();
+    }
+  }
+
+  private void updateSlidingWindow() {
+    try {
+      int proof = this.simulationCache.proof();
+
+      if (proof == Constants.NO_RESPONSE)
+        this.statistics.countCacheMiss();
+      else
+        this.statistics.countCacheHit();
+
+      this.slidingWindow.addEntry(proof);
+    } catch (RuntimeException e) {
+      if (e.getMessage() != null)
+        this.exceptionCounter.add(e.getMessage());
+      else
+        this.exceptionCounter.add(e);
+    } catch (NameTooLongException e) {
+      this.exceptionCounter.add(e);
+    }
+  }
+
+  private void updateSimulationCache() throws IOException {
+    try {
+      if (this.messageUtils.allNSECRecords() > 0 || this.messageUtils.allNSEC3Records() > 0) {
+        this.simulationCache.add();
+      }
+      if (this.messageUtils.wildcards() > 0) {
+        this.statistics.countExternalWildcardResponse();
+        this.simulationCache.addWildcard();
+      }
+    } catch (RuntimeException e) {
+      if ((e.getMessage().startsWith("RRSIG for NSEC not found") || e.getMessage().startsWith("RRSIG for NSE3C not found"))
+        && this.messageUtils.isTruncated())
+      {
+        this.statistics.countTruncatedRRSIG();
+      }
+      if (e.getMessage() != null)
+        this.exceptionCounter.add(e.getMessage());
+      else
+        this.exceptionCounter.add(e);
+    }
+  }
+
+  private void clearSlidingWindow() throws IOException {
+    // look for query in sliding windows
+    QueryEntry foundQueryEntry = null;
+    try {
+      foundQueryEntry = this.slidingWindow.getEntry();
+    } catch (RuntimeException e) {
+      if (e.getMessage() != null)
+        this.exceptionCounter.add(e.getMessage());
+      else
+        this.exceptionCounter.add(e);
+    }
+
+    // store latency saving for statistics
+    if (foundQueryEntry != null) {
+      try {
+        long current = this.messageUtils.getCurrentTime();
+        long past = foundQueryEntry.arrival;
+        this.statistics.saveLatencyStatistic(Constants.ALL_STATISTICS, current, past, false);
+
+        // if there was a response based on cache, check if it was right
+        if (foundQueryEntry.cacheResponse != Constants.NO_RESPONSE) {
+          this.statistics.saveLatencyStatistic(Constants.CACHE_HIT_STATISTICS, current, past, true);
+          int realResponseType = this.messageUtils.getResponseType();
+          if (foundQueryEntry.cacheResponse == realResponseType)  {
+            this.statistics.saveLatencyStatistic(Constants.CORRECT_RESPONSE_TYPE, current, past, false);
+          } else {
+            this.statistics.countFalsePositive();
+          }
+        } else {
+          this.statistics.saveLatencyStatistic(Constants.CACHE_HIT_STATISTICS, current, past, false);
+        }
+      } catch (NameTooLongException e) {
+        this.exceptionCounter.add(e);
+      } catch (RuntimeException e) {
+        if (e.getMessage() != null)
+          this.exceptionCounter.add(e.getMessage());
+        else
+          this.exceptionCounter.add(e);
+      }
+    }
+
+    slidingWindow.removeEntry();
+  }
+
+}
@@ -1,385 +1,510 @@
 package dns_resolver_simulation;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.xbill.DNS.Message;
-import org.xbill.DNS.Name;
-import org.xbill.DNS.NameTooLongException;
-import org.xbill.DNS.Record;
 
 class Simulator {
 
-	private SimulationCache simulationCache;
-	private DNSMessageUtilities messageUtils;
-	private SlidingWindow slidingWindow;
-	private Statistics statistics;
-	private ExceptionCounter exceptionCounter;
+	private AddressClassifier classifier;
+	private List<SimulationConfig> configs;
+	private List<SimulationInstance> instances;
+	private boolean configured;
 	private FileWriter logFile;
-	// private FileWriter aliensFile;
-	private FileWriter ipv6File;
+	private long packageCounter;
+
+	// checkpoints (see Checkpoint): position of the last counted frame, the state to start from
+	private CheckpointWriter checkpointWriter;
+	private long checkpointInterval;
+	private Checkpoint resumeCheckpoint;
+	private Checkpoint warmCheckpoint;
+	private String trace;
+	private long lastOffset;
+	private int framesAtOffset;
+	private double lastTimestamp;
+
+	// per resolver: instances (indices in 'instances', one per configuration) of every resolver, the last row
+	// receives packets without a resolver; null if every instance gets all packets
+	private int[][] instancesByResolver;
+	private int[] allInstances;
+	private List<Logger> mergeLoggers;
+	private List<List<DecodedPacket>> pendingBatches;
 
 	public Simulator() throws IOException {
+		this(AddressClassifier.fromConstants());
+	}
+
+	public Simulator(AddressClassifier classifier) throws IOException {
+		this(classifier, null, false);
+	}
+
+	public Simulator(AddressClassifier classifier, List<SimulationConfig> configs) throws IOException {
+		this(classifier, configs, false);
+	}
+
+	/* simulator feeding every packet to one instance per configuration, the trace is read and decoded only once
+	 * each instance writes its logs into a subdirectory named like its configuration
+	 * per resolver, every configuration gets one instance for each resolver (subdirectory named like the resolver,
+	 * "unassigned" for packets without one), which only sees the resolver's packets; the merged statistics of
+	 * all resolvers are written into the configuration's directory
+	 * @params AddressClassifier        classifier for all instances
+	 * @params List<SimulationConfig>   configurations with unique names, null for the default configuration logging
+	 *                                  into the directory of the run
+	 * @params boolean                  true to simulate every resolver on its own
+	 */
+	public Simulator(AddressClassifier classifier, List<SimulationConfig> configs, boolean perResolver) throws IOException {
 		Logger logger = new Logger();
-		this.statistics = new Statistics(logger, 2000, 1);
-		this.messageUtils = new DNSMessageUtilities();
-		this.simulationCache = new SimulationCache(this.messageUtils, this.statistics);
-		this.slidingWindow = new SlidingWindow(this.messageUtils);
+		this.classifier = classifier;
 		this.logFile = logger.getFileWriter("log");
-		this.aliensFile = logger.getFileWriter("unexpected");
-		this.exceptionCounter = new ExceptionCounter(logger);
+		this.configured = configs != null;
+		if (configs == null)
+			configs = Collections.singletonList(SimulationConfig.defaults());
+		this.configs = configs;
+
+		Set<String> names = new HashSet<String>();
+		AddressSet resolvers = classifier.getResolvers();
+		this.instances = new ArrayList<SimulationInstance>();
+		this.mergeLoggers = new ArrayList<Logger>();
+		if (perResolver)
+			this.instancesByResolver = new int[resolvers.size() + 1][configs.size()];
+
+		for (int c = 0; c < configs.size(); c++) {
+			SimulationConfig config = configs.get(c);
+			if (!names.add(config.getName()))
+				throw new IllegalArgumentException("Configuration " + config.getName() + " is given twice");
+			Logger configLogger = this.configured ? logger.getSubLogger(config.getName()) : logger;
+			if (!perResolver) {
+				this.instances.add(new SimulationInstance(config, configLogger));
+				continue;
+			}
+
+			this.mergeLoggers.add(configLogger);
+			for (int r = 0; r <= resolvers.size(); r++) {
+				// IPv6 addresses contain colons, which are avoided in directory names
+				String name = r < resolvers.size() ? resolvers.get(r).replace(':', '_').replace('/', '_') : "unassigned";
+				this.instancesByResolver[r][c] = this.instances.size();
+				this.instances.add(new SimulationInstance(config, config.getName() + "-" + name, configLogger.getSubLogger(name)));
+			}
+		}
+
+		this.allInstances = new int[this.instances.size()];
+		for (int i = 0; i < this.allInstances.length; i++) {
+			this.allInstances[i] = i;
+		}
+	}
+
+	/* writes a checkpoint of all instances into the given directory every 'interval' frames
+	 * @params File   directory of the checkpoints, created if necessary
+	 * @params long   frames between two checkpoints
+	 */
+	public void setCheckpoints(File directory, long interval) throws IOException {
+		if (interval <= 0)
+			throw new IllegalArgumentException("Checkpoint interval has to be positive");
+		this.checkpointWriter = new CheckpointWriter(directory);
+		this.checkpointInterval = interval;
+	}
+
+	/* continues the run of the checkpoint: the instances (same configurations) get its state and the frames
+	 * processed before it are skipped, the trace and the range have to be the same
+	 */
+	public void setResume(Checkpoint checkpoint) {
+		this.resumeCheckpoint = checkpoint;
+	}
+
+	/* starts with the caches of the checkpoint, e.g. of a run over an earlier trace, counters and pending queries
+	 * are not taken over; the arrival times are moved by the time between the checkpoint and the first frame
+	 */
+	public void setWarmStart(Checkpoint checkpoint) {
+		this.warmCheckpoint = checkpoint;
 	}
 
 	public void readFile(String pathname) throws IOException {
-		printConfiguration(pathname);
+		readFile(pathname, TraceRange.ALL, 0);
+	}
+
+	/* runs the simulation over the trace at the given location
+	 * @params String       trace file, directory or glob pattern (see TraceReader.open)
+	 * @params TraceRange   part of the trace to be simulated
+	 * @params int          number of threads decoding DNS messages in parallel, 0 decodes on the simulation thread
+	 */
+	public void readFile(String pathname, TraceRange range, int decoderThreads) throws IOException {
 		File file = new File(pathname);
-		boolean firstTime = true;
-		int counter = 0;
-
-		if (file.exists() && file.isFile()) {
-			InputStream stream = new BufferedInputStream(new FileInputStream(file));
-
-			// variables for conversions
-			double unixSeconds = 0;
-			int ipVersion;
-			String ipSrcString = "";
-			String ipDstString = "";
-			String portSrcString = "";
-			String portDstString = "";
-
-			// prepare bytes to read from stream, variables sorted by the byte order in the file
-			byte[] magic;
-			byte[] timestamp;
-			byte[] frameNo;
-			byte[] ipVer;
-			byte[] srcIp;
-			byte[] dstIp;
-			byte[] transType;
-			byte[] srcPort;
-			byte[] dstPort;
-			byte[] msgLength;
-
-			Message dnsMessage = new Message();
-
-			while (stream.available() > 0) {
-				counter++;
-				if (counter % 1000000 == 0)
-					System.out.println(counter/1000000 + "M packages");
-
-				/* * * * * * * * * * * * * *
-				 * READ PACKAGE FROM FILE  *
-				 * * * * * * * * * * * * * */
-				magic = new byte[4];
-				timestamp = new byte[8];
-				frameNo = new byte[4];
-				ipVer = new byte[1];
-				srcIp = new byte[4];
-				dstIp = new byte[4];
-				transType = new byte[1];
-				srcPort = new byte[2];
-				dstPort = new byte[2];
-				msgLength = new byte[2];
-
-
-				/* MAGIC (only once) */
-				if (firstTime) stream.read(magic);
-
-				/* TIMESTAMP */
-				stream.read(timestamp);
-				unixSeconds = ByteBuffer.wrap(timestamp).order(ByteOrder.LITTLE_ENDIAN).getDouble();
-
-				/* FRAME NUMBER */
-				stream.read(frameNo);
-
-				/* IP VERSION */
-				stream.read(ipVer);
-				ipVersion = Byte.toUnsignedInt(ipVer[0]);
-
-				// increase size of byte arrays for IP addresses depending on IP version
-				if (ipVersion == 6) {
-					srcIp = new byte[16];
-					dstIp = new byte[16];
-				}
+		if (CompactTraceReader.isCompact(file)) {
+			if (!range.isAll())
+				throw new IOException("Time ranges and chunks are not supported by compact traces");
+			replay(pathname, NameDictionary.dictionaryFile(file));
+			return;
+		}
+
+		printConfiguration(pathname, range);
+		if (this.warmCheckpoint != null)
+			warmStart(firstTimestamp(TraceReader.open(pathname, range, this.classifier)));
+		TraceReader reader = TraceReader.open(pathname, range, this.classifier);
+		if (resume(describe(pathname, range)))
+			position(reader);
+
+		if (threaded())
+			readParallel(reader, decoderThreads);
+		else if (decoderThreads > 0)
+			readPipelined(reader, decoderThreads);
+		else
+			readSequential(reader);
+		finish();
+	}
 
-				/* SOURCE & DESTINATION IP ADDRESSES */
-				stream.read(srcIp);
-				stream.read(dstIp);
-				ipSrcString = ipToString(srcIp, ipVersion);
-				ipDstString = ipToString(dstIp, ipVersion);
-
-				/* TRANSPORT TYPE */
-				stream.read(transType);
-
-				/* SOURCE & DESTIONATION PORTS */
-				stream.read(srcPort);
-				stream.read(dstPort);
-				portSrcString = Integer.toString(uint16ToInt(srcPort));
-				portDstString = Integer.toString(uint16ToInt(dstPort));
-
-
-				/* DNS MESSAGE */
-				stream.read(msgLength);
-				byte[] msgBuf = new byte[uint16ToInt(msgLength)];
-				stream.read(msgBuf);
-
-				// remove first time flag
-				firstTime = false;
-
-				if (ipVersion == 4) {
-					/* * * * * * * * * * * * * * *
-					 * READ/PREPARE DNS MESSAGE  *
-					 * * * * * * * * * * * * * * */
-					dnsMessage = new Message();
-					try {
-						dnsMessage = new Message(msgBuf);
-					} catch (Exception e) {
-						this.exceptionCounter.add(e);
-						continue;
-					}
-
-					this.messageUtils.set(dnsMessage);
-					this.messageUtils.setCurrentTime(unixSeconds);
-
-					/* * * * * * * * * * * * * * * *
-					 * QUERY INTERNAL -> RESOLVER  *
-					 * * * * * * * * * * * * * * * */
-					if (
-						this.messageUtils.isResponse() == false												// query
-						&& ipSrcString.startsWith(Constants.INTERNAL_ADDR_OFFSET)			// source = internal
-						&& ipDstString.equals(Constants.RESOLVER_ADDR)								// destination = resolver
-					) {
-						this.statistics.countInternalQuery();
-						this.slidingWindow.setKey(ipSrcString, portSrcString);
-						updateSlidingWindow();
-					}
-					/* * * * * * * * * * * * * * * *
-					 * QUERY RESOLVER -> EXTERNAL  *
-					 * * * * * * * * * * * * * * * */
-					else if (
-						this.messageUtils.isResponse() == false												// query
-						&& ipSrcString.equals(Constants.RESOLVER_ADDR)								// source = resolver
-						&& !ipDstString.startsWith(Constants.INTERNAL_ADDR_OFFSET)		// destination != internal
-					) {
-						this.statistics.countExternalQuery();
-					}
-					/* * * * * * * * * * * * * * * *
-					 * QUERY RESOLVER -> INTERNAL  *
-					 * * * * * * * * * * * * * * * */
-					else if (
-						this.messageUtils.isResponse() == false												// query
-						&& ipSrcString.equals(Constants.RESOLVER_ADDR)								// source = resolver
-						&& ipDstString.startsWith(Constants.INTERNAL_ADDR_OFFSET)			// destination = internal
-					) {
-						logAlienOccurrence("QUERY R -> INT", ipSrcString, portSrcString, ipDstString, portDstString);
-					}
-					/* * * * * * * * * * * * * * * *
-					 * QUERY EXTERNAL -> RESOLVER  *
-					 * * * * * * * * * * * * * * * */
-					else if (
-						this.messageUtils.isResponse() == false												// query
-						&& !ipSrcString.startsWith(Constants.INTERNAL_ADDR_OFFSET)		// source != internal
-						&& ipDstString.equals(Constants.RESOLVER_ADDR)								// destination = resolver
-					) {
-						logAlienOccurrence("QUERY EXT -> R", ipSrcString, portSrcString, ipDstString, portDstString);
-					}
-					/* * * * * * * * * * * * * * * * *
-					 * RESPONSE EXTERNAL -> RESOLVER *
-					 * * * * * * * * * * * * * * * * */
-					else if (
-						this.messageUtils.isResponse()																// response
-						&& !ipSrcString.startsWith(Constants.INTERNAL_ADDR_OFFSET)		// source != internal
-						&& ipDstString.equals(Constants.RESOLVER_ADDR)								// destination = resolver
-					) {
-						this.statistics.countExternalResponse();
-						updateSimulationCache();
-					}
-					/* * * * * * * * * * * * * * * * *
-					 * RESPONSE RESOLVER -> INTERNAL *
-					 * * * * * * * * * * * * * * * * */
-					else if (
-						this.messageUtils.isResponse()																// response
-						&& ipSrcString.equals(Constants.RESOLVER_ADDR)								// source = resolver
-						&& ipDstString.startsWith(Constants.INTERNAL_ADDR_OFFSET)			// destination = internal
-					) {
-						this.statistics.countInternalResponse();
-						this.slidingWindow.setKey(ipDstString, portDstString);
-						clearSlidingWindow();
-					}
-					/* * * * * * * * * * * * * * * * *
-					 * RESPONSE INTERNAL -> RESOLVER *
-					 * * * * * * * * * * * * * * * * */
-					else if (
-						this.messageUtils.isResponse()															// response
-						&& ipSrcString.startsWith(Constants.INTERNAL_ADDR_OFFSET)		// source = internal
-						&& ipDstString.equals(Constants.RESOLVER_ADDR)							// destination = resolver
-					) {
-						// should not exists, bcs filtered before
-						logAlienOccurrence("RESPONSE INT -> R", ipSrcString, portSrcString, ipDstString, portDstString);
-					}
-					/* * * * * * * * * * * * * * * * *
-					 * RESPONSE RESOLVER -> EXTERNAL *
-					 * * * * * * * * * * * * * * * * */
-					else if (
-						this.messageUtils.isResponse()															// response
-						&& ipSrcString.equals(Constants.RESOLVER_ADDR)							// sourc = resolver
-						&& !ipDstString.startsWith(Constants.INTERNAL_ADDR_OFFSET)	// destination != internal
-					) {
-						logAlienOccurrence("RESPONSE R -> EXT", ipSrcString, portSrcString, ipDstString, portDstString);
-					}
-					else {
-						logAlienOccurrence("UNEXPECTED", ipSrcString, portSrcString, ipDstString, portDstString);
-					}
+	/* runs the simulation over a compact trace (see TraceConverter), the classification of its events was done
+	 * during the conversion, so this simulator's resolvers and internal networks are not used
+	 * @params String   compact trace file
+	 * @params File     name dictionary of the compact trace
+	 */
+	public void replay(String pathname, File dictionaryFile) throws IOException {
+		printConfiguration(pathname, TraceRange.ALL);
+		NameDictionary dictionary = NameDictionary.load(dictionaryFile);
+		CompactTraceReader reader = new CompactTraceReader(new File(pathname), dictionary);
+		CompactEvent event = new CompactEvent();
+		if (this.warmCheckpoint != null) {
+			CompactTraceReader first = new CompactTraceReader(new File(pathname), dictionary);
+			if (first.next(event, new DNSMessageUtilities()))
+				warmStart(event.timestamp);
+			first.close();
+		}
+		// compact traces cannot seek, the events processed before the checkpoint are read again
+		if (resume(describe(pathname, TraceRange.ALL))) {
+			DNSMessageUtilities skipped = new DNSMessageUtilities();
+			for (long i = 0; i < this.resumeCheckpoint.getFrames(); i++) {
+				if (!reader.next(event, skipped))
+					throw new IOException("Trace ends before the checkpoint");
+			}
+		}
+
+		if (threaded()) {
+			// every event gets utilities of its own, they are shared by all instances
+			startInstances();
+			DNSMessageUtilities utilities = new DNSMessageUtilities();
+			while (reader.next(event, utilities)) {
+				countPackage(-1, event.timestamp);
+				dispatch(new DecodedPacket(event, utilities));
+				if (event.hasMessage)
+					utilities = new DNSMessageUtilities();
+			}
+			joinInstances();
+		} else {
+			SimulationInstance instance = this.instances.get(0);
+			while (reader.next(event, instance.getMessageUtils())) {
+				countPackage(-1, event.timestamp);
+
+				// message was filled in by the reader (if the direction needs it)
+				if (event.exception != null) {
+					instance.countException(event.exception);
+					continue;
 				}
+
+				if (event.hasMessage)
+					instance.getMessageUtils().setCurrentTime(DNSMessageUtilities.toTicks(event.timestamp));
+				instance.simulate(event.direction, event.srcHigh, event.srcLow, event.srcPort, event.dstHigh, event.dstLow, event.dstPort);
 			}
-			stream.close();
-			String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyy/MM/dd HH:mm:ss"));
-			System.out.println("Simulation finished at " + now);
-			this.logFile.add("Simulation finished at " + now);
-			this.logFile.write();
-
-			this.statistics.writeAll();
-			this.exceptionCounter.writeAll();
 		}
+		reader.close();
+		finish();
 	}
 
-	private void printConfiguration(String pathname) throws IOException {
-		String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyy/MM/dd HH:mm:ss"));
-		String start = "Simulation started at " + now;
-		String path = "Location of source file: " + pathname;
+	// true if the instances run on threads of their own, always for several ones or a concurrent configuration
+	private boolean threaded() {
+		if (this.instances.size() > 1 || this.instancesByResolver != null)
+			return true;
+		return this.instances.get(0).getConfig().isConcurrent();
+	}
 
-		this.logFile.add(start);
-		this.logFile.add("RESOLVER_ADDR = " + Constants.RESOLVER_ADDR);
-		this.logFile.add("INTERNAL_ADDR_OFFSET = " + Constants.INTERNAL_ADDR_OFFSET);
-		this.logFile.add("LOG_PATH = " + Constants.LOG_PATH);
-		this.logFile.add(path);
+	private void finish() throws IOException {
+		String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyy/MM/dd HH:mm:ss"));
+		System.out.println("Simulation finished at " + now);
+		this.logFile.add("Simulation finished at " + now);
 		this.logFile.write();
 
-		System.out.println(start);
-		System.out.println("RESOLVER_ADDR = " + Constants.RESOLVER_ADDR);
-		System.out.println("INTERNAL_ADDR_OFFSET = " + Constants.INTERNAL_ADDR_OFFSET);
-		System.out.println("LOG_PATH = " + Constants.LOG_PATH);
-		System.out.println(path);
+		if (this.checkpointWriter != null)
+			this.checkpointWriter.close();
+		for (SimulationInstance instance : this.instances) {
+			instance.writeAll();
+		}
+		if (this.instancesByResolver != null)
+			writeMerged();
 	}
 
-	private void logAlienOccurrence(String direction, String ipSrc, String portSrc, String ipDst, String portDst) throws IOException {
-		this.aliensFile.add(direction);
-		this.aliensFile.add("src: " + ipSrc + ":" + portSrc);
-		this.aliensFile.add("dst: " + ipDst + ":" + portDst);
-		this.aliensFile.add("");
-		this.aliensFile.write();
+	// statistics and exceptions of all resolvers, for every configuration
+	private void writeMerged() {
+		for (int c = 0; c < this.mergeLoggers.size(); c++) {
+			Logger logger = this.mergeLoggers.get(c);
+			SimulationConfig config = this.configs.get(c);
+			Statistics statistics = new Statistics(logger, config.getLatencyRange(), config.getLatencySpread());
+			ExceptionCounter exceptionCounter = new ExceptionCounter(logger);
+			for (int[] resolverInstances : this.instancesByResolver) {
+				SimulationInstance instance = this.instances.get(resolverInstances[c]);
+				statistics.merge(instance.getStatistics());
+				exceptionCounter.merge(instance.getExceptionCounter());
+			}
+			statistics.writeAll();
+			exceptionCounter.writeAll();
+		}
 	}
 
-	private void updateSlidingWindow() {
-		try {
-			int proof = this.simulationCache.proof();
-
-			if (proof == Constants.NO_RESPONSE)
-				this.statistics.countCacheMiss();
-			else
-				this.statistics.countCacheHit();
-
-			this.slidingWindow.addEntry(proof);
-		} catch (RuntimeException e) {
-			if (e.getMessage() != null)
-				this.exceptionCounter.add(e.getMessage());
-			else
-				this.exceptionCounter.add(e);
-		} catch (NameTooLongException e) {
-			this.exceptionCounter.add(e);
+	private void readSequential(TraceReader reader) throws IOException {
+		SimulationInstance instance = this.instances.get(0);
+		TraceFrame frame = new TraceFrame();
+		Message dnsMessage;
+
+		while (reader.next(frame)) {
+			countPackage(frame.getOffset(), frame.getTimestamp());
+
+			long srcHigh = frame.getSrcHigh();
+			long srcLow = frame.getSrcLow();
+			long dstHigh = frame.getDstHigh();
+			long dstLow = frame.getDstLow();
+			boolean complete = frame.getPayloadLength() >= Constants.DNS_HEADER_LENGTH;
+			int direction = this.classifier.classify(complete && AddressClassifier.isResponse(frame), srcHigh, srcLow, dstHigh, dstLow);
+
+			/* * * * * * * * * * * * * * *
+			 * READ/PREPARE DNS MESSAGE  *
+			 * * * * * * * * * * * * * * */
+			// incomplete headers are parsed anyway to count the resulting exception
+			if (AddressClassifier.needsMessage(direction) || !complete) {
+				try {
+					dnsMessage = new Message(frame.getPayload());
+				} catch (Exception e) {
+					instance.countException(e);
+					continue;
+				}
+
+				instance.setMessage(dnsMessage, frame.getTimestamp());
+			}
+			instance.simulate(direction, srcHigh, srcLow, frame.getSrcPort(), dstHigh, dstLow, frame.getDstPort());
 		}
+		reader.close();
 	}
 
-	private void updateSimulationCache() throws IOException {
-		try {
-			if (this.messageUtils.allNSECRecords() > 0 || this.messageUtils.allNSEC3Records() > 0) {
-				this.simulationCache.add();
+	private void readPipelined(TraceReader reader, int decoderThreads) throws IOException {
+		SimulationInstance instance = this.instances.get(0);
+		DecodePipeline pipeline = new DecodePipeline(reader, this.classifier, decoderThreads);
+		DecodedPacket packet;
+
+		// message was already parsed and prepared by a decoder thread (if the direction needs it)
+		while ((packet = pipeline.next()) != null) {
+			countPackage(packet.offset, packet.timestamp);
+			instance.process(packet);
+		}
+		pipeline.close();
+	}
+
+	/* reads and decodes the trace once for all instances, each instance simulates on its own thread
+	 * messages are decoded on the reading thread or, with decoder threads, by a DecodePipeline
+	 */
+	private void readParallel(TraceReader reader, int decoderThreads) throws IOException {
+		startInstances();
+
+		if (decoderThreads > 0) {
+			DecodePipeline pipeline = new DecodePipeline(reader, this.classifier, decoderThreads);
+			DecodedPacket packet;
+			while ((packet = pipeline.next()) != null) {
+				countPackage(packet.offset, packet.timestamp);
+				dispatch(packet);
 			}
-			if (this.messageUtils.wildcards() > 0) {
-				this.statistics.countExternalWildcardResponse();
-				this.simulationCache.addWildcard();
+			pipeline.close();
+		} else {
+			TraceFrame frame = new TraceFrame();
+			while (reader.next(frame)) {
+				countPackage(frame.getOffset(), frame.getTimestamp());
+				DecodedPacket packet = new DecodedPacket(frame, this.classifier);
+				if (packet.needsDecoding())
+					packet.decode();
+				dispatch(packet);
 			}
-		} catch (RuntimeException e) {
-			if ((e.getMessage().startsWith("RRSIG for NSEC not found") || e.getMessage().startsWith("RRSIG for NSE3C not found"))
-				&& this.messageUtils.isTruncated())
-			{
-				this.statistics.countTruncatedRRSIG();
+			reader.close();
+		}
+		joinInstances();
+	}
+
+	private void startInstances() {
+		this.pendingBatches = new ArrayList<List<DecodedPacket>>();
+		for (SimulationInstance instance : this.instances) {
+			this.pendingBatches.add(new ArrayList<DecodedPacket>(Constants.DECODE_BATCH_SIZE));
+			instance.start();
+		}
+	}
+
+	// adds the packet to the pending batches of the instances responsible for it, full batches are submitted
+	private void dispatch(DecodedPacket packet) throws IOException {
+		int[] targets = this.allInstances;
+		if (this.instancesByResolver != null)
+			targets = this.instancesByResolver[packet.resolver < 0 ? this.instancesByResolver.length - 1 : packet.resolver];
+
+		for (int target : targets) {
+			List<DecodedPacket> batch = this.pendingBatches.get(target);
+			batch.add(packet);
+			if (batch.size() == Constants.DECODE_BATCH_SIZE) {
+				this.instances.get(target).submit(batch);
+				this.pendingBatches.set(target, new ArrayList<DecodedPacket>(Constants.DECODE_BATCH_SIZE));
 			}
-			if (e.getMessage() != null)
-				this.exceptionCounter.add(e.getMessage());
-			else
-				this.exceptionCounter.add(e);
 		}
 	}
 
-	private void clearSlidingWindow() throws IOException {
-		// look for query in sliding windows
-		QueryEntry foundQueryEntry = null;
-		try {
-			foundQueryEntry = this.slidingWindow.getEntry();
-		} catch (RuntimeException e) {
-			if (e.getMessage() != null)
-				this.exceptionCounter.add(e.getMessage());
-			else
-				this.exceptionCounter.add(e);
+	private void joinInstances() throws IOException {
+		for (int i = 0; i < this.instances.size(); i++) {
+			SimulationInstance instance = this.instances.get(i);
+			if (!this.pendingBatches.get(i).isEmpty())
+				instance.submit(this.pendingBatches.get(i));
+			instance.join();
+		}
+	}
+
+	/* counts a frame before it is simulated, so a checkpoint taken here contains all frames before it
+	 * @params long     offset of the frame, -1 if unknown
+	 * @params double   timestamp of the frame
+	 */
+	private void countPackage(long offset, double timestamp) throws IOException {
+		if (offset != this.lastOffset) {
+			this.lastOffset = offset;
+			this.framesAtOffset = 0;
+		}
+		if (this.checkpointWriter != null && this.packageCounter > 0 && this.packageCounter % this.checkpointInterval == 0)
+			checkpoint(offset);
+
+		this.packageCounter++;
+		this.framesAtOffset++;
+		this.lastTimestamp = timestamp;
+		if (this.packageCounter % 1000000 == 0)
+			System.out.println(this.packageCounter/1000000 + "M packages");
+	}
+
+	/* takes a checkpoint of all instances, instances on their own threads serialize their state after the
+	 * batches submitted so far, the CheckpointWriter gets the checkpoint as soon as all states are set
+	 */
+	private void checkpoint(long offset) throws IOException {
+		Checkpoint checkpoint = new Checkpoint(this.trace, this.packageCounter, offset, this.framesAtOffset, this.lastTimestamp, this.instances.size());
+		if (this.pendingBatches == null) {
+			SimulationInstance instance = this.instances.get(0);
+			checkpoint.setState(0, instance.getName(), instance.writeState());
+			this.checkpointWriter.submit(checkpoint);
+			return;
 		}
 
-		// store latency saving for statistics
-		if (foundQueryEntry != null) {
-			try {
-				double current = this.messageUtils.getCurrentTime();
-				double past = foundQueryEntry.arrival;
-				this.statistics.saveLatencyStatistic(Constants.ALL_STATISTICS, current, past, false);
-
-				// if there was a response based on cache, check if it was right
-				if (foundQueryEntry.cacheResponse != Constants.NO_RESPONSE) {
-					this.statistics.saveLatencyStatistic(Constants.CACHE_HIT_STATISTICS, current, past, true);
-					int realResponseType = this.messageUtils.getResponseType();
-					if (foundQueryEntry.cacheResponse == realResponseType)  {
-						this.statistics.saveLatencyStatistic(Constants.CORRECT_RESPONSE_TYPE, current, past, false);
-					} else {
-						this.statistics.countFalsePositive();
-					}
-				} else {
-					this.statistics.saveLatencyStatistic(Constants.CACHE_HIT_STATISTICS, current, past, false);
-				}
-			} catch (NameTooLongException e) {
-				this.exceptionCounter.add(e);
-			} catch (RuntimeException e) {
-				if (e.getMessage() != null)
-					this.exceptionCounter.add(e.getMessage());
-				else
-					this.exceptionCounter.add(e);
+		for (int i = 0; i < this.instances.size(); i++) {
+			SimulationInstance instance = this.instances.get(i);
+			if (!this.pendingBatches.get(i).isEmpty()) {
+				instance.submit(this.pendingBatches.get(i));
+				this.pendingBatches.set(i, new ArrayList<DecodedPacket>(Constants.DECODE_BATCH_SIZE));
 			}
+			instance.submitCheckpoint(checkpoint, i, this.checkpointWriter);
 		}
+	}
 
-		slidingWindow.removeEntry();
+	/* restores the instances from the resume checkpoint, if there is one
+	 * @params String        description of the trace and its range (see describe(...))
+	 * @throws IOException   if the checkpoint belongs to another trace or lacks an instance
+	 * @return boolean       true if the frames before the checkpoint have to be skipped
+	 */
+	private boolean resume(String trace) throws IOException {
+		this.trace = trace;
+		this.lastOffset = -1;
+		if (this.resumeCheckpoint == null)
+			return false;
+
+		Checkpoint checkpoint = this.resumeCheckpoint;
+		if (!checkpoint.getTrace().equals(trace))
+			throw new IOException("Checkpoint belongs to " + checkpoint.getTrace() + ", not to " + trace);
+		for (SimulationInstance instance : this.instances) {
+			instance.readState(checkpoint.getState(instance.getName()));
+		}
+		this.packageCounter = checkpoint.getFrames();
+		this.lastOffset = checkpoint.getOffset();
+		this.framesAtOffset = checkpoint.getFramesAtOffset();
+		this.lastTimestamp = checkpoint.getTimestamp();
+
+		String message = "Resuming after " + checkpoint.getFrames() + " frames";
+		System.out.println(message);
+		this.logFile.add(message);
+		this.logFile.write();
+		return true;
 	}
 
-	private int uint16ToInt(byte[] bytes) {
-		return (((0xFF & bytes[1]) << 8) | (0xFF & bytes[0]));
+	// moves the reader behind the last frame of the resume checkpoint, by seeking or by skipping all its frames
+	private void position(TraceReader reader) throws IOException {
+		Checkpoint checkpoint = this.resumeCheckpoint;
+		long skip = checkpoint.getFramesAtOffset();
+		try {
+			if (checkpoint.getOffset() < 0)
+				throw new IOException("Checkpoint has no offset");
+			reader.seek(checkpoint.getOffset());
+		} catch (IOException e) {
+			skip = checkpoint.getFrames();
+		}
+
+		TraceFrame frame = new TraceFrame();
+		for (long i = 0; i < skip; i++) {
+			if (!reader.next(frame))
+				throw new IOException("Trace ends before the checkpoint");
+		}
+	}
+
+	private double firstTimestamp(TraceReader reader) throws IOException {
+		TraceFrame frame = new TraceFrame();
+		double timestamp = reader.next(frame) ? frame.getTimestamp() : this.warmCheckpoint.getTimestamp();
+		reader.close();
+		return timestamp;
 	}
 
-	private String ipToString(byte[] bytes, int version) {
-		String address = "";
-		if (version == 4) {
-			address = Byte.toUnsignedInt((byte) (0xFF & bytes[0])) + "." + Byte.toUnsignedInt((byte) (0xFF & bytes[1])) + "." + Byte.toUnsignedInt((byte) (0xFF & bytes[2])) + "." + Byte.toUnsignedInt((byte) (0xFF & bytes[3]));
+	// loads the caches of the warm start checkpoint, the trace continues where the checkpoint's trace stopped
+	private void warmStart(double firstTimestamp) throws IOException {
+		Checkpoint checkpoint = this.warmCheckpoint;
+		long shift = DNSMessageUtilities.toTicks(firstTimestamp) - DNSMessageUtilities.toTicks(checkpoint.getTimestamp());
+		for (SimulationInstance instance : this.instances) {
+			instance.readWarmState(checkpoint.getState(instance.getName()), shift);
 		}
-		else if (version == 6) {
-			address = Integer.toHexString(((0xFF & bytes[0]) << 8) | (0xFF & bytes[1])) + ":" + Integer.toHexString(((0xFF & bytes[2]) << 8) | (0xFF & bytes[3])) + ":" +
-			Integer.toHexString(((0xFF & bytes[4]) << 8) | (0xFF & bytes[5])) + ":" + Integer.toHexString(((0xFF & bytes[6]) << 8) | (0xFF & bytes[7])) + ":" +
-			Integer.toHexString(((0xFF & bytes[8]) << 8) | (0xFF & bytes[9])) + ":" + Integer.toHexString(((0xFF & bytes[10]) << 8) | (0xFF & bytes[11])) + ":" +
-			Integer.toHexString(((0xFF & bytes[12]) << 8) | (0xFF & bytes[13])) + ":" + Integer.toHexString(((0xFF & bytes[14]) << 8) | (0xFF & bytes[15]));
+
+		String message = "Warm start with the caches of " + checkpoint.getTrace() + " after " + checkpoint.getFrames() + " frames";
+		System.out.println(message);
+		this.logFile.add(message);
+		this.logFile.write();
+	}
+
+	private static String describe(String pathname, TraceRange range) {
+		return pathname + (range.isAll() ? "" : " (" + range + ")");
+	}
+
+	private void printConfiguration(String pathname, TraceRange range) throws IOException {
+		String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyy/MM/dd HH:mm:ss"));
+		String start = "Simulation started at " + now;
+		String path = "Location of source file: " + describe(pathname, range);
+
+		this.logFile.add(start);
+		this.logFile.add("RESOLVER_ADDRS = " + this.classifier.getResolvers());
+		this.logFile.add("INTERNAL_NETWORKS = " + this.classifier.getInternalNetworks());
+		this.logFile.add("LOG_PATH = " + Constants.LOG_PATH);
+		this.logFile.add(path);
+
+		System.out.println(start);
+		System.out.println("RESOLVER_ADDRS = " + this.classifier.getResolvers());
+		System.out.println("INTERNAL_NETWORKS = " + this.classifier.getInternalNetworks());
+		System.out.println("LOG_PATH = " + Constants.LOG_PATH);
+		System.out.println(path);
+
+		if (this.instancesByResolver != null) {
+			this.logFile.add("PER_RESOLVER = true");
+			System.out.println("PER_RESOLVER = true");
 		}
-		return address;
+		if (this.configured) {
+			for (SimulationConfig config : this.configs) {
+				this.logFile.add("CONFIGURATION = " + config);
+				System.out.println("CONFIGURATION = " + config);
+			}
+		}
+		this.logFile.write();
 	}
 
 }
@@ -0,0 +1,90 @@
+package dns_resolver_simulation;
+
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.Record;
+
+/* cached NSEC3 record whose owner name, next hash, flags, RRSIG label count and type bitmap are kept in a RecordSlab
+ * only the owner hash (the key in its NSEC3Ring) and the handle of the slot stay on the heap, names are hashed with
+ * the parameters of the ring
+ */
+public class SlabNSEC3Record extends CachedNSEC3Record {
+  private RecordSlab slab;
+  private long slot;
+  private int keyHash;
+  private int size;
+
+  /* @params EnhancedNSEC3Record   record with an owner hash
+   * @params int                   label count of its RRSIG record, -1 if missing
+   * @params long                  arrival tick
+   * @params long                  absolute expiry tick
+   * @params NSEC3Ring             ring the record is added to
+   * @params RecordSlab            store of the record
+   */
+  public SlabNSEC3Record(EnhancedNSEC3Record record, int sigLabels, long arrival, long expiry, NSEC3Ring ring, RecordSlab slab) {
+    super(record.getOwnerHash(), arrival, expiry, ring);
+    this.slab = slab;
+    CanonicalName owner = CanonicalName.of(record.getName());
+    int flags = (record.isLastInChain() ? RecordSlab.LAST_IN_CHAIN : 0)
+      | (record.getFlags() == NSEC3Record.Flags.OPT_OUT ? RecordSlab.OPT_OUT : 0);
+    int[] types = record.getTypes();
+    this.slot = slab.add(flags, sigLabels, owner.toWire(), record.getNext(), types);
+    this.keyHash = owner.hashCode() * 31 + getType();
+    this.size = estimateSize(owner.length(), record.getNext().length, toBitmap(types), toHighTypes(types));
+  }
+
+  @Override
+  public int getKeyHash() {
+    return this.keyHash;
+  }
+
+  @Override
+  protected int estimateSize() {
+    return this.size;
+  }
+
+  @Override
+  public int getSigLabels() {
+    return this.slab.getSigLabels(this.slot);
+  }
+
+  @Override
+  protected byte[] getNextData() {
+    return this.slab.getNext(this.slot);
+  }
+
+  @Override
+  public void release() {
+    this.slab.free(this.slot);
+  }
+
+  @Override
+  public int[] getTypes() {
+    return this.slab.getTypes(this.slot);
+  }
+
+  @Override
+  public boolean containsType(int type) {
+    return this.slab.containsType(this.slot, type);
+  }
+
+  @Override
+  public boolean covers(byte[] hash) {
+    return EnhancedNSEC3Record.covers(getOwnerHash(), this.slab.getNext(this.slot), hash);
+  }
+
+  @Override
+  public boolean isLastInChain() {
+    return (this.slab.getFlags(this.slot) & RecordSlab.LAST_IN_CHAIN) != 0;
+  }
+
+  @Override
+  public boolean hasOptOut() {
+    return (this.slab.getFlags(this.slot) & RecordSlab.OPT_OUT) != 0;
+  }
+
+  @Override
+  public Record toRecord() {
+    return toRecord(CanonicalName.fromWire(this.slab.getOwner(this.slot)), hasOptOut(), this.slab.getNext(this.slot), getTypes());
+  }
+
+}
@@ -0,0 +1,80 @@
+package dns_resolver_simulation;
+
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Record;
+
+/* cached NSEC record whose next name, RRSIG label count and type bitmap are kept in a RecordSlab
+ * only the owner name (the key in its ResponseEntry) and the handle of the slot stay on the heap
+ */
+public class SlabNSECRecord extends CachedNSECRecord {
+  private RecordSlab slab;
+  private long slot;
+  private int size;
+
+  /* @params NSECRecord    record
+   * @params int           label count of its RRSIG record, -1 if missing
+   * @params long          arrival tick
+   * @params long          absolute expiry tick
+   * @params RecordSlab    store of the record
+   */
+  public SlabNSECRecord(NSECRecord record, int sigLabels, long arrival, long expiry, RecordSlab slab) {
+    super(CanonicalName.of(record.getName()), arrival, expiry);
+    this.slab = slab;
+    CanonicalName next = CanonicalName.of(record.getNext());
+    int flags = getOwner().compareTo(next) > 0 ? RecordSlab.LAST_IN_CHAIN : 0;
+    int[] types = record.getTypes();
+    this.slot = slab.add(flags, sigLabels, new byte[0], next.toWire(), types);
+    this.size = estimateSize(getOwner().length(), next.length(), toBitmap(types), toHighTypes(types));
+  }
+
+  private CanonicalName getNext() {
+    return CanonicalName.fromWire(this.slab.getNext(this.slot));
+  }
+
+  @Override
+  protected int estimateSize() {
+    return this.size;
+  }
+
+  @Override
+  public int getSigLabels() {
+    return this.slab.getSigLabels(this.slot);
+  }
+
+  @Override
+  protected byte[] getNextData() {
+    return this.slab.getNext(this.slot);
+  }
+
+  @Override
+  public void release() {
+    this.slab.free(this.slot);
+  }
+
+  @Override
+  public int[] getTypes() {
+    return this.slab.getTypes(this.slot);
+  }
+
+  @Override
+  public boolean containsType(int type) {
+    return this.slab.containsType(this.slot, type);
+  }
+
+  @Override
+  public boolean inbetween(CanonicalName needle) {
+    return EnhancedNSECRecord.inBetween(getOwner(), getNext(), needle);
+  }
+
+  @Override
+  public boolean isLastInChain() {
+    return (this.slab.getFlags(this.slot) & RecordSlab.LAST_IN_CHAIN) != 0;
+  }
+
+  @Override
+  public Record toRecord() {
+    return new NSECRecord(getOwner().toName(), DClass.IN, 0, getNext().toName(), getTypes());
+  }
+
+}
@@ -1,27 +1,113 @@
 package dns_resolver_simulation;
 
-import java.util.HashMap;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.function.Predicate;
 
 import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
 
+/* pending queries of the clients, keyed by client address, client port and DNS ID
+ * the keys are stored in primitive arrays of an open addressing table (linear probing), so setting a key and
+ * looking it up needs no allocation, for IPv4 as well as for IPv6 clients
+ */
 public class SlidingWindow {
-  private HashMap<String, QueryEntry> storage;
+  private static final long OCCUPIED = 1L << 40;
+
+  private long[] keyHighs;
+  private long[] keyLows;
+  private long[] keyRests;          // OCCUPIED | port << 16 | DNS ID, 0 marks a free slot
+  private QueryEntry[] entries;
+  private int size;
   private DNSMessageUtilities messageUtils;
-  private String currentKey;
+  private long currentHigh;
+  private long currentLow;
+  private long currentRest;
 
   public SlidingWindow(DNSMessageUtilities messageUtils) {
     this.messageUtils = messageUtils;
-    this.storage = new HashMap<String, QueryEntry>();
+    allocate(1024);
+    this.currentRest = 0;
+  }
+
+  private void allocate(int capacity) {
+    this.keyHighs = new long[capacity];
+    this.keyLows = new long[capacity];
+    this.keyRests = new long[capacity];
+    this.entries = new QueryEntry[capacity];
+    this.size = 0;
+  }
+
+  private int slot(long high, long low, long rest) {
+    long hash = high * 0x9E3779B97F4A7C15L + low;
+    hash = hash * 0x9E3779B97F4A7C15L + rest;
+    hash ^= hash >>> 29;
+    return (int) hash & (this.keyRests.length - 1);
   }
 
-  private String obtainKey(String ip, String port) {
-    return ip + ":" + port + "#" + this.messageUtils.getID();
+  // slot of the given key, or the free slot where it would be inserted
+  private int find(long high, long low, long rest) {
+    int slot = slot(high, low, rest);
+    while (this.keyRests[slot] != 0
+      && !(this.keyRests[slot] == rest && this.keyLows[slot] == low && this.keyHighs[slot] == high)) {
+      slot = (slot + 1) & (this.keyRests.length - 1);
+    }
+    return slot;
+  }
+
+  private void put(long high, long low, long rest, QueryEntry entry) {
+    int slot = find(high, low, rest);
+    if (this.keyRests[slot] == 0) {
+      this.keyHighs[slot] = high;
+      this.keyLows[slot] = low;
+      this.keyRests[slot] = rest;
+      this.size++;
+    }
+    this.entries[slot] = entry;
+
+    if (this.size * 2 > this.keyRests.length)
+      grow();
+  }
+
+  private void grow() {
+    long[] highs = this.keyHighs;
+    long[] lows = this.keyLows;
+    long[] rests = this.keyRests;
+    QueryEntry[] oldEntries = this.entries;
+    allocate(rests.length * 2);
+    for (int i = 0; i < rests.length; i++) {
+      if (rests[i] != 0)
+        put(highs[i], lows[i], rests[i], oldEntries[i]);
+    }
+  }
+
+  // removes a slot and moves following entries of the same probe sequence back (no tombstones needed)
+  private void remove(int slot) {
+    int mask = this.keyRests.length - 1;
+    int free = slot;
+    int next = (slot + 1) & mask;
+    while (this.keyRests[next] != 0) {
+      int home = slot(this.keyHighs[next], this.keyLows[next], this.keyRests[next]);
+      // move the entry if its home slot does not lay cyclically in (free, next]
+      if (((next - home) & mask) >= ((next - free) & mask)) {
+        this.keyHighs[free] = this.keyHighs[next];
+        this.keyLows[free] = this.keyLows[next];
+        this.keyRests[free] = this.keyRests[next];
+        this.entries[free] = this.entries[next];
+        free = next;
+      }
+      next = (next + 1) & mask;
+    }
+    this.keyRests[free] = 0;
+    this.entries[free] = null;
+    this.size--;
   }
 
   public void addEntry(int cacheResponse) throws RuntimeException {
-    String key = getKey();
+    checkKey();
     Record question = this.messageUtils.getQuestion();
-    QueryEntry check = this.storage.get(key);
+    QueryEntry check = this.entries[find(this.currentHigh, this.currentLow, this.currentRest)];
     if (check != null && !check.question.getName().equals(question.getName())) {
       throw new RuntimeException("QueryEntry already exists");
     }
@@ -30,20 +116,27 @@ public class SlidingWindow {
     queryEntry.arrival = this.messageUtils.getCurrentTime();
     queryEntry.cacheResponse = cacheResponse;
 
-    this.storage.put(key, queryEntry);
+    put(this.currentHigh, this.currentLow, this.currentRest, queryEntry);
   }
 
-  public void setKey(String ip, String port) {
-    this.currentKey = obtainKey(ip, port);
+  /* selects the client of the current message, the DNS ID is taken from the current message
+   * @params long   client address, upper 64 bits (see AddressSet)
+   * @params long   client address, lower 64 bits
+   * @params int    client port
+   */
+  public void setKey(long high, long low, int port) {
+    this.currentHigh = high;
+    this.currentLow = low;
+    this.currentRest = OCCUPIED | ((long) port << 16) | this.messageUtils.getMessageID();
   }
 
-  public String getKey() throws RuntimeException {
-    if (this.currentKey.isEmpty()) throw new RuntimeException("Key of SlidingWindow not set");
-    return this.currentKey;
+  private void checkKey() throws RuntimeException {
+    if (this.currentRest == 0) throw new RuntimeException("Key of SlidingWindow not set");
   }
 
   public QueryEntry getEntry() throws RuntimeException {
-    QueryEntry found = storage.get(getKey());
+    checkKey();
+    QueryEntry found = this.entries[find(this.currentHigh, this.currentLow, this.currentRest)];
     if (found == null) {
       throw new RuntimeException("QueryEntry not found");
     }
@@ -51,6 +144,62 @@ public class SlidingWindow {
   }
 
   public void removeEntry() {
-    this.storage.remove(getKey());
+    checkKey();
+    int slot = find(this.currentHigh, this.currentLow, this.currentRest);
+    if (this.keyRests[slot] != 0)
+      remove(slot);
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  /* copies pending queries into another window, e.g. the ones of every lane of a ConcurrentDriver
+   * @params SlidingWindow       window receiving the queries
+   * @params Predicate<Record>   selects the queries by their question
+   */
+  public void copyTo(SlidingWindow other, Predicate<Record> questions) {
+    for (int slot = 0; slot < this.keyRests.length; slot++) {
+      if (this.keyRests[slot] != 0 && questions.test(this.entries[slot].question))
+        other.put(this.keyHighs[slot], this.keyLows[slot], this.keyRests[slot], this.entries[slot]);
+    }
+  }
+
+  public void clear() {
+    allocate(1024);
+  }
+
+  // pending queries for a checkpoint (see Checkpoint)
+  public void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(this.size);
+    for (int slot = 0; slot < this.keyRests.length; slot++) {
+      if (this.keyRests[slot] == 0)
+        continue;
+      out.writeLong(this.keyHighs[slot]);
+      out.writeLong(this.keyLows[slot]);
+      out.writeLong(this.keyRests[slot]);
+      byte[] question = this.entries[slot].question.toWire(Section.QUESTION);
+      out.writeShort(question.length);
+      out.write(question);
+      out.writeLong(this.entries[slot].arrival);
+      out.writeInt(this.entries[slot].cacheResponse);
+    }
+  }
+
+  public void readState(DataInputStream in) throws IOException {
+    allocate(1024);
+    int entries = in.readInt();
+    for (int i = 0; i < entries; i++) {
+      long high = in.readLong();
+      long low = in.readLong();
+      long rest = in.readLong();
+      byte[] question = new byte[in.readUnsignedShort()];
+      in.readFully(question);
+      QueryEntry queryEntry = new QueryEntry();
+      queryEntry.question = Record.fromWire(question, Section.QUESTION);
+      queryEntry.arrival = in.readLong();
+      queryEntry.cacheResponse = in.readInt();
+      put(high, low, rest, queryEntry);
+    }
   }
 }
\ No newline at end of file
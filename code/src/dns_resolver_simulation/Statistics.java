@@ -1,5 +1,7 @@
 package dns_resolver_simulation;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 
 public class Statistics {
@@ -23,11 +25,23 @@ public class Statistics {
   private int extWildcardResponseCounter;
   private FileWriter counterFile;
   private int truncatedRRSIGCounter;
+  private long nsec3HashHitCounter;
+  private long nsec3HashMissCounter;
+  private long proofMemoHitCounter;
+  private long proofMemoMissCounter;
+  private long zoneFilterRejectionCounter;
+  private long zoneFilterFalsePositiveCounter;
+  private long zoneFilterSkippedLookupCounter;
+  private int expiredRecordCounter;
+  private int evictionCounter;
+  private int rejectedAdmissionCounter;
+  private int unexpectedPacketCounter;
+  private int liveRecords;
+  private long offHeapBytes;
 
   public Statistics(Logger logger, int timeRange, int timeSpread) {
 
     // initialze statistic variables
-    this.latencyCategories = new int[(timeRange / timeSpread) + 1];
     this.cacheHitCounter = 0;
     this.cacheMissCounter = 0;
     this.falsePositiveCounter = 0;
@@ -43,6 +57,19 @@ public class Statistics {
     this.extResponseCounter = 0;
     this.extWildcardResponseCounter = 0;
     this.truncatedRRSIGCounter = 0;
+    this.nsec3HashHitCounter = 0;
+    this.nsec3HashMissCounter = 0;
+    this.proofMemoHitCounter = 0;
+    this.proofMemoMissCounter = 0;
+    this.zoneFilterRejectionCounter = 0;
+    this.zoneFilterFalsePositiveCounter = 0;
+    this.zoneFilterSkippedLookupCounter = 0;
+    this.expiredRecordCounter = 0;
+    this.evictionCounter = 0;
+    this.rejectedAdmissionCounter = 0;
+    this.unexpectedPacketCounter = 0;
+    this.liveRecords = 0;
+    this.offHeapBytes = 0;
 
     this.counterFile = logger.getFileWriter("counter");
 
@@ -112,7 +139,73 @@ public class Statistics {
     this.truncatedRRSIGCounter++;
   }
 
-  public void saveLatencyStatistic(String name, double current, double past, boolean countHitExtra) {
+  public void countNsec3HashHit() {
+    this.nsec3HashHitCounter++;
+  }
+
+  public void countNsec3HashMiss() {
+    this.nsec3HashMissCounter++;
+  }
+
+  public void countProofMemoHit() {
+    this.proofMemoHitCounter++;
+  }
+
+  public void countProofMemoMiss() {
+    this.proofMemoMissCounter++;
+  }
+
+  // an ancestor of a looked up name the ZoneFilter excluded from the lookup
+  public void countZoneFilterRejection() {
+    this.zoneFilterRejectionCounter++;
+  }
+
+  // an ancestor of a looked up name the ZoneFilter reported, but which is no cached zone
+  public void countZoneFilterFalsePositive() {
+    this.zoneFilterFalsePositiveCounter++;
+  }
+
+  // a lookup the ZoneFilter ended before looking at any zone
+  public void countZoneFilterSkippedLookup() {
+    this.zoneFilterSkippedLookupCounter++;
+  }
+
+  public void countExpiredRecord() {
+    this.expiredRecordCounter++;
+  }
+
+  public void countEviction() {
+    this.evictionCounter++;
+  }
+
+  public void countRejectedAdmission() {
+    this.rejectedAdmissionCounter++;
+  }
+
+  // packets of no simulated direction (see AddressClassifier), only the first ones are logged with their addresses
+  public void countUnexpectedPacket() {
+    this.unexpectedPacketCounter++;
+  }
+
+  public int getUnexpectedPackets() {
+    return this.unexpectedPacketCounter;
+  }
+
+  public int getCacheHits() {
+    return this.cacheHitCounter;
+  }
+
+  // records in the cache at the end of the simulation, set before the counters are written
+  public void setLiveRecords(int liveRecords) {
+    this.liveRecords = liveRecords;
+  }
+
+  // bytes reserved for records outside of the heap at the end of the simulation (see RecordSlab)
+  public void setOffHeapBytes(long offHeapBytes) {
+    this.offHeapBytes = offHeapBytes;
+  }
+
+  public void saveLatencyStatistic(String name, long current, long past, boolean countHitExtra) {
     LatencyStatistics chosenStatistics = null;
 
     switch(name) {
@@ -136,6 +229,107 @@ public class Statistics {
     }
   }
 
+  // adds the counters and latencies of another instance's statistics (same latency range and spread)
+  public void merge(Statistics other) {
+    this.cacheHitCounter += other.cacheHitCounter;
+    this.cacheMissCounter += other.cacheMissCounter;
+    this.falsePositiveCounter += other.falsePositiveCounter;
+    this.wrongResponsesCounter += other.wrongResponsesCounter;
+    this.nsecCacheCounter += other.nsecCacheCounter;
+    this.nsec3CacheCounter += other.nsec3CacheCounter;
+    this.wildcardCacheCounter += other.wildcardCacheCounter;
+    this.optOutInSavingCounter += other.optOutInSavingCounter;
+    this.optOutInLookupCounter += other.optOutInLookupCounter;
+    this.intQueryCounter += other.intQueryCounter;
+    this.intResponseCounter += other.intResponseCounter;
+    this.extQueryCounter += other.extQueryCounter;
+    this.extResponseCounter += other.extResponseCounter;
+    this.extWildcardResponseCounter += other.extWildcardResponseCounter;
+    this.truncatedRRSIGCounter += other.truncatedRRSIGCounter;
+    this.nsec3HashHitCounter += other.nsec3HashHitCounter;
+    this.nsec3HashMissCounter += other.nsec3HashMissCounter;
+    this.proofMemoHitCounter += other.proofMemoHitCounter;
+    this.proofMemoMissCounter += other.proofMemoMissCounter;
+    this.zoneFilterRejectionCounter += other.zoneFilterRejectionCounter;
+    this.zoneFilterFalsePositiveCounter += other.zoneFilterFalsePositiveCounter;
+    this.zoneFilterSkippedLookupCounter += other.zoneFilterSkippedLookupCounter;
+    this.expiredRecordCounter += other.expiredRecordCounter;
+    this.evictionCounter += other.evictionCounter;
+    this.rejectedAdmissionCounter += other.rejectedAdmissionCounter;
+    this.unexpectedPacketCounter += other.unexpectedPacketCounter;
+    this.liveRecords += other.liveRecords;
+    this.offHeapBytes += other.offHeapBytes;
+
+    this.cacheHitStatistics.merge(other.cacheHitStatistics);
+    this.allStatistics.merge(other.allStatistics);
+    this.correctRTStatistics.merge(other.correctRTStatistics);
+  }
+
+  // counters and latencies for a checkpoint (see Checkpoint)
+  public void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(this.cacheHitCounter);
+    out.writeInt(this.cacheMissCounter);
+    out.writeInt(this.falsePositiveCounter);
+    out.writeInt(this.wrongResponsesCounter);
+    out.writeInt(this.nsecCacheCounter);
+    out.writeInt(this.nsec3CacheCounter);
+    out.writeInt(this.wildcardCacheCounter);
+    out.writeInt(this.optOutInSavingCounter);
+    out.writeInt(this.optOutInLookupCounter);
+    out.writeInt(this.intQueryCounter);
+    out.writeInt(this.intResponseCounter);
+    out.writeInt(this.extQueryCounter);
+    out.writeInt(this.extResponseCounter);
+    out.writeInt(this.extWildcardResponseCounter);
+    out.writeInt(this.truncatedRRSIGCounter);
+    out.writeLong(this.nsec3HashHitCounter);
+    out.writeLong(this.nsec3HashMissCounter);
+    out.writeLong(this.proofMemoHitCounter);
+    out.writeLong(this.proofMemoMissCounter);
+    out.writeLong(this.zoneFilterRejectionCounter);
+    out.writeLong(this.zoneFilterFalsePositiveCounter);
+    out.writeLong(this.zoneFilterSkippedLookupCounter);
+    out.writeInt(this.expiredRecordCounter);
+    out.writeInt(this.evictionCounter);
+    out.writeInt(this.rejectedAdmissionCounter);
+    out.writeInt(this.unexpectedPacketCounter);
+    this.cacheHitStatistics.writeState(out);
+    this.allStatistics.writeState(out);
+    this.correctRTStatistics.writeState(out);
+  }
+
+  public void readState(DataInputStream in) throws IOException {
+    this.cacheHitCounter = in.readInt();
+    this.cacheMissCounter = in.readInt();
+    this.falsePositiveCounter = in.readInt();
+    this.wrongResponsesCounter = in.readInt();
+    this.nsecCacheCounter = in.readInt();
+    this.nsec3CacheCounter = in.readInt();
+    this.wildcardCacheCounter = in.readInt();
+    this.optOutInSavingCounter = in.readInt();
+    this.optOutInLookupCounter = in.readInt();
+    this.intQueryCounter = in.readInt();
+    this.intResponseCounter = in.readInt();
+    this.extQueryCounter = in.readInt();
+    this.extResponseCounter = in.readInt();
+    this.extWildcardResponseCounter = in.readInt();
+    this.truncatedRRSIGCounter = in.readInt();
+    this.nsec3HashHitCounter = in.readLong();
+    this.nsec3HashMissCounter = in.readLong();
+    this.proofMemoHitCounter = in.readLong();
+    this.proofMemoMissCounter = in.readLong();
+    this.zoneFilterRejectionCounter = in.readLong();
+    this.zoneFilterFalsePositiveCounter = in.readLong();
+    this.zoneFilterSkippedLookupCounter = in.readLong();
+    this.expiredRecordCounter = in.readInt();
+    this.evictionCounter = in.readInt();
+    this.rejectedAdmissionCounter = in.readInt();
+    this.unexpectedPacketCounter = in.readInt();
+    this.cacheHitStatistics.readState(in);
+    this.allStatistics.readState(in);
+    this.correctRTStatistics.readState(in);
+  }
+
   public void writeAll() {
     writeCounter();
     this.cacheHitStatistics.writeCSVFile();
@@ -150,6 +344,7 @@ public class Statistics {
     this.counterFile.add("Number of responses EXT -> R: " + this.extResponseCounter);
     this.counterFile.add("Number of responses R -> INT: " + this.intResponseCounter);
     this.counterFile.add("Number of responses with wildcards EXT -> R: " + this.extWildcardResponseCounter);
+    this.counterFile.add("Number of unexpected packets: " + this.unexpectedPacketCounter);
     this.counterFile.add("Cache hit: " + this.cacheHitCounter);
     this.counterFile.add("Cache miss: " + this.cacheMissCounter);
     this.counterFile.add("False positives: " + this.falsePositiveCounter);
@@ -160,6 +355,23 @@ public class Statistics {
     this.counterFile.add("NSEC3 opt-out in savings: " + this.optOutInSavingCounter);
     this.counterFile.add("NSEC3 op-out in lookups: " + this.optOutInLookupCounter);
     this.counterFile.add("Truncated RRSIGs: " + this.truncatedRRSIGCounter);
+    this.counterFile.add("NSEC3 hash cache hits: " + this.nsec3HashHitCounter);
+    this.counterFile.add("NSEC3 hash cache misses: " + this.nsec3HashMissCounter);
+    this.counterFile.add("Proof memo hits: " + this.proofMemoHitCounter);
+    this.counterFile.add("Proof memo misses: " + this.proofMemoMissCounter);
+    this.counterFile.add("Lookups skipped by zone filter: " + this.zoneFilterSkippedLookupCounter);
+    this.counterFile.add("Zone filter rejections: " + this.zoneFilterRejectionCounter);
+    this.counterFile.add("Zone filter false positives: " + this.zoneFilterFalsePositiveCounter);
+    long absent = this.zoneFilterRejectionCounter + this.zoneFilterFalsePositiveCounter;
+    this.counterFile.add("Zone filter false positive rate: "
+      + (absent == 0 ? 0 : (double) this.zoneFilterFalsePositiveCounter / absent));
+    this.counterFile.add("Expired records removed from cache: " + this.expiredRecordCounter);
+    this.counterFile.add("Live records in cache: " + this.liveRecords);
+    this.counterFile.add("Off-heap bytes of cached records: " + this.offHeapBytes);
+    this.counterFile.add("Records evicted from cache: " + this.evictionCounter);
+    this.counterFile.add("Records rejected by admission: " + this.rejectedAdmissionCounter);
+    int lookups = this.cacheHitCounter + this.cacheMissCounter;
+    this.counterFile.add("Cache hit ratio: " + (lookups == 0 ? 0 : (double) this.cacheHitCounter / lookups));
 
     try {
       this.counterFile.write();
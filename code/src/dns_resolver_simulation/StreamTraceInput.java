@@ -0,0 +1,81 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/* TraceInput reading from an arbitrary stream (e.g. a decompressing one) into one reused buffer
+ * the buffer is refilled in large blocks, remaining bytes are moved to its beginning before each refill
+ */
+public class StreamTraceInput extends TraceInput {
+  private InputStream stream;
+  private ByteBuffer buffer;
+  private int index;
+  private int limit;
+  private long bufferStart;
+  private boolean endOfStream;
+
+  public StreamTraceInput(InputStream stream) {
+    this.stream = stream;
+    this.buffer = ByteBuffer.allocate(Constants.STREAM_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    this.index = 0;
+    this.limit = 0;
+    this.bufferStart = 0;
+    this.endOfStream = false;
+  }
+
+  @Override
+  public boolean require(int length) throws IOException {
+    if (this.index + length <= this.limit)
+      return true;
+
+    // move the remaining bytes to the beginning, grow the buffer if a single request does not fit
+    int remaining = this.limit - this.index;
+    if (length > this.buffer.capacity()) {
+      ByteBuffer grown = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+      System.arraycopy(this.buffer.array(), this.index, grown.array(), 0, remaining);
+      this.buffer = grown;
+    } else {
+      System.arraycopy(this.buffer.array(), this.index, this.buffer.array(), 0, remaining);
+    }
+    this.bufferStart += this.index;
+    this.index = 0;
+    this.limit = remaining;
+
+    byte[] array = this.buffer.array();
+    while (this.limit < length && !this.endOfStream) {
+      int read = this.stream.read(array, this.limit, array.length - this.limit);
+      if (read < 0)
+        this.endOfStream = true;
+      else
+        this.limit += read;
+    }
+    return this.limit >= length;
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    return this.buffer;
+  }
+
+  @Override
+  public int index() {
+    return this.index;
+  }
+
+  @Override
+  public void advance(int length) {
+    this.index += length;
+  }
+
+  @Override
+  public long position() {
+    return this.bufferStart + this.index;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.stream.close();
+  }
+}
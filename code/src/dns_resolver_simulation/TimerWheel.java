@@ -0,0 +1,195 @@
+package dns_resolver_simulation;
+
+/* hierarchical timer wheel over trace time, removing cached records when they expire
+ * level l has 2^TIMER_SLOT_BITS slots of 2^(l * TIMER_SLOT_BITS) ticks each; a record is put into the lowest level
+ * whose range reaches its expiry and moved down a level when the wheel reaches the start of its slot (cascade),
+ * until it expires from a slot of level 0. records are linked through the fields of CachedRecord, so scheduling and
+ * cancelling allocate nothing
+ * the wheel is advanced by DNSMessageUtilities.setCurrentTime(...); a record is handed to the listener as soon as
+ * the trace time reaches the start of the tick after its expiry, lookups still check the exact expiry
+ * the records of a bounded cache are reported to its EvictionPolicy when they are scheduled and removed
+ */
+public class TimerWheel {
+  // receives the expired records, which are no longer part of the wheel
+  public interface Listener {
+    void expire(CachedRecord record);
+  }
+
+  private static final int SLOTS = 1 << Constants.TIMER_SLOT_BITS;
+  private static final int MASK = SLOTS - 1;
+  // records already due when they were scheduled, expire with the next advance
+  private static final int DUE = Constants.TIMER_LEVELS;
+
+  private CachedRecord[][] slots;
+  private Listener listener;
+  private EvictionPolicy evictionPolicy;
+  private long currentTick;
+  private boolean started;
+  private int size;
+
+  public TimerWheel(Listener listener) {
+    this.listener = listener;
+    this.slots = new CachedRecord[Constants.TIMER_LEVELS + 1][SLOTS];
+    this.started = false;
+    this.size = 0;
+  }
+
+  // policy of a bounded cache, null for none
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  private static long tick(long time) {
+    return Math.floorDiv(time, Constants.TIMER_TICK);
+  }
+
+  // holds the record until its expiry, a record must not be scheduled twice
+  public void schedule(CachedRecord record) {
+    // the first record starts the wheel at its arrival (e.g. records restored before the first message)
+    if (!this.started) {
+      this.currentTick = tick(record.getArrival());
+      this.started = true;
+    }
+    record.expiryTick = -Math.floorDiv(-record.getExpiry(), Constants.TIMER_TICK);
+    insert(record);
+    this.size++;
+    if (this.evictionPolicy != null)
+      this.evictionPolicy.add(record);
+  }
+
+  // removes a record which is no longer cached before its expiry (e.g. replaced by a newer one)
+  public void cancel(CachedRecord record) {
+    if (record == null || record.timerLevel < 0)
+      return;
+    unlink(record);
+    this.size--;
+    if (this.evictionPolicy != null)
+      this.evictionPolicy.remove(record);
+  }
+
+  /* expires all records due at the given trace time
+   * @params long   current tick, earlier ones are ignored
+   */
+  public void advance(long time) {
+    long target = tick(time);
+    if (!this.started) {
+      this.currentTick = target;
+      this.started = true;
+    }
+    expireSlot(DUE, 0);
+
+    while (this.currentTick < target) {
+      if (this.size == 0) {
+        this.currentTick = target;
+        break;
+      }
+      this.currentTick++;
+
+      // cascade the slots starting at this tick, the highest level first, so records can move down several levels
+      int level = 0;
+      while (level + 1 < Constants.TIMER_LEVELS && (this.currentTick & ((1L << ((level + 1) * Constants.TIMER_SLOT_BITS)) - 1)) == 0)
+        level++;
+      for (; level > 0; level--) {
+        cascade(level, (int) ((this.currentTick >>> (level * Constants.TIMER_SLOT_BITS)) & MASK));
+      }
+      expireSlot(0, (int) (this.currentTick & MASK));
+    }
+  }
+
+  private void insert(CachedRecord record) {
+    long delta = record.expiryTick - this.currentTick;
+    if (delta <= 0) {
+      link(record, DUE, 0);
+      return;
+    }
+
+    for (int level = 0; level < Constants.TIMER_LEVELS; level++) {
+      int shift = level * Constants.TIMER_SLOT_BITS;
+      if (delta < (1L << (shift + Constants.TIMER_SLOT_BITS))) {
+        link(record, level, (int) ((record.expiryTick >>> shift) & MASK));
+        return;
+      }
+    }
+
+    // beyond the range of the wheel: the last slot of the highest level, cascaded (and put back) a full turn later
+    int shift = (Constants.TIMER_LEVELS - 1) * Constants.TIMER_SLOT_BITS;
+    link(record, Constants.TIMER_LEVELS - 1, (int) (((this.currentTick >>> shift) + MASK) & MASK));
+  }
+
+  private void cascade(int level, int slot) {
+    CachedRecord record = this.slots[level][slot];
+    this.slots[level][slot] = null;
+    while (record != null) {
+      CachedRecord next = record.nextTimer;
+      record.nextTimer = null;
+      record.previousTimer = null;
+      insert(record);
+      record = next;
+    }
+  }
+
+  private void expireSlot(int level, int slot) {
+    CachedRecord record = this.slots[level][slot];
+    this.slots[level][slot] = null;
+    while (record != null) {
+      CachedRecord next = record.nextTimer;
+      record.nextTimer = null;
+      record.previousTimer = null;
+      record.timerLevel = -1;
+      this.size--;
+      if (this.evictionPolicy != null)
+        this.evictionPolicy.remove(record);
+      this.listener.expire(record);
+      record = next;
+    }
+  }
+
+  private void link(CachedRecord record, int level, int slot) {
+    CachedRecord head = this.slots[level][slot];
+    record.timerLevel = level;
+    record.timerSlot = slot;
+    record.previousTimer = null;
+    record.nextTimer = head;
+    if (head != null)
+      head.previousTimer = record;
+    this.slots[level][slot] = record;
+  }
+
+  private void unlink(CachedRecord record) {
+    if (record.previousTimer != null)
+      record.previousTimer.nextTimer = record.nextTimer;
+    else
+      this.slots[record.timerLevel][record.timerSlot] = record.nextTimer;
+    if (record.nextTimer != null)
+      record.nextTimer.previousTimer = record.previousTimer;
+    record.nextTimer = null;
+    record.previousTimer = null;
+    record.timerLevel = -1;
+  }
+
+  // number of scheduled records
+  public int size() {
+    return this.size;
+  }
+
+  // drops all records, the wheel starts again with the next record or advance
+  public void clear() {
+    for (CachedRecord[] level : this.slots) {
+      for (int slot = 0; slot < SLOTS; slot++) {
+        CachedRecord record = level[slot];
+        while (record != null) {
+          CachedRecord next = record.nextTimer;
+          record.nextTimer = null;
+          record.previousTimer = null;
+          record.timerLevel = -1;
+          record = next;
+        }
+        level[slot] = null;
+      }
+    }
+    this.size = 0;
+    this.started = false;
+    if (this.evictionPolicy != null)
+      this.evictionPolicy.clear();
+  }
+}
@@ -0,0 +1,176 @@
+package dns_resolver_simulation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/* W-TinyLFU: new records enter a small LRU window (TINYLFU_WINDOW_PERCENT of the records); records leaving the window
+ * move to the probation segment of a segmented LRU, whose records are promoted to its protected segment
+ * (TINYLFU_PROTECTED_PERCENT of the main part) when they are used again
+ * when the cache is full, the record leaving the window is only admitted if a count-min sketch estimates it to be used
+ * more often than the main part's victim; otherwise it is evicted itself (counted as rejected admission). admission
+ * happens in evict(), when the cache actually evicts; victim() only tells the loser
+ * the sketch counts additions and uses by owner name and type, so it remembers records which were evicted or expired
+ */
+public class TinyLFUEvictionPolicy extends EvictionPolicy {
+
+  /* count-min sketch of 4 rows with 4 bit counters, all counters are halved after 10 times its width increments,
+   * so the frequencies age
+   */
+  private static class FrequencySketch {
+    private static final int[] SEEDS = { 0x97cb3127, 0x2e7bf3cb, 0x5b7e1c45, 0xc3a5c85d };
+    private byte[][] counters;
+    private int mask;
+    private int increments;
+    private int sampleSize;
+
+    private FrequencySketch(int width) {
+      this.counters = new byte[SEEDS.length][width];
+      this.mask = width - 1;
+      this.sampleSize = 10 * width;
+    }
+
+    private int index(int hash, int row) {
+      int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+      return (h ^ (h >>> 16)) & this.mask;
+    }
+
+    private void increment(int hash) {
+      for (int row = 0; row < SEEDS.length; row++) {
+        int index = index(hash, row);
+        if (this.counters[row][index] < 15)
+          this.counters[row][index]++;
+      }
+      if (++this.increments >= this.sampleSize)
+        age();
+    }
+
+    private int frequency(int hash) {
+      int frequency = 15;
+      for (int row = 0; row < SEEDS.length; row++) {
+        frequency = Math.min(frequency, this.counters[row][index(hash, row)]);
+      }
+      return frequency;
+    }
+
+    private void age() {
+      for (byte[] row : this.counters) {
+        for (int i = 0; i < row.length; i++) {
+          row[i] >>= 1;
+        }
+      }
+      this.increments /= 2;
+    }
+  }
+
+  // insertion order, the eldest record comes first
+  private LinkedHashMap<CachedRecord, Boolean> window;
+  private LinkedHashMap<CachedRecord, Boolean> probation;
+  private LinkedHashMap<CachedRecord, Boolean> protectedRecords;
+  private FrequencySketch sketch;
+  private Statistics statistics;
+
+  public TinyLFUEvictionPolicy(Statistics statistics) {
+    this.window = new LinkedHashMap<CachedRecord, Boolean>();
+    this.probation = new LinkedHashMap<CachedRecord, Boolean>();
+    this.protectedRecords = new LinkedHashMap<CachedRecord, Boolean>();
+    this.sketch = new FrequencySketch(Constants.TINYLFU_SKETCH_WIDTH);
+    this.statistics = statistics;
+  }
+
+  private static int hash(CachedRecord record) {
+    return record.getKeyHash();
+  }
+
+  private static CachedRecord eldest(LinkedHashMap<CachedRecord, Boolean> segment) {
+    Iterator<CachedRecord> iterator = segment.keySet().iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  private int windowLimit() {
+    return Math.max(1, size() * Constants.TINYLFU_WINDOW_PERCENT / 100);
+  }
+
+  @Override
+  protected void insert(CachedRecord record) {
+    this.sketch.increment(hash(record));
+    this.window.put(record, Boolean.TRUE);
+    // while the cache is not full, records leaving the window are admitted without competing
+    while (this.window.size() > windowLimit()) {
+      CachedRecord candidate = eldest(this.window);
+      this.window.remove(candidate);
+      this.probation.put(candidate, Boolean.TRUE);
+    }
+  }
+
+  @Override
+  protected void delete(CachedRecord record) {
+    if (this.window.remove(record) == null && this.probation.remove(record) == null)
+      this.protectedRecords.remove(record);
+  }
+
+  @Override
+  protected void deleteAll() {
+    this.window.clear();
+    this.probation.clear();
+    this.protectedRecords.clear();
+  }
+
+  @Override
+  public void access(CachedRecord record) {
+    this.sketch.increment(hash(record));
+    if (this.window.remove(record) != null) {
+      this.window.put(record, Boolean.TRUE);
+    } else if (this.probation.remove(record) != null) {
+      this.protectedRecords.put(record, Boolean.TRUE);
+      int mainRecords = this.probation.size() + this.protectedRecords.size();
+      if (this.protectedRecords.size() > mainRecords * Constants.TINYLFU_PROTECTED_PERCENT / 100) {
+        CachedRecord demoted = eldest(this.protectedRecords);
+        this.protectedRecords.remove(demoted);
+        this.probation.put(demoted, Boolean.TRUE);
+      }
+    } else if (this.protectedRecords.remove(record) != null) {
+      this.protectedRecords.put(record, Boolean.TRUE);
+    }
+  }
+
+  private CachedRecord mainVictim() {
+    CachedRecord victim = eldest(this.probation);
+    return victim != null ? victim : eldest(this.protectedRecords);
+  }
+
+  // the more frequent of both stays
+  private boolean admits(CachedRecord candidate, CachedRecord victim) {
+    return this.sketch.frequency(hash(candidate)) > this.sketch.frequency(hash(victim));
+  }
+
+  @Override
+  public CachedRecord victim() {
+    CachedRecord candidate = eldest(this.window);
+    CachedRecord victim = mainVictim();
+    if (candidate == null || victim == null)
+      return candidate != null ? candidate : victim;
+    return admits(candidate, victim) ? victim : candidate;
+  }
+
+  // admission: the candidate moves to the main part if it wins, otherwise it is rejected
+  @Override
+  public CachedRecord evict() {
+    CachedRecord candidate = eldest(this.window);
+    CachedRecord victim = mainVictim();
+    if (candidate == null || victim == null)
+      return candidate != null ? candidate : victim;
+
+    if (admits(candidate, victim)) {
+      this.window.remove(candidate);
+      this.probation.put(candidate, Boolean.TRUE);
+      return victim;
+    }
+    this.statistics.countRejectedAdmission();
+    return candidate;
+  }
+
+  @Override
+  public int size() {
+    return this.window.size() + this.probation.size() + this.protectedRecords.size();
+  }
+}
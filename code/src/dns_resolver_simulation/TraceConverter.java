@@ -0,0 +1,61 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.xbill.DNS.Message;
+
+/* converts a trace into a compact trace (see CompactTraceWriter), messages are parsed and classified exactly like
+ * during a simulation, so replaying the compact trace gives the same results without parsing again
+ * the classification is part of the compact trace, a replay cannot use other resolvers or internal networks
+ */
+public class TraceConverter {
+  private AddressClassifier classifier;
+  private DNSMessageUtilities messageUtils;
+
+  public TraceConverter(AddressClassifier classifier) {
+    this.classifier = classifier;
+    this.messageUtils = new DNSMessageUtilities();
+  }
+
+  /* converts (a part of) the trace at the given location
+   * @params String       location of the trace (see TraceReader.open)
+   * @params TraceRange   part of the trace to be converted
+   * @params File         compact trace to be written
+   * @params File         name dictionary, extended if it already exists
+   * @throws IOException
+   * @return long         number of written events
+   */
+  public long run(String pathname, TraceRange range, File output, File dictionaryFile) throws IOException {
+    NameDictionary dictionary = NameDictionary.load(dictionaryFile);
+    TraceReader reader = TraceReader.open(pathname, range, this.classifier);
+    CompactTraceWriter writer = new CompactTraceWriter(output, dictionary);
+    TraceFrame frame = new TraceFrame();
+
+    while (reader.next(frame)) {
+      long srcHigh = frame.getSrcHigh();
+      long srcLow = frame.getSrcLow();
+      long dstHigh = frame.getDstHigh();
+      long dstLow = frame.getDstLow();
+      boolean complete = frame.getPayloadLength() >= Constants.DNS_HEADER_LENGTH;
+      int direction = this.classifier.classify(complete && AddressClassifier.isResponse(frame), srcHigh, srcLow, dstHigh, dstLow);
+      int resolver = this.classifier.resolverIndex(direction, srcHigh, srcLow, dstHigh, dstLow);
+
+      // incomplete headers are parsed anyway to store the resulting exception
+      if (AddressClassifier.needsMessage(direction) || !complete) {
+        try {
+          this.messageUtils.set(new Message(frame.getPayload()));
+        } catch (Exception e) {
+          writer.writeException(frame.getTimestamp(), resolver, e);
+          continue;
+        }
+        this.messageUtils.prepare();
+      }
+      writer.write(frame.getTimestamp(), direction, resolver, srcHigh, srcLow, frame.getSrcPort(), dstHigh, dstLow, frame.getDstPort(), this.messageUtils);
+    }
+    reader.close();
+    writer.close();
+    dictionary.write(dictionaryFile);
+    return writer.getEvents();
+  }
+}
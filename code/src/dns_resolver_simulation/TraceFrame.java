@@ -0,0 +1,140 @@
+package dns_resolver_simulation;
+
+import java.nio.ByteBuffer;
+
+/* reusable view on a single frame of a trace, filled by a TraceReader
+ * the DNS payload is not copied, it stays a slice of the reader's current buffer and is only valid
+ * until the next call of TraceReader.next(...)
+ */
+public class TraceFrame {
+  private double timestamp;
+  private int frameNumber;
+  private int ipVersion;
+  private byte[] srcAddress;
+  private byte[] dstAddress;
+  private int transportType;
+  private int srcPort;
+  private int dstPort;
+  private ByteBuffer buffer;
+  private int payloadIndex;
+  private int payloadLength;
+  private long offset;
+
+  public TraceFrame() {
+    this.srcAddress = new byte[16];
+    this.dstAddress = new byte[16];
+  }
+
+  void setHeader(long offset, double timestamp, int frameNumber, int ipVersion, int transportType) {
+    this.offset = offset;
+    this.timestamp = timestamp;
+    this.frameNumber = frameNumber;
+    this.ipVersion = ipVersion;
+    this.transportType = transportType;
+  }
+
+  void setPorts(int srcPort, int dstPort) {
+    this.srcPort = srcPort;
+    this.dstPort = dstPort;
+  }
+
+  void setPayload(ByteBuffer buffer, int index, int length) {
+    this.buffer = buffer;
+    this.payloadIndex = index;
+    this.payloadLength = length;
+  }
+
+  // byte arrays are reused for every frame, only the first getAddressLength() bytes are valid
+  byte[] srcAddressBuffer() {
+    return this.srcAddress;
+  }
+
+  byte[] dstAddressBuffer() {
+    return this.dstAddress;
+  }
+
+  public long getOffset() {
+    return this.offset;
+  }
+
+  public double getTimestamp() {
+    return this.timestamp;
+  }
+
+  public int getFrameNumber() {
+    return this.frameNumber;
+  }
+
+  public int getIpVersion() {
+    return this.ipVersion;
+  }
+
+  public int getAddressLength() {
+    return this.ipVersion == 6 ? 16 : 4;
+  }
+
+  public byte[] getSrcAddress() {
+    return this.srcAddress;
+  }
+
+  public byte[] getDstAddress() {
+    return this.dstAddress;
+  }
+
+  // addresses as two longs, IPv4 addresses are mapped into IPv6 (see AddressSet)
+  public long getSrcHigh() {
+    return AddressSet.high(this.srcAddress, this.ipVersion);
+  }
+
+  public long getSrcLow() {
+    return AddressSet.low(this.srcAddress, this.ipVersion);
+  }
+
+  public long getDstHigh() {
+    return AddressSet.high(this.dstAddress, this.ipVersion);
+  }
+
+  public long getDstLow() {
+    return AddressSet.low(this.dstAddress, this.ipVersion);
+  }
+
+  public int getTransportType() {
+    return this.transportType;
+  }
+
+  public int getSrcPort() {
+    return this.srcPort;
+  }
+
+  public int getDstPort() {
+    return this.dstPort;
+  }
+
+  public int getPayloadLength() {
+    return this.payloadLength;
+  }
+
+  public int getPayloadByte(int index) {
+    return Byte.toUnsignedInt(this.buffer.get(this.payloadIndex + index));
+  }
+
+  /* slice of the underlying buffer containing only the DNS message, position 0 is the first byte of the DNS header
+   * (dnsjava resolves compression pointers relative to the buffer start, so the slice has to begin at the message)
+   * @return ByteBuffer   view on the payload, valid until the next frame is read
+   */
+  public ByteBuffer getPayload() {
+    ByteBuffer payload = this.buffer.duplicate();
+    payload.limit(this.payloadIndex + this.payloadLength);
+    payload.position(this.payloadIndex);
+    return payload.slice();
+  }
+
+  // copies the payload into a new array, e.g. if the message has to outlive the frame
+  public byte[] copyPayload() {
+    byte[] payload = new byte[this.payloadLength];
+    for (int i = 0; i < this.payloadLength; i++) {
+      payload[i] = this.buffer.get(this.payloadIndex + i);
+    }
+    return payload;
+  }
+}
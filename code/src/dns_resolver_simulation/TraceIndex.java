@@ -0,0 +1,145 @@
+package dns_resolver_simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/* sidecar index of a trace file: byte offset and timestamp of every STRIDE-th frame
+ * file layout (big endian): magic | version | stride | frame count | trace length | entry count |
+ * entries of (offset long, timestamp double); entry i belongs to frame i * stride (counted from 0)
+ */
+public class TraceIndex {
+  private static final int MAGIC = 0x44525349;    // "DRSI"
+  private static final int VERSION = 1;
+
+  private int stride;
+  private long frames;
+  private long traceLength;
+  private int entries;
+  private long[] offsets;
+  private double[] timestamps;
+
+  public TraceIndex(int stride) {
+    this.stride = stride;
+    this.frames = 0;
+    this.traceLength = 0;
+    this.entries = 0;
+    this.offsets = new long[1024];
+    this.timestamps = new double[1024];
+  }
+
+  public static File indexFile(File trace) {
+    return new File(trace.getPath() + ".idx");
+  }
+
+  // has to be called for every frame of the trace in order, only every STRIDE-th frame is stored
+  public void add(long offset, double timestamp) {
+    if (this.frames % this.stride == 0) {
+      if (this.entries == this.offsets.length) {
+        this.offsets = Arrays.copyOf(this.offsets, this.entries * 2);
+        this.timestamps = Arrays.copyOf(this.timestamps, this.entries * 2);
+      }
+      this.offsets[this.entries] = offset;
+      this.timestamps[this.entries] = timestamp;
+      this.entries++;
+    }
+    this.frames++;
+  }
+
+  public void setTraceLength(long traceLength) {
+    this.traceLength = traceLength;
+  }
+
+  public long getFrames() {
+    return this.frames;
+  }
+
+  public int getStride() {
+    return this.stride;
+  }
+
+  /* offset of the indexed frame at or before the given frame
+   * @params long   frame number (counted from 0)
+   * @return long   offset of frame (frame - frame % stride), the remaining frames have to be skipped by the reader
+   */
+  public long getOffsetOfFrame(long frame) {
+    int entry = (int) Math.min(frame / this.stride, this.entries - 1);
+    return entry < 0 ? this.traceLength : this.offsets[entry];
+  }
+
+  /* offset of the last indexed frame before the given time (assumes timestamps which do not decrease)
+   * @params double   unix seconds
+   * @return long     offset from which on the reader finds all frames at or after the given time
+   */
+  public long getOffsetBefore(double time) {
+    int low = 0;
+    int high = this.entries - 1;
+    int found = 0;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (this.timestamps[middle] < time) {
+        found = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return this.entries == 0 ? this.traceLength : this.offsets[found];
+  }
+
+  /* first offset of a chunk, chunks contain the same number of frames (up to one stride)
+   * @params int    chunk (counted from 0)
+   * @params int    number of chunks
+   * @return long   offset of the first frame of the chunk
+   */
+  public long getChunkStart(int chunk, int chunks) {
+    int entry = (int) ((long) this.entries * chunk / chunks);
+    return entry < this.entries ? this.offsets[entry] : this.traceLength;
+  }
+
+  // offset behind the last frame of a chunk (exclusive)
+  public long getChunkEnd(int chunk, int chunks) {
+    if (chunk == chunks - 1)
+      return this.traceLength;
+    return getChunkStart(chunk + 1, chunks);
+  }
+
+  public void write(File file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.stride);
+      out.writeLong(this.frames);
+      out.writeLong(this.traceLength);
+      out.writeInt(this.entries);
+      for (int i = 0; i < this.entries; i++) {
+        out.writeLong(this.offsets[i]);
+        out.writeDouble(this.timestamps[i]);
+      }
+    }
+  }
+
+  public static TraceIndex load(File file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        throw new IOException("Unknown index format in " + file.getPath());
+      TraceIndex index = new TraceIndex(in.readInt());
+      index.frames = in.readLong();
+      index.traceLength = in.readLong();
+      index.entries = in.readInt();
+      index.offsets = new long[Math.max(index.entries, 1)];
+      index.timestamps = new double[Math.max(index.entries, 1)];
+      for (int i = 0; i < index.entries; i++) {
+        index.offsets[i] = in.readLong();
+        index.timestamps[i] = in.readDouble();
+      }
+      return index;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.IOException;
+
+/* builds the sidecar index and the summary of a trace file in one pass over the frame headers */
+public class TraceIndexer {
+  private TraceIndex index;
+  private TraceSummary summary;
+
+  public TraceIndexer(AddressClassifier classifier) {
+    this.index = new TraceIndex(Constants.INDEX_STRIDE);
+    this.summary = new TraceSummary(classifier);
+  }
+
+  /* reads the whole trace, writes <trace>.idx and <trace>.summary next to it
+   * @params File          uncompressed trace file
+   * @throws IOException
+   * @return TraceIndex    the written index
+   */
+  public TraceIndex run(File trace) throws IOException {
+    TraceReader reader = TraceReader.openSegment(trace);
+    TraceFrame frame = new TraceFrame();
+    while (reader.next(frame)) {
+      this.index.add(frame.getOffset(), frame.getTimestamp());
+      this.summary.add(frame);
+    }
+    reader.close();
+    this.index.setTraceLength(trace.length());
+    this.index.write(TraceIndex.indexFile(trace));
+
+    String directory = trace.getAbsoluteFile().getParent();
+    new File(directory, trace.getName() + ".summary").delete();
+    FileWriter summaryFile = new FileWriter(directory, trace.getName(), "summary");
+    this.summary.write(summaryFile);
+    summaryFile.write();
+    return this.index;
+  }
+
+  public TraceSummary getSummary() {
+    return this.summary;
+  }
+
+  /* loads the index of a trace, the index is built first if it does not exist or is older than the trace
+   * @params File                uncompressed trace file
+   * @params AddressClassifier   classifier for the summary written together with a new index
+   * @throws IOException
+   * @return TraceIndex          index of the trace
+   */
+  public static TraceIndex obtain(File trace, AddressClassifier classifier) throws IOException {
+    File indexFile = TraceIndex.indexFile(trace);
+    if (indexFile.isFile() && indexFile.lastModified() >= trace.lastModified())
+      return TraceIndex.load(indexFile);
+
+    System.out.println("Indexing " + trace.getPath());
+    return new TraceIndexer(classifier).run(trace);
+  }
+}
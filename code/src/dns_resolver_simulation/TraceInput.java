@@ -0,0 +1,39 @@
+package dns_resolver_simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* sequential byte source for trace readers
+ * readers call require(...) before accessing bytes, afterwards buffer() holds at least the requested number of
+ * bytes starting at index(); the buffer and the index may change with every call of require(...)
+ * buffers are always in little endian byte order
+ */
+public abstract class TraceInput {
+
+  /* makes sure that the next 'length' bytes are accessible in buffer()
+   * @params int        number of bytes needed starting at the current position
+   * @throws IOException
+   * @return boolean    false if the input ends before 'length' bytes are available
+   */
+  public abstract boolean require(int length) throws IOException;
+
+  public abstract ByteBuffer buffer();
+
+  // index of the current position inside buffer()
+  public abstract int index();
+
+  public abstract void advance(int length);
+
+  // absolute position in the input (in bytes)
+  public abstract long position();
+
+  /* moves to an absolute position, e.g. the beginning of a frame taken from a TraceIndex
+   * @params long         absolute position in the input
+   * @throws IOException  if the input does not support seeking
+   */
+  public void seek(long position) throws IOException {
+    throw new IOException("Seeking is not supported by " + getClass().getSimpleName());
+  }
+
+  public abstract void close() throws IOException;
+}
@@ -0,0 +1,47 @@
+package dns_resolver_simulation;
+
+/* part of a trace which shall be simulated: a time range and/or one of several equally sized chunks
+ * times are unix seconds like the frame timestamps, chunks are numbered from 0
+ */
+public class TraceRange {
+  public static final TraceRange ALL = new TraceRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0, 1);
+
+  private double from;
+  private double to;
+  private int chunk;
+  private int chunks;
+
+  public TraceRange(double from, double to, int chunk, int chunks) {
+    if (chunk < 0 || chunk >= chunks)
+      throw new IllegalArgumentException("Chunk " + chunk + " does not exist in " + chunks + " chunks");
+    this.from = from;
+    this.to = to;
+    this.chunk = chunk;
+    this.chunks = chunks;
+  }
+
+  public double getFrom() {
+    return this.from;
+  }
+
+  public double getTo() {
+    return this.to;
+  }
+
+  public int getChunk() {
+    return this.chunk;
+  }
+
+  public int getChunks() {
+    return this.chunks;
+  }
+
+  public boolean isAll() {
+    return this.from == Double.NEGATIVE_INFINITY && this.to == Double.POSITIVE_INFINITY && this.chunks == 1;
+  }
+
+  @Override
+  public String toString() {
+    return "from " + this.from + " to " + this.to + ", chunk " + (this.chunk + 1) + "/" + this.chunks;
+  }
+}
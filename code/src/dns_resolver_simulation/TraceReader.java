@@ -0,0 +1,125 @@
+package dns_resolver_simulation;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public abstract class TraceReader {
+  // files written next to traces (see TraceIndex, TraceIndexer, NameDictionary, Checkpoint), never segments
+  private static final String[] SIDECAR_SUFFIXES = { ".idx", ".summary", ".names", ".tmp" };
+
+  /* reads the next frame of the trace into the given (reused) frame
+   * @params TraceFrame   frame to be filled
+   * @throws IOException
+   * @return boolean      false if the trace has no more frames
+   */
+  public abstract boolean next(TraceFrame frame) throws IOException;
+
+  /* continues reading at the given byte offset, which has to be the beginning of a frame (see TraceIndex)
+   * @params long         offset of a frame
+   * @throws IOException  if the trace does not support seeking
+   */
+  public void seek(long offset) throws IOException {
+    throw new IOException("Seeking is not supported by " + getClass().getSimpleName());
+  }
+
+  public abstract void close() throws IOException;
+
+  /* opens the trace at the given location with the fitting reader
+   * @params String                 a trace file (optionally gzip compressed), a directory of trace segments
+   *                                or a glob pattern (e.g. /traces/2018-05-*.bin.gz) matching trace segments;
+   *                                hidden files, sidecars and compact traces are no segments (see isSegment(...))
+   * @throws FileNotFoundException  if nothing matches the location
+   * @throws IOException
+   * @return TraceReader            reader positioned at the first frame
+   */
+  public static TraceReader open(String pathname) throws IOException {
+    File file = new File(pathname);
+    if (file.isFile())
+      return openSegment(file);
+
+    List<File> segments = new ArrayList<File>();
+    if (file.isDirectory()) {
+      for (File segment : file.listFiles()) {
+        if (isSegment(segment))
+          segments.add(segment);
+      }
+    } else if (isGlob(file.getName())) {
+      Path directory = file.getParentFile() != null ? file.getParentFile().toPath() : Paths.get(".");
+      try (DirectoryStream<Path> matches = Files.newDirectoryStream(directory, file.getName())) {
+        for (Path match : matches) {
+          if (isSegment(match.toFile()))
+            segments.add(match.toFile());
+        }
+      }
+    }
+
+    if (segments.isEmpty())
+      throw new FileNotFoundException("No trace found at " + pathname);
+    if (segments.size() == 1)
+      return openSegment(segments.get(0));
+    return new SegmentedTraceReader(segments);
+  }
+
+  /* opens a part of the trace at the given location, the start is looked up in the trace's index
+   * @params String              location of the trace (see open(String)), has to be a single uncompressed file
+   *                             unless the whole trace is requested
+   * @params TraceRange          requested part of the trace
+   * @params AddressClassifier   classifier for the summary, if the index has to be built first
+   * @throws IOException
+   * @return TraceReader         reader positioned at the first frame of the range
+   */
+  public static TraceReader open(String pathname, TraceRange range, AddressClassifier classifier) throws IOException {
+    if (range.isAll())
+      return open(pathname);
+
+    File file = new File(pathname);
+    if (!file.isFile() || file.getName().endsWith(".gz"))
+      throw new IOException("Time ranges and chunks need a single uncompressed trace file");
+    return new RangeTraceReader(openSegment(file), TraceIndexer.obtain(file, classifier), range);
+  }
+
+  /* opens a single trace file, gzip compressed files are decompressed while reading on a read-ahead thread
+   * the format (simulation trace, libpcap or pcapng capture) is detected by the file's magic number
+   * @params File         trace file
+   * @throws IOException
+   * @return TraceReader  reader positioned at the first frame
+   */
+  public static TraceReader openSegment(File file) throws IOException {
+    TraceInput input;
+    if (file.getName().endsWith(".gz")) {
+      GZIPInputStream gzip = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file), Constants.GZIP_BUFFER_SIZE), Constants.GZIP_BUFFER_SIZE);
+      input = new StreamTraceInput(new ReadAheadInputStream(gzip));
+    } else {
+      input = new MappedTraceInput(file);
+    }
+
+    if (input.require(4) && PcapTraceReader.isCapture(input.buffer().getInt(input.index())))
+      return new PcapTraceReader(input);
+    return new BinaryTraceReader(input);
+  }
+
+  // false for files which are not frames of a trace: sidecars of a trace and compact traces (replayed on their own)
+  private static boolean isSegment(File file) throws IOException {
+    if (!file.isFile() || file.isHidden())
+      return false;
+    for (String suffix : SIDECAR_SUFFIXES) {
+      if (file.getName().endsWith(suffix))
+        return false;
+    }
+    return !CompactTraceReader.isCompact(file);
+  }
+
+  private static boolean isGlob(String name) {
+    return name.indexOf('*') > -1 || name.indexOf('?') > -1 || name.indexOf('[') > -1 || name.indexOf('{') > -1;
+  }
+}
@@ -0,0 +1,115 @@
+package dns_resolver_simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* overview of a trace, built from the raw frame headers only: the direction of a message is taken from the
+ * QR bit in the third byte of the DNS header, so no message has to be parsed
+ */
+public class TraceSummary {
+  private long frames;
+  private long ipv4Frames;
+  private long ipv6Frames;
+  private double firstTimestamp;
+  private double lastTimestamp;
+  private long intQueryCounter;
+  private long extQueryCounter;
+  private long extResponseCounter;
+  private long intResponseCounter;
+  private long unexpectedCounter;
+  private long malformedCounter;
+  private AddressClassifier classifier;
+  private Map<Long, Set<Long>> resolvers;
+  private Map<Long, Set<Long>> clients;
+
+  public TraceSummary(AddressClassifier classifier) {
+    this.classifier = classifier;
+    this.firstTimestamp = Double.POSITIVE_INFINITY;
+    this.lastTimestamp = Double.NEGATIVE_INFINITY;
+    this.resolvers = new HashMap<Long, Set<Long>>();
+    this.clients = new HashMap<Long, Set<Long>>();
+  }
+
+  public void add(TraceFrame frame) {
+    this.frames++;
+    if (frame.getIpVersion() == 6)
+      this.ipv6Frames++;
+    else
+      this.ipv4Frames++;
+    this.firstTimestamp = Math.min(this.firstTimestamp, frame.getTimestamp());
+    this.lastTimestamp = Math.max(this.lastTimestamp, frame.getTimestamp());
+
+    if (frame.getPayloadLength() < Constants.DNS_HEADER_LENGTH) {
+      this.malformedCounter++;
+      return;
+    }
+
+    long srcHigh = frame.getSrcHigh();
+    long srcLow = frame.getSrcLow();
+    long dstHigh = frame.getDstHigh();
+    long dstLow = frame.getDstLow();
+    switch (this.classifier.classify(AddressClassifier.isResponse(frame), srcHigh, srcLow, dstHigh, dstLow)) {
+      case Constants.QUERY_INT_TO_R:
+        this.intQueryCounter++;
+        addAddress(this.resolvers, dstHigh, dstLow);
+        addAddress(this.clients, srcHigh, srcLow);
+        break;
+      case Constants.QUERY_R_TO_EXT:
+        this.extQueryCounter++;
+        addAddress(this.resolvers, srcHigh, srcLow);
+        break;
+      case Constants.RESPONSE_EXT_TO_R:
+        this.extResponseCounter++;
+        addAddress(this.resolvers, dstHigh, dstLow);
+        break;
+      case Constants.RESPONSE_R_TO_INT:
+        this.intResponseCounter++;
+        addAddress(this.resolvers, srcHigh, srcLow);
+        addAddress(this.clients, dstHigh, dstLow);
+        break;
+      default:
+        this.unexpectedCounter++;
+    }
+  }
+
+  // addresses are grouped by their upper 64 bits (see AddressSet)
+  private void addAddress(Map<Long, Set<Long>> addresses, long high, long low) {
+    addresses.computeIfAbsent(high, key -> new HashSet<Long>()).add(low);
+  }
+
+  private static int count(Map<Long, Set<Long>> addresses) {
+    int count = 0;
+    for (Set<Long> lows : addresses.values()) {
+      count += lows.size();
+    }
+    return count;
+  }
+
+  public void write(FileWriter file) {
+    file.add("--- Trace summary ---");
+    file.add("Frames: " + this.frames);
+    file.add("IPv4 frames: " + this.ipv4Frames);
+    file.add("IPv6 frames: " + this.ipv6Frames);
+    file.add("First timestamp: " + this.firstTimestamp);
+    file.add("Last timestamp: " + this.lastTimestamp);
+    file.add("Time span (s): " + (this.frames > 0 ? this.lastTimestamp - this.firstTimestamp : 0));
+    file.add("Queries INT -> R: " + this.intQueryCounter);
+    file.add("Queries R -> EXT: " + this.extQueryCounter);
+    file.add("Responses EXT -> R: " + this.extResponseCounter);
+    file.add("Responses R -> INT: " + this.intResponseCounter);
+    file.add("Unexpected directions: " + this.unexpectedCounter);
+    file.add("Too short for a DNS header: " + this.malformedCounter);
+    List<String> resolverNames = new ArrayList<String>();
+    for (Map.Entry<Long, Set<Long>> group : this.resolvers.entrySet()) {
+      for (long low : group.getValue()) {
+        resolverNames.add(AddressUtilities.ipToString(group.getKey(), low));
+      }
+    }
+    file.add("Resolvers seen: " + String.join(", ", resolverNames));
+    file.add("Clients seen: " + count(this.clients));
+  }
+}
@@ -0,0 +1,61 @@
+package dns_resolver_simulation;
+
+/* counting Bloom filter over the hash codes of cached zones (see CanonicalName.hashCode() and ancestorHashes(...)),
+ * lets lookups skip the ancestors of a name which cannot be cached zones without building or looking them up
+ * every zone increments Constants.ZONE_FILTER_HASHES counters of one byte and decrements them again when it is
+ * removed; a counter reaching its maximum stays there, so the filter never misses a zone but may report zones which
+ * are not cached (false positives)
+ * the filter is sized for a number of zones, its owner replaces it by a larger one holding all zones when isFull(...)
+ */
+public class ZoneFilter {
+  private static final int[] SEEDS = { 0x97cb3127, 0x2e7bf3cb, 0x5b7e1c45, 0xc3a5c85d };
+  private static final int SATURATED = 0xFF;
+
+  private byte[] counters;
+  private int mask;
+
+  /* @params int   number of zones the filter is sized for, at least Constants.ZONE_FILTER_MIN_ZONES
+   */
+  public ZoneFilter(int zones) {
+    int width = Integer.highestOneBit(Math.max(zones, Constants.ZONE_FILTER_MIN_ZONES) * Constants.ZONE_FILTER_COUNTERS_PER_ZONE - 1) << 1;
+    this.counters = new byte[width];
+    this.mask = width - 1;
+  }
+
+  private int index(int hash, int seed) {
+    int h = (hash ^ SEEDS[seed]) * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & this.mask;
+  }
+
+  public void add(int hash) {
+    for (int seed = 0; seed < Constants.ZONE_FILTER_HASHES; seed++) {
+      int index = index(hash, seed);
+      if ((this.counters[index] & SATURATED) != SATURATED)
+        this.counters[index]++;
+    }
+  }
+
+  // the zone must have been added before
+  public void remove(int hash) {
+    for (int seed = 0; seed < Constants.ZONE_FILTER_HASHES; seed++) {
+      int index = index(hash, seed);
+      if ((this.counters[index] & SATURATED) != SATURATED)
+        this.counters[index]--;
+    }
+  }
+
+  // false if no zone with the hash code was added, true if one may have been added
+  public boolean mightContain(int hash) {
+    for (int seed = 0; seed < Constants.ZONE_FILTER_HASHES; seed++) {
+      if (this.counters[index(hash, seed)] == 0)
+        return false;
+    }
+    return true;
+  }
+
+  // true if the filter holds more zones than it is sized for, its false positive rate rises
+  public boolean isFull(int zones) {
+    return (long) zones * Constants.ZONE_FILTER_COUNTERS_PER_ZONE > this.counters.length;
+  }
+
+}
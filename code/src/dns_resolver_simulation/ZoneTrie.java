@@ -0,0 +1,315 @@
+package dns_resolver_simulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/* ResponseEntries of the SimulationCache keyed by zone: a trie over the canonical labels of the zones, from the root
+ * down; resolve(...) walks the labels of a name once and returns the entries of all zones on its way
+ * children are kept in open addressing tables (linear probing) keyed by the label bytes in wire format, so a walk
+ * neither builds strings nor allocates nodes
+ * entries whose records all expired are removed by remove(...), together with the nodes left without entries
+ * a ZoneFilter over the zones lets resolve(...) return at once if no ancestor of a name can be a zone, otherwise the
+ * walk ends at the deepest ancestor the filter reports
+ */
+public class ZoneTrie {
+  // maximum number of labels of a name (255 bytes of wire format), bounds the result of resolve(...)
+  public static final int MAX_LABELS = 128;
+
+  private static class Node {
+    private byte[] wire;      // canonical wire format holding the label, null for the root
+    private int offset;       // offset of the label (its length byte) in 'wire'
+    private int hash;
+    private CanonicalName zone;
+    private ResponseEntry entry;
+    private Node[] children;
+    private int childCount;
+
+    private Node(byte[] wire, int offset, int hash) {
+      this.wire = wire;
+      this.offset = offset;
+      this.hash = hash;
+    }
+
+    private boolean matches(byte[] label, int labelOffset) {
+      int length = label[labelOffset];
+      if (this.wire[this.offset] != length)
+        return false;
+      for (int i = 1; i <= length; i++) {
+        if (this.wire[this.offset + i] != label[labelOffset + i])
+          return false;
+      }
+      return true;
+    }
+
+    // child with the label at the given offset of a canonical wire format, null if there is none
+    private Node child(byte[] label, int labelOffset) {
+      if (this.children == null)
+        return null;
+      int hash = hash(label, labelOffset);
+      int mask = this.children.length - 1;
+      for (int slot = hash & mask; this.children[slot] != null; slot = (slot + 1) & mask) {
+        Node child = this.children[slot];
+        if (child.hash == hash && child.matches(label, labelOffset))
+          return child;
+      }
+      return null;
+    }
+
+    private Node addChild(byte[] label, int labelOffset) {
+      if (this.children == null)
+        this.children = new Node[4];
+      else if ((this.childCount + 1) * 2 > this.children.length)
+        grow();
+
+      Node child = new Node(label, labelOffset, hash(label, labelOffset));
+      insert(child);
+      this.childCount++;
+      return child;
+    }
+
+    private void insert(Node child) {
+      int mask = this.children.length - 1;
+      int slot = child.hash & mask;
+      while (this.children[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      this.children[slot] = child;
+    }
+
+    private void removeChild(Node child) {
+      Node[] old = this.children;
+      this.childCount--;
+      this.children = this.childCount == 0 ? null : new Node[old.length];
+      for (Node other : old) {
+        if (other != null && other != child)
+          insert(other);
+      }
+    }
+
+    private void grow() {
+      Node[] old = this.children;
+      this.children = new Node[old.length * 2];
+      for (Node child : old) {
+        if (child != null)
+          insert(child);
+      }
+    }
+  }
+
+  private Node root;
+  private int size;
+  // changed whenever a zone is added or dropped, so results depending on the zones can be invalidated (see ProofMemo)
+  private long generation;
+  private Node[] path;
+  private NSEC3HashCache hashCache;
+  private TimerWheel timerWheel;
+  private RecordSlab slab;
+  private ZoneFilter filter;
+  private Statistics statistics;
+  // hash codes of the ancestors of the name resolved, which of them the filter reports
+  private int[] hashes;
+  private boolean[] candidates;
+
+  /* the hash cache, the timer wheel and the record store (null for the heap) are handed to every new ResponseEntry
+   * @params Statistics   counts the lookups of the zone filter
+   */
+  public ZoneTrie(NSEC3HashCache hashCache, TimerWheel timerWheel, RecordSlab slab, Statistics statistics) {
+    this.hashCache = hashCache;
+    this.timerWheel = timerWheel;
+    this.slab = slab;
+    this.statistics = statistics;
+    this.root = new Node(null, 0, 0);
+    this.size = 0;
+    this.path = new Node[MAX_LABELS + 1];
+    this.filter = new ZoneFilter(0);
+    this.hashes = new int[MAX_LABELS];
+    this.candidates = new boolean[MAX_LABELS];
+  }
+
+  private static int hash(byte[] label, int offset) {
+    int hash = 0;
+    for (int i = offset; i <= offset + label[offset]; i++) {
+      hash = hash * 31 + label[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /* returns the entry of the zone made of the last labels of the given name, a new one if it has none yet
+   * @params CanonicalName   name ending with the zone
+   * @params int             number of labels of the zone (including the root label)
+   * @return ResponseEntry   entry of the zone
+   */
+  public ResponseEntry entry(CanonicalName name, int zoneLabels) {
+    byte[] wire = name.getWire();
+    int labels = name.labels() - 1;
+    Node node = this.root;
+    for (int i = labels - 1; i >= labels - zoneLabels + 1; i--) {
+      Node child = node.child(wire, name.labelOffset(i));
+      node = child != null ? child : node.addChild(wire, name.labelOffset(i));
+    }
+
+    if (node.entry == null) {
+      node.zone = name.ancestor(name.labels() - zoneLabels);
+      node.entry = new ResponseEntry(node.zone, this.hashCache, this.timerWheel, this.slab, false);
+      this.size++;
+      this.generation++;
+      if (this.filter.isFull(this.size))
+        rebuildFilter();
+      else
+        this.filter.add(node.zone.hashCode());
+    }
+    return node.entry;
+  }
+
+  // replaces the filter by one sized for twice the zones
+  private void rebuildFilter() {
+    this.filter = new ZoneFilter(2 * this.size);
+    addZones(this.root);
+  }
+
+  private void addZones(Node node) {
+    if (node.entry != null)
+      this.filter.add(node.zone.hashCode());
+    if (node.children == null)
+      return;
+    for (Node child : node.children) {
+      if (child != null)
+        addZones(child);
+    }
+  }
+
+  /* drops the entry of a zone and the nodes which are left without entries below them
+   * @params ResponseEntry   entry without records
+   */
+  public void remove(ResponseEntry entry) {
+    CanonicalName zone = entry.getZone();
+    int depth = 0;
+    Node node = this.root;
+    this.path[0] = node;
+    for (int i = zone.labels() - 2; i >= 0 && node != null; i--) {
+      node = node.child(zone.getWire(), zone.labelOffset(i));
+      this.path[++depth] = node;
+    }
+    if (node == null || node.entry != entry)
+      return;
+    drop(depth);
+  }
+
+  // drops the entry of the node at the given depth of this.path and the nodes left without entries above it
+  private void drop(int depth) {
+    Node node = this.path[depth];
+    this.filter.remove(node.zone.hashCode());
+    node.entry = null;
+    node.zone = null;
+    this.size--;
+    this.generation++;
+    for (; depth > 0 && this.path[depth].entry == null && this.path[depth].childCount == 0; depth--) {
+      this.path[depth - 1].removeChild(this.path[depth]);
+    }
+  }
+
+  /* collects the entries of all zones the given name belongs to, the root first
+   * entries which became empty (all records expired) are dropped on the way
+   * @params CanonicalName     name to look up
+   * @params ResponseEntry[]   receives the entries, needs MAX_LABELS elements
+   * @return int               number of entries
+   */
+  public int resolve(CanonicalName name, ResponseEntry[] entries) {
+    // the ancestor at position 0 is the name itself, the one at labels() - 1 the root
+    name.ancestorHashes(this.hashes);
+    int deepest = -1;
+    for (int position = name.labels() - 1; position >= 0; position--) {
+      this.candidates[position] = this.filter.mightContain(this.hashes[position]);
+      if (this.candidates[position])
+        deepest = position;
+      else
+        this.statistics.countZoneFilterRejection();
+    }
+    if (deepest < 0) {
+      this.statistics.countZoneFilterSkippedLookup();
+      return 0;
+    }
+
+    byte[] wire = name.getWire();
+    Node node = this.root;
+    int depth = 0;
+    this.path[0] = node;
+    int count = 0;
+    for (int position = name.labels() - 1; position >= deepest; position--) {
+      if (node != null && position < name.labels() - 1) {
+        node = node.child(wire, name.labelOffset(position));
+        this.path[++depth] = node;
+      }
+      if (!this.candidates[position])
+        continue;
+      if (node == null || node.entry == null)
+        this.statistics.countZoneFilterFalsePositive();
+      else
+        count = collect(depth, entries, count);
+    }
+    return count;
+  }
+
+  // adds the entry of the node at the given depth of this.path, an empty one is dropped instead
+  private int collect(int depth, ResponseEntry[] entries, int count) {
+    Node node = this.path[depth];
+    if (node.entry.isEmpty()) {
+      drop(depth);
+      return count;
+    }
+    entries[count] = node.entry;
+    return count + 1;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public long getGeneration() {
+    return this.generation;
+  }
+
+  public void clear() {
+    this.root = new Node(null, 0, 0);
+    this.size = 0;
+    this.generation++;
+    this.filter = new ZoneFilter(0);
+  }
+
+  // zones and their entries for a checkpoint (see Checkpoint)
+  public void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(this.size);
+    writeState(out, this.root);
+  }
+
+  private void writeState(DataOutputStream out, Node node) throws IOException {
+    if (node.entry != null) {
+      byte[] zone = node.zone.toWire();
+      out.writeShort(zone.length);
+      out.write(zone);
+      node.entry.writeState(out);
+    }
+    if (node.children == null)
+      return;
+    for (Node child : node.children) {
+      if (child != null)
+        writeState(out, child);
+    }
+  }
+
+  /* replaces all entries by the ones written by writeState(...)
+   * @params DataInputStream   stream of the checkpoint
+   * @params long              added to every arrival tick (see ResponseEntry.readState)
+   */
+  public void readState(DataInputStream in, long shift) throws IOException {
+    clear();
+    int entries = in.readInt();
+    for (int i = 0; i < entries; i++) {
+      byte[] zone = new byte[in.readUnsignedShort()];
+      in.readFully(zone);
+      CanonicalName name = CanonicalName.fromWire(zone);
+      entry(name, name.labels()).readState(in, shift);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class AddressClassifierTest {
+  private static final String INTERNAL = "240.1.2.3";
+  private static final String RESOLVER = "240.12.227.28";
+  private static final String EXTERNAL = "192.0.2.1";
+  private static final String EXTERNAL_IPV6 = "2001:db8::1";
+
+  private final AddressClassifier classifier = AddressClassifier.fromConstants();
+
+  private int classify(boolean response, String src, String dst) throws Exception {
+    byte[] srcBytes = InetAddress.getByName(src).getAddress();
+    byte[] dstBytes = InetAddress.getByName(dst).getAddress();
+    return this.classifier.classify(response, AddressSet.high(srcBytes), AddressSet.low(srcBytes),
+      AddressSet.high(dstBytes), AddressSet.low(dstBytes));
+  }
+
+  @Test
+  public void classifiesQueries() throws Exception {
+    assertEquals(Constants.QUERY_INT_TO_R, classify(false, INTERNAL, RESOLVER));
+    assertEquals(Constants.QUERY_R_TO_EXT, classify(false, RESOLVER, EXTERNAL));
+    assertEquals(Constants.QUERY_EXT_TO_R, classify(false, EXTERNAL, RESOLVER));
+    assertEquals(Constants.QUERY_R_TO_EXT, classify(false, RESOLVER, EXTERNAL_IPV6));
+    assertEquals(Constants.UNEXPECTED_DIRECTION, classify(false, EXTERNAL, INTERNAL));
+  }
+
+  @Test
+  public void classifiesResponses() throws Exception {
+    assertEquals(Constants.RESPONSE_EXT_TO_R, classify(true, EXTERNAL, RESOLVER));
+    assertEquals(Constants.RESPONSE_R_TO_INT, classify(true, RESOLVER, INTERNAL));
+    assertEquals(Constants.RESPONSE_R_TO_EXT, classify(true, RESOLVER, EXTERNAL));
+    assertEquals(Constants.RESPONSE_EXT_TO_R, classify(true, EXTERNAL_IPV6, RESOLVER));
+    assertEquals(Constants.UNEXPECTED_DIRECTION, classify(true, INTERNAL, EXTERNAL));
+  }
+
+  @Test
+  public void readsTheQRBitFromTheRawHeader() {
+    TraceFrame frame = new TraceFrame();
+    byte[] header = new byte[Constants.DNS_HEADER_LENGTH];
+    frame.setPayload(ByteBuffer.wrap(header), 0, header.length);
+    assertFalse(AddressClassifier.isResponse(frame));
+    header[2] = (byte) 0x81;
+    assertTrue(AddressClassifier.isResponse(frame));
+    header[2] = 0x7F;
+    assertFalse(AddressClassifier.isResponse(frame));
+  }
+}
@@ -0,0 +1,118 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+
+import org.junit.Test;
+
+public class AddressSetTest {
+
+  private static boolean contains(AddressSet set, String address) throws Exception {
+    return indexOf(set, address) > -1;
+  }
+
+  private static int indexOf(AddressSet set, String address) throws Exception {
+    byte[] bytes = InetAddress.getByName(address).getAddress();
+    return set.indexOf(AddressSet.high(bytes), AddressSet.low(bytes));
+  }
+
+  @Test
+  public void matchesAddressesInsideTheNetwork() throws Exception {
+    AddressSet set = new AddressSet("240.0.0.0/8");
+    assertTrue(contains(set, "240.0.0.0"));
+    assertTrue(contains(set, "240.12.227.28"));
+    assertTrue(contains(set, "240.255.255.255"));
+    assertFalse(contains(set, "241.0.0.0"));
+    assertFalse(contains(set, "239.255.255.255"));
+  }
+
+  @Test
+  public void matchesPrefixesNotAtByteBoundaries() throws Exception {
+    AddressSet set = new AddressSet("192.0.2.64/26", "2001:db8:0:40::/58");
+    assertFalse(contains(set, "192.0.2.63"));
+    assertTrue(contains(set, "192.0.2.64"));
+    assertTrue(contains(set, "192.0.2.127"));
+    assertFalse(contains(set, "192.0.2.128"));
+    assertFalse(contains(set, "2001:db8:0:3f::1"));
+    assertTrue(contains(set, "2001:db8:0:40::1"));
+    assertTrue(contains(set, "2001:db8:0:7f:ffff:ffff:ffff:ffff"));
+    assertFalse(contains(set, "2001:db8:0:80::"));
+  }
+
+  @Test
+  public void matchesIPv6PrefixesInTheLowerHalf() throws Exception {
+    AddressSet set = new AddressSet("2001:db8::ff00/120");
+    assertTrue(contains(set, "2001:db8::ff00"));
+    assertTrue(contains(set, "2001:db8::ffff"));
+    assertFalse(contains(set, "2001:db8::1:ff00"));
+    assertFalse(contains(set, "2001:db9::ff00"));
+  }
+
+  @Test
+  public void ignoresHostBitsOfTheNetwork() throws Exception {
+    AddressSet set = new AddressSet("10.1.2.3/8");
+    assertTrue(contains(set, "10.200.0.1"));
+    assertFalse(contains(set, "11.1.2.3"));
+  }
+
+  @Test
+  public void treatsSingleAddressesAsHostNetworks() throws Exception {
+    AddressSet set = new AddressSet("240.12.227.28", "2001:db8::53");
+    assertTrue(contains(set, "240.12.227.28"));
+    assertFalse(contains(set, "240.12.227.29"));
+    assertTrue(contains(set, "2001:db8::53"));
+    assertFalse(contains(set, "2001:db8::54"));
+  }
+
+  @Test
+  public void keepsIPv4AndIPv6NetworksApart() throws Exception {
+    AddressSet ipv4 = new AddressSet("0.0.0.0/0");
+    assertTrue(contains(ipv4, "255.255.255.255"));
+    assertTrue(contains(ipv4, "::ffff:192.0.2.1"));
+    assertFalse(contains(ipv4, "2001:db8::1"));
+    assertFalse(contains(ipv4, "::c000:201"));
+
+    AddressSet ipv6 = new AddressSet("::/0");
+    assertTrue(contains(ipv6, "2001:db8::1"));
+    assertTrue(contains(ipv6, "192.0.2.1"));
+  }
+
+  @Test
+  public void findsTheFirstMatchingNetwork() throws Exception {
+    AddressSet set = AddressSet.fromList("192.0.2.1, 192.0.2.0/24,,2001:db8::/32");
+    assertEquals(3, set.size());
+    assertEquals("2001:db8::/32", set.get(2));
+    assertEquals(0, indexOf(set, "192.0.2.1"));
+    assertEquals(1, indexOf(set, "192.0.2.2"));
+    assertEquals(2, indexOf(set, "2001:db8:1::1"));
+    assertEquals(-1, indexOf(set, "172.16.0.1"));
+  }
+
+  @Test
+  public void readsAddressesOfFrames() throws Exception {
+    byte[] ipv4 = new byte[16];
+    System.arraycopy(InetAddress.getByName("192.0.2.1").getAddress(), 0, ipv4, 0, 4);
+    assertTrue(AddressSet.isIPv4(AddressSet.high(ipv4, 4), AddressSet.low(ipv4, 4)));
+    byte[] ipv6 = InetAddress.getByName("2001:db8::1").getAddress();
+    assertFalse(AddressSet.isIPv4(AddressSet.high(ipv6, 6), AddressSet.low(ipv6, 6)));
+    assertEquals(AddressSet.low(ipv6), AddressSet.low(ipv6, 6));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInvalidPrefixLengths() {
+    new AddressSet("10.0.0.0/33");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInvalidIPv6PrefixLengths() {
+    new AddressSet("2001:db8::/129");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsHostNames() {
+    new AddressSet("localhost");
+  }
+}
@@ -0,0 +1,34 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Type;
+
+public class CachedNSECRecordTest {
+
+  private static CachedNSECRecord record(int... types) throws Exception {
+    return new CachedNSECRecord(new NSECRecord(Name.fromString("a.example."), DClass.IN, 60,
+      Name.fromString("b.example."), types), -1, 0, 60);
+  }
+
+  @Test
+  public void keepsHighTypesOutOfTheBitmap() throws Exception {
+    // TA (32768) and DLV (32769), which dnsjava does not name
+    CachedNSECRecord record = record(Type.A, Type.RRSIG, 257, 32768, 32769);
+    assertArrayEquals(new int[] { Type.A, Type.RRSIG, 257, 32768, 32769 }, record.getTypes());
+    assertTrue(record.containsType(32768));
+    assertTrue(record.containsType(Type.RRSIG));
+    assertFalse(record.containsType(32770));
+    assertFalse(record.containsType(Type.AAAA));
+
+    // a few bytes more than without the high types instead of a bitmap of 4 KB
+    assertTrue(record.estimateSize() - record(Type.A, Type.RRSIG).estimateSize() < 64);
+  }
+}
@@ -0,0 +1,89 @@
+package dns_resolver_simulation;
+
+import static dns_resolver_simulation.TestNames.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.xbill.DNS.Name;
+
+public class CanonicalNameTest {
+  // example of RFC 4034 Section 6.1, in canonical order
+  private static final String[] ORDERED = {
+    "example.",
+    "a.example.",
+    "yljkjljk.a.example.",
+    "Z.a.example.",
+    "zABC.a.EXAMPLE.",
+    "z.example.",
+    "\\001.z.example.",
+    "*.z.example.",
+    "\\200.z.example."
+  };
+
+  @Test
+  public void ordersNamesCanonically() throws Exception {
+    List<CanonicalName> names = new ArrayList<CanonicalName>();
+    for (String name : ORDERED) {
+      names.add(name(name));
+    }
+    List<CanonicalName> sorted = new ArrayList<CanonicalName>(names);
+    Collections.shuffle(sorted, new Random(1));
+    Collections.sort(sorted);
+    assertEquals(names, sorted);
+    assertTrue(name(".").compareTo(name("example.")) < 0);
+  }
+
+  @Test
+  public void ignoresCase() throws Exception {
+    assertEquals(name("zABC.a.EXAMPLE."), name("zabc.a.example."));
+    assertEquals(name("zABC.a.EXAMPLE.").hashCode(), name("zabc.a.example.").hashCode());
+    assertEquals(0, name("Z.a.example.").compareTo(name("z.A.example.")));
+    assertNotEquals(name("a.example."), name("a.example.com."));
+  }
+
+  @Test
+  public void sharesTheWireFormatWithAncestors() throws Exception {
+    CanonicalName name = name("www.Sub.Example.");
+    assertEquals(4, name.labels());
+    assertEquals(name("sub.example."), name.ancestor(1));
+    assertEquals(name("."), name.ancestor(3));
+    assertEquals(name("example.").hashCode(), name.ancestor(2).hashCode());
+    assertEquals(Name.fromString("sub.example."), name.ancestor(1).toName());
+    assertEquals(name("sub.example.").length(), name.ancestor(1).length());
+  }
+
+  @Test
+  public void hashesAllAncestors() throws Exception {
+    CanonicalName name = name("a.b.c.example.");
+    for (CanonicalName candidate : new CanonicalName[] { name, name.ancestor(2) }) {
+      int[] hashes = new int[candidate.labels()];
+      candidate.ancestorHashes(hashes);
+      for (int position = 0; position < hashes.length; position++) {
+        assertEquals(candidate.ancestor(position).hashCode(), hashes[position]);
+      }
+    }
+  }
+
+  @Test
+  public void countsCommonLabels() throws Exception {
+    assertEquals(3, name("a.b.example.").commonSuffixLabels(name("c.B.example.")));
+    assertEquals(1, name("example.").commonSuffixLabels(name("example.com.")));
+    assertEquals(3, name("b.example.").commonSuffixLabels(name("a.b.example.").ancestor(1)));
+  }
+
+  @Test
+  public void createsWildcards() throws Exception {
+    CanonicalName wildcard = name("z.example.").wildcard();
+    assertEquals(name("*.z.example."), wildcard);
+    assertTrue(wildcard.isWild());
+    assertFalse(name("z.example.").isWild());
+  }
+}
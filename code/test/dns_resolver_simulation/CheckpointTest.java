@@ -0,0 +1,141 @@
+package dns_resolver_simulation;
+
+import static dns_resolver_simulation.TestNames.name;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.DNSSEC;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+public class CheckpointTest {
+  private static final long SECOND = Constants.TICKS_PER_SECOND;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static NSECRecord nsec(String owner, String next) throws Exception {
+    return new NSECRecord(Name.fromString(owner), DClass.IN, 3600, Name.fromString(next), new int[] { Type.A, Type.RRSIG });
+  }
+
+  private static RRSIGRecord rrsig(String owner) throws Exception {
+    return new RRSIGRecord(Name.fromString(owner), DClass.IN, 3600, Type.NSEC, DNSSEC.Algorithm.RSASHA256, 3600,
+      new Date(1530000000000L), new Date(1520000000000L), 12345, Name.fromString("example."), new byte[] { 1, 2, 3 });
+  }
+
+  private static DataInputStream input(ByteArrayOutputStream bytes) {
+    return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+  }
+
+  @Test
+  public void writesAndLoadsTheHeaderAndStates() throws Exception {
+    Checkpoint checkpoint = new Checkpoint("/traces/trace.bin", 1000, 4711, 2, 1526000000.5, 2);
+    assertFalse(checkpoint.setState(1, "nsec3", new byte[] { 4, 5 }));
+    assertTrue(checkpoint.setState(0, "nsec", new byte[] { 1, 2, 3 }));
+    File file = this.folder.newFile("checkpoint");
+    checkpoint.write(file);
+    assertFalse(new File(file.getPath() + ".tmp").exists());
+
+    Checkpoint loaded = Checkpoint.load(file);
+    assertEquals("/traces/trace.bin", loaded.getTrace());
+    assertEquals(1000, loaded.getFrames());
+    assertEquals(4711, loaded.getOffset());
+    assertEquals(2, loaded.getFramesAtOffset());
+    assertEquals(1526000000.5, loaded.getTimestamp(), 0);
+    assertArrayEquals(new byte[] { 1, 2, 3 }, loaded.getState("nsec"));
+    assertArrayEquals(new byte[] { 4, 5 }, loaded.getState("nsec3"));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsMissingStates() throws Exception {
+    Checkpoint checkpoint = new Checkpoint("trace.bin", 0, 0, 0, 0, 1);
+    checkpoint.setState(0, "nsec", new byte[0]);
+    checkpoint.getState("nsec3");
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsUnknownFormats() throws Exception {
+    File file = this.folder.newFile("checkpoint");
+    Files.write(file.toPath(), new byte[] { 0x44, 0x52, 0x53, 0x49, 0, 0, 0, 1 });
+    Checkpoint.load(file);
+  }
+
+  @Test
+  public void restoresCachedRecordsWithShiftedArrivals() throws Exception {
+    ResponseEntry entry = new ResponseEntry(name("example."), null, new TimerWheel(record -> { }), null, false);
+    entry.add(nsec("a.example.", "c.example."), rrsig("a.example."), 100 * SECOND, 60);
+    entry.add(nsec("c.example.", "e.example."), null, 110 * SECOND, 30);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    entry.writeState(new DataOutputStream(bytes));
+
+    ResponseEntry restored = new ResponseEntry(name("example."), null, new TimerWheel(record -> { }), null, false);
+    restored.readState(input(bytes), 1000 * SECOND);
+    CachedNegativeRecord record = restored.getMatchingNSEC(name("a.example."), 1100 * SECOND);
+    assertEquals(nsec("a.example.", "c.example."), record.toRecord());
+    assertEquals(2, record.getSigLabels());
+    assertEquals(1100 * SECOND, record.getArrival());
+    assertEquals(1160 * SECOND, record.getExpiry());
+    record = restored.getMatchingNSEC(name("c.example."), 1110 * SECOND);
+    assertEquals(nsec("c.example.", "e.example."), record.toRecord());
+    assertEquals(-1, record.getSigLabels());
+    assertEquals(1110 * SECOND, record.getArrival());
+    assertEquals(1140 * SECOND, record.getExpiry());
+  }
+
+  @Test
+  public void restoresRecordsWithoutRdata() throws Exception {
+    Record wildcard = Record.newRecord(Name.fromString("*.example."), Type.A, DClass.IN, 300);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ResponseEntry.writeRecord(new DataOutputStream(bytes), wildcard);
+    Record restored = ResponseEntry.readRecord(input(bytes));
+    assertEquals(wildcard.getName(), restored.getName());
+    assertEquals(Type.A, restored.getType());
+    assertEquals(300, restored.getTTL());
+  }
+
+  @Test
+  public void restoresPendingQueries() throws Exception {
+    DNSMessageUtilities messageUtils = new DNSMessageUtilities();
+    SlidingWindow window = new SlidingWindow(messageUtils);
+    for (int id = 1; id <= 3; id++) {
+      Message query = Message.newQuery(Record.newRecord(Name.fromString("q" + id + ".example."), Type.A, DClass.IN));
+      query.getHeader().setID(id);
+      messageUtils.set(query);
+      messageUtils.setCurrentTime(id * SECOND);
+      window.setKey(0, id, 5353);
+      window.addEntry(Constants.NAME_ERROR_RESPONSE);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    window.writeState(new DataOutputStream(bytes));
+
+    SlidingWindow restored = new SlidingWindow(messageUtils);
+    restored.readState(input(bytes));
+    assertEquals(3, restored.size());
+    // the DNS ID of the key is taken from the current message
+    restored.setKey(0, 3, 5353);
+    QueryEntry entry = restored.getEntry();
+    assertEquals(Name.fromString("q3.example."), entry.question.getName());
+    assertEquals(3 * SECOND, entry.arrival);
+    assertEquals(Constants.NAME_ERROR_RESPONSE, entry.cacheResponse);
+  }
+}
@@ -0,0 +1,124 @@
+package dns_resolver_simulation;
+
+import static dns_resolver_simulation.TestNames.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.InetAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Type;
+
+public class ConcurrentSimulationCacheTest {
+  private static final long SECOND = Constants.TICKS_PER_SECOND;
+
+  private ConcurrentSimulationCache cache;
+  private ConcurrentSimulationCache lane;
+  private ResponseEntry[] entries;
+
+  private static NSECRecord nsec(String owner, String next, long ttl) throws Exception {
+    return new NSECRecord(Name.fromString(owner), DClass.IN, ttl, Name.fromString(next), new int[] { Type.A });
+  }
+
+  private static ARecord wildcard(String owner, long ttl) throws Exception {
+    return new ARecord(Name.fromString(owner), DClass.IN, ttl, InetAddress.getByName("192.0.2.1"));
+  }
+
+  // adds an NSEC record of the zone example. arriving at 1 second
+  private void add(ConcurrentSimulationCache cache, String owner, String next, long ttl) throws Exception {
+    cache.add(name(owner), 2, nsec(owner, next, ttl), null, SECOND, ttl);
+  }
+
+  @Before
+  public void setUp() {
+    Logger logger = new Logger();
+    SimulationConfig config = SimulationConfig.parse("test:threads=2");
+    this.cache = new ConcurrentSimulationCache(new DNSMessageUtilities(), new Statistics(logger, 1000, 1), config, logger);
+    this.lane = new ConcurrentSimulationCache(new DNSMessageUtilities(), new Statistics(logger, 1000, 1), this.cache);
+    this.entries = new ResponseEntry[ZoneTrie.MAX_LABELS];
+  }
+
+  @Test
+  public void sharesRecordsWithAllLanes() throws Exception {
+    long generation = this.lane.getZoneGeneration();
+    add(this.cache, "a.example.", "d.example.", 60);
+    assertNotEquals(generation, this.lane.getZoneGeneration());
+    assertEquals(this.cache.getZoneGeneration(), this.lane.getZoneGeneration());
+
+    assertEquals(1, this.lane.resolve(name("b.example."), this.entries));
+    assertEquals(name("example."), this.entries[0].getZone());
+    CachedNegativeRecord record = this.entries[0].getCoveringNSEC(name("b.example."), 2 * SECOND);
+    assertEquals(name("a.example."), ((CachedNSECRecord) record).getOwner());
+    assertEquals(0, this.lane.resolve(name("b.example.com."), this.entries));
+    assertEquals(1, this.lane.getLiveRecords());
+  }
+
+  @Test
+  public void resolvesZonesFromTheRoot() throws Exception {
+    add(this.cache, "a.example.", "d.example.", 60);
+    this.cache.add(name("a.sub.example."), 3, nsec("a.sub.example.", "b.sub.example.", 60), null, SECOND, 60);
+    assertEquals(2, this.lane.resolve(name("x.a.sub.example."), this.entries));
+    assertEquals(name("example."), this.entries[0].getZone());
+    assertEquals(name("sub.example."), this.entries[1].getZone());
+  }
+
+  @Test
+  public void dropsZonesWhoseRecordsExpired() throws Exception {
+    add(this.cache, "a.example.", "d.example.", 60);
+    this.lane.resolve(name("b.example."), this.entries);
+    ResponseEntry entry = this.entries[0];
+    long generation = this.lane.getZoneGeneration();
+
+    this.cache.advance(61 * SECOND);
+    assertEquals(0, this.lane.getLiveRecords());
+    assertEquals(0, this.lane.resolve(name("b.example."), this.entries));
+    assertNotEquals(generation, this.lane.getZoneGeneration());
+    assertNull(entry.getCoveringNSEC(name("b.example."), 61 * SECOND));
+
+    // the zone is added again with a new entry
+    add(this.lane, "a.example.", "d.example.", 60);
+    this.cache.applyStaged(new ConcurrentSimulationCache[] { this.lane });
+    assertEquals(1, this.cache.resolve(name("b.example."), this.entries));
+    assertNotEquals(entry, this.entries[0]);
+  }
+
+  @Test
+  public void appliesRecordsOfTheLanesInTraceOrder() throws Exception {
+    Logger logger = new Logger();
+    ConcurrentSimulationCache other = new ConcurrentSimulationCache(new DNSMessageUtilities(), new Statistics(logger, 1000, 1), this.cache);
+    // the lane simulates the later packet first
+    this.lane.setPosition(1);
+    add(this.lane, "a.example.", "d.example.", 60);
+    other.setPosition(0);
+    add(other, "a.example.", "c.example.", 60);
+    assertEquals(0, this.lane.resolve(name("b.example."), this.entries));
+
+    this.cache.applyStaged(new ConcurrentSimulationCache[] { this.lane, other });
+    assertEquals(1, other.resolve(name("b.example."), this.entries));
+    CachedNegativeRecord record = this.entries[0].getCoveringNSEC(name("cc.example."), 2 * SECOND);
+    assertEquals(name("a.example."), ((CachedNSECRecord) record).getOwner());
+
+    // staged operations are applied once
+    this.cache.advance(61 * SECOND);
+    this.cache.applyStaged(new ConcurrentSimulationCache[] { this.lane, other });
+    assertEquals(0, this.lane.getLiveRecords());
+  }
+
+  @Test
+  public void sharesWildcards() throws Exception {
+    CanonicalName key = name("*.example.");
+    assertNull(this.lane.getWildcard(key));
+    CachedWildcardRecord wildcard = new CachedWildcardRecord(wildcard("*.example.", 60), SECOND, key);
+    this.cache.addWildcard(wildcard);
+    assertSame(wildcard, this.lane.getWildcard(key));
+    this.cache.advance(61 * SECOND);
+    assertNull(this.lane.getWildcard(key));
+  }
+}
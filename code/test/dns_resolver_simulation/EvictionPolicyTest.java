@@ -0,0 +1,172 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class EvictionPolicyTest {
+
+  // record of a given size whose key is its name
+  static class TestRecord extends CachedRecord {
+    private String name;
+    private int size;
+
+    TestRecord(String name, int size) {
+      super(0);
+      this.name = name;
+      this.size = size;
+    }
+
+    @Override
+    public int getType() {
+      return 0;
+    }
+
+    @Override
+    public int getKeyHash() {
+      return this.name.hashCode();
+    }
+
+    @Override
+    protected int estimateSize() {
+      return this.size;
+    }
+
+    @Override
+    public long getExpiry() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+      return this.name;
+    }
+  }
+
+  // counts the rejected admissions only
+  static class AdmissionStatistics extends Statistics {
+    private int rejectedAdmissions;
+
+    AdmissionStatistics() {
+      super(new Logger(), 1000, 1);
+    }
+
+    @Override
+    public void countRejectedAdmission() {
+      this.rejectedAdmissions++;
+    }
+  }
+
+  private TestRecord a;
+  private TestRecord b;
+  private TestRecord c;
+  private AdmissionStatistics statistics;
+
+  @Before
+  public void setUp() {
+    this.a = new TestRecord("a", 10);
+    this.b = new TestRecord("b", 20);
+    this.c = new TestRecord("c", 30);
+    this.statistics = new AdmissionStatistics();
+  }
+
+  private static void addAll(EvictionPolicy policy, CachedRecord... records) {
+    for (CachedRecord record : records) {
+      policy.add(record);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownPolicies() {
+    EvictionPolicy.create("fifo", this.statistics);
+  }
+
+  @Test
+  public void keepsNumberAndSizeOfTheRecords() {
+    for (String name : new String[] { "lru", "lfu", "tinylfu" }) {
+      EvictionPolicy policy = EvictionPolicy.create(name, this.statistics);
+      addAll(policy, this.a, this.b, this.c);
+      assertEquals(name, 3, policy.size());
+      assertEquals(name, 60, policy.getBytes());
+      policy.remove(this.b);
+      assertEquals(name, 2, policy.size());
+      assertEquals(name, 40, policy.getBytes());
+      policy.clear();
+      assertEquals(name, 0, policy.size());
+      assertEquals(name, 0, policy.getBytes());
+      assertNull(name, policy.victim());
+      assertNull(name, policy.evict());
+    }
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedRecord() {
+    EvictionPolicy policy = new LRUEvictionPolicy();
+    addAll(policy, this.a, this.b, this.c);
+    assertSame(this.a, policy.victim());
+    policy.access(this.a);
+    assertSame(this.b, policy.victim());
+    policy.access(this.b);
+    assertSame(this.c, policy.evict());
+  }
+
+  @Test
+  public void evictsTheLeastFrequentlyUsedRecord() {
+    EvictionPolicy policy = new LFUEvictionPolicy();
+    addAll(policy, this.a, this.b, this.c);
+    policy.access(this.a);
+    policy.access(this.a);
+    policy.access(this.b);
+    assertSame(this.c, policy.victim());
+    policy.access(this.c);
+    policy.access(this.c);
+    // b is used twice, a and c three times
+    assertSame(this.b, policy.victim());
+    policy.remove(this.b);
+    // the least recently used of equally frequent records
+    assertSame(this.a, policy.evict());
+  }
+
+  @Test
+  public void choosesTheTinyLFUVictimWithoutChangingThePolicy() {
+    EvictionPolicy policy = new TinyLFUEvictionPolicy(this.statistics);
+    // the window holds one record, a and b move to the main part
+    addAll(policy, this.a, this.b, this.c);
+
+    // c is not used more often than a, it would not be admitted
+    assertSame(this.c, policy.victim());
+    assertSame(this.c, policy.victim());
+    assertEquals(0, this.statistics.rejectedAdmissions);
+    assertEquals(3, policy.size());
+
+    assertSame(this.c, policy.evict());
+    assertEquals(1, this.statistics.rejectedAdmissions);
+    policy.remove(this.c);
+    assertEquals(2, policy.size());
+  }
+
+  @Test
+  public void admitsFrequentTinyLFUCandidatesOnEviction() {
+    EvictionPolicy policy = new TinyLFUEvictionPolicy(this.statistics);
+    TestRecord d = new TestRecord("d", 40);
+    addAll(policy, this.a, this.b, d);
+    policy.access(d);
+    policy.access(d);
+
+    // d wins against a, but stays in the window until the cache evicts
+    assertSame(this.a, policy.victim());
+    assertSame(this.a, policy.victim());
+    assertSame(this.a, policy.evict());
+    policy.remove(this.a);
+    assertEquals(0, this.statistics.rejectedAdmissions);
+
+    // d was admitted to the main part, the window is empty: the eldest record of the main part goes next
+    assertSame(this.b, policy.victim());
+    policy.access(this.b);
+    assertSame(d, policy.victim());
+    assertEquals(2, policy.size());
+  }
+}
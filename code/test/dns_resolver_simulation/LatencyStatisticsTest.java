@@ -0,0 +1,88 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyStatisticsTest {
+  private static final long MILLI_SECOND = Constants.TICKS_PER_MILLI_SECOND;
+
+  private Logger logger;
+  // 5 buckets of 2 ms and one for latencies of 10 ms and more
+  private LatencyStatistics statistics;
+
+  @Before
+  public void setUp() {
+    this.logger = new Logger();
+    this.statistics = new LatencyStatistics(this.logger, "test", 10, 2);
+  }
+
+  private static int[] buckets(LatencyStatistics statistics) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    statistics.writeState(new DataOutputStream(bytes));
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    int[] buckets = new int[in.readInt()];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = in.readInt();
+    }
+    return buckets;
+  }
+
+  @Test
+  public void convertsTimestampsToExactTicks() {
+    assertEquals(1526000000123456L, DNSMessageUtilities.toTicks(1526000000.123456));
+    assertEquals(1526000000999999L, DNSMessageUtilities.toTicks(1526000000.999999));
+    assertEquals(1526000001000000L, DNSMessageUtilities.toTicks(1526000001.0));
+    assertEquals(1L, DNSMessageUtilities.toTicks(0.000001));
+  }
+
+  @Test
+  public void bucketsLatenciesAtMilliSecondBoundaries() throws IOException {
+    long past = DNSMessageUtilities.toTicks(1526000000.000001);
+    this.statistics.add(past, past, false);
+    this.statistics.add(past + 2 * MILLI_SECOND - 1, past, false);
+    this.statistics.add(past + 2 * MILLI_SECOND, past, false);
+    this.statistics.add(past + 10 * MILLI_SECOND - 1, past, false);
+    this.statistics.add(past + 10 * MILLI_SECOND, past, false);
+    this.statistics.add(past + 1000 * MILLI_SECOND, past, false);
+    assertArrayEquals(new int[] { 2, 1, 0, 0, 1, 2 }, buckets(this.statistics));
+  }
+
+  @Test
+  public void bucketsTraceLatencies() throws IOException {
+    // 2 ms between timestamps of microsecond resolution, not less because of rounding
+    long past = DNSMessageUtilities.toTicks(1526000000.000300);
+    long current = DNSMessageUtilities.toTicks(1526000000.002300);
+    this.statistics.add(current, past, false);
+    assertArrayEquals(new int[] { 0, 1, 0, 0, 0, 0 }, buckets(this.statistics));
+  }
+
+  @Test
+  public void countsHitsAndIgnoresNegativeLatencies() throws IOException {
+    this.statistics.add(0, 5 * MILLI_SECOND, true);
+    this.statistics.add(0, 5 * MILLI_SECOND, false);
+    assertArrayEquals(new int[] { 1, 0, 0, 0, 0, 0 }, buckets(this.statistics));
+  }
+
+  @Test
+  public void mergesStatisticsOfTheSameShape() throws IOException {
+    LatencyStatistics other = new LatencyStatistics(this.logger, "other", 10, 2);
+    other.add(3 * MILLI_SECOND, 0, false);
+    this.statistics.add(3 * MILLI_SECOND, 0, false);
+    this.statistics.merge(other);
+    assertArrayEquals(new int[] { 0, 2, 0, 0, 0, 0 }, buckets(this.statistics));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsStatisticsOfAnotherShape() {
+    this.statistics.merge(new LatencyStatistics(this.logger, "other", 10, 1));
+  }
+}
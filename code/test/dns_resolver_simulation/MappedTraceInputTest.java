@@ -0,0 +1,89 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedTraceInputTest {
+  // smaller than a frame with its header, every frame crosses a window boundary
+  private static final int WINDOW_SIZE = 48;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void remapsWindowsAtRequestedRanges() throws Exception {
+    byte[] bytes = TestTraces.payload(0, 100);
+    File file = folder.newFile("input");
+    Files.write(file.toPath(), bytes);
+
+    MappedTraceInput input = new MappedTraceInput(file, WINDOW_SIZE);
+    input.advance(40);
+    assertTrue(input.require(8));
+    assertEquals(40, input.index());
+    // the next range crosses the end of the first window
+    input.advance(8);
+    assertTrue(input.require(10));
+    assertEquals(0, input.index());
+    assertEquals(48, input.position());
+    assertEquals(bytes[48], input.buffer().get(input.index()));
+    assertEquals(bytes[57], input.buffer().get(input.index() + 9));
+
+    input.advance(50);
+    assertTrue(input.require(2));
+    assertEquals(bytes[99], input.buffer().get(input.index() + 1));
+    assertFalse(input.require(3));
+    input.close();
+  }
+
+  @Test
+  public void readsFramesAcrossWindowBoundaries() throws Exception {
+    int frames = 20;
+    byte[][] trace = new byte[frames][];
+    for (int i = 0; i < frames; i++) {
+      trace[i] = TestTraces.frame(1000.5 + i, i + 1, TestTraces.payload(i, 1 + i));
+    }
+    File file = TestTraces.write(folder.newFile("trace"), trace);
+
+    TraceReader reader = new BinaryTraceReader(new MappedTraceInput(file, WINDOW_SIZE));
+    TraceFrame frame = new TraceFrame();
+    long offset = BinaryTraceReader.MAGIC_LENGTH;
+    for (int i = 0; i < frames; i++) {
+      assertTrue(reader.next(frame));
+      assertEquals(offset, frame.getOffset());
+      assertEquals(1000.5 + i, frame.getTimestamp(), 0);
+      assertEquals(i + 1, frame.getFrameNumber());
+      assertEquals(4, frame.getIpVersion());
+      assertEquals(5353, frame.getSrcPort());
+      assertEquals(53, frame.getDstPort());
+      assertArrayEquals(TestTraces.SERVER, Arrays.copyOf(frame.getDstAddress(), 4));
+      assertArrayEquals(TestTraces.payload(i, 1 + i), frame.copyPayload());
+      offset += trace[i].length;
+    }
+    assertFalse(reader.next(frame));
+    reader.close();
+  }
+
+  @Test
+  public void stopsAtATruncatedFrame() throws Exception {
+    byte[] last = TestTraces.frame(2.0, 2, TestTraces.payload(2, 30));
+    File file = TestTraces.write(folder.newFile("trace"), TestTraces.frame(1.0, 1, TestTraces.payload(1, 30)),
+      Arrays.copyOf(last, last.length - 1));
+
+    TraceReader reader = new BinaryTraceReader(new MappedTraceInput(file, WINDOW_SIZE));
+    TraceFrame frame = new TraceFrame();
+    assertTrue(reader.next(frame));
+    assertEquals(1, frame.getFrameNumber());
+    assertFalse(reader.next(frame));
+    reader.close();
+  }
+}
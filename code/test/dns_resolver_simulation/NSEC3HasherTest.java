@@ -0,0 +1,58 @@
+package dns_resolver_simulation;
+
+import static dns_resolver_simulation.TestNames.name;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.utils.base32;
+
+public class NSEC3HasherTest {
+  private static final base32 BASE32HEX = new base32(base32.Alphabet.BASE32HEX, false, false);
+  // parameters of the example zone of RFC 5155 Appendix A
+  private static final byte[] SALT = { (byte) 0xaa, (byte) 0xbb, (byte) 0xcc, (byte) 0xdd };
+  private static final int ITERATIONS = 12;
+
+  private static String hash(String name) throws Exception {
+    return BASE32HEX.toString(NSEC3Hasher.forCurrentThread().hash(name(name), SALT, ITERATIONS));
+  }
+
+  // record giving the hash parameters to dnsjava
+  private static NSEC3Record parameters(int iterations, byte[] salt) throws Exception {
+    byte[] next = new byte[20];
+    return new NSEC3Record(Name.fromString("example."), DClass.IN, 3600, NSEC3Record.SHA1_DIGEST_ID, 0, iterations, salt, next, new int[0]);
+  }
+
+  @Test
+  public void hashesTheExamplesOfRFC5155() throws Exception {
+    assertEquals("0P9MHAVEQVM6T7VBL5LOP2U3T2RP3TOM", hash("example."));
+    assertEquals("35MTHGPGCU1QG68FAB165KLNSNK3DPVL", hash("a.example."));
+    assertEquals("35MTHGPGCU1QG68FAB165KLNSNK3DPVL", hash("A.Example."));
+  }
+
+  @Test
+  public void hashesLikeDnsjava() throws Exception {
+    for (String name : new String[] { ".", "example.", "*.w.example.", "ai.example." }) {
+      for (int iterations : new int[] { 0, 1, ITERATIONS }) {
+        byte[] expected = parameters(iterations, SALT).hashName(Name.fromString(name));
+        assertArrayEquals(name, expected, NSEC3Hasher.forCurrentThread().hash(name(name), SALT, iterations));
+      }
+      byte[] expected = parameters(0, null).hashName(Name.fromString(name));
+      assertArrayEquals(name, expected, NSEC3Hasher.forCurrentThread().hash(name(name), null, 0));
+    }
+  }
+
+  @Test
+  public void hashesManyNames() throws Exception {
+    CanonicalName[] names = { name("example."), name("a.example."), name("x.y.w.example.") };
+    byte[][] hashes = new byte[names.length + 1][];
+    NSEC3Hasher.forCurrentThread().hash(names, names.length, SALT, ITERATIONS, hashes);
+    for (int i = 0; i < names.length; i++) {
+      assertArrayEquals(NSEC3Hasher.forCurrentThread().hash(names[i], SALT, ITERATIONS), hashes[i]);
+    }
+    assertEquals(null, hashes[names.length]);
+  }
+}
@@ -0,0 +1,111 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Type;
+import org.xbill.DNS.utils.base32;
+
+public class NSEC3RingTest {
+  private static final base32 BASE32HEX = new base32(base32.Alphabet.BASE32HEX, false, false);
+  private static final byte[] SALT = { (byte) 0xaa, (byte) 0xbb, (byte) 0xcc, (byte) 0xdd };
+  private static final long EXPIRY = 100 * Constants.TICKS_PER_SECOND;
+
+  private NSEC3Ring ring;
+
+  // hash of SHA-1 length starting with the given byte
+  private static byte[] hash(int first) {
+    byte[] hash = new byte[20];
+    hash[0] = (byte) first;
+    return hash;
+  }
+
+  private static EnhancedNSEC3Record record(int owner, int next) throws Exception {
+    Name name = Name.fromString(BASE32HEX.toString(hash(owner)) + ".example.");
+    NSEC3Record record = new NSEC3Record(name, DClass.IN, 3600, NSEC3Record.SHA1_DIGEST_ID, 0, 12, SALT, hash(next), new int[] { Type.A });
+    return new EnhancedNSEC3Record(record, null);
+  }
+
+  private CachedNSEC3Record add(int owner, int next, long expiry) throws Exception {
+    CachedNSEC3Record record = new CachedNSEC3Record(record(owner, next), -1, 0, expiry, this.ring);
+    this.ring.add(record);
+    return record;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    this.ring = new NSEC3Ring(record(0x10, 0x40), false);
+  }
+
+  @Test
+  public void comparesHashesAsUnsignedBytes() {
+    assertTrue(EnhancedNSEC3Record.compareHashes(hash(0x80), hash(0x7f)) > 0);
+    assertTrue(EnhancedNSEC3Record.compareHashes(hash(0x7f), hash(0xff)) < 0);
+    assertEquals(0, EnhancedNSEC3Record.compareHashes(hash(0x90), hash(0x90)));
+    // a prefix lays before the hashes it starts
+    assertTrue(EnhancedNSEC3Record.compareHashes(new byte[] { 0x10 }, hash(0x10)) < 0);
+  }
+
+  @Test
+  public void findsTheLastRecordOfAChain() throws Exception {
+    assertFalse(record(0x40, 0x90).isLastInChain());
+    assertTrue(record(0x90, 0x10).isLastInChain());
+  }
+
+  @Test
+  public void findsMatchingRecords() throws Exception {
+    CachedNSEC3Record middle = add(0x40, 0x90, EXPIRY);
+    add(0x10, 0x40, EXPIRY);
+    assertSame(middle, this.ring.getMatching(hash(0x40), 0));
+    assertNull(this.ring.getMatching(hash(0x41), 0));
+    assertNull(this.ring.getMatching(hash(0x40), EXPIRY));
+  }
+
+  @Test
+  public void coversHashesBetweenOwnerAndNextHash() throws Exception {
+    CachedNSEC3Record first = add(0x10, 0x40, EXPIRY);
+    CachedNSEC3Record middle = add(0x40, 0x90, EXPIRY);
+    add(0x90, 0x10, EXPIRY);
+    assertSame(first, this.ring.getCovering(hash(0x20), 0));
+    // 0x80 and above are negative as signed bytes
+    assertSame(middle, this.ring.getCovering(hash(0x80), 0));
+  }
+
+  @Test
+  public void coversHashesAroundTheEndOfTheChain() throws Exception {
+    add(0x10, 0x40, EXPIRY);
+    add(0x40, 0x90, EXPIRY);
+    CachedNSEC3Record last = add(0x90, 0x10, EXPIRY);
+    assertSame(last, this.ring.getCovering(hash(0xf0), 0));
+    assertSame(last, this.ring.getCovering(hash(0x05), 0));
+  }
+
+  @Test
+  public void skipsExpiredRecords() throws Exception {
+    add(0x10, 0x40, EXPIRY);
+    add(0x40, 0x90, EXPIRY / 2);
+    add(0x90, 0x10, EXPIRY);
+    assertNull(this.ring.getCovering(hash(0x50), EXPIRY / 2));
+    assertNull(this.ring.getCovering(hash(0x50), EXPIRY));
+  }
+
+  @Test
+  public void replacesRecordsWithTheSameOwnerHash() throws Exception {
+    CachedNSEC3Record old = add(0x40, 0x90, EXPIRY);
+    CachedNSEC3Record record = new CachedNSEC3Record(record(0x40, 0x90), -1, 0, EXPIRY, this.ring);
+    assertSame(old, this.ring.add(record));
+    assertEquals(1, this.ring.size());
+    this.ring.remove(old);
+    assertSame(record, this.ring.get(hash(0x40)));
+    this.ring.remove(record);
+    assertTrue(this.ring.isEmpty());
+  }
+}
@@ -0,0 +1,185 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PacketDecoderTest {
+  private static final byte[] CLIENT = { (byte) 192, 0, 2, 1 };
+  private static final byte[] SERVER = { (byte) 192, 0, 2, 53 };
+  private static final int TCP_FIN = 0x01;
+  private static final int TCP_SYN = 0x02;
+  private static final int TCP_ACK = 0x10;
+  private static final int SEQUENCE = 1000;
+
+  private PacketDecoder decoder;
+  private TraceFrame frame;
+  private int frameNumber;
+
+  // DNS over TCP message: 2 byte length prefix and a payload counting up from the given byte
+  private static byte[] message(int first, int length) {
+    byte[] message = new byte[2 + length];
+    message[0] = (byte) (length >> 8);
+    message[1] = (byte) length;
+    System.arraycopy(TestTraces.payload(first, length), 0, message, 2, length);
+    return message;
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    int length = 0;
+    for (byte[] part : parts) {
+      length += part.length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    for (byte[] part : parts) {
+      buffer.put(part);
+    }
+    return buffer.array();
+  }
+
+  private static byte[] slice(byte[] bytes, int from, int to) {
+    byte[] slice = new byte[to - from];
+    System.arraycopy(bytes, from, slice, 0, slice.length);
+    return slice;
+  }
+
+  // raw IPv4 packet with a TCP segment from the client's port 40000 to the server's DNS port
+  private static byte[] tcp(int sequence, int flags, byte[] payload) {
+    ByteBuffer packet = ByteBuffer.allocate(20 + 20 + payload.length);
+    packet.put((byte) 0x45).put((byte) 0).putShort((short) packet.capacity()).putInt(0);
+    packet.put((byte) 64).put((byte) 6).putShort((short) 0).put(CLIENT).put(SERVER);
+    packet.putShort((short) 40000).putShort((short) Constants.DNS_PORT).putInt(sequence).putInt(0);
+    packet.put((byte) 0x50).put((byte) flags).putShort((short) 65535).putInt(0);
+    packet.put(payload);
+    return packet.array();
+  }
+
+  // Ethernet frame with a VLAN tag and an IPv6 UDP datagram from the server's DNS port
+  private static byte[] udp6(byte[] payload) {
+    ByteBuffer packet = ByteBuffer.allocate(18 + 40 + 8 + payload.length);
+    packet.put(new byte[12]).putShort((short) 0x8100).putShort((short) 7).putShort((short) 0x86DD);
+    packet.putInt(0x60000000).putShort((short) (8 + payload.length)).put((byte) 17).put((byte) 64);
+    packet.put(new byte[] { 0x20, 0x01, 0x0d, (byte) 0xb8 }).put(new byte[11]).put((byte) 0x53);
+    packet.put(new byte[] { 0x20, 0x01, 0x0d, (byte) 0xb8 }).put(new byte[11]).put((byte) 0x01);
+    packet.putShort((short) Constants.DNS_PORT).putShort((short) 40000).putShort((short) (8 + payload.length)).putShort((short) 0);
+    packet.put(payload);
+    return packet.array();
+  }
+
+  // decodes a packet like the trace readers, returns the payloads of all handed out frames
+  private List<byte[]> decode(byte[] packet, int linkType) {
+    // trace inputs are little endian, the decoder has to read network byte order nevertheless
+    ByteBuffer buffer = ByteBuffer.allocate(packet.length + 3).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position(3);
+    buffer.put(packet);
+    List<byte[]> payloads = new ArrayList<byte[]>();
+    this.frameNumber++;
+    boolean filled = this.decoder.decode(buffer, 3, packet.length, linkType, this.frameNumber, this.frameNumber, 0, this.frame);
+    while (filled) {
+      payloads.add(this.frame.copyPayload());
+      filled = this.decoder.nextPending(this.frame);
+    }
+    return payloads;
+  }
+
+  private List<byte[]> segment(int offset, int flags, byte[] payload) {
+    return decode(tcp(SEQUENCE + 1 + offset, TCP_ACK | flags, payload), PacketDecoder.LINKTYPE_RAW);
+  }
+
+  @Before
+  public void setUp() {
+    this.decoder = new PacketDecoder();
+    this.frame = new TraceFrame();
+    this.frameNumber = 0;
+    assertEquals(0, decode(tcp(SEQUENCE, TCP_SYN, new byte[0]), PacketDecoder.LINKTYPE_RAW).size());
+  }
+
+  @Test
+  public void decodesUDPOverIPv6BehindAVLANTag() {
+    List<byte[]> payloads = decode(udp6(TestTraces.payload(1, 30)), PacketDecoder.LINKTYPE_ETHERNET);
+    assertEquals(1, payloads.size());
+    assertArrayEquals(TestTraces.payload(1, 30), payloads.get(0));
+    assertEquals(6, this.frame.getIpVersion());
+    assertEquals(17, this.frame.getTransportType());
+    assertEquals(Constants.DNS_PORT, this.frame.getSrcPort());
+    assertEquals(0x53, this.frame.getSrcAddress()[15]);
+  }
+
+  @Test
+  public void handsOutEveryMessageOfASegment() {
+    List<byte[]> payloads = segment(0, 0, concat(message(1, 20), message(2, 30)));
+    assertEquals(2, payloads.size());
+    assertArrayEquals(TestTraces.payload(1, 20), payloads.get(0));
+    assertArrayEquals(TestTraces.payload(2, 30), payloads.get(1));
+    assertEquals(6, this.frame.getTransportType());
+    assertEquals(40000, this.frame.getSrcPort());
+    assertArrayEquals(SERVER, slice(this.frame.getDstAddress(), 0, 4));
+  }
+
+  @Test
+  public void reassemblesMessagesSplitOverSegments() {
+    byte[] stream = concat(message(1, 300), message(2, 40));
+    assertEquals(0, segment(0, 0, slice(stream, 0, 1)).size());
+    assertEquals(0, segment(1, 0, slice(stream, 1, 200)).size());
+    List<byte[]> payloads = segment(200, 0, slice(stream, 200, stream.length));
+    assertEquals(2, payloads.size());
+    assertArrayEquals(TestTraces.payload(1, 300), payloads.get(0));
+    assertArrayEquals(TestTraces.payload(2, 40), payloads.get(1));
+  }
+
+  @Test
+  public void skipsRetransmittedBytes() {
+    byte[] stream = concat(message(1, 100), message(2, 100));
+    assertEquals(0, segment(0, 0, slice(stream, 0, 80)).size());
+    // a complete retransmission and one overlapping the new bytes
+    assertEquals(0, segment(0, 0, slice(stream, 0, 80)).size());
+    List<byte[]> payloads = segment(50, 0, slice(stream, 50, 150));
+    assertEquals(1, payloads.size());
+    assertArrayEquals(TestTraces.payload(1, 100), payloads.get(0));
+    payloads = segment(150, 0, slice(stream, 150, stream.length));
+    assertEquals(1, payloads.size());
+    assertArrayEquals(TestTraces.payload(2, 100), payloads.get(0));
+  }
+
+  @Test
+  public void dropsBufferedBytesAtAGap() {
+    byte[] stream = concat(message(1, 100), message(2, 100), message(3, 100));
+    assertEquals(0, segment(0, 0, slice(stream, 0, 50)).size());
+    // the segment with the rest of the first message was not captured, the next one starts a new message
+    assertEquals(0, segment(102, 0, slice(stream, 102, 204)).size());
+    List<byte[]> payloads = segment(204, 0, slice(stream, 204, stream.length));
+    assertEquals(1, payloads.size());
+    assertArrayEquals(TestTraces.payload(3, 100), payloads.get(0));
+  }
+
+  @Test
+  public void handsOutTheDataOfAFinSegment() {
+    byte[] stream = concat(message(1, 100), message(2, 100));
+    assertEquals(1, segment(0, 0, slice(stream, 0, 150)).size());
+    List<byte[]> payloads = segment(150, TCP_FIN, slice(stream, 150, stream.length));
+    assertEquals(1, payloads.size());
+    assertArrayEquals(TestTraces.payload(2, 100), payloads.get(0));
+
+    // the flow is closed, later segments on the same ports start a new flow
+    payloads = segment(stream.length + 1, 0, message(3, 10));
+    assertEquals(1, payloads.size());
+    assertArrayEquals(TestTraces.payload(3, 10), payloads.get(0));
+  }
+
+  @Test
+  public void assumesAMessageStartForFlowsCapturedMidway() {
+    this.decoder.reset();
+    List<byte[]> payloads = segment(5000, 0, message(1, 10));
+    assertEquals(1, payloads.size());
+    assertArrayEquals(TestTraces.payload(1, 10), payloads.get(0));
+  }
+}
@@ -0,0 +1,154 @@
+package dns_resolver_simulation;
+
+import static dns_resolver_simulation.TestNames.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.net.InetAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Type;
+
+public class ProofMemoTest {
+  private static final long SECOND = Constants.TICKS_PER_SECOND;
+  private static final int RESULT = Constants.NAME_ERROR_RESPONSE;
+
+  private DNSMessageUtilities messageUtils;
+  private SimulationCache cache;
+  private ProofMemo memo;
+  private ResponseEntry[] entries;
+
+  private static NSECRecord nsec(String owner, String next) throws Exception {
+    return new NSECRecord(Name.fromString(owner), DClass.IN, 60, Name.fromString(next), new int[] { Type.A });
+  }
+
+  // adds an NSEC record of a zone with a TTL of 60 seconds
+  private void add(String owner, String next, int zoneLabels, long arrival) throws Exception {
+    this.cache.add(name(owner), zoneLabels, nsec(owner, next), null, arrival, 60);
+  }
+
+  private CachedWildcardRecord wildcard(String owner, long arrival) throws Exception {
+    ARecord record = new ARecord(Name.fromString(owner), DClass.IN, 60, InetAddress.getByName("192.0.2.1"));
+    return new CachedWildcardRecord(record, arrival, name(owner));
+  }
+
+  /* records a proof of the question like SimulationCache.proof(): the zones, the entries of the name, the covering
+   * record and the wildcard of the zone
+   */
+  private void memoize(String question, long currentTime) throws Exception {
+    CanonicalName name = name(question);
+    this.memo.start(this.cache.getZoneGeneration());
+    int count = this.cache.resolve(name, this.entries);
+    this.memo.addEntries(this.entries, count);
+    CachedNegativeRecord record = this.entries[count - 1].getCoveringNSEC(name, currentTime);
+    assertNotNull(record);
+    this.memo.addRecord(record);
+    CanonicalName wildcardName = this.entries[count - 1].getZone().wildcard();
+    this.memo.addWildcard(wildcardName, this.cache.getWildcard(wildcardName));
+    this.memo.put(name, Type.A, RESULT);
+  }
+
+  private int get(String question, long currentTime) throws Exception {
+    return this.memo.get(this.cache, name(question), Type.A, currentTime);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    Statistics statistics = new Statistics(new Logger(), 1000, 1);
+    this.messageUtils = new DNSMessageUtilities();
+    this.cache = new SimulationCache(this.messageUtils, statistics);
+    this.memo = new ProofMemo(statistics);
+    this.entries = new ResponseEntry[ZoneTrie.MAX_LABELS];
+    add("a.example.", "d.example.", 2, SECOND);
+    memoize("b.example.", 2 * SECOND);
+  }
+
+  @Test
+  public void returnsTheResultWhileNothingChanged() throws Exception {
+    assertEquals(RESULT, get("b.example.", 2 * SECOND));
+    assertEquals(RESULT, get("B.Example.", 60 * SECOND));
+    assertEquals(ProofMemo.MISSING, this.memo.get(this.cache, name("b.example."), Type.AAAA, 2 * SECOND));
+    assertEquals(ProofMemo.MISSING, get("c.example.", 2 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByAddedZones() throws Exception {
+    add("a.other.", "b.other.", 2, 3 * SECOND);
+    assertEquals(ProofMemo.MISSING, get("b.example.", 3 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByDroppedZones() throws Exception {
+    // a zone which expires before the memoized proof was added afterwards
+    this.messageUtils.setCurrentTime(3 * SECOND);
+    add("a.other.", "b.other.", 2, -30 * SECOND);
+    memoize("b.example.", 3 * SECOND);
+    assertEquals(RESULT, get("b.example.", 3 * SECOND));
+
+    this.messageUtils.setCurrentTime(30 * SECOND);
+    assertEquals(0, this.cache.resolve(name("x.other."), this.entries));
+    assertEquals(ProofMemo.MISSING, get("b.example.", 30 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByChangedEntries() throws Exception {
+    add("e.example.", "f.example.", 2, 3 * SECOND);
+    assertEquals(ProofMemo.MISSING, get("b.example.", 3 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByChangedParentEntries() throws Exception {
+    add("a.sub.example.", "b.sub.example.", 3, 3 * SECOND);
+    memoize("aa.sub.example.", 3 * SECOND);
+    assertEquals(RESULT, get("aa.sub.example.", 3 * SECOND));
+    add("e.example.", "f.example.", 2, 4 * SECOND);
+    assertEquals(ProofMemo.MISSING, get("aa.sub.example.", 4 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByExpiredRecords() throws Exception {
+    assertEquals(RESULT, get("b.example.", 61 * SECOND - 1));
+    assertEquals(ProofMemo.MISSING, get("b.example.", 61 * SECOND));
+  }
+
+  @Test
+  public void followsRefreshedRecords() throws Exception {
+    // the record arrives again with the same data, its entry does not change
+    add("a.example.", "d.example.", 2, 30 * SECOND);
+    assertEquals(RESULT, get("b.example.", 61 * SECOND));
+    assertEquals(ProofMemo.MISSING, get("b.example.", 90 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByReplacedRecords() throws Exception {
+    // a record with the same owner name but other data replaces the cached one
+    add("a.example.", "c.example.", 2, 30 * SECOND);
+    assertEquals(ProofMemo.MISSING, get("b.example.", 30 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByAddedWildcards() throws Exception {
+    this.cache.addWildcard(wildcard("*.example.", 3 * SECOND));
+    assertEquals(ProofMemo.MISSING, get("b.example.", 3 * SECOND));
+  }
+
+  @Test
+  public void isInvalidatedByReplacedWildcards() throws Exception {
+    this.cache.addWildcard(wildcard("*.example.", 3 * SECOND));
+    memoize("b.example.", 3 * SECOND);
+    assertEquals(RESULT, get("b.example.", 3 * SECOND));
+    this.cache.addWildcard(wildcard("*.example.", 4 * SECOND));
+    assertEquals(ProofMemo.MISSING, get("b.example.", 4 * SECOND));
+  }
+
+  @Test
+  public void forgetsAllResults() throws Exception {
+    this.memo.clear();
+    assertEquals(ProofMemo.MISSING, get("b.example.", 2 * SECOND));
+  }
+}
@@ -0,0 +1,85 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Type;
+
+public class RecordSlabTest {
+  // types of the first windows and TA (32768), which dnsjava does not name
+  private static final int[] TYPES = { Type.A, Type.MX, Type.RRSIG, Type.NSEC, 257, 32768 };
+
+  private static byte[] wire(String name) throws Exception {
+    return Name.fromString(name).toWireCanonical();
+  }
+
+  private static void storesRecords(RecordSlab slab) throws Exception {
+    long handle = slab.add(RecordSlab.LAST_IN_CHAIN, 2, wire("a.example."), wire("b.example."), TYPES);
+    long unsigned = slab.add(0, -1, new byte[0], wire("c.example."), new int[0]);
+
+    assertEquals(RecordSlab.LAST_IN_CHAIN, slab.getFlags(handle));
+    assertEquals(2, slab.getSigLabels(handle));
+    assertArrayEquals(wire("a.example."), slab.getOwner(handle));
+    assertArrayEquals(wire("b.example."), slab.getNext(handle));
+    assertArrayEquals(TYPES, slab.getTypes(handle));
+    for (int type : TYPES) {
+      assertTrue(slab.containsType(handle, type));
+    }
+    assertFalse(slab.containsType(handle, Type.AAAA));
+    assertFalse(slab.containsType(handle, 32769));
+
+    assertEquals(0, slab.getFlags(unsigned));
+    assertEquals(-1, slab.getSigLabels(unsigned));
+    assertEquals(0, slab.getOwner(unsigned).length);
+    assertArrayEquals(wire("c.example."), slab.getNext(unsigned));
+    assertEquals(0, slab.getTypes(unsigned).length);
+  }
+
+  @Test
+  public void storesRecordsInDirectPages() throws Exception {
+    storesRecords(RecordSlab.create("direct"));
+  }
+
+  @Test
+  public void storesRecordsInMappedPages() throws Exception {
+    storesRecords(RecordSlab.create("mapped"));
+  }
+
+  @Test
+  public void reusesFreedSlots() throws Exception {
+    RecordSlab slab = RecordSlab.create("direct");
+    long first = slab.add(0, -1, wire("a.example."), wire("b.example."), TYPES);
+    long second = slab.add(0, -1, wire("b.example."), wire("c.example."), TYPES);
+    long reserved = slab.getReservedBytes();
+    slab.free(first);
+    assertEquals(first, slab.add(0, -1, wire("c.example."), wire("d.example."), TYPES));
+    assertArrayEquals(wire("c.example."), slab.getOwner(first));
+    assertArrayEquals(wire("b.example."), slab.getOwner(second));
+
+    // cleared pages are carved again
+    slab.clear();
+    assertEquals(first, slab.add(0, -1, wire("d.example."), wire("e.example."), TYPES));
+    assertEquals(reserved, slab.getReservedBytes());
+  }
+
+  @Test
+  public void keepsHighTypesInSmallSlots() throws Exception {
+    RecordSlab slab = RecordSlab.create("direct");
+    // TA and DLV would need a bitmap of 4 KB
+    long trustAnchors = slab.add(0, -1, new byte[0], wire("b.example."), new int[] { Type.A, 32768, 32769 });
+    long next = slab.add(0, -1, new byte[0], wire("c.example."), new int[] { Type.A });
+    assertEquals(trustAnchors + Constants.SLAB_MIN_SLOT, next);
+    assertArrayEquals(new int[] { Type.A, 32768, 32769 }, slab.getTypes(trustAnchors));
+    assertTrue(slab.containsType(trustAnchors, 32769));
+    assertFalse(slab.containsType(trustAnchors, 32770));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownStores() {
+    RecordSlab.create("disk");
+  }
+}
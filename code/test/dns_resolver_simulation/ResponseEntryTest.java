@@ -0,0 +1,90 @@
+package dns_resolver_simulation;
+
+import static dns_resolver_simulation.TestNames.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Type;
+
+public class ResponseEntryTest {
+  private static final long SECOND = Constants.TICKS_PER_SECOND;
+
+  private ResponseEntry entry;
+
+  // adds an NSEC record arriving at 0 seconds
+  private void add(String owner, String next, long ttl) throws Exception {
+    this.entry.add(new NSECRecord(Name.fromString(owner), DClass.IN, 3600, Name.fromString(next), new int[] { Type.A }), null, 0, ttl);
+  }
+
+  private CanonicalName covering(String needle, long currentTime) throws Exception {
+    CachedNegativeRecord record = this.entry.getCoveringNSEC(name(needle), currentTime);
+    return record == null ? null : ((CachedNSECRecord) record).getOwner();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    this.entry = new ResponseEntry(name("example."), null, new TimerWheel(record -> { }), null, false);
+  }
+
+  @Test
+  public void findsThePredecessorCoveringAName() throws Exception {
+    add("a.example.", "c.example.", 60);
+    add("c.example.", "f.example.", 60);
+    assertEquals(name("a.example."), covering("b.example.", SECOND));
+    assertEquals(name("a.example."), covering("x.B.example.", SECOND));
+    assertEquals(name("c.example."), covering("d.example.", SECOND));
+    // names of existing records and names in gaps of the cached chain are not covered
+    assertNull(covering("c.example.", SECOND));
+    assertNull(covering("g.example.", SECOND));
+    assertNull(covering("0.example.", SECOND));
+  }
+
+  @Test
+  public void findsTheRecordAtTheEndOfTheChain() throws Exception {
+    // the next name lays before the owner name, the record covers the names in between
+    add("z.example.", "d.example.", 60);
+    assertEquals(name("z.example."), covering("m.example.", SECOND));
+    assertEquals(name("z.example."), covering("x.y.example.", SECOND));
+    assertNull(covering("zz.example.", SECOND));
+    assertNull(covering("b.example.", SECOND));
+    assertNull(covering("d.example.", SECOND));
+
+    // a predecessor which does not cover the name does not hide the record at the end of the chain
+    add("e.example.", "f.example.", 60);
+    assertEquals(name("e.example."), covering("ee.example.", SECOND));
+    assertEquals(name("z.example."), covering("m.example.", SECOND));
+  }
+
+  @Test
+  public void skipsExpiredRecordsAtTheEndOfTheChain() throws Exception {
+    add("z.example.", "d.example.", 10);
+    assertEquals(name("z.example."), covering("m.example.", 10 * SECOND - 1));
+    assertNull(covering("m.example.", 10 * SECOND));
+  }
+
+  @Test
+  public void skipsExpiredPredecessors() throws Exception {
+    add("a.example.", "c.example.", 60);
+    add("b.example.", "c.example.", 10);
+    assertEquals(name("b.example."), covering("bb.example.", 5 * SECOND));
+    assertEquals(name("a.example."), covering("bb.example.", 10 * SECOND));
+    assertNull(this.entry.getMatchingNSEC(name("b.example."), 10 * SECOND));
+    assertNull(covering("b.example.", 60 * SECOND));
+  }
+
+  @Test
+  public void replacesTheRecordOfAnOwnerName() throws Exception {
+    add("z.example.", "d.example.", 60);
+    add("z.example.", "zz.example.", 60);
+    // the record is not at the end of the chain anymore
+    assertNull(covering("m.example.", SECOND));
+    assertEquals(name("z.example."), covering("za.example.", SECOND));
+    assertSame(this.entry.getMatchingNSEC(name("z.example."), SECOND), this.entry.getCoveringNSEC(name("za.example."), SECOND));
+  }
+}
@@ -0,0 +1,131 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentedTraceReaderTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+
+  // segment with a frame per timestamp, the frame numbers are the timestamps
+  private File segment(String name, int... timestamps) throws Exception {
+    byte[][] frames = new byte[timestamps.length][];
+    for (int i = 0; i < timestamps.length; i++) {
+      frames[i] = TestTraces.frame(timestamps[i], timestamps[i], TestTraces.payload(timestamps[i], 12));
+    }
+    File file = new File(this.directory, name);
+    return name.endsWith(".gz") ? TestTraces.writeGzip(file, frames) : TestTraces.write(file, frames);
+  }
+
+  private static List<Integer> frameNumbers(TraceReader reader) throws Exception {
+    List<Integer> frameNumbers = new ArrayList<Integer>();
+    TraceFrame frame = new TraceFrame();
+    while (reader.next(frame)) {
+      assertArrayEquals(TestTraces.payload(frame.getFrameNumber(), 12), frame.copyPayload());
+      frameNumbers.add(frame.getFrameNumber());
+    }
+    reader.close();
+    return frameNumbers;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    this.directory = this.folder.newFolder("traces");
+  }
+
+  @Test
+  public void readsGzipCompressedTraces() throws Exception {
+    int[] timestamps = new int[5000];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = i + 1;
+    }
+    File file = segment("trace.bin.gz", timestamps);
+    List<Integer> frameNumbers = frameNumbers(TraceReader.open(file.getPath()));
+    assertEquals(timestamps.length, frameNumbers.size());
+    assertEquals(Integer.valueOf(timestamps.length), frameNumbers.get(timestamps.length - 1));
+  }
+
+  @Test
+  public void replaysSegmentsOfADirectoryByTheirFirstTimestamp() throws Exception {
+    segment("a.bin.gz", 30, 31);
+    segment("b.bin", 10, 11);
+    segment("c.bin.gz", 20, 21);
+    segment("d.bin");
+    TraceReader reader = TraceReader.open(this.directory.getPath());
+    assertTrue(reader instanceof SegmentedTraceReader);
+    assertEquals(Arrays.asList("b.bin", "c.bin.gz", "a.bin.gz"), names(((SegmentedTraceReader) reader).getSegments()));
+    assertEquals(Arrays.asList(10, 11, 20, 21, 30, 31), frameNumbers(reader));
+  }
+
+  @Test
+  public void ordersSegmentsStartingAtTheSameTimeByName() throws Exception {
+    segment("b.bin", 10, 12);
+    segment("a.bin", 10, 11);
+    assertEquals(Arrays.asList(10, 11, 10, 12), frameNumbers(TraceReader.open(this.directory.getPath())));
+  }
+
+  @Test
+  public void replaysSegmentsMatchingAGlob() throws Exception {
+    segment("2018-05-02.bin.gz", 20);
+    segment("2018-05-01.bin.gz", 10);
+    segment("2018-06-01.bin.gz", 5);
+    String glob = new File(this.directory, "2018-05-*.bin.gz").getPath();
+    assertEquals(Arrays.asList(10, 20), frameNumbers(TraceReader.open(glob)));
+  }
+
+  @Test
+  public void skipsSidecarsAndCompactTraces() throws Exception {
+    segment("a.bin", 10, 11);
+    new TraceIndex(4).write(new File(this.directory, "a.bin.idx"));
+    segment("a.bin.summary", 1);
+    segment("b.names", 2);
+    segment(".c.bin", 3);
+    // header of a compact trace, which is replayed on its own
+    ByteBuffer header = ByteBuffer.allocate(CompactTraceWriter.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(CompactTraceWriter.MAGIC);
+    Files.write(new File(this.directory, "d.bin").toPath(), header.array());
+
+    assertEquals(Arrays.asList(10, 11), frameNumbers(TraceReader.open(this.directory.getPath())));
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void rejectsLocationsWithoutTraces() throws Exception {
+    TraceReader.open(new File(this.directory, "*.bin").getPath());
+  }
+
+  @Test
+  public void endsAfterTheLastSegment() throws Exception {
+    SegmentedTraceReader reader = new SegmentedTraceReader(Arrays.asList(segment("a.bin", 1), segment("b.bin")));
+    TraceFrame frame = new TraceFrame();
+    assertTrue(reader.next(frame));
+    assertFalse(reader.next(frame));
+    assertFalse(reader.next(frame));
+    reader.close();
+  }
+
+  private static List<String> names(List<File> files) {
+    List<String> names = new ArrayList<String>();
+    for (File file : files) {
+      names.add(file.getName());
+    }
+    return names;
+  }
+}
@@ -0,0 +1,65 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class SimulationConfigTest {
+
+  private static void assertRejected(String specification) {
+    try {
+      SimulationConfig.parse(specification);
+      fail(specification);
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void parsesDefaults() {
+    SimulationConfig config = SimulationConfig.parse("plain");
+    assertEquals("plain", config.getName());
+    assertEquals(Constants.MAX_TTL, config.getMaxTTL());
+    assertFalse(config.isBounded());
+    assertEquals(Constants.DEFAULT_STORE, config.getStore());
+    assertEquals(1, config.getThreads());
+    assertFalse(config.isConcurrent());
+  }
+
+  @Test
+  public void parsesOptions() {
+    SimulationConfig config = SimulationConfig.parse("small:capacity=500,memory=64k,eviction=tinylfu,memo=off,threads=4");
+    assertEquals("small", config.getName());
+    assertTrue(config.isBounded());
+    assertEquals(500, config.getCapacity());
+    assertEquals(64 * 1024, config.getMemory());
+    assertEquals("tinylfu", config.getEviction());
+    assertFalse(config.isMemoEnabled());
+    assertEquals(4, config.getThreads());
+    assertTrue(config.isConcurrent());
+  }
+
+  @Test
+  public void rejectsInvalidOptions() {
+    assertRejected(":capacity=1");
+    assertRejected("a/b");
+    assertRejected("x:size=1");
+    assertRejected("x:capacity");
+    assertRejected("x:nsec=yes");
+    assertRejected("x:range=1,spread=2");
+    assertRejected("x:eviction=fifo");
+    assertRejected("x:store=disk");
+    assertRejected("x:threads=0");
+  }
+
+  @Test
+  public void rejectsRecordStoresSharedByThreads() {
+    assertRejected("x:threads=2,store=direct");
+    assertRejected("x:store=mapped,threads=4");
+    assertEquals("heap", SimulationConfig.parse("x:threads=4,store=heap").getStore());
+    assertEquals("direct", SimulationConfig.parse("x:threads=1,store=direct").getStore());
+  }
+}
@@ -0,0 +1,119 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+public class SimulationInstanceTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void countsUnexpectedPacketsAndLogsTheFirstOnes() throws Exception {
+    File directory = this.folder.getRoot();
+    SimulationInstance instance = new SimulationInstance(SimulationConfig.parse("test"), "test", new Logger(), null,
+      new FileWriter(directory.getPath(), "unexpected"));
+    // an IPv6 client, which the IPv4 defaults do not know
+    byte[] client = InetAddress.getByName("2001:db8::1").getAddress();
+    byte[] resolver = InetAddress.getByName("2001:db8::53").getAddress();
+    int packets = Constants.MAX_LOGGED_UNEXPECTED + 10;
+    for (int i = 0; i < packets; i++) {
+      instance.simulate(Constants.UNEXPECTED_DIRECTION, AddressSet.high(client), AddressSet.low(client), 5353,
+        AddressSet.high(resolver), AddressSet.low(resolver), Constants.DNS_PORT);
+    }
+    assertEquals(packets, instance.getStatistics().getUnexpectedPackets());
+
+    // the lines are buffered until the instance writes its logs
+    File log = new File(directory, "unexpected.txt");
+    assertFalse(log.exists());
+    instance.writeAll();
+    List<String> lines = Files.readAllLines(log.toPath(), Charset.forName("UTF-8"));
+    assertEquals(4 * Constants.MAX_LOGGED_UNEXPECTED, lines.size());
+    assertEquals("src: 2001:db8:0:0:0:0:0:1:5353", lines.get(1));
+  }
+
+  private static DecodedPacket packet(double timestamp, int direction, Message message) {
+    CompactEvent event = new CompactEvent();
+    event.timestamp = timestamp;
+    event.direction = direction;
+    event.srcPort = 5353;
+    event.dstPort = Constants.DNS_PORT;
+    event.hasMessage = true;
+    DNSMessageUtilities utilities = new DNSMessageUtilities();
+    utilities.set(message);
+    utilities.prepare();
+    return new DecodedPacket(event, utilities);
+  }
+
+  private static Message query(String name) throws Exception {
+    return Message.newQuery(Record.newRecord(Name.fromString(name), Type.A, DClass.IN));
+  }
+
+  // NXDOMAIN for the question with a signed NSEC record of the zone example.
+  private static Message response(String name, String owner, String next) throws Exception {
+    Message message = query(name);
+    message.getHeader().setFlag(Flags.QR);
+    message.getHeader().setRcode(Rcode.NXDOMAIN);
+    Name ownerName = Name.fromString(owner);
+    message.addRecord(new NSECRecord(ownerName, DClass.IN, 3600, Name.fromString(next), new int[] { Type.A }), Section.AUTHORITY);
+    message.addRecord(new RRSIGRecord(ownerName, DClass.IN, 3600, Type.NSEC, 8, 3600, new Date(), new Date(), 1,
+      Name.fromString("example."), new byte[] { 1 }), Section.AUTHORITY);
+    return message;
+  }
+
+  // statistics of a threaded run in which the responses of some lanes deny the queries of others
+  private byte[] simulateThreads(List<DecodedPacket> packets) throws Exception {
+    Logger logger = new Logger();
+    SimulationInstance instance = new SimulationInstance(SimulationConfig.parse("test:threads=4,capacity=20"), "test",
+      logger, null, new FileWriter(this.folder.getRoot().getPath(), "unexpected"));
+    instance.start();
+    instance.submit(packets);
+    instance.join();
+    ByteArrayOutputStream state = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(state);
+    instance.getStatistics().writeState(out);
+    out.flush();
+    assertNotEquals(0, instance.getStatistics().getCacheHits());
+    return state.toByteArray();
+  }
+
+  @Test
+  public void threadedRunsGiveTheSameCounters() throws Exception {
+    List<DecodedPacket> packets = new ArrayList<DecodedPacket>();
+    for (int i = 0; i < 400; i++) {
+      double timestamp = i * 0.01;
+      // the NSEC record of a response covers the queries below its owner, which go to other lanes than the response
+      packets.add(packet(timestamp, Constants.RESPONSE_EXT_TO_R,
+        response("x.r" + i + ".example.", "n" + (i % 30) + ".example.", "n" + (i % 30) + "z.example.")));
+      for (int j = 0; j < 4; j++) {
+        packets.add(packet(timestamp, Constants.QUERY_INT_TO_R, query("q" + j + ".n" + ((i + 7 * j) % 30) + ".example.")));
+      }
+    }
+    assertArrayEquals(simulateThreads(packets), simulateThreads(packets));
+  }
+}
@@ -0,0 +1,126 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+public class SlidingWindowTest {
+  private DNSMessageUtilities messageUtils;
+  private SlidingWindow window;
+  private long time;
+
+  // selects the query with the given DNS ID and name as current message
+  private void query(int id, String name) throws Exception {
+    Message message = Message.newQuery(Record.newRecord(Name.fromString(name), Type.A, DClass.IN));
+    message.getHeader().setID(id);
+    this.messageUtils.set(message);
+    this.messageUtils.setCurrentTime(this.time);
+  }
+
+  private void select(String address, int port) throws Exception {
+    byte[] bytes = InetAddress.getByName(address).getAddress();
+    this.window.setKey(AddressSet.high(bytes), AddressSet.low(bytes), port);
+  }
+
+  private void add(String address, int port, int id) throws Exception {
+    query(id, "q" + id + ".example.");
+    select(address, port);
+    this.window.addEntry(Constants.RESPONSE);
+  }
+
+  private boolean isPending(String address, int port, int id) throws Exception {
+    query(id, "q" + id + ".example.");
+    select(address, port);
+    try {
+      assertEquals(Name.fromString("q" + id + ".example."), this.window.getEntry().question.getName());
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    this.messageUtils = new DNSMessageUtilities();
+    this.time = Constants.TICKS_PER_SECOND;
+    this.window = new SlidingWindow(this.messageUtils);
+  }
+
+  @Test
+  public void keepsIPv4AndIPv6ClientsApart() throws Exception {
+    add("192.0.2.1", 5353, 1);
+    add("::ffff:192.0.2.2", 5353, 1);
+    add("2001:db8::1", 5353, 1);
+    add("2001:db8::1", 5354, 1);
+    assertEquals(4, this.window.size());
+
+    assertTrue(isPending("192.0.2.1", 5353, 1));
+    assertTrue(isPending("192.0.2.2", 5353, 1));
+    assertTrue(isPending("2001:db8::1", 5354, 1));
+    assertFalse(isPending("2001:db8::2", 5353, 1));
+    assertFalse(isPending("192.0.2.1", 5353, 2));
+  }
+
+  @Test
+  public void findsAllEntriesAfterRemovingOthers() throws Exception {
+    // enough clients to grow the table several times and to build long probe sequences
+    List<Integer> clients = new ArrayList<Integer>();
+    for (int i = 0; i < 5000; i++) {
+      clients.add(i);
+      add(i % 2 == 0 ? "192.0.2." + (i % 256) : "2001:db8::" + Integer.toHexString(i % 256), 1024 + i % 7, i);
+    }
+    assertEquals(5000, this.window.size());
+
+    Collections.shuffle(clients, new Random(1));
+    List<Integer> removed = clients.subList(0, 3000);
+    for (int i : removed) {
+      query(i, "q" + i + ".example.");
+      select(i % 2 == 0 ? "192.0.2." + (i % 256) : "2001:db8::" + Integer.toHexString(i % 256), 1024 + i % 7);
+      this.window.removeEntry();
+      // removing twice does not change anything
+      this.window.removeEntry();
+    }
+    assertEquals(2000, this.window.size());
+
+    for (int i = 0; i < 5000; i++) {
+      String address = i % 2 == 0 ? "192.0.2." + (i % 256) : "2001:db8::" + Integer.toHexString(i % 256);
+      assertEquals("client " + i, !removed.contains(i), isPending(address, 1024 + i % 7, i));
+    }
+  }
+
+  @Test
+  public void replacesTheEntryOfARepeatedQuery() throws Exception {
+    add("192.0.2.1", 5353, 1);
+    QueryEntry first = this.window.getEntry();
+    this.time = 2 * Constants.TICKS_PER_SECOND;
+    add("192.0.2.1", 5353, 1);
+    assertEquals(1, this.window.size());
+    assertEquals(2 * Constants.TICKS_PER_SECOND, this.window.getEntry().arrival);
+    assertEquals(first.question, this.window.getEntry().question);
+
+    // another question with the same key is not accepted
+    query(1, "other.example.");
+    select("192.0.2.1", 5353);
+    try {
+      this.window.addEntry(Constants.RESPONSE);
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals(first.question.getName(), this.window.getEntry().question.getName());
+    }
+  }
+}
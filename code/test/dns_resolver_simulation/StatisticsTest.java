@@ -0,0 +1,40 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class StatisticsTest {
+
+  private static byte[] state(Statistics statistics) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    statistics.writeState(new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+
+  @Test
+  public void restoresItsCounters() throws Exception {
+    Logger logger = new Logger();
+    Statistics statistics = new Statistics(logger, 1000, 1);
+    statistics.countCacheHit();
+    statistics.countNsec3HashHit();
+    statistics.countNsec3HashHit();
+    statistics.countNsec3HashMiss();
+    statistics.countProofMemoHit();
+    statistics.countProofMemoMiss();
+    statistics.countZoneFilterRejection();
+    statistics.countZoneFilterFalsePositive();
+    statistics.countZoneFilterSkippedLookup();
+    byte[] state = state(statistics);
+
+    Statistics restored = new Statistics(logger, 1000, 1);
+    restored.readState(new DataInputStream(new ByteArrayInputStream(state)));
+    assertArrayEquals(state, state(restored));
+  }
+}
@@ -0,0 +1,15 @@
+package dns_resolver_simulation;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.TextParseException;
+
+// names shared by the tests
+final class TestNames {
+
+  private TestNames() {
+  }
+
+  static CanonicalName name(String name) throws TextParseException {
+    return CanonicalName.of(Name.fromString(name));
+  }
+}
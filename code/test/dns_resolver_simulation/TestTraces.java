@@ -0,0 +1,60 @@
+package dns_resolver_simulation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.GZIPOutputStream;
+
+/* writes small traces in the simulation's binary trace format for tests
+ */
+final class TestTraces {
+  static final byte[] CLIENT = { (byte) 192, 0, 2, 1 };
+  static final byte[] SERVER = { (byte) 192, 0, 2, 53 };
+
+  private TestTraces() {
+  }
+
+  // payload of the given length whose bytes count up from the frame number
+  static byte[] payload(int frameNumber, int length) {
+    byte[] payload = new byte[length];
+    for (int i = 0; i < length; i++) {
+      payload[i] = (byte) (frameNumber + i);
+    }
+    return payload;
+  }
+
+  // UDP frame over IPv4 from CLIENT port 5353 to SERVER port 53
+  static byte[] frame(double timestamp, int frameNumber, byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + 1 + 4 + 4 + 1 + 2 + 2 + 2 + payload.length);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putDouble(timestamp).putInt(frameNumber).put((byte) 4);
+    buffer.put(CLIENT).put(SERVER).put((byte) 17);
+    buffer.putShort((short) 5353).putShort((short) 53).putShort((short) payload.length);
+    buffer.put(payload);
+    return buffer.array();
+  }
+
+  static File write(File file, byte[]... frames) throws IOException {
+    try (OutputStream out = new FileOutputStream(file)) {
+      write(out, frames);
+    }
+    return file;
+  }
+
+  static File writeGzip(File file, byte[]... frames) throws IOException {
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+      write(out, frames);
+    }
+    return file;
+  }
+
+  static void write(OutputStream out, byte[]... frames) throws IOException {
+    out.write(new byte[BinaryTraceReader.MAGIC_LENGTH]);
+    for (byte[] frame : frames) {
+      out.write(frame);
+    }
+  }
+}
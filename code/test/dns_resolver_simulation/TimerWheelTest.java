@@ -0,0 +1,172 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+  private static final long SECOND = Constants.TICKS_PER_SECOND;
+
+  // record expiring at a given tick
+  static class TestRecord extends CachedRecord {
+    private long expiry;
+
+    TestRecord(long arrival, long expiry) {
+      super(arrival);
+      this.expiry = expiry;
+    }
+
+    @Override
+    public int getType() {
+      return 0;
+    }
+
+    @Override
+    public int getKeyHash() {
+      return System.identityHashCode(this);
+    }
+
+    @Override
+    protected int estimateSize() {
+      return 1;
+    }
+
+    @Override
+    public long getExpiry() {
+      return this.expiry;
+    }
+  }
+
+  private List<CachedRecord> expired;
+  private TimerWheel wheel;
+
+  @Before
+  public void setUp() {
+    this.expired = new ArrayList<CachedRecord>();
+    this.wheel = new TimerWheel(this.expired::add);
+  }
+
+  private TestRecord schedule(long arrival, long expiry) {
+    TestRecord record = new TestRecord(arrival, expiry);
+    this.wheel.schedule(record);
+    return record;
+  }
+
+  // advances to one tick of the wheel before the expiry and to the expiry, the record must expire only then
+  private void assertExpiresAt(TestRecord record, long expiry) {
+    this.wheel.advance(expiry - Constants.TIMER_TICK);
+    assertFalse(this.expired.contains(record));
+    assertTrue(record.isScheduled());
+    this.wheel.advance(expiry);
+    assertTrue(this.expired.contains(record));
+    assertFalse(record.isScheduled());
+  }
+
+  @Test
+  public void expiresWithTheTickAfterTheExpiry() {
+    TestRecord record = schedule(0, 3 * SECOND / 2);
+    this.wheel.advance(3 * SECOND / 2);
+    assertTrue(this.expired.isEmpty());
+    this.wheel.advance(2 * SECOND - 1);
+    assertTrue(this.expired.isEmpty());
+    this.wheel.advance(2 * SECOND);
+    assertEquals(Arrays.asList(record), this.expired);
+    assertEquals(0, this.wheel.size());
+  }
+
+  @Test
+  public void cascadesThroughAllLevels() {
+    long slots = 1L << Constants.TIMER_SLOT_BITS;
+    TestRecord level0 = schedule(0, (slots - 1) * SECOND);
+    TestRecord level1 = schedule(0, (slots * 3 + 5) * SECOND);
+    TestRecord level2 = schedule(0, (slots * slots * 2 + slots + 7) * SECOND);
+    TestRecord level3 = schedule(0, (slots * slots * slots + 11) * SECOND);
+    assertEquals(4, this.wheel.size());
+    assertExpiresAt(level0, level0.getExpiry());
+    assertExpiresAt(level1, level1.getExpiry());
+    assertExpiresAt(level2, level2.getExpiry());
+    assertExpiresAt(level3, level3.getExpiry());
+    assertEquals(0, this.wheel.size());
+  }
+
+  @Test
+  public void parksRecordsBeyondTheRangeOfTheWheel() {
+    long range = 1L << (Constants.TIMER_LEVELS * Constants.TIMER_SLOT_BITS);
+    TestRecord record = schedule(0, (range + range / 2 + 3) * SECOND);
+    TestRecord inRange = schedule(0, (range - 1) * SECOND);
+    assertExpiresAt(inRange, inRange.getExpiry());
+    assertEquals(1, this.wheel.size());
+    assertExpiresAt(record, record.getExpiry());
+    assertEquals(2, this.expired.size());
+  }
+
+  @Test
+  public void startsAtTheArrivalOfTheFirstRecord() {
+    long arrival = 1000 * SECOND;
+    TestRecord record = schedule(arrival, arrival + 10 * SECOND);
+    assertExpiresAt(record, arrival + 10 * SECOND);
+  }
+
+  @Test
+  public void expiresDueRecordsWithTheNextAdvance() {
+    schedule(10 * SECOND, 20 * SECOND);
+    TestRecord due = schedule(10 * SECOND, 5 * SECOND);
+    this.wheel.advance(10 * SECOND);
+    assertEquals(Arrays.asList(due), this.expired);
+    assertEquals(1, this.wheel.size());
+  }
+
+  @Test
+  public void cancelsRecords() {
+    TestRecord cancelled = schedule(0, 10 * SECOND);
+    TestRecord record = schedule(0, 10 * SECOND);
+    TestRecord later = schedule(0, 100 * SECOND);
+    this.wheel.cancel(cancelled);
+    this.wheel.cancel(later);
+    this.wheel.cancel(later);
+    assertFalse(cancelled.isScheduled());
+    assertEquals(1, this.wheel.size());
+    this.wheel.advance(200 * SECOND);
+    assertEquals(Arrays.asList(record), this.expired);
+  }
+
+  @Test
+  public void reportsRecordsToTheEvictionPolicy() {
+    EvictionPolicy policy = new LRUEvictionPolicy();
+    this.wheel.setEvictionPolicy(policy);
+    TestRecord record = schedule(0, 10 * SECOND);
+    TestRecord cancelled = schedule(0, 20 * SECOND);
+    schedule(0, 30 * SECOND);
+    assertEquals(3, policy.size());
+    assertEquals(3, policy.getBytes());
+    this.wheel.cancel(cancelled);
+    this.wheel.advance(10 * SECOND);
+    assertEquals(Arrays.asList(record), this.expired);
+    assertEquals(1, policy.size());
+    assertEquals(1, policy.getBytes());
+  }
+
+  @Test
+  public void clearsAllRecords() {
+    TestRecord record = schedule(0, 100 * SECOND);
+    TestRecord later = schedule(0, 100000 * SECOND);
+    this.wheel.advance(50 * SECOND);
+    this.wheel.clear();
+    assertEquals(0, this.wheel.size());
+    assertFalse(record.isScheduled());
+    assertFalse(later.isScheduled());
+
+    // the wheel starts again with the next record, which may arrive before the time it reached
+    TestRecord restored = schedule(5 * SECOND, 15 * SECOND);
+    assertExpiresAt(restored, 15 * SECOND);
+    this.wheel.advance(200000 * SECOND);
+    assertEquals(Arrays.asList(restored), this.expired);
+  }
+}
@@ -0,0 +1,130 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TraceIndexTest {
+  private static final int FRAMES = 40;
+  private static final int STRIDE = 4;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File trace;
+  private long[] offsets;
+  private TraceIndex index;
+
+  // trace of FRAMES frames, frame i has the timestamp i and the frame number i (counted from 1)
+  @Before
+  public void setUp() throws Exception {
+    byte[][] frames = new byte[FRAMES][];
+    this.offsets = new long[FRAMES];
+    long offset = BinaryTraceReader.MAGIC_LENGTH;
+    for (int i = 0; i < FRAMES; i++) {
+      frames[i] = TestTraces.frame(i + 1, i + 1, TestTraces.payload(i, 1 + i % 7));
+      this.offsets[i] = offset;
+      offset += frames[i].length;
+    }
+    this.trace = TestTraces.write(this.folder.newFile("trace.bin"), frames);
+
+    this.index = new TraceIndex(STRIDE);
+    for (int i = 0; i < FRAMES; i++) {
+      this.index.add(this.offsets[i], i + 1);
+    }
+    this.index.setTraceLength(offset);
+  }
+
+  private List<Integer> read(TraceRange range) throws Exception {
+    // small windows make every seek remap
+    TraceReader reader = new RangeTraceReader(new BinaryTraceReader(new MappedTraceInput(this.trace, 64)), this.index, range);
+    List<Integer> frameNumbers = new ArrayList<Integer>();
+    TraceFrame frame = new TraceFrame();
+    while (reader.next(frame)) {
+      frameNumbers.add(frame.getFrameNumber());
+    }
+    reader.close();
+    return frameNumbers;
+  }
+
+  private static List<Integer> frameNumbers(int first, int last) {
+    List<Integer> frameNumbers = new ArrayList<Integer>();
+    for (int i = first; i <= last; i++) {
+      frameNumbers.add(i);
+    }
+    return frameNumbers;
+  }
+
+  @Test
+  public void findsTheIndexedFrameAtOrBefore() {
+    assertEquals(FRAMES, this.index.getFrames());
+    assertEquals(this.offsets[0], this.index.getOffsetOfFrame(0));
+    assertEquals(this.offsets[4], this.index.getOffsetOfFrame(7));
+    assertEquals(this.offsets[8], this.index.getOffsetOfFrame(8));
+    assertEquals(this.offsets[36], this.index.getOffsetOfFrame(1000));
+
+    // frames 1 to 4 have the timestamps 1 to 4, the frame with timestamp 6 is found from frame 5 on
+    assertEquals(this.offsets[0], this.index.getOffsetBefore(0.5));
+    assertEquals(this.offsets[0], this.index.getOffsetBefore(5));
+    assertEquals(this.offsets[4], this.index.getOffsetBefore(6));
+    assertEquals(this.offsets[36], this.index.getOffsetBefore(1000));
+  }
+
+  @Test
+  public void survivesWritingAndLoading() throws Exception {
+    File file = TraceIndex.indexFile(this.trace);
+    this.index.write(file);
+    TraceIndex loaded = TraceIndex.load(file);
+    assertEquals(FRAMES, loaded.getFrames());
+    assertEquals(STRIDE, loaded.getStride());
+    for (int i = 0; i < FRAMES; i++) {
+      assertEquals(this.index.getOffsetOfFrame(i), loaded.getOffsetOfFrame(i));
+      assertEquals(this.index.getOffsetBefore(i + 0.5), loaded.getOffsetBefore(i + 0.5));
+    }
+  }
+
+  @Test
+  public void seeksToTheStartOfATimeRange() throws Exception {
+    assertEquals(frameNumbers(11, 19), read(new TraceRange(10.5, 20, 0, 1)));
+    assertEquals(frameNumbers(1, 3), read(new TraceRange(Double.NEGATIVE_INFINITY, 4, 0, 1)));
+    assertEquals(frameNumbers(38, 40), read(new TraceRange(38, Double.POSITIVE_INFINITY, 0, 1)));
+    assertEquals(frameNumbers(1, 0), read(new TraceRange(100, 200, 0, 1)));
+  }
+
+  @Test
+  public void splitsTheTraceIntoChunks() throws Exception {
+    List<Integer> frameNumbers = new ArrayList<Integer>();
+    for (int chunk = 0; chunk < 3; chunk++) {
+      List<Integer> chunkFrames = read(new TraceRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, chunk, 3));
+      assertTrue(chunkFrames.size() > 0);
+      frameNumbers.addAll(chunkFrames);
+    }
+    assertEquals(frameNumbers(1, FRAMES), frameNumbers);
+
+    // the time range applies inside the chunk
+    assertEquals(frameNumbers(37, 38), read(new TraceRange(36.5, 39, 2, 3)));
+  }
+
+  @Test
+  public void buildsTheSidecarIndexWhenOpeningARange() throws Exception {
+    TraceReader reader = TraceReader.open(this.trace.getPath(), new TraceRange(30, 32, 0, 1),
+      AddressClassifier.fromConstants());
+    assertTrue(TraceIndex.indexFile(this.trace).isFile());
+    TraceFrame frame = new TraceFrame();
+    List<Integer> frameNumbers = new ArrayList<Integer>();
+    while (reader.next(frame)) {
+      frameNumbers.add(frame.getFrameNumber());
+    }
+    reader.close();
+    assertEquals(frameNumbers(30, 31), frameNumbers);
+    assertEquals(FRAMES, TraceIndex.load(TraceIndex.indexFile(this.trace)).getFrames());
+  }
+}
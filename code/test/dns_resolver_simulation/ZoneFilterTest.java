@@ -0,0 +1,63 @@
+package dns_resolver_simulation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ZoneFilterTest {
+
+  @Test
+  public void containsAddedZonesUntilTheyAreRemoved() {
+    ZoneFilter filter = new ZoneFilter(0);
+    assertFalse(filter.mightContain(42));
+    filter.add(42);
+    filter.add(42);
+    assertTrue(filter.mightContain(42));
+    filter.remove(42);
+    assertTrue(filter.mightContain(42));
+    filter.remove(42);
+    assertFalse(filter.mightContain(42));
+  }
+
+  @Test
+  public void neverMissesAZone() {
+    ZoneFilter filter = new ZoneFilter(4096);
+    Random random = new Random(1);
+    int[] hashes = new int[4096];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = random.nextInt();
+      filter.add(hashes[i]);
+    }
+    // removing half of the zones keeps the others
+    for (int i = 0; i < hashes.length; i += 2) {
+      filter.remove(hashes[i]);
+    }
+    for (int i = 1; i < hashes.length; i += 2) {
+      assertTrue(filter.mightContain(hashes[i]));
+    }
+  }
+
+  @Test
+  public void keepsSaturatedCounters() {
+    ZoneFilter filter = new ZoneFilter(0);
+    for (int i = 0; i < 300; i++) {
+      filter.add(7);
+    }
+    for (int i = 0; i < 300; i++) {
+      filter.remove(7);
+    }
+    assertTrue(filter.mightContain(7));
+  }
+
+  @Test
+  public void isFullBeyondItsSize() {
+    ZoneFilter filter = new ZoneFilter(0);
+    assertFalse(filter.isFull(Constants.ZONE_FILTER_MIN_ZONES));
+    assertTrue(filter.isFull(Constants.ZONE_FILTER_MIN_ZONES + 1));
+    ZoneFilter larger = new ZoneFilter(3 * Constants.ZONE_FILTER_MIN_ZONES);
+    assertFalse(larger.isFull(3 * Constants.ZONE_FILTER_MIN_ZONES));
+  }
+}
@@ -0,0 +1,142 @@
+package dns_resolver_simulation;
+
+import static dns_resolver_simulation.TestNames.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Type;
+
+public class ZoneTrieTest {
+  private ZoneTrie trie;
+  private ResponseEntry[] entries;
+
+  // entry of the zone, which has no records yet
+  private ResponseEntry entry(String zone) throws Exception {
+    CanonicalName name = name(zone);
+    return this.trie.entry(name, name.labels());
+  }
+
+  // entry of the zone holding a record which expires after a minute
+  private ResponseEntry filledEntry(String zone) throws Exception {
+    ResponseEntry entry = entry(zone);
+    Name origin = Name.fromString(zone);
+    Name owner = Name.fromString("a", origin);
+    entry.add(new NSECRecord(owner, DClass.IN, 60, Name.fromString("b", origin), new int[] { Type.A }), null, 0, 60);
+    return entry;
+  }
+
+  private int resolve(String name) throws Exception {
+    return this.trie.resolve(name(name), this.entries);
+  }
+
+  @Before
+  public void setUp() {
+    Statistics statistics = new Statistics(new Logger(), 1000, 1);
+    this.trie = new ZoneTrie(new NSEC3HashCache(statistics), new TimerWheel(record -> { }), null, statistics);
+    this.entries = new ResponseEntry[ZoneTrie.MAX_LABELS];
+  }
+
+  @Test
+  public void resolvesAllZonesOfANameFromTheRoot() throws Exception {
+    ResponseEntry example = filledEntry("example.");
+    ResponseEntry sub = filledEntry("sub.example.");
+    ResponseEntry root = filledEntry(".");
+    filledEntry("other.");
+    assertEquals(4, this.trie.size());
+
+    assertEquals(3, resolve("www.Sub.Example."));
+    assertSame(root, this.entries[0]);
+    assertSame(example, this.entries[1]);
+    assertSame(sub, this.entries[2]);
+    assertEquals(2, resolve("example."));
+    assertEquals(1, resolve("com."));
+  }
+
+  @Test
+  public void returnsTheSameEntryForAZone() throws Exception {
+    ResponseEntry entry = filledEntry("example.");
+    long generation = this.trie.getGeneration();
+    assertSame(entry, this.trie.entry(name("a.b.example."), 2));
+    assertEquals(generation, this.trie.getGeneration());
+    assertEquals(1, this.trie.size());
+  }
+
+  @Test
+  public void dropsRemovedEntries() throws Exception {
+    filledEntry("example.");
+    ResponseEntry sub = filledEntry("sub.example.");
+    long generation = this.trie.getGeneration();
+    this.trie.remove(sub);
+    assertNotEquals(generation, this.trie.getGeneration());
+    assertEquals(1, this.trie.size());
+    assertEquals(1, resolve("www.sub.example."));
+
+    // the zone is added again with a new entry
+    assertNotSame(sub, entry("sub.example."));
+    assertEquals(2, this.trie.size());
+  }
+
+  @Test
+  public void dropsEmptyEntriesWhileResolving() throws Exception {
+    ResponseEntry sub = filledEntry("sub.example.");
+    entry("example.");
+    assertEquals(2, this.trie.size());
+    long generation = this.trie.getGeneration();
+
+    // the empty entry of example. is dropped, the one below it stays
+    assertEquals(1, resolve("www.sub.example."));
+    assertSame(sub, this.entries[0]);
+    assertEquals(1, this.trie.size());
+    assertNotEquals(generation, this.trie.getGeneration());
+
+    // removing the last zone prunes all nodes, the zones can be added again
+    this.trie.remove(sub);
+    assertEquals(0, this.trie.size());
+    assertEquals(0, resolve("www.sub.example."));
+    filledEntry("example.");
+    filledEntry("sub.example.");
+    assertEquals(2, resolve("www.sub.example."));
+  }
+
+  @Test
+  public void ignoresEntriesOfOtherTries() throws Exception {
+    ResponseEntry entry = filledEntry("example.");
+    long generation = this.trie.getGeneration();
+    this.trie.remove(new ResponseEntry(name("example."), null, new TimerWheel(record -> { }), null, false));
+    this.trie.remove(new ResponseEntry(name("other."), null, new TimerWheel(record -> { }), null, false));
+    assertEquals(generation, this.trie.getGeneration());
+    assertEquals(1, resolve("www.example."));
+    assertSame(entry, this.entries[0]);
+  }
+
+  @Test
+  public void findsAllZonesAfterTheFilterGrew() throws Exception {
+    int zones = 3 * Constants.ZONE_FILTER_MIN_ZONES;
+    for (int i = 0; i < zones; i++) {
+      filledEntry("z" + i + ".example.");
+    }
+    assertEquals(zones, this.trie.size());
+    for (int i = 0; i < zones; i++) {
+      assertEquals(1, resolve("www.z" + i + ".example."));
+      assertEquals(name("z" + i + ".example."), this.entries[0].getZone());
+    }
+    assertEquals(0, resolve("www.example."));
+  }
+
+  @Test
+  public void clearsAllZones() throws Exception {
+    filledEntry("example.");
+    long generation = this.trie.getGeneration();
+    this.trie.clear();
+    assertEquals(0, this.trie.size());
+    assertNotEquals(generation, this.trie.getGeneration());
+    assertEquals(0, resolve("www.example."));
+  }
+}